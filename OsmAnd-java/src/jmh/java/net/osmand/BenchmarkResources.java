@@ -0,0 +1,34 @@
+package net.osmand;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+/**
+ * Fixtures for benchmarks are the same as for unit tests (collected by collectTestResources task into src/test/resources),
+ * benchmarks are run from project directory. Any fixture could be overridden with system property.
+ */
+public class BenchmarkResources {
+
+	public static final String TEST_RESOURCES = "src/test/resources/";
+	public static final String ROUTING_OBF = TEST_RESOURCES + "routing/Routing_test_archive.obf";
+	public static final String ROUTING_TESTS = TEST_RESOURCES + "test_routing.json";
+	public static final String SEARCH_RESOURCES = TEST_RESOURCES + "search/";
+	public static final String POI_TYPES = TEST_RESOURCES + "poi_types.xml";
+	public static final String PHRASES = TEST_RESOURCES + "phrases/en/phrases.xml";
+
+	public static File getFile(String property, String defaultPath) {
+		File f = new File(System.getProperty(property, defaultPath));
+		if (!f.exists()) {
+			throw new IllegalStateException("Benchmark fixture " + f.getAbsolutePath()
+					+ " is not found (run collectTestResources or set -D" + property + ")");
+		}
+		return f;
+	}
+
+	public static BinaryMapIndexReader openReader(File file) throws IOException {
+		return new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+	}
+}
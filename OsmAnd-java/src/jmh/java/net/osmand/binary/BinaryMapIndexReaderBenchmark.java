@@ -0,0 +1,101 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+import net.osmand.data.LatLon;
+import net.osmand.data.QuadRect;
+import net.osmand.util.MapUtils;
+
+/**
+ * searchMapIndex / searchPoi in bbox around center of first map / poi section of test routing archive
+ * (or -Dosmand.benchmark.obf). Reader is opened once, so blocks decoding and file reading are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class BinaryMapIndexReaderBenchmark {
+
+	@Param({ "2000" })
+	public int radius;
+
+	@Param({ "15" })
+	public int zoom;
+
+	@Param({ "false", "true" })
+	public boolean memoryMapped;
+
+	private BinaryMapIndexReader reader;
+	private LatLon mapCenter;
+	private LatLon poiCenter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File f = BenchmarkResources.getFile("osmand.benchmark.obf", BenchmarkResources.ROUTING_OBF);
+		reader = new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f, true, memoryMapped);
+		for (MapIndex mi : reader.getMapIndexes()) {
+			if (!mi.getRoots().isEmpty()) {
+				mapCenter = mi.getCenterLatLon();
+				break;
+			}
+		}
+		List<PoiRegion> poiIndexes = reader.getPoiIndexes();
+		if (!poiIndexes.isEmpty()) {
+			PoiRegion p = poiIndexes.get(0);
+			poiCenter = new LatLon(MapUtils.get31LatitudeY((p.getTop31() + p.getBottom31()) >>> 1),
+					MapUtils.get31LongitudeX((p.getLeft31() + p.getRight31()) >>> 1));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public List<BinaryMapDataObject> searchMapIndex() throws IOException {
+		if (mapCenter == null) {
+			throw new IllegalStateException("No map sections in " + reader.getFile().getAbsolutePath());
+		}
+		QuadRect bbox = MapUtils.calculateLatLonBbox(mapCenter.getLatitude(), mapCenter.getLongitude(), radius);
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(
+				MapUtils.get31TileNumberX(bbox.left), MapUtils.get31TileNumberX(bbox.right),
+				MapUtils.get31TileNumberY(bbox.top), MapUtils.get31TileNumberY(bbox.bottom), zoom, null);
+		return reader.searchMapIndex(req);
+	}
+
+	@Benchmark
+	public List<Amenity> searchPoi() throws IOException {
+		if (poiCenter == null) {
+			throw new IllegalStateException("No poi sections in " + reader.getFile().getAbsolutePath());
+		}
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(poiCenter, radius, zoom,
+				BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+		return reader.searchPoi(req);
+	}
+}
@@ -0,0 +1,156 @@
+package net.osmand.gpx;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * GPXUtilities.loadGPXFile and GPXFile.getAnalysis of timestamped track,
+ * parsing and formatting of track times compared with SimpleDateFormat.
+ * Track is generated with fixed seed (same file for every run) or set by -Dosmand.benchmark.gpx.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class GPXUtilitiesBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int points;
+
+	private File file;
+	private boolean generated;
+	private GPXFile loaded;
+	private long[] times;
+	private String[] formattedTimes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		String path = System.getProperty("osmand.benchmark.gpx");
+		if (path != null) {
+			file = new File(path);
+			if (!file.exists()) {
+				throw new IllegalStateException("Benchmark fixture " + file.getAbsolutePath() + " is not found");
+			}
+		} else {
+			file = File.createTempFile("gpx_benchmark", ".gpx");
+			generated = true;
+			Exception e = GPXUtilities.writeGpxFile(file, generateTrack(points));
+			if (e != null) {
+				throw new IOException(e);
+			}
+		}
+		loaded = GPXUtilities.loadGPXFile(file);
+		if (loaded.error != null) {
+			throw new IOException(loaded.error);
+		}
+		times = new long[points];
+		formattedTimes = new String[points];
+		SimpleDateFormat format = getTimeFormatter();
+		for (int i = 0; i < points; i++) {
+			times[i] = 1600000000000l + i * 1500l;
+			formattedTimes[i] = format.format(new Date(times[i]));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (generated) {
+			file.delete();
+		}
+	}
+
+	@Benchmark
+	public GPXFile loadGPXFile() {
+		return GPXUtilities.loadGPXFile(file);
+	}
+
+	@Benchmark
+	public GPXTrackAnalysis analysis() {
+		return loaded.getAnalysis(0);
+	}
+
+	@Benchmark
+	public void parseTime(Blackhole blackhole) {
+		for (String text : formattedTimes) {
+			blackhole.consume(GPXUtilities.parseTime(text));
+		}
+	}
+
+	@Benchmark
+	public void parseTimeSimpleDateFormat(Blackhole blackhole) throws ParseException {
+		// new formatter for every value, as GPXUtilities.parseTime did before
+		for (String text : formattedTimes) {
+			blackhole.consume(getTimeFormatter().parse(text).getTime());
+		}
+	}
+
+	@Benchmark
+	public void formatTime(Blackhole blackhole) {
+		for (long time : times) {
+			blackhole.consume(GPXUtilities.formatTime(time));
+		}
+	}
+
+	@Benchmark
+	public void formatTimeSimpleDateFormat(Blackhole blackhole) {
+		SimpleDateFormat format = getTimeFormatter();
+		for (long time : times) {
+			blackhole.consume(format.format(new Date(time)));
+		}
+	}
+
+	private static SimpleDateFormat getTimeFormatter() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+
+	static GPXFile generateTrack(int points) {
+		Random rnd = new Random(points);
+		GPXFile gpx = new GPXFile("OsmAnd benchmark");
+		Track track = new Track();
+		TrkSegment segment = new TrkSegment();
+		track.segments.add(segment);
+		gpx.tracks.add(track);
+		double lat = 52.37;
+		double lon = 4.89;
+		double ele = 10;
+		long time = 1600000000000l;
+		for (int i = 0; i < points; i++) {
+			lat += (rnd.nextDouble() - 0.4) * 1e-4;
+			lon += (rnd.nextDouble() - 0.4) * 1e-4;
+			ele += rnd.nextGaussian();
+			time += 1000 + rnd.nextInt(1000);
+			segment.points.add(new WptPt(lat, lon, time, ele, rnd.nextDouble() * 10, rnd.nextDouble() * 5));
+		}
+		return gpx;
+	}
+}
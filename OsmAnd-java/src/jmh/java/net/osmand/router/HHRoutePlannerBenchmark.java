@@ -0,0 +1,94 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.RoutePlannerBenchmark.RouteEntry;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+/**
+ * HHRoutePlanner.runRouting over HH sections of test routing archive (or -Dosmand.benchmark.hhObf),
+ * network is loaded once per trial, so only route calculation is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class HHRoutePlannerBenchmark {
+
+	@Param({ "car" })
+	public String profile;
+
+	@Param({ "medium", "long" })
+	public String distance;
+
+	private BinaryMapIndexReader reader;
+	private HHRoutePlanner<NetworkDBPoint> planner;
+	private LatLon start;
+	private LatLon end;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, SQLException, InterruptedException {
+		reader = BenchmarkResources.openReader(BenchmarkResources.getFile("osmand.benchmark.hhObf",
+				BenchmarkResources.ROUTING_OBF));
+		if (reader.getHHRoutingIndexes().isEmpty()) {
+			throw new IllegalStateException("No HH routing sections in " + reader.getFile().getAbsolutePath());
+		}
+		RouteEntry entry = RoutePlannerBenchmark.selectRoute(BenchmarkResources.getFile(
+				"osmand.benchmark.routingTests", BenchmarkResources.ROUTING_TESTS), distance);
+		start = entry.startPoint;
+		end = entry.endPoint;
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile, memoryLimits,
+				new TreeMap<String, String>());
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null,
+				new BinaryMapIndexReader[] { reader }, RouteCalculationMode.NORMAL);
+		planner = HHRoutePlanner.create(ctx);
+		// first run loads network points
+		runRouting();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, SQLException {
+		planner.close();
+		reader.close();
+	}
+
+	@Benchmark
+	public HHNetworkRouteRes runRouting() throws SQLException, IOException, InterruptedException {
+		HHRoutingConfig c = HHRoutingConfig.astar(0).calcDetailed(2);
+		c.STATS_VERBOSE_LEVEL = 0;
+		HHNetworkRouteRes res = planner.runRouting(start, end, c);
+		if (res == null || res.error != null) {
+			throw new IllegalStateException("HH route is not found " + start + " -> " + end
+					+ (res == null ? "" : ": " + res.error));
+		}
+		return res;
+	}
+}
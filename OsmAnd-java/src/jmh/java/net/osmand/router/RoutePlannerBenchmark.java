@@ -0,0 +1,130 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RouteResultPreparation.RouteCalcResult;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+/**
+ * Full BinaryRoutePlanner route calculation (new routing context, tiles loading, route preparation)
+ * over test routing archive. Start / end points are taken from test_routing.json:
+ * the longest route of each distance class (short < 5 km, medium < 25 km, long).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class RoutePlannerBenchmark {
+
+	private static final double SHORT_ROUTE = 5000;
+	private static final double MEDIUM_ROUTE = 25000;
+
+	@Param({ "car", "bicycle" })
+	public String profile;
+
+	@Param({ "short", "medium", "long" })
+	public String distance;
+
+	private BinaryMapIndexReader reader;
+	private RoutingConfiguration config;
+	private LatLon start;
+	private LatLon end;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		reader = BenchmarkResources.openReader(BenchmarkResources.getFile("osmand.benchmark.routingObf",
+				BenchmarkResources.ROUTING_OBF));
+		RouteEntry entry = selectRoute(BenchmarkResources.getFile("osmand.benchmark.routingTests",
+				BenchmarkResources.ROUTING_TESTS), distance);
+		start = entry.startPoint;
+		end = entry.endPoint;
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		config = RoutingConfiguration.getDefault().build(profile, memoryLimits, new TreeMap<String, String>());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+	}
+
+	@Benchmark
+	public RouteCalcResult searchRoute() throws IOException, InterruptedException {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		RouteCalcResult res = fe.searchRoute(ctx, start, end, Collections.<LatLon>emptyList());
+		if (res == null || !res.isCorrect()) {
+			throw new IllegalStateException("Route is not found " + start + " -> " + end);
+		}
+		return res;
+	}
+
+	static RouteEntry selectRoute(File tests, String distanceClass) throws IOException {
+		RouteEntry[] entries;
+		Reader r = new FileReader(tests);
+		try {
+			entries = new Gson().fromJson(r, RouteEntry[].class);
+		} finally {
+			r.close();
+		}
+		RouteEntry selected = null;
+		double selectedDist = 0;
+		for (RouteEntry e : entries) {
+			// routes with additional maps or intermediate points are not comparable
+			if (e.ignore || e.startPoint == null || e.endPoint == null || e.transitPoint1 != null
+					|| (e.params != null && e.params.containsKey("map"))) {
+				continue;
+			}
+			double dist = MapUtils.getDistance(e.startPoint, e.endPoint);
+			String cl = dist < SHORT_ROUTE ? "short" : (dist < MEDIUM_ROUTE ? "medium" : "long");
+			if (cl.equals(distanceClass) && dist > selectedDist) {
+				selected = e;
+				selectedDist = dist;
+			}
+		}
+		if (selected == null) {
+			throw new IllegalStateException("No " + distanceClass + " route in " + tests.getAbsolutePath());
+		}
+		return selected;
+	}
+
+	static class RouteEntry {
+		String testName;
+		LatLon startPoint;
+		LatLon endPoint;
+		LatLon transitPoint1;
+		boolean ignore;
+		Map<String, String> params;
+	}
+}
@@ -0,0 +1,118 @@
+package net.osmand.search;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.osmand.BenchmarkResources;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.core.SearchSettings;
+import net.osmand.util.Algorithms;
+
+/**
+ * SearchUICore.immediateSearch of all phrases of first search test (src/test/resources/search/*.json with .obf.gz)
+ * or of test set by -Dosmand.benchmark.searchTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class SearchUICoreBenchmark {
+
+	private File obfFile;
+	private BinaryMapIndexReader reader;
+	private SearchUICore core;
+	private List<String> phrases = new ArrayList<String>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File testFile = selectTest();
+		JSONObject json = new JSONObject(Algorithms.getFileAsString(testFile));
+		String phrase = json.optString("phrase", null);
+		if (phrase != null) {
+			phrases.add(phrase);
+		}
+		JSONArray phrasesJson = json.optJSONArray("phrases");
+		if (phrasesJson != null) {
+			for (int i = 0; i < phrasesJson.length(); i++) {
+				phrases.add(phrasesJson.getString(i));
+			}
+		}
+		obfFile = File.createTempFile("search_benchmark", ".obf");
+		GZIPInputStream gzin = new GZIPInputStream(new FileInputStream(getObfGz(testFile)));
+		FileOutputStream fous = new FileOutputStream(obfFile);
+		Algorithms.streamCopy(gzin, fous);
+		fous.close();
+		gzin.close();
+		reader = BenchmarkResources.openReader(obfFile);
+
+		MapPoiTypes.setDefault(new MapPoiTypes(BenchmarkResources.getFile("osmand.benchmark.poiTypes",
+				BenchmarkResources.POI_TYPES).getPath()));
+		SearchSettings settings = SearchSettings.parseJSON(json.getJSONObject("settings"));
+		settings.setOfflineIndexes(Collections.singletonList(reader));
+		core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.init();
+		core.updateSettings(settings);
+	}
+
+	private File selectTest() {
+		String test = System.getProperty("osmand.benchmark.searchTest");
+		if (test != null) {
+			return BenchmarkResources.getFile("osmand.benchmark.searchTest", test);
+		}
+		File dir = BenchmarkResources.getFile("osmand.benchmark.searchTests", BenchmarkResources.SEARCH_RESOURCES);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File f : files) {
+				if (f.getName().endsWith(".json") && getObfGz(f).exists()) {
+					return f;
+				}
+			}
+		}
+		throw new IllegalStateException("No search test with .obf.gz in " + dir.getAbsolutePath());
+	}
+
+	private static File getObfGz(File testFile) {
+		return new File(testFile.getParentFile(), testFile.getName().replace(".json", ".obf.gz"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		reader.close();
+		obfFile.delete();
+	}
+
+	@Benchmark
+	public void immediateSearch(Blackhole bh) {
+		for (String phrase : phrases) {
+			bh.consume(core.immediateSearch(phrase, null));
+		}
+	}
+}
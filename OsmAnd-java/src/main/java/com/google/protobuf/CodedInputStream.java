@@ -33,7 +33,12 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -68,6 +73,31 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream reading directly from the memory mapped
+   * regions of the given file (no intermediate buffer copies, no read syscalls).
+   * Position and limits work the same way as for {@link #newInstance(RandomAccessFile)}.
+   */
+  public static CodedInputStream newInstance(RandomAccessFile raf, boolean memoryMapped) throws IOException {
+    if (!memoryMapped) {
+      return new CodedInputStream(raf);
+    }
+    return new CodedInputStream(raf.getChannel(), new MappedFile(raf.getChannel().size()));
+  }
+
+  /**
+   * Create a new memory mapped CodedInputStream over the same file as the given one
+   * sharing its mapped regions (position and limits are independent).
+   * Regions are unmapped when all streams sharing them are closed.
+   */
+  public static CodedInputStream newInstance(RandomAccessFile raf, CodedInputStream sameFile) {
+    if (sameFile.mappedFile == null) {
+      throw new IllegalArgumentException("Stream is not memory mapped or closed");
+    }
+    sameFile.mappedFile.retain();
+    return new CodedInputStream(raf.getChannel(), sameFile.mappedFile);
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,7 +252,7 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (size <= (bufferSize - bufferPos) && size > 0 && mappedFile == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
@@ -324,7 +354,7 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
-    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+    } else if (size <= (bufferSize - bufferPos) && size > 0 && mappedFile == null) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
@@ -545,6 +575,15 @@ public final class CodedInputStream {
   private final InputStream input;
   private int lastTag;
 
+  // osmand change: memory mapped mode, file is mapped by chunks (lazily)
+  // and current chunk is used as a buffer (bufferPos / bufferSize are chunk offsets)
+  private FileChannel channel;
+  private MappedFile mappedFile;
+  // duplicates of shared chunks (own position)
+  private ByteBuffer[] mappedChunks;
+  private ByteBuffer mapped;
+  private long mappedLength;
+
   /**
    * The total number of bytes read before the current buffer.  The total
    * bytes read up to the current position can be computed as
@@ -570,6 +609,7 @@ public final class CodedInputStream {
   public static final long DEFAULT_SIZE_LIMIT = Integer.MAX_VALUE;// 64 << 20;  // 64MB
   public static final long MAX_DEFAULT_SIZE_LIMIT = 8l << 40; // 8 TB
   private static final int BUFFER_SIZE = 5 * 1024;
+  private static final long MAPPED_CHUNK_SIZE = 1l << 30; // 1 GB
 
   private CodedInputStream(final byte[] buffer, final int off, final int len) {
     this.buffer = buffer;
@@ -589,6 +629,119 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+   // osmand change
+   private CodedInputStream(final FileChannel channel, final MappedFile mappedFile) {
+		buffer = null;
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.channel = channel;
+		this.mappedFile = mappedFile;
+		mappedLength = mappedFile.length;
+		mappedChunks = new ByteBuffer[mappedFile.chunks.length];
+		input = null;
+	}
+
+  public boolean isMemoryMapped() {
+    return mappedChunks != null;
+  }
+
+  /**
+   * Releases mapped regions of the file (memory mapped mode only),
+   * they're unmapped when no other stream shares them.
+   */
+  public void close() {
+    if (mappedFile != null) {
+      mappedFile.release();
+      mappedFile = null;
+      Arrays.fill(mappedChunks, null);
+      mapped = null;
+      bufferPos = 0;
+      bufferSize = 0;
+    }
+  }
+
+  private ByteBuffer getMappedChunk(int chunk) throws IOException {
+    if (mappedFile == null) {
+      throw new IOException("Stream is closed");
+    }
+    ByteBuffer bb = mappedChunks[chunk];
+    if (bb == null) {
+      bb = mappedFile.getChunk(chunk, channel).duplicate();
+      mappedChunks[chunk] = bb;
+    }
+    return bb;
+  }
+
+  // osmand change: mapped regions of file shared by streams over the same file
+  private static final class MappedFile {
+    private final long length;
+    private final ByteBuffer[] chunks;
+    private int references = 1;
+
+    MappedFile(long length) {
+      this.length = length;
+      chunks = new ByteBuffer[(int) ((length + MAPPED_CHUNK_SIZE - 1) / MAPPED_CHUNK_SIZE)];
+    }
+
+    // chunk is mapped with channel of requesting stream as streams could be closed in any order
+    synchronized ByteBuffer getChunk(int chunk, FileChannel channel) throws IOException {
+      if (references <= 0) {
+        throw new IOException("File is unmapped");
+      }
+      ByteBuffer bb = chunks[chunk];
+      if (bb == null) {
+        long start = chunk * MAPPED_CHUNK_SIZE;
+        bb = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPED_CHUNK_SIZE, length - start));
+        chunks[chunk] = bb;
+      }
+      return bb;
+    }
+
+    synchronized void retain() {
+      if (references <= 0) {
+        throw new IllegalStateException("File is unmapped");
+      }
+      references++;
+    }
+
+    synchronized void release() {
+      if (--references == 0) {
+        for (int i = 0; i < chunks.length; i++) {
+          if (chunks[i] != null) {
+            unmap(chunks[i]);
+            chunks[i] = null;
+          }
+        }
+      }
+    }
+
+    // mapping is released by GC otherwise, so file stays mapped while buffer is reachable
+    private static void unmap(ByteBuffer bb) {
+      try {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Method invokeCleaner;
+        try {
+          invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+          // java 8 and android
+          Method cleanerMethod = bb.getClass().getMethod("cleaner");
+          cleanerMethod.setAccessible(true);
+          Object cleaner = cleanerMethod.invoke(bb);
+          if (cleaner != null) {
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+          }
+          return;
+        }
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), bb);
+      } catch (Exception e) {
+        // not supported, leave it to GC
+      }
+    }
+  }
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -767,7 +920,19 @@ public final class CodedInputStream {
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
-    if (raf != null) {
+    if (mappedChunks != null) {
+    	// osmand change: switch to the mapped chunk containing current position
+    	long position = totalBytesRetired;
+    	if (position < mappedLength) {
+    		int chunk = (int) (position / MAPPED_CHUNK_SIZE);
+    		mapped = getMappedChunk(chunk);
+    		totalBytesRetired = chunk * MAPPED_CHUNK_SIZE;
+    		bufferPos = (int) (position - totalBytesRetired);
+    		bufferSize = mapped.limit();
+    	} else {
+    		bufferSize = -1;
+    	}
+    } else if (raf != null) {
     	// osmand change
     	totalBytesRetired = raf.getFilePointer();
     	long remain = raf.length() - raf.getFilePointer();
@@ -813,6 +978,9 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (mapped != null) {
+      return mapped.get(bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
@@ -834,7 +1002,22 @@ public final class CodedInputStream {
       throw InvalidProtocolBufferException.truncatedMessage();
     }
 
-    if (size <= bufferSize - bufferPos) {
+    if (mappedChunks != null) {
+      // osmand change: copy directly from mapped chunks
+      final byte[] bytes = new byte[size];
+      int pos = 0;
+      while (pos < size) {
+        if (bufferPos == bufferSize) {
+          refillBuffer(true);
+        }
+        int len = Math.min(size - pos, bufferSize - bufferPos);
+        mapped.position(bufferPos);
+        mapped.get(bytes, pos, len);
+        bufferPos += len;
+        pos += len;
+      }
+      return bytes;
+    } else if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
       System.arraycopy(buffer, bufferPos, bytes, 0, size);
@@ -957,7 +1140,12 @@ public final class CodedInputStream {
       long pos = bufferSize - bufferPos;
       bufferPos = bufferSize;
 
-      if(raf != null) {
+      if (mappedChunks != null) {
+         // bufferPos == bufferSize, so it's the absolute position of buffer end
+         totalBytesRetired += bufferPos + (size - pos);
+         bufferPos = 0;
+         bufferSize = 0;
+      } else if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
          raf.seek(raf.getFilePointer() + (size - pos));
@@ -987,7 +1175,9 @@ public final class CodedInputStream {
 	  } else {
 		  totalBytesRetired = pointer;
 		  bufferSizeAfterLimit = 0;
-		  raf.seek(pointer);
+		  if (mappedChunks == null) {
+			  raf.seek(pointer);
+		  }
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
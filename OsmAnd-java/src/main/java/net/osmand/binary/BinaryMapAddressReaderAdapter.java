@@ -6,6 +6,7 @@ import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -51,6 +52,8 @@ public class BinaryMapAddressReaderAdapter {
 	public static class AddressRegion extends BinaryIndexPart {
 		String enName;
 		long indexNameOffset = -1;
+		// name index table read by search by name (shared by readers of same file)
+		volatile SoftReference<IndexedStringTable> nameIndexTable;
 		List<String> attributeTagsTable = new ArrayList<String>();
 		List<CitiesBlock> cities = new ArrayList<BinaryMapAddressReaderAdapter.CitiesBlock>();
 
@@ -630,7 +633,15 @@ public class BinaryMapAddressReaderAdapter {
 				// here offsets are sorted by distance
 				TIntArrayList charsList = new TIntArrayList();
 				charsList.add(0);
-				map.readIndexedStringTable(stringMatcher.getCollator(), Collections.singletonList(req.nameQuery), "", Collections.singletonList(loffsets), charsList);
+				SoftReference<IndexedStringTable> ref = reg.nameIndexTable;
+				IndexedStringTable table = ref == null ? null : ref.get();
+				if (table == null) {
+					table = map.loadIndexedStringTable("");
+					reg.nameIndexTable = new SoftReference<>(table);
+				} else {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				}
+				table.search(map, stringMatcher.getCollator(), Collections.singletonList(req.nameQuery), Collections.singletonList(loffsets), charsList);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER:
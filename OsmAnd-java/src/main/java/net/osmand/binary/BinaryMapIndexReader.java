@@ -132,22 +132,21 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		hhAdapter = new BinaryHHRouteReaderAdapter(this);
-		init();
+		this(raf, file, true, false);
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped read file through memory mapped regions instead of seek + read calls,
+	 *                     useful for servers keeping many files opened (requires 64-bit address space for big files)
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped) throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		codedIS = CodedInputStream.newInstance(raf, memoryMapped);
 		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -162,7 +161,9 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		// memory mapped copy reuses regions mapped by reference reader
+		codedIS = referenceToSameFile.isMemoryMapped() ? CodedInputStream.newInstance(raf, referenceToSameFile.codedIS)
+				: CodedInputStream.newInstance(raf);
 		codedIS.setSizeLimit(CodedInputStream.MAX_DEFAULT_SIZE_LIMIT);
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -432,6 +433,10 @@ public class BinaryMapIndexReader {
 		return raf;
 	}
 
+	public boolean isMemoryMapped() {
+		return codedIS != null && codedIS.isMemoryMapped();
+	}
+
 	public File getFile() {
 		return file;
 	}
@@ -1673,6 +1678,7 @@ public class BinaryMapIndexReader {
 	public void close() throws IOException {
 		if (codedIS != null) {
 			raf.close();
+			codedIS.close();
 			codedIS = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
@@ -2532,6 +2538,54 @@ public class BinaryMapIndexReader {
 		}
 	}
 
+	/**
+	 * Reads keys and values of table till the limit into memory, subtables are skipped and read when searched.
+	 * Keys are stored with prefix as in readIndexedStringTable
+	 */
+	IndexedStringTable loadIndexedStringTable(String prefix) throws IOException {
+		IndexedStringTable.Builder builder = new IndexedStringTable.Builder();
+		String key = null;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return builder.build();
+			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER :
+				key = codedIS.readString();
+				if (prefix.length() > 0) {
+					key = prefix + key;
+				}
+				builder.addKey(key);
+				break;
+			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
+				builder.addVal((int) readInt());
+				break;
+			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER :
+				long len = codedIS.readRawVarint32();
+				if (key != null) {
+					builder.addSubtable(key, codedIS.getTotalBytesRead(), len);
+				}
+				codedIS.skipRawBytes(len);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	// reads subtable at pointer, position of stream is restored
+	IndexedStringTable loadIndexedStringTable(String prefix, long pointer, long length) throws IOException {
+		long position = codedIS.getTotalBytesRead();
+		codedIS.seek(pointer);
+		long oldLimit = codedIS.pushLimitLong(length);
+		IndexedStringTable table = loadIndexedStringTable(prefix);
+		codedIS.popLimit(oldLimit);
+		codedIS.seek(position);
+		return table;
+	}
+
 	private static void testAddressSearchByName(BinaryMapIndexReader reader) throws IOException {
 		SearchRequest<MapObject> req = buildAddressByNameRequest(new ResultMatcher<MapObject>() {
 			@Override
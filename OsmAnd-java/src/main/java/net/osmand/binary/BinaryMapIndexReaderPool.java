@@ -0,0 +1,247 @@
+package net.osmand.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+
+/**
+ * Pool of reader sets for concurrent routing / search over the same files.
+ * Every leased set contains one reader per initial reader (same order), readers are created with
+ * {@link BinaryMapIndexReader#BinaryMapIndexReader(RandomAccessFile, BinaryMapIndexReader)}
+ * so parsed index structure (MapIndex, RouteRegion, PoiRegion, HHRouteRegion...) is shared
+ * and only file position is per reader. Initial readers are not used for reading and not closed by pool.
+ */
+public class BinaryMapIndexReaderPool {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapIndexReaderPool.class);
+
+	private final BinaryMapIndexReader[] initialReaders;
+	private final int maxLeases;
+	// LIFO to reuse warm readers
+	private final Deque<BinaryMapIndexReader[]> free = new ArrayDeque<BinaryMapIndexReader[]>();
+	private boolean closed;
+
+	// stats (guarded by this)
+	private int createdSets;
+	private int inUse;
+	private int peakInUse;
+	private long leases;
+	private long contendedLeases;
+	private long timeouts;
+	private long waitTimeNanos;
+
+	public BinaryMapIndexReaderPool(List<BinaryMapIndexReader> initialReaders, int maxLeases) {
+		if (maxLeases <= 0) {
+			throw new IllegalArgumentException("Max leases should be positive: " + maxLeases);
+		}
+		this.initialReaders = initialReaders.toArray(new BinaryMapIndexReader[0]);
+		this.maxLeases = maxLeases;
+	}
+
+	public BinaryMapIndexReader[] getInitialReaders() {
+		return initialReaders;
+	}
+
+	public int getMaxLeases() {
+		return maxLeases;
+	}
+
+	/**
+	 * Blocks until reader set is available
+	 */
+	public ReaderLease acquire() throws IOException, InterruptedException {
+		return acquire(-1);
+	}
+
+	/**
+	 * @return null if reader set is not available during timeout
+	 */
+	public ReaderLease acquire(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+		return acquire(Math.max(0, unit.toNanos(timeout)));
+	}
+
+	private ReaderLease acquire(long timeoutNanos) throws IOException, InterruptedException {
+		BinaryMapIndexReader[] readers = null;
+		long start = System.nanoTime();
+		synchronized (this) {
+			boolean waited = false;
+			while (readers == null) {
+				if (closed) {
+					throw new IllegalStateException("Reader pool is closed");
+				}
+				if (!free.isEmpty()) {
+					readers = free.pop();
+				} else if (createdSets < maxLeases) {
+					createdSets++;
+					readers = new BinaryMapIndexReader[0];
+				} else {
+					waited = true;
+					if (timeoutNanos < 0) {
+						wait();
+					} else {
+						long left = timeoutNanos - (System.nanoTime() - start);
+						if (left <= 0) {
+							timeouts++;
+							waitTimeNanos += System.nanoTime() - start;
+							return null;
+						}
+						TimeUnit.NANOSECONDS.timedWait(this, left);
+					}
+				}
+			}
+			if (waited) {
+				contendedLeases++;
+				waitTimeNanos += System.nanoTime() - start;
+			}
+			leases++;
+			inUse++;
+			peakInUse = Math.max(peakInUse, inUse);
+		}
+		if (readers.length == 0 && initialReaders.length > 0) {
+			try {
+				readers = createReaders();
+			} catch (IOException e) {
+				synchronized (this) {
+					createdSets--;
+					inUse--;
+					notifyAll();
+				}
+				throw e;
+			}
+		}
+		return new ReaderLease(readers);
+	}
+
+	private BinaryMapIndexReader[] createReaders() throws IOException {
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[initialReaders.length];
+		try {
+			for (int i = 0; i < initialReaders.length; i++) {
+				BinaryMapIndexReader initial = initialReaders[i];
+				RandomAccessFile raf = new RandomAccessFile(initial.getFile(), "r");
+				readers[i] = new BinaryMapIndexReader(raf, initial);
+			}
+		} catch (IOException e) {
+			closeReaders(readers);
+			throw e;
+		}
+		return readers;
+	}
+
+	private void release(BinaryMapIndexReader[] readers) {
+		boolean close;
+		synchronized (this) {
+			inUse--;
+			close = closed;
+			if (!close) {
+				free.push(readers);
+			}
+			notify();
+		}
+		if (close) {
+			closeReaders(readers);
+		}
+	}
+
+	public void close() {
+		List<BinaryMapIndexReader[]> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<BinaryMapIndexReader[]>(free);
+			free.clear();
+			notifyAll();
+		}
+		for (BinaryMapIndexReader[] readers : toClose) {
+			closeReaders(readers);
+		}
+	}
+
+	private void closeReaders(BinaryMapIndexReader[] readers) {
+		for (BinaryMapIndexReader r : readers) {
+			if (r != null) {
+				try {
+					r.close();
+				} catch (IOException e) {
+					log.error("Fail to close " + r.getFile().getName(), e);
+				}
+			}
+		}
+	}
+
+	public synchronized int getCreatedSets() {
+		return createdSets;
+	}
+
+	public synchronized int getInUse() {
+		return inUse;
+	}
+
+	public synchronized int getPeakInUse() {
+		return peakInUse;
+	}
+
+	public synchronized long getLeases() {
+		return leases;
+	}
+
+	public synchronized long getContendedLeases() {
+		return contendedLeases;
+	}
+
+	public synchronized long getTimeouts() {
+		return timeouts;
+	}
+
+	public synchronized long getWaitTimeMs() {
+		return waitTimeNanos / 1000000;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Reader pool %d files: leases %d (contended %d, timeouts %d, wait %d ms), sets %d/%d, in use %d (peak %d)",
+				initialReaders.length, leases, contendedLeases, timeouts, waitTimeNanos / 1000000, createdSets, maxLeases,
+				inUse, peakInUse);
+	}
+
+	public class ReaderLease implements Closeable {
+		private BinaryMapIndexReader[] readers;
+
+		private ReaderLease(BinaryMapIndexReader[] readers) {
+			this.readers = readers;
+		}
+
+		public BinaryMapIndexReader[] getReaders() {
+			if (readers == null) {
+				throw new IllegalStateException("Lease is already released");
+			}
+			return readers;
+		}
+
+		public BinaryMapIndexReader getReader(BinaryMapIndexReader initialReader) {
+			BinaryMapIndexReader[] rs = getReaders();
+			for (int i = 0; i < initialReaders.length; i++) {
+				if (initialReaders[i] == initialReader) {
+					return rs[i];
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public void close() {
+			if (readers != null) {
+				BinaryMapIndexReader[] rs = readers;
+				readers = null;
+				release(rs);
+			}
+		}
+	}
+}
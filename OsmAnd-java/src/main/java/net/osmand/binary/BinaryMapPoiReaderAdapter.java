@@ -2,9 +2,12 @@ package net.osmand.binary;
 
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -52,7 +55,32 @@ public class BinaryMapPoiReaderAdapter {
 		public List<String> possibleValues = null;
 	}
 
+	// name index data atoms (x31, y31, shift to poi data) by data offset, least recently used are removed over the limit
+	static class NameIndexDataCache {
+		private static final int LIMIT = 1 << 18;
+
+		private final LinkedHashMap<Integer, int[]> atoms = new LinkedHashMap<Integer, int[]>(16, 0.75f, true);
+		private int size;
+
+		synchronized int[] get(int dataOffset) {
+			return atoms.get(dataOffset);
+		}
+
+		synchronized void put(int dataOffset, int[] data) {
+			int[] old = atoms.put(dataOffset, data);
+			size += data.length - (old == null ? 0 : old.length);
+			Iterator<int[]> it = atoms.values().iterator();
+			while (size > LIMIT && it.hasNext()) {
+				size -= it.next().length;
+				it.remove();
+			}
+		}
+	}
+
 	public static class PoiRegion extends BinaryIndexPart {
+		// name index read by search by name (shared by readers of same file)
+		volatile SoftReference<IndexedStringTable> nameIndexTable;
+		final NameIndexDataCache nameIndexData = new NameIndexDataCache();
 		List<String> categories = new ArrayList<String>();
 		List<PoiCategory> categoriesType = new ArrayList<PoiCategory>();
 		List<List<String>> subcategories = new ArrayList<List<String>>();
@@ -317,7 +345,7 @@ public class BinaryMapPoiReaderAdapter {
 				long length = readInt();
 				long oldLimit = codedIS.pushLimitLong((long) length);
 				// here offsets are sorted by distance
-				offsets = readPoiNameIndex(matcher.getCollator(), query, req);
+				offsets = readPoiNameIndex(matcher.getCollator(), query, req, region);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
@@ -372,7 +400,7 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
-	private TIntLongHashMap readPoiNameIndex(Collator instance, String query, SearchRequest<Amenity> req) throws IOException {
+	private TIntLongHashMap readPoiNameIndex(Collator instance, String query, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		List<TIntArrayList> listOffsets = null;
 		List<TIntLongHashMap> listOfSepOffsets = new ArrayList<TIntLongHashMap>();
@@ -394,7 +422,15 @@ public class BinaryMapPoiReaderAdapter {
 					charsList.add(0);
 					listOffsets.add(new TIntArrayList());
 				}
-				map.readIndexedStringTable(instance, queries, "", listOffsets, charsList);
+				SoftReference<IndexedStringTable> ref = region.nameIndexTable;
+				IndexedStringTable table = ref == null ? null : ref.get();
+				if (table == null) {
+					table = map.loadIndexedStringTable("");
+					region.nameIndexTable = new SoftReference<>(table);
+				} else {
+					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				}
+				table.search(map, instance, queries, listOffsets, charsList);
 				codedIS.popLimit(oldLimit);
 				break;
 			}
@@ -405,11 +441,15 @@ public class BinaryMapPoiReaderAdapter {
 						listOfSepOffsets.add(offsetMap);
 						dataOffsets.sort(); // 1104125
 						for (int i = 0; i < dataOffsets.size(); i++) {
-							codedIS.seek(dataOffsets.get(i) + offset);
-							int len = codedIS.readRawVarint32();
-							long oldLim = codedIS.pushLimitLong((long) len);
-							readPoiNameIndexData(offsetMap, req);
-							codedIS.popLimit(oldLim);
+							int[] atoms = getPoiNameIndexData(region, dataOffsets.get(i), offset);
+							for (int k = 0; k < atoms.length; k += 3) {
+								int x31 = atoms[k];
+								int y31 = atoms[k + 1];
+								if (req.contains(x31, y31, x31, y31)) {
+									long d = Math.abs(req.x - x31) + Math.abs(req.y - y31);
+									offsetMap.put(atoms[k + 2], d);
+								}
+							}
 							if (req.isCancelled()) {
 								codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 								return offsets;
@@ -440,7 +480,22 @@ public class BinaryMapPoiReaderAdapter {
 
 	}
 
-	private void readPoiNameIndexData(TIntLongHashMap offsets, SearchRequest<Amenity> req) throws IOException {
+	private int[] getPoiNameIndexData(PoiRegion region, int dataOffset, long tableOffset) throws IOException {
+		int[] atoms = region.nameIndexData.get(dataOffset);
+		if (atoms == null) {
+			codedIS.seek(dataOffset + tableOffset);
+			int len = codedIS.readRawVarint32();
+			long oldLim = codedIS.pushLimitLong((long) len);
+			TIntArrayList list = new TIntArrayList();
+			readPoiNameIndexData(list);
+			codedIS.popLimit(oldLim);
+			atoms = list.toArray();
+			region.nameIndexData.put(dataOffset, atoms);
+		}
+		return atoms;
+	}
+
+	private void readPoiNameIndexData(TIntArrayList atoms) throws IOException {
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -450,7 +505,7 @@ public class BinaryMapPoiReaderAdapter {
 				case OsmAndPoiNameIndexData.ATOMS_FIELD_NUMBER:
 					int len = codedIS.readRawVarint32();
 					long oldLim = codedIS.pushLimitLong((long) len);
-					readPoiNameIndexDataAtom(offsets, req);
+					readPoiNameIndexDataAtom(atoms);
 					codedIS.popLimit(oldLim);
 					break;
 				default:
@@ -460,7 +515,7 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
-	private void readPoiNameIndexDataAtom(TIntLongHashMap offsets, SearchRequest<Amenity> req) throws IOException {
+	private void readPoiNameIndexDataAtom(TIntArrayList atoms) throws IOException {
 		int x = 0;
 		int y = 0;
 		int zoom = 15;
@@ -486,11 +541,9 @@ public class BinaryMapPoiReaderAdapter {
 				if(l > Integer.MAX_VALUE) {
 					throw new IllegalStateException();
 				}
-				int shift = (int) l;
-				if (req.contains(x31, y31, x31, y31)) {
-					long d = Math.abs(req.x - x31) + Math.abs(req.y - y31);
-					offsets.put(shift, d);
-				}
+				atoms.add(x31);
+				atoms.add(y31);
+				atoms.add((int) l);
 				break;
 			default:
 				skipUnknownField(t);
@@ -209,18 +209,22 @@ public class CachedOsmandIndexes {
 	}
 
 	public BinaryMapIndexReader getReader(File f, boolean useStoredIndex) throws IOException {
+		return getReader(f, useStoredIndex, false);
+	}
+
+	public BinaryMapIndexReader getReader(File f, boolean useStoredIndex, boolean memoryMapped) throws IOException {
 		FileIndex found = useStoredIndex ? getFileIndex(f, false) : null;
 		BinaryMapIndexReader reader = null;
 		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 		if (found == null) {
 			long val = System.currentTimeMillis();
-			reader = new BinaryMapIndexReader(mf, f);
+			reader = new BinaryMapIndexReader(mf, f, true, memoryMapped);
 			found = addToCache(reader, f);
 			if (log.isDebugEnabled()) {
 				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} else {
-			reader = initReaderFromFileIndex(found, mf, f);
+			reader = initReaderFromFileIndex(found, mf, f, memoryMapped);
 		}
 		return reader;
 	}
@@ -253,7 +257,11 @@ public class CachedOsmandIndexes {
 	}
 
 	public BinaryMapIndexReader initReaderFromFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
-		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
+		return initReaderFromFileIndex(found, mf, f, false);
+	}
+
+	public BinaryMapIndexReader initReaderFromFileIndex(FileIndex found, RandomAccessFile mf, File f, boolean memoryMapped) throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false, memoryMapped);
 		reader.version = found.getVersion();
 		reader.dateCreated = found.getDateModified();
 
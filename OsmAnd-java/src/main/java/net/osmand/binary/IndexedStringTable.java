@@ -0,0 +1,152 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import net.osmand.Collator;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+/**
+ * In-memory copy of name index table (OsmandOdb.IndexedStringTable): prefix tree of names with offsets of name index data.
+ * It is searched exactly as {@link BinaryMapIndexReader#readIndexedStringTable},
+ * so search by each typed character doesn't scan table in file again.
+ * Only keys and values of table are read, subtables are read when they are searched (key matches query)
+ * and kept by soft references. Could be shared between threads and readers of the same file.
+ */
+class IndexedStringTable {
+
+	private static final int KEY = 0;
+	private static final int VAL = 1;
+	private static final int SUBTABLE = 2;
+
+	// order of keys, values and subtables as they are stored in file: type in lower 2 bits, index in arrays
+	private final int[] entries;
+	private final String[] keys;
+	private final int[] vals;
+	// key of subtable (prefix of its keys), its file pointer and length
+	private final String[] subtableKeys;
+	private final long[] subtablePointers;
+	private final long[] subtableLengths;
+	private final AtomicReferenceArray<SoftReference<IndexedStringTable>> subtables;
+
+	private IndexedStringTable(Builder builder) {
+		entries = builder.entries.toArray();
+		keys = builder.keys.toArray(new String[0]);
+		vals = builder.vals.toArray();
+		subtableKeys = builder.subtableKeys.toArray(new String[0]);
+		subtablePointers = builder.subtablePointers.toArray();
+		subtableLengths = builder.subtableLengths.toArray();
+		subtables = new AtomicReferenceArray<>(subtableKeys.length);
+	}
+
+	// reader should be opened for the same file, its position is not changed
+	void search(BinaryMapIndexReader reader, Collator instance, List<String> queries, List<TIntArrayList> listOffsets,
+	            TIntArrayList matchedCharacters) throws IOException {
+		String key = null;
+		boolean[] matched = new boolean[matchedCharacters.size()];
+		boolean shouldWeReadSubtable = false;
+		for (int entry : entries) {
+			int ind = entry >> 2;
+			switch (entry & 3) {
+			case KEY:
+				key = keys[ind];
+				shouldWeReadSubtable = false;
+				for (int i = 0; i < queries.size(); i++) {
+					int charMatches = matchedCharacters.get(i);
+					String query = queries.get(i);
+					matched[i] = false;
+					if (query == null) {
+						continue;
+					}
+					// check query is part of key (the best matching)
+					if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+						if (query.length() >= charMatches) {
+							if (query.length() > charMatches) {
+								matchedCharacters.set(i, query.length());
+								listOffsets.get(i).clear();
+							}
+							matched[i] = true;
+						}
+						// check key is part of query
+					} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+						if (key.length() >= charMatches) {
+							if (key.length() > charMatches) {
+								matchedCharacters.set(i, key.length());
+								listOffsets.get(i).clear();
+							}
+							matched[i] = true;
+						}
+					}
+					shouldWeReadSubtable |= matched[i];
+				}
+				break;
+			case VAL:
+				for (int i = 0; i < queries.size(); i++) {
+					if (matched[i]) {
+						listOffsets.get(i).add(vals[ind]);
+					}
+				}
+				break;
+			case SUBTABLE:
+				if (shouldWeReadSubtable) {
+					List<String> subqueries = new ArrayList<>(queries);
+					// reset query so we don't search what was not matched
+					for (int i = 0; i < queries.size(); i++) {
+						if (!matched[i]) {
+							subqueries.set(i, null);
+						}
+					}
+					getSubtable(reader, ind).search(reader, instance, subqueries, listOffsets, matchedCharacters);
+				}
+				break;
+			}
+		}
+	}
+
+	private IndexedStringTable getSubtable(BinaryMapIndexReader reader, int ind) throws IOException {
+		SoftReference<IndexedStringTable> ref = subtables.get(ind);
+		IndexedStringTable subtable = ref == null ? null : ref.get();
+		if (subtable == null) {
+			subtable = reader.loadIndexedStringTable(subtableKeys[ind], subtablePointers[ind], subtableLengths[ind]);
+			subtables.set(ind, new SoftReference<>(subtable));
+		}
+		return subtable;
+	}
+
+	static class Builder {
+		private final TIntArrayList entries = new TIntArrayList();
+		private final List<String> keys = new ArrayList<>();
+		private final TIntArrayList vals = new TIntArrayList();
+		private final List<String> subtableKeys = new ArrayList<>();
+		private final TLongArrayList subtablePointers = new TLongArrayList();
+		private final TLongArrayList subtableLengths = new TLongArrayList();
+
+		void addKey(String key) {
+			entries.add((keys.size() << 2) | KEY);
+			keys.add(key);
+		}
+
+		void addVal(int val) {
+			entries.add((vals.size() << 2) | VAL);
+			vals.add(val);
+		}
+
+		// subtables without key are not searched and not added
+		void addSubtable(String key, long pointer, long length) {
+			entries.add((subtableKeys.size() << 2) | SUBTABLE);
+			subtableKeys.add(key);
+			subtablePointers.add(pointer);
+			subtableLengths.add(length);
+		}
+
+		IndexedStringTable build() {
+			return new IndexedStringTable(this);
+		}
+	}
+}
@@ -17,8 +17,8 @@ import net.osmand.util.MapUtils;
 import net.osmand.util.TransliterationHelper;
 
 public class RouteDataObject {
-	/*private */static final int RESTRICTION_SHIFT = 3;
-	/*private */static final int RESTRICTION_MASK = 7;
+	protected static final int RESTRICTION_SHIFT = 3;
+	protected static final int RESTRICTION_MASK = 7;
 	public static int HEIGHT_UNDEFINED = -80000;
 
 	public final RouteRegion region;
@@ -56,6 +56,7 @@ public class RouteDataObject {
 	}
 
 	public RouteDataObject(RouteDataObject copy) {
+		copy.materialize();
 		this.region = copy.region;
 		this.pointsX = copy.pointsX;
 		this.pointsY = copy.pointsY;
@@ -70,7 +71,16 @@ public class RouteDataObject {
 		this.id = copy.id;
 	}
 
+	/**
+	 * Object could be a view over shared storage (i.e. cached route tile) and answer accessors without
+	 * having own arrays assigned. Code reading array fields directly should call this method first.
+	 */
+	public void materialize() {
+	}
+
 	public boolean compareRoute(RouteDataObject thatObj) {
+		materialize();
+		thatObj.materialize();
 		if (this.id == thatObj.id
 				&& Arrays.equals(this.pointsX, thatObj.pointsX)
 				&& Arrays.equals(this.pointsY, thatObj.pointsY)) {
@@ -409,9 +419,7 @@ public class RouteDataObject {
 		RestrictionInfo ri = new RestrictionInfo();
 		ri.toWay = getRestrictionId(k);
 		ri.type = getRestrictionType(k);
-		if (restrictionsVia != null && k < restrictionsVia.length) {
-			ri.viaWay = restrictionsVia[k];
-		}
+		ri.viaWay = getRestrictionVia(k);
 		return ri;
 	}
 
@@ -717,10 +725,10 @@ public class RouteDataObject {
 	}
 
 	public boolean isExitPoint() {
-		if (pointTypes != null) {
-			int ptSz = pointTypes.length;
+		if (hasPointTypes()) {
+			int ptSz = getPointsLength();
 			for (int i = 0; i < ptSz; i++) {
-				int[] point = pointTypes[i];
+				int[] point = getPointTypes(i);
 				if (point != null) {
 					int pSz = point.length;
 					for (int j = 0; j < pSz; j++) {
@@ -857,9 +865,10 @@ public class RouteDataObject {
 	}
 
 	public String getValue(int pnt, String tag) {
-		if (pointTypes != null && pnt < pointTypes.length && pointTypes[pnt] != null) {
-			for (int i = 0; i < pointTypes[pnt].length; i++) {
-				RouteTypeRule r = region.quickGetEncodingRule(pointTypes[pnt][i]);
+		int[] pTypes = getPointTypes(pnt);
+		if (pTypes != null) {
+			for (int i = 0; i < pTypes.length; i++) {
+				RouteTypeRule r = region.quickGetEncodingRule(pTypes[i]);
 				if (r.getTag().equals(tag)) {
 					return r.getValue();
 				}
@@ -1150,8 +1159,9 @@ public class RouteDataObject {
 	}
 
 	public boolean hasPointType(int pntId, int type) {
-		for (int k = 0; pointTypes != null && pointTypes[pntId] != null && k < pointTypes[pntId].length; k++) {
-			if (pointTypes[pntId][k] == type) {
+		int[] pTypes = getPointTypes(pntId);
+		for (int k = 0; pTypes != null && k < pTypes.length; k++) {
+			if (pTypes[k] == type) {
 				return true;
 			}
 		}
@@ -20,6 +20,7 @@ public class TransportRoute extends MapObject {
 	private Integer dist = null;
 	private String color;
 	private List<Way> forwardWays;
+	private boolean forwardWaysMerged;
 	private TransportSchedule schedule;
 	private Map<String, String> tags = new HashMap<>();
 	public static final double SAME_STOP = 40;
@@ -90,8 +91,9 @@ public class TransportRoute extends MapObject {
 		this.dist = dist;
 	}
 
-	public void setForwardWays(List<Way> forwardWays) {
+	public synchronized void setForwardWays(List<Way> forwardWays) {
 		this.forwardWays = forwardWays;
+		this.forwardWaysMerged = false;
 	}
 
 	public void setSchedule(TransportSchedule schedule) {
@@ -105,9 +107,17 @@ public class TransportRoute extends MapObject {
 		return forwardWays;
 	}
 	
-	public void mergeForwardWays() {
+	/**
+	 * Merges ways once (until ways are changed), so route shared between threads could be merged beforehand
+	 * and later calls don't modify ways.
+	 */
+	public synchronized void mergeForwardWays() {
+		if (forwardWaysMerged) {
+			return;
+		}
 		mergeRouteWays(forwardWays);
 		resortWaysToStopsOrder(forwardWays, forwardStops);
+		forwardWaysMerged = true;
 	}
 	
 	// intrusive operation cause it changes ways itself!
@@ -233,11 +243,12 @@ public class TransportRoute extends MapObject {
 		return color;
 	}
 	
-	public void addWay(Way w) {
+	public synchronized void addWay(Way w) {
 		if (forwardWays == null) {
 			forwardWays = new ArrayList<>();
 		}
 		forwardWays.add(w);
+		forwardWaysMerged = false;
 	}
 
 	public String getRef() {
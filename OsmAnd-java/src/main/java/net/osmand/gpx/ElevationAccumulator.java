@@ -0,0 +1,117 @@
+package net.osmand.gpx;
+
+import java.util.Arrays;
+
+import net.osmand.util.MapUtils;
+
+/**
+ * Keeps only points of segment which survive {@link ElevationApproximator#approximate()} while points are added,
+ * so elevation gain/loss of segment (the same as {@link GPXTrackAnalysis#calculateElevationDiffs}) may be
+ * requested at any time. Survival of point depends on previous survived points and next point,
+ * so only the last added point is checked on request.
+ */
+class ElevationAccumulator {
+
+	private int count;
+	// last added point
+	private double lat;
+	private double lon;
+	private double ele;
+	// elevation of last point which survived monotonic check and number of such points
+	private double monotonicEle;
+	private int monotonicCount;
+	// last point which survived slope check
+	private double survivedLat;
+	private double survivedLon;
+	private double survivedEle;
+	// distance from previous survived point and elevation of survived points (last added point is not included)
+	private double[] distances = new double[64];
+	private double[] elevations = new double[64];
+	private int survivedCount;
+
+	private int calculatedCount = -1;
+	private double[] diffs;
+
+	int getCount() {
+		return count;
+	}
+
+	void reset() {
+		count = 0;
+		survivedCount = 0;
+		calculatedCount = -1;
+		diffs = null;
+	}
+
+	void addPoint(double lat, double lon, double ele) {
+		if (count == 0) {
+			monotonicEle = ele;
+			monotonicCount = 1;
+			addSurvived(0, lat, lon, ele);
+		} else if (count > 1) {
+			// previous point is not the first one and it is not the last one anymore
+			if ((this.ele - monotonicEle) * (ele - this.ele) > 0) {
+				monotonicEle = this.ele;
+				monotonicCount++;
+				double dist = MapUtils.getDistance(this.lat, this.lon, survivedLat, survivedLon);
+				if (!isSteep(dist, this.ele)) {
+					addSurvived(dist, this.lat, this.lon, this.ele);
+				}
+			}
+		}
+		this.lat = lat;
+		this.lon = lon;
+		this.ele = ele;
+		count++;
+	}
+
+	// returns elevation gain and loss of added points or null if they could not be calculated
+	double[] getDiffs() {
+		if (calculatedCount != count) {
+			diffs = calculateDiffs();
+			calculatedCount = count;
+		}
+		return diffs;
+	}
+
+	private double[] calculateDiffs() {
+		// last point always survives monotonic check
+		if (count < 4 || monotonicCount + 1 < 4) {
+			return null;
+		}
+		double dist = MapUtils.getDistance(lat, lon, survivedLat, survivedLon);
+		int pointsCount = survivedCount;
+		if (!isSteep(dist, ele)) {
+			ensureCapacity();
+			distances[pointsCount] = dist;
+			elevations[pointsCount] = ele;
+			pointsCount++;
+		}
+		if (pointsCount < 4) {
+			return null;
+		}
+		return GPXTrackAnalysis.calculateElevationDiffs(distances, elevations, pointsCount);
+	}
+
+	private boolean isSteep(double dist, double ele) {
+		double slope = (ele - survivedEle) * 100 / dist;
+		return Math.abs(slope) > ElevationApproximator.SLOPE_THRESHOLD;
+	}
+
+	private void addSurvived(double dist, double lat, double lon, double ele) {
+		ensureCapacity();
+		distances[survivedCount] = dist;
+		elevations[survivedCount] = ele;
+		survivedCount++;
+		survivedLat = lat;
+		survivedLon = lon;
+		survivedEle = ele;
+	}
+
+	private void ensureCapacity() {
+		if (survivedCount == distances.length) {
+			distances = Arrays.copyOf(distances, survivedCount * 2);
+			elevations = Arrays.copyOf(elevations, survivedCount * 2);
+		}
+	}
+}
@@ -8,7 +8,7 @@ import java.util.List;
 
 public abstract class ElevationApproximator {
 
-	private static final double SLOPE_THRESHOLD = 70.0;
+	static final double SLOPE_THRESHOLD = 70.0;
 
 	private double[] distances;
 	private double[] elevations;
@@ -0,0 +1,797 @@
+package net.osmand.gpx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.gpx.GPXUtilities.Author;
+import net.osmand.gpx.GPXUtilities.Bounds;
+import net.osmand.gpx.GPXUtilities.Copyright;
+import net.osmand.gpx.GPXUtilities.GPXExtensions;
+import net.osmand.gpx.GPXUtilities.Metadata;
+import net.osmand.gpx.GPXUtilities.PointsGroup;
+import net.osmand.gpx.GPXUtilities.Route;
+import net.osmand.gpx.GPXUtilities.RouteSegment;
+import net.osmand.gpx.GPXUtilities.RouteType;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.util.Algorithms;
+
+/**
+ * Binary cache of parsed gpx files and their analysis, so files are not parsed again while they are not changed.
+ * Cache file is valid for the same size and modification time of source file, format:
+ * <pre>
+ * header: magic, version, analysis version, source size, source modified time,
+ *         analysis section length and crc32, gpx section length and crc32
+ * analysis section, gpx section
+ * </pre>
+ * Sections are read with sequential channel reads, analysis could be read without gpx section.
+ * Strings of section are written once and then referenced by index.
+ */
+public class GPXBinaryCache {
+
+	private static final Log log = PlatformUtil.getLog(GPXBinaryCache.class);
+
+	public static final String CACHE_EXT = ".gpxcache";
+	public static final int VERSION = 1;
+
+	private static final int MAGIC = 0x4f475043; // OGPC
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 4 + 8 + 4 + 8;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int TYPE_NULL = 0;
+	private static final int TYPE_INT = 1;
+	private static final int TYPE_LONG = 2;
+	private static final int TYPE_FLOAT = 3;
+	private static final int TYPE_DOUBLE = 4;
+	private static final int TYPE_STRING = 5;
+	private static final int TYPE_BOOLEAN = 6;
+
+	private final File cacheDir;
+
+	public static class CachedGPXFile {
+		public final GPXFile gpxFile;
+		public final GPXTrackAnalysis analysis;
+
+		public CachedGPXFile(GPXFile gpxFile, GPXTrackAnalysis analysis) {
+			this.gpxFile = gpxFile;
+			this.analysis = analysis;
+		}
+	}
+
+	/**
+	 * @param cacheDir directory of cache files, if it is null cache files are stored next to gpx files
+	 */
+	public GPXBinaryCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	public File getCacheFile(File file) {
+		if (cacheDir == null) {
+			return new File(file.getParentFile(), file.getName() + CACHE_EXT);
+		}
+		String path = file.getAbsolutePath();
+		return new File(cacheDir, file.getName() + "_" + Integer.toHexString(path.hashCode()) + CACHE_EXT);
+	}
+
+	/**
+	 * Returns cached file or parses file (with general track) and stores it with its analysis to cache.
+	 */
+	public CachedGPXFile loadGPXFile(File file) {
+		CachedGPXFile cached = readCache(file, true);
+		if (cached != null) {
+			return cached;
+		}
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(file);
+		GPXTrackAnalysis analysis = gpxFile.getAnalysis(file.lastModified());
+		if (gpxFile.error == null) {
+			writeCache(file, gpxFile, analysis);
+		}
+		return new CachedGPXFile(gpxFile, analysis);
+	}
+
+	/**
+	 * Returns cached analysis (gpx content is not read) or null if cache is not valid.
+	 */
+	public GPXTrackAnalysis readAnalysis(File file) {
+		CachedGPXFile cached = readCache(file, false);
+		return cached == null ? null : cached.analysis;
+	}
+
+	public CachedGPXFile readCache(File file, boolean readGpx) {
+		File cacheFile = getCacheFile(file);
+		if (!cacheFile.exists()) {
+			return null;
+		}
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(cacheFile);
+			FileChannel channel = fis.getChannel();
+			ByteBuffer header = read(channel, HEADER_SIZE);
+			if (header == null || header.getInt() != MAGIC || header.getInt() != VERSION
+					|| header.getInt() != GPXTrackAnalysis.ANALYSIS_VERSION
+					|| header.getLong() != file.length() || header.getLong() != file.lastModified()) {
+				return null;
+			}
+			int analysisLength = header.getInt();
+			long analysisCrc = header.getLong();
+			int gpxLength = header.getInt();
+			long gpxCrc = header.getLong();
+			ByteBuffer analysisBuf = readSection(channel, analysisLength, analysisCrc);
+			if (analysisBuf == null) {
+				return null;
+			}
+			GPXTrackAnalysis analysis = readAnalysis(new SectionReader(analysisBuf));
+			GPXFile gpxFile = null;
+			if (readGpx) {
+				ByteBuffer gpxBuf = readSection(channel, gpxLength, gpxCrc);
+				if (gpxBuf == null) {
+					return null;
+				}
+				gpxFile = readGPXFile(new SectionReader(gpxBuf));
+				gpxFile.path = file.getAbsolutePath();
+				gpxFile.modifiedTime = file.lastModified();
+				gpxFile.pointsModifiedTime = gpxFile.modifiedTime;
+			}
+			return new CachedGPXFile(gpxFile, analysis);
+		} catch (IOException | RuntimeException e) {
+			log.error("Error reading gpx cache " + cacheFile, e);
+			return null;
+		} finally {
+			Algorithms.closeStream(fis);
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf) < 0) {
+				return null;
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private static ByteBuffer readSection(FileChannel channel, int length, long crc) throws IOException {
+		ByteBuffer buf = read(channel, length);
+		if (buf == null) {
+			return null;
+		}
+		CRC32 crc32 = new CRC32();
+		crc32.update(buf.array(), 0, length);
+		return crc32.getValue() == crc ? buf : null;
+	}
+
+	private static long crc(byte[] bytes) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(bytes);
+		return crc32.getValue();
+	}
+
+	public boolean writeCache(File file, GPXFile gpxFile, GPXTrackAnalysis analysis) {
+		File cacheFile = getCacheFile(file);
+		File tmp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+		FileOutputStream fos = null;
+		try {
+			SectionWriter analysisSection = new SectionWriter();
+			writeAnalysis(analysisSection, analysis);
+			SectionWriter gpxSection = new SectionWriter();
+			writeGPXFile(gpxSection, gpxFile);
+
+			byte[] analysisBytes = analysisSection.toByteArray();
+			byte[] gpxBytes = gpxSection.toByteArray();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(GPXTrackAnalysis.ANALYSIS_VERSION);
+			header.putLong(file.length()).putLong(file.lastModified());
+			header.putInt(analysisBytes.length).putLong(crc(analysisBytes));
+			header.putInt(gpxBytes.length).putLong(crc(gpxBytes));
+			header.flip();
+
+			if (cacheFile.getParentFile() != null) {
+				cacheFile.getParentFile().mkdirs();
+			}
+			fos = new FileOutputStream(tmp);
+			FileChannel channel = fos.getChannel();
+			ByteBuffer[] buffers = {header, ByteBuffer.wrap(analysisBytes), ByteBuffer.wrap(gpxBytes)};
+			while (buffers[2].hasRemaining()) {
+				channel.write(buffers);
+			}
+			fos.close();
+			fos = null;
+			cacheFile.delete();
+			return tmp.renameTo(cacheFile);
+		} catch (IOException e) {
+			log.error("Error writing gpx cache " + cacheFile, e);
+			tmp.delete();
+			return false;
+		} finally {
+			Algorithms.closeStream(fos);
+		}
+	}
+
+	private static void writeAnalysis(SectionWriter w, GPXTrackAnalysis a) throws IOException {
+		w.writeString(a.name);
+		w.out.writeFloat(a.totalDistanceWithoutGaps);
+		w.out.writeLong(a.timeSpanWithoutGaps);
+		w.out.writeLong(a.expectedRouteDuration);
+		w.out.writeLong(a.timeMovingWithoutGaps);
+		w.out.writeFloat(a.totalDistanceMovingWithoutGaps);
+		w.out.writeDouble(a.minHdop);
+		w.out.writeDouble(a.maxHdop);
+		w.out.writeDouble(a.metricEnd);
+		w.out.writeDouble(a.secondaryMetricEnd);
+		w.out.writeDouble(a.left);
+		w.out.writeDouble(a.right);
+		w.out.writeDouble(a.top);
+		w.out.writeDouble(a.bottom);
+		w.out.writeBoolean(a.hasSpeedInTrack);
+		writeNullableWpt(w, a.locationStart);
+		writeNullableWpt(w, a.locationEnd);
+
+		Map<GpxParameter, Object> parameters = a.getGpxParameters();
+		w.writeInt(parameters.size());
+		for (Entry<GpxParameter, Object> e : parameters.entrySet()) {
+			w.writeString(e.getKey().name());
+			writeValue(w, e.getValue());
+		}
+		if (a.availableAttributes == null) {
+			w.writeInt(-1);
+		} else {
+			w.writeInt(a.availableAttributes.size());
+			for (String attr : a.availableAttributes) {
+				w.writeString(attr);
+			}
+		}
+		if (a.pointAttributes == null) {
+			w.writeInt(-1);
+		} else {
+			w.writeInt(a.pointAttributes.size());
+			for (PointAttributes p : a.pointAttributes) {
+				w.out.writeFloat(p.distance);
+				w.out.writeFloat(p.timeDiff);
+				w.out.writeByte((p.firstPoint ? 1 : 0) | (p.lastPoint ? 2 : 0));
+				w.out.writeFloat(p.speed);
+				w.out.writeFloat(p.elevation);
+				w.out.writeFloat(p.heartRate);
+				w.out.writeFloat(p.sensorSpeed);
+				w.out.writeFloat(p.bikeCadence);
+				w.out.writeFloat(p.bikePower);
+				w.out.writeFloat(p.waterTemperature);
+				w.out.writeFloat(p.airTemperature);
+				w.out.writeFloat(p.rawZoom);
+				w.out.writeFloat(p.animatedZoom);
+				w.out.writeFloat(p.interpolationOffsetN);
+			}
+		}
+	}
+
+	private static GPXTrackAnalysis readAnalysis(SectionReader r) {
+		GPXTrackAnalysis a = new GPXTrackAnalysis();
+		a.name = r.readString();
+		a.totalDistanceWithoutGaps = r.buf.getFloat();
+		a.timeSpanWithoutGaps = r.buf.getLong();
+		a.expectedRouteDuration = r.buf.getLong();
+		a.timeMovingWithoutGaps = r.buf.getLong();
+		a.totalDistanceMovingWithoutGaps = r.buf.getFloat();
+		a.minHdop = r.buf.getDouble();
+		a.maxHdop = r.buf.getDouble();
+		a.metricEnd = r.buf.getDouble();
+		a.secondaryMetricEnd = r.buf.getDouble();
+		a.left = r.buf.getDouble();
+		a.right = r.buf.getDouble();
+		a.top = r.buf.getDouble();
+		a.bottom = r.buf.getDouble();
+		a.hasSpeedInTrack = r.buf.get() != 0;
+		a.locationStart = readNullableWpt(r);
+		a.locationEnd = readNullableWpt(r);
+
+		int parameters = r.readInt();
+		for (int i = 0; i < parameters; i++) {
+			String name = r.readString();
+			Object value = readValue(r);
+			try {
+				a.setGpxParameter(GpxParameter.valueOf(name), value);
+			} catch (IllegalArgumentException e) {
+				// parameter is removed
+			}
+		}
+		int attributes = r.readInt();
+		if (attributes >= 0) {
+			a.availableAttributes = new HashSet<>();
+			for (int i = 0; i < attributes; i++) {
+				a.availableAttributes.add(r.readString());
+			}
+		}
+		int points = r.readInt();
+		if (points >= 0) {
+			a.pointAttributes = new ArrayList<>(points);
+			for (int i = 0; i < points; i++) {
+				float distance = r.buf.getFloat();
+				float timeDiff = r.buf.getFloat();
+				int flags = r.buf.get();
+				PointAttributes p = new PointAttributes(distance, timeDiff, (flags & 1) != 0, (flags & 2) != 0);
+				p.speed = r.buf.getFloat();
+				p.elevation = r.buf.getFloat();
+				p.heartRate = r.buf.getFloat();
+				p.sensorSpeed = r.buf.getFloat();
+				p.bikeCadence = r.buf.getFloat();
+				p.bikePower = r.buf.getFloat();
+				p.waterTemperature = r.buf.getFloat();
+				p.airTemperature = r.buf.getFloat();
+				p.rawZoom = r.buf.getFloat();
+				p.animatedZoom = r.buf.getFloat();
+				p.interpolationOffsetN = r.buf.getFloat();
+				a.pointAttributes.add(p);
+			}
+		}
+		return a;
+	}
+
+	private static void writeValue(SectionWriter w, Object value) throws IOException {
+		if (value instanceof Integer) {
+			w.out.writeByte(TYPE_INT);
+			w.out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			w.out.writeByte(TYPE_LONG);
+			w.out.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			w.out.writeByte(TYPE_FLOAT);
+			w.out.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			w.out.writeByte(TYPE_DOUBLE);
+			w.out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			w.out.writeByte(TYPE_BOOLEAN);
+			w.out.writeBoolean((Boolean) value);
+		} else if (value != null) {
+			w.out.writeByte(TYPE_STRING);
+			w.writeString(value.toString());
+		} else {
+			w.out.writeByte(TYPE_NULL);
+		}
+	}
+
+	private static Object readValue(SectionReader r) {
+		int type = r.buf.get();
+		switch (type) {
+			case TYPE_INT:
+				return r.buf.getInt();
+			case TYPE_LONG:
+				return r.buf.getLong();
+			case TYPE_FLOAT:
+				return r.buf.getFloat();
+			case TYPE_DOUBLE:
+				return r.buf.getDouble();
+			case TYPE_BOOLEAN:
+				return r.buf.get() != 0;
+			case TYPE_STRING:
+				return r.readString();
+			default:
+				return null;
+		}
+	}
+
+	private static void writeGPXFile(SectionWriter w, GPXFile gpxFile) throws IOException {
+		w.writeString(gpxFile.author);
+		w.out.writeBoolean(gpxFile.hasAltitude);
+		writeExtensions(w, gpxFile);
+		writeMap(w, gpxFile.getRouteKeyTags());
+		Metadata m = gpxFile.metadata;
+		w.out.writeBoolean(m != null);
+		if (m != null) {
+			w.writeString(m.name);
+			w.writeString(m.desc);
+			w.writeString(m.link);
+			w.writeString(m.keywords);
+			w.out.writeLong(m.time);
+			writeExtensions(w, m);
+			w.out.writeBoolean(m.author != null);
+			if (m.author != null) {
+				w.writeString(m.author.name);
+				w.writeString(m.author.email);
+				w.writeString(m.author.link);
+				writeExtensions(w, m.author);
+			}
+			w.out.writeBoolean(m.copyright != null);
+			if (m.copyright != null) {
+				w.writeString(m.copyright.author);
+				w.writeString(m.copyright.year);
+				w.writeString(m.copyright.license);
+				writeExtensions(w, m.copyright);
+			}
+			w.out.writeBoolean(m.bounds != null);
+			if (m.bounds != null) {
+				w.out.writeDouble(m.bounds.minlat);
+				w.out.writeDouble(m.bounds.minlon);
+				w.out.writeDouble(m.bounds.maxlat);
+				w.out.writeDouble(m.bounds.maxlon);
+				writeExtensions(w, m.bounds);
+			}
+		}
+		List<Track> tracks = new ArrayList<>();
+		boolean generalTrack = false;
+		for (Track t : gpxFile.tracks) {
+			if (t.generalTrack) {
+				generalTrack = true;
+			} else {
+				tracks.add(t);
+			}
+		}
+		w.out.writeBoolean(generalTrack);
+		w.writeInt(tracks.size());
+		for (Track t : tracks) {
+			w.writeString(t.name);
+			w.writeString(t.desc);
+			writeExtensions(w, t);
+			w.writeInt(t.segments.size());
+			for (TrkSegment s : t.segments) {
+				w.writeString(s.name);
+				writeExtensions(w, s);
+				writeRouteSegments(w, s);
+				writePoints(w, s.points);
+			}
+		}
+		w.writeInt(gpxFile.routes.size());
+		for (Route r : gpxFile.routes) {
+			w.writeString(r.name);
+			w.writeString(r.desc);
+			writeExtensions(w, r);
+			writePoints(w, r.points);
+		}
+		writePoints(w, gpxFile.points);
+		w.writeInt(gpxFile.pointsGroups.size());
+		for (PointsGroup g : gpxFile.pointsGroups.values()) {
+			w.writeString(g.name);
+			w.writeString(g.iconName);
+			w.writeString(g.backgroundType);
+			w.out.writeInt(g.color);
+		}
+	}
+
+	private static GPXFile readGPXFile(SectionReader r) {
+		GPXFile gpxFile = new GPXFile(r.readString());
+		gpxFile.hasAltitude = r.buf.get() != 0;
+		readExtensions(r, gpxFile);
+		Map<String, String> routeKeyTags = readMap(r);
+		if (routeKeyTags != null && !routeKeyTags.isEmpty()) {
+			gpxFile.addRouteKeyTags(routeKeyTags);
+		}
+		if (r.buf.get() != 0) {
+			Metadata m = new Metadata();
+			m.name = r.readString();
+			m.desc = r.readString();
+			m.link = r.readString();
+			m.keywords = r.readString();
+			m.time = r.buf.getLong();
+			readExtensions(r, m);
+			if (r.buf.get() != 0) {
+				m.author = new Author();
+				m.author.name = r.readString();
+				m.author.email = r.readString();
+				m.author.link = r.readString();
+				readExtensions(r, m.author);
+			}
+			if (r.buf.get() != 0) {
+				m.copyright = new Copyright();
+				m.copyright.author = r.readString();
+				m.copyright.year = r.readString();
+				m.copyright.license = r.readString();
+				readExtensions(r, m.copyright);
+			}
+			if (r.buf.get() != 0) {
+				m.bounds = new Bounds();
+				m.bounds.minlat = r.buf.getDouble();
+				m.bounds.minlon = r.buf.getDouble();
+				m.bounds.maxlat = r.buf.getDouble();
+				m.bounds.maxlon = r.buf.getDouble();
+				readExtensions(r, m.bounds);
+			}
+			gpxFile.metadata = m;
+		} else {
+			gpxFile.metadata = null;
+		}
+		boolean generalTrack = r.buf.get() != 0;
+		int tracks = r.readInt();
+		for (int i = 0; i < tracks; i++) {
+			Track t = new Track();
+			t.name = r.readString();
+			t.desc = r.readString();
+			readExtensions(r, t);
+			int segments = r.readInt();
+			for (int k = 0; k < segments; k++) {
+				TrkSegment s = new TrkSegment();
+				s.name = r.readString();
+				readExtensions(r, s);
+				readRouteSegments(r, s);
+				readPoints(r, s.points);
+				t.segments.add(s);
+			}
+			gpxFile.tracks.add(t);
+		}
+		int routes = r.readInt();
+		for (int i = 0; i < routes; i++) {
+			Route rt = new Route();
+			rt.name = r.readString();
+			rt.desc = r.readString();
+			readExtensions(r, rt);
+			readPoints(r, rt.points);
+			gpxFile.routes.add(rt);
+		}
+		readPoints(r, gpxFile.points);
+		int groups = r.readInt();
+		List<PointsGroup> pointsGroups = new ArrayList<>(groups);
+		for (int i = 0; i < groups; i++) {
+			String name = r.readString();
+			String iconName = r.readString();
+			String backgroundType = r.readString();
+			pointsGroups.add(new PointsGroup(name, iconName, backgroundType, r.buf.getInt()));
+		}
+		if (!pointsGroups.isEmpty() || !gpxFile.points.isEmpty()) {
+			gpxFile.pointsGroups.putAll(GPXUtilities.mergePointsGroups(pointsGroups, gpxFile.points));
+		}
+		if (generalTrack) {
+			gpxFile.addGeneralTrack();
+		}
+		return gpxFile;
+	}
+
+	private static void writeRouteSegments(SectionWriter w, TrkSegment s) throws IOException {
+		w.writeInt(s.routeSegments == null ? -1 : s.routeSegments.size());
+		if (s.routeSegments != null) {
+			for (RouteSegment rs : s.routeSegments) {
+				w.writeString(rs.id);
+				w.writeString(rs.length);
+				w.writeString(rs.startTrackPointIndex);
+				w.writeString(rs.segmentTime);
+				w.writeString(rs.speed);
+				w.writeString(rs.turnType);
+				w.writeString(rs.turnLanes);
+				w.writeString(rs.turnAngle);
+				w.writeString(rs.skipTurn);
+				w.writeString(rs.types);
+				w.writeString(rs.pointTypes);
+				w.writeString(rs.names);
+			}
+		}
+		w.writeInt(s.routeTypes == null ? -1 : s.routeTypes.size());
+		if (s.routeTypes != null) {
+			for (RouteType rt : s.routeTypes) {
+				w.writeString(rt.tag);
+				w.writeString(rt.value);
+			}
+		}
+	}
+
+	private static void readRouteSegments(SectionReader r, TrkSegment s) {
+		int routeSegments = r.readInt();
+		s.routeSegments = routeSegments < 0 ? null : new ArrayList<RouteSegment>(routeSegments);
+		for (int i = 0; i < routeSegments; i++) {
+			RouteSegment rs = new RouteSegment();
+			rs.id = r.readString();
+			rs.length = r.readString();
+			rs.startTrackPointIndex = r.readString();
+			rs.segmentTime = r.readString();
+			rs.speed = r.readString();
+			rs.turnType = r.readString();
+			rs.turnLanes = r.readString();
+			rs.turnAngle = r.readString();
+			rs.skipTurn = r.readString();
+			rs.types = r.readString();
+			rs.pointTypes = r.readString();
+			rs.names = r.readString();
+			s.routeSegments.add(rs);
+		}
+		int routeTypes = r.readInt();
+		s.routeTypes = routeTypes < 0 ? null : new ArrayList<RouteType>(routeTypes);
+		for (int i = 0; i < routeTypes; i++) {
+			RouteType rt = new RouteType();
+			rt.tag = r.readString();
+			rt.value = r.readString();
+			s.routeTypes.add(rt);
+		}
+	}
+
+	private static void writePoints(SectionWriter w, List<WptPt> points) throws IOException {
+		w.writeInt(points.size());
+		for (int i = 0; i < points.size(); i++) {
+			writeWpt(w, points.get(i));
+		}
+	}
+
+	private static void readPoints(SectionReader r, List<WptPt> points) {
+		int size = r.readInt();
+		if (points instanceof ArrayList) {
+			((ArrayList<WptPt>) points).ensureCapacity(size);
+		}
+		for (int i = 0; i < size; i++) {
+			points.add(readWpt(r));
+		}
+	}
+
+	private static void writeNullableWpt(SectionWriter w, WptPt p) throws IOException {
+		w.out.writeBoolean(p != null);
+		if (p != null) {
+			writeWpt(w, p);
+		}
+	}
+
+	private static WptPt readNullableWpt(SectionReader r) {
+		return r.buf.get() != 0 ? readWpt(r) : null;
+	}
+
+	private static void writeWpt(SectionWriter w, WptPt p) throws IOException {
+		w.out.writeDouble(p.lat);
+		w.out.writeDouble(p.lon);
+		w.out.writeLong(p.time);
+		w.out.writeDouble(p.ele);
+		w.out.writeDouble(p.speed);
+		w.out.writeDouble(p.hdop);
+		w.out.writeFloat(p.heading);
+		w.out.writeFloat(p.bearing);
+		w.out.writeDouble(p.distance);
+		w.out.writeByte((p.firstPoint ? 1 : 0) | (p.lastPoint ? 2 : 0) | (p.deleted ? 4 : 0));
+		w.writeString(p.name);
+		w.writeString(p.link);
+		w.writeString(p.category);
+		w.writeString(p.desc);
+		w.writeString(p.comment);
+		w.out.writeInt(p.speedColor);
+		w.out.writeInt(p.altitudeColor);
+		w.out.writeInt(p.slopeColor);
+		w.out.writeInt(p.colourARGB);
+		writeExtensions(w, p);
+	}
+
+	private static WptPt readWpt(SectionReader r) {
+		WptPt p = new WptPt();
+		p.lat = r.buf.getDouble();
+		p.lon = r.buf.getDouble();
+		p.time = r.buf.getLong();
+		p.ele = r.buf.getDouble();
+		p.speed = r.buf.getDouble();
+		p.hdop = r.buf.getDouble();
+		p.heading = r.buf.getFloat();
+		p.bearing = r.buf.getFloat();
+		p.distance = r.buf.getDouble();
+		int flags = r.buf.get();
+		p.firstPoint = (flags & 1) != 0;
+		p.lastPoint = (flags & 2) != 0;
+		p.deleted = (flags & 4) != 0;
+		p.name = r.readString();
+		p.link = r.readString();
+		p.category = r.readString();
+		p.desc = r.readString();
+		p.comment = r.readString();
+		p.speedColor = r.buf.getInt();
+		p.altitudeColor = r.buf.getInt();
+		p.slopeColor = r.buf.getInt();
+		p.colourARGB = r.buf.getInt();
+		readExtensions(r, p);
+		return p;
+	}
+
+	private static void writeExtensions(SectionWriter w, GPXExtensions e) throws IOException {
+		writeMap(w, e.extensions);
+	}
+
+	private static void readExtensions(SectionReader r, GPXExtensions e) {
+		e.extensions = readMap(r);
+	}
+
+	private static void writeMap(SectionWriter w, Map<String, String> map) throws IOException {
+		if (map == null) {
+			w.writeInt(-1);
+			return;
+		}
+		w.writeInt(map.size());
+		for (Entry<String, String> e : map.entrySet()) {
+			w.writeString(e.getKey());
+			w.writeString(e.getValue());
+		}
+	}
+
+	private static Map<String, String> readMap(SectionReader r) {
+		int size = r.readInt();
+		if (size < 0) {
+			return null;
+		}
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(r.readString(), r.readString());
+		}
+		return map;
+	}
+
+	private static class SectionWriter {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> strings = new HashMap<>();
+
+		// variable length (7 bits per byte) int, -1 is written as 0
+		void writeInt(int v) throws IOException {
+			int u = v + 1;
+			while ((u & ~0x7f) != 0) {
+				out.writeByte((u & 0x7f) | 0x80);
+				u >>>= 7;
+			}
+			out.writeByte(u);
+		}
+
+		// null is 0, new string is 1 followed by length and utf-8 bytes, known string is its index + 2
+		void writeString(String s) throws IOException {
+			if (s == null) {
+				writeInt(-1);
+				return;
+			}
+			Integer ind = strings.get(s);
+			if (ind != null) {
+				writeInt(ind + 1);
+			} else {
+				strings.put(s, strings.size());
+				writeInt(0);
+				byte[] b = s.getBytes(UTF_8);
+				writeInt(b.length);
+				out.write(b);
+			}
+		}
+
+		byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+	}
+
+	private static class SectionReader {
+		private final ByteBuffer buf;
+		private final List<String> strings = new ArrayList<>();
+
+		SectionReader(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		int readInt() {
+			int u = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = buf.get();
+				u |= (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return u - 1;
+		}
+
+		String readString() {
+			int v = readInt();
+			if (v < 0) {
+				return null;
+			} else if (v > 0) {
+				return strings.get(v - 1);
+			}
+			int length = readInt();
+			String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, UTF_8);
+			buf.position(buf.position() + length);
+			strings.add(s);
+			return s;
+		}
+	}
+}
@@ -17,6 +17,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class GPXFile extends GPXUtilities.GPXExtensions {
 
@@ -272,14 +273,15 @@ public class GPXFile extends GPXUtilities.GPXExtensions {
 		TrkSegment segment = new TrkSegment();
 		for (Track track : tracks) {
 			for (TrkSegment trkSegment : track.segments) {
-				if (trkSegment.points.size() > 0) {
-					List<WptPt> waypoints = new ArrayList<>(trkSegment.points.size());
-					for (WptPt wptPt : trkSegment.points) {
-						waypoints.add(new WptPt(wptPt));
-					}
-					waypoints.get(0).firstPoint = true;
-					waypoints.get(waypoints.size() - 1).lastPoint = true;
-					segment.points.addAll(waypoints);
+				if (trkSegment.isPacked() && !segment.isPacked()) {
+					segment.points = new PackedTrackPoints(segment.points);
+				}
+				int last = trkSegment.points.size() - 1;
+				for (int i = 0; i <= last; i++) {
+					WptPt wptPt = new WptPt(trkSegment.points.get(i));
+					wptPt.firstPoint = i == 0;
+					wptPt.lastPoint = i == last;
+					segment.points.add(wptPt);
 				}
 			}
 		}
@@ -289,18 +291,31 @@ public class GPXFile extends GPXUtilities.GPXExtensions {
 		}
 	}
 
+	public void packTracks() {
+		for (Track track : tracks) {
+			for (TrkSegment segment : track.segments) {
+				segment.packPoints();
+			}
+		}
+	}
+
 	public GPXTrackAnalysis getAnalysis(long fileTimestamp) {
 		return getAnalysis(fileTimestamp, null, null, null);
 	}
 
 	public GPXTrackAnalysis getAnalysis(long fileTimestamp, Double fromDistance, Double toDistance, TrackPointsAnalyser pointsAnalyzer) {
+		return getAnalysis(fileTimestamp, fromDistance, toDistance, pointsAnalyzer, null);
+	}
+
+	public GPXTrackAnalysis getAnalysis(long fileTimestamp, Double fromDistance, Double toDistance, TrackPointsAnalyser pointsAnalyzer,
+	                                    ForkJoinPool pool) {
 		GPXTrackAnalysis analysis = new GPXTrackAnalysis();
 		analysis.name = path;
 		analysis.setWptPoints(points.size());
 		analysis.setWptCategoryNames(getWaypointCategories());
 
 		List<SplitSegment> segments = getSplitSegments(analysis, fromDistance, toDistance);
-		analysis.prepareInformation(fileTimestamp, pointsAnalyzer, segments.toArray(new SplitSegment[0]));
+		analysis.prepareInformation(fileTimestamp, pointsAnalyzer, pool, segments.toArray(new SplitSegment[0]));
 		return analysis;
 	}
 
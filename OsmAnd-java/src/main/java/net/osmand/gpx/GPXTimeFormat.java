@@ -0,0 +1,186 @@
+package net.osmand.gpx;
+
+/**
+ * ISO-8601 date-time parsing and formatting of GPX time values without Date/Calendar objects.
+ * Methods are stateless and could be used from any thread.
+ * <p>
+ * Parsed formats: yyyy-MM-dd'T'HH:mm:ss with optional fraction of second (any number of digits, truncated to millis)
+ * and optional zone: 'Z', +HH:mm, +HHmm or +HH (time without zone is UTC).
+ * Dates before Gregorian calendar start (1583) are not handled as they differ from java.util.GregorianCalendar.
+ */
+final class GPXTimeFormat {
+
+	static final long INVALID_TIME = Long.MIN_VALUE;
+
+	private static final int MIN_YEAR = 1583;
+	// 1583-01-01T00:00:00Z
+	private static final long MIN_TIME = -12212553600000L;
+	// 10000-01-01T00:00:00Z
+	private static final long MAX_TIME = 253402300800000L;
+
+	private static final long MILLIS_IN_DAY = 24 * 60 * 60 * 1000L;
+	private static final int FORMATTED_LENGTH = 20;
+
+	private GPXTimeFormat() {
+	}
+
+	/**
+	 * @return time in millis or {@link #INVALID_TIME} if text couldn't be parsed
+	 */
+	static long parse(CharSequence text) {
+		int length = text.length();
+		if (length < 19 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+				|| text.charAt(13) != ':' || text.charAt(16) != ':') {
+			return INVALID_TIME;
+		}
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 2);
+		int day = digits(text, 8, 2);
+		int hour = digits(text, 11, 2);
+		int minute = digits(text, 14, 2);
+		int second = digits(text, 17, 2);
+		if (year < MIN_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+			return INVALID_TIME;
+		}
+		int pos = 19;
+		int millis = 0;
+		if (pos < length && text.charAt(pos) == '.') {
+			pos++;
+			int start = pos;
+			int scale = 100;
+			while (pos < length) {
+				int d = text.charAt(pos) - '0';
+				if (d < 0 || d > 9) {
+					break;
+				}
+				millis += d * scale;
+				scale /= 10;
+				pos++;
+			}
+			if (pos == start) {
+				return INVALID_TIME;
+			}
+		}
+		int offsetMinutes = 0;
+		if (pos < length) {
+			char c = text.charAt(pos++);
+			if (c == 'Z') {
+				if (pos != length) {
+					return INVALID_TIME;
+				}
+			} else if (c == '+' || c == '-') {
+				int rest = length - pos;
+				int offsetHours = rest >= 2 ? digits(text, pos, 2) : -1;
+				int offsetMins;
+				if (rest == 2) {
+					offsetMins = 0;
+				} else if (rest == 4) {
+					offsetMins = digits(text, pos + 2, 2);
+				} else if (rest == 5 && text.charAt(pos + 2) == ':') {
+					offsetMins = digits(text, pos + 3, 2);
+				} else {
+					return INVALID_TIME;
+				}
+				if (offsetHours < 0 || offsetHours > 23 || offsetMins < 0 || offsetMins > 59) {
+					return INVALID_TIME;
+				}
+				offsetMinutes = offsetHours * 60 + offsetMins;
+				if (c == '-') {
+					offsetMinutes = -offsetMinutes;
+				}
+			} else {
+				return INVALID_TIME;
+			}
+		}
+		long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second
+				- offsetMinutes * 60L;
+		return seconds * 1000 + millis;
+	}
+
+	/**
+	 * @return time formatted as yyyy-MM-dd'T'HH:mm:ss'Z' or null if year is out of supported range
+	 */
+	static String format(long time) {
+		if (time < MIN_TIME || time >= MAX_TIME) {
+			return null;
+		}
+		char[] buf = new char[FORMATTED_LENGTH];
+		long days = floorDiv(time, MILLIS_IN_DAY);
+		int secondOfDay = (int) ((time - days * MILLIS_IN_DAY) / 1000);
+		// civil from days, see http://howardhinnant.github.io/date_algorithms.html
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+		put(buf, 0, year, 4);
+		buf[4] = '-';
+		put(buf, 5, month, 2);
+		buf[7] = '-';
+		put(buf, 8, day, 2);
+		buf[10] = 'T';
+		put(buf, 11, secondOfDay / 3600, 2);
+		buf[13] = ':';
+		put(buf, 14, secondOfDay / 60 % 60, 2);
+		buf[16] = ':';
+		put(buf, 17, secondOfDay % 60, 2);
+		buf[19] = 'Z';
+		return new String(buf);
+	}
+
+	private static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = y / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+				return leap ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	private static int digits(CharSequence text, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			int d = text.charAt(i) - '0';
+			if (d < 0 || d > 9) {
+				return -1;
+			}
+			value = value * 10 + d;
+		}
+		return value;
+	}
+
+	private static void put(char[] buf, int start, int value, int count) {
+		for (int i = start + count - 1; i >= start; i--) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	private static long floorDiv(long x, long y) {
+		long r = x / y;
+		if ((x % y != 0) && ((x ^ y) < 0)) {
+			r--;
+		}
+		return r;
+	}
+}
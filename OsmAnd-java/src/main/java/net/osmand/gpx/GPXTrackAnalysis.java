@@ -5,7 +5,10 @@ import static net.osmand.gpx.GPXUtilities.POINT_SPEED;
 
 import net.osmand.PlatformUtil;
 import net.osmand.data.LatLon;
+import net.osmand.gpx.GPXUtilities.GPXStreamListener;
+import net.osmand.gpx.GPXUtilities.Route;
 import net.osmand.gpx.GPXUtilities.RouteSegment;
+import net.osmand.gpx.GPXUtilities.Track;
 import net.osmand.gpx.GPXUtilities.TrkSegment;
 import net.osmand.gpx.GPXUtilities.WptPt;
 import net.osmand.router.RouteColorize.ColorizationType;
@@ -14,19 +17,26 @@ import net.osmand.util.CollectionUtils;
 
 import org.apache.commons.logging.Log;
 
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class GPXTrackAnalysis {
 
 	public static final Log LOG = PlatformUtil.getLog(GPXTrackAnalysis.class);
 
 	public static final int ANALYSIS_VERSION = 1;
+	public static final int PARALLEL_MIN_POINTS = 20000;
 
 	public String name;
 
@@ -72,6 +82,10 @@ public class GPXTrackAnalysis {
 		parameters.put(gpxParameter, value);
 	}
 
+	Map<GpxParameter, Object> getGpxParameters() {
+		return parameters;
+	}
+
 	public void setStartTime(long startTime) {
 		setGpxParameter(GpxParameter.START_TIME, startTime);
 	}
@@ -425,211 +439,587 @@ public class GPXTrackAnalysis {
 	}
 
 	public GPXTrackAnalysis prepareInformation(long fileTimeStamp, TrackPointsAnalyser pointsAnalyser, SplitSegment... splitSegments) {
-		float[] calculations = new float[1];
-
-		long startTimeOfSingleSegment = 0;
-		long endTimeOfSingleSegment = 0;
-
-		float distanceOfSingleSegment = 0;
-		float distanceMovingOfSingleSegment = 0;
-		long timeMovingOfSingleSegment = 0;
-
-		float totalElevation = 0;
-		int elevationPoints = 0;
-		int speedCount = 0;
-		long timeDiffMillis = 0;
-		int timeDiff = 0;
-		double totalSpeedSum = 0;
-
-		int sensorSpeedCount = 0;
-		double totalSensorSpeedSum = 0;
-		int sensorHrCount = 0;
-		double totalSensorHrSum = 0;
-		int sensorPowerCount = 0;
-		double totalSensorPowerSum = 0;
-		int sensorTemperatureCount = 0;
-		double totalSensorTemperatureSum = 0;
-		int sensorCadenceCount = 0;
-		double totalSensorCadenceSum = 0;
-
-		setPoints(0);
-
-		pointAttributes = new ArrayList<>();
-		availableAttributes = new HashSet<>();
-		for (final SplitSegment s : splitSegments) {
+		return prepareInformation(fileTimeStamp, pointsAnalyser, null, splitSegments);
+	}
+
+	/**
+	 * Distances between points and elevation gain/loss of segments are calculated in parallel with pool
+	 * (if there are at least PARALLEL_MIN_POINTS points), totals are summed in order of points,
+	 * so results are the same as sequential analysis.
+	 */
+	public GPXTrackAnalysis prepareInformation(long fileTimeStamp, TrackPointsAnalyser pointsAnalyser, ForkJoinPool pool,
+	                                           SplitSegment... splitSegments) {
+		SegmentAnalysisTask.SegmentData[] data = null;
+		if (pool != null && SegmentAnalysisTask.getPointsCount(splitSegments) >= PARALLEL_MIN_POINTS) {
+			data = SegmentAnalysisTask.calculate(pool, splitSegments);
+		}
+		PointsAccumulator acc = new PointsAccumulator(pointsAnalyser);
+		acc.collectElevations = data == null;
+		for (int i = 0; i < splitSegments.length; i++) {
+			SplitSegment s = splitSegments[i];
+			SegmentAnalysisTask.SegmentData d = data == null ? null : data[i];
 			final int numberOfPoints = s.getNumberOfPoints();
-			float segmentDistance = 0f;
-			metricEnd += s.metricEnd;
-			secondaryMetricEnd += s.secondaryMetricEnd;
-			setPoints(getPoints() + numberOfPoints);
-			expectedRouteDuration += getExpectedRouteSegmentDuration(s);
+			acc.startSegment(s.metricEnd, s.secondaryMetricEnd, numberOfPoints, getExpectedRouteSegmentDuration(s));
+			WptPt prev = null;
 			for (int j = 0; j < numberOfPoints; j++) {
-				WptPt point = s.get(j);
-				if (j == 0 && locationStart == null) {
-					locationStart = point;
-					setLatLonStart(point.lat, point.lon);
+				WptPt point = d == null ? s.get(j) : d.points[j];
+				float distance = d == null || j == 0 ? Float.NaN : d.distances[j];
+				acc.addPoint(point, prev, j, numberOfPoints, s.metricEnd == 0, s.segment.generalSegment, distance);
+				if (j > 0) {
+					s.updateDistance(j, point);
+				}
+				prev = point;
+			}
+			if (d == null) {
+				acc.endSegment();
+			} else {
+				addElevationDiffs(d.elevationDiffs);
+			}
+		}
+		acc.finish(this, fileTimeStamp);
+		return this;
+	}
+
+	/**
+	 * Keeps analysis of file up to date when points are appended to the last segment or new segments are added
+	 * (e.g. while recording), only new points are analysed. Results are the same as {@link GPXFile#getAnalysis(long)}.
+	 * Other changes of tracks (points removed or inserted before the end) are detected by size and
+	 * analysis is recalculated, points modified in place are not detected.
+	 * Point attributes of returned analysis are read-only and shared with next results.
+	 */
+	public static class IncrementalAnalyser {
+		private final GPXFile gpxFile;
+		private final TrackPointsAnalyser pointsAnalyser;
+
+		private GPXTrackAnalysis analysis;
+		private PointsAccumulator acc;
+		// not general segments in order of analysis and their sizes when analysed
+		private final List<TrkSegment> segments = new ArrayList<>();
+		private final TIntArrayList sizes = new TIntArrayList();
+		private final List<TrkSegment> analysedSegments = new ArrayList<>();
+		private boolean segmentOpened;
+		private WptPt prev;
+		private int resets;
+
+		public IncrementalAnalyser(GPXFile gpxFile) {
+			this(gpxFile, null);
+		}
+
+		public IncrementalAnalyser(GPXFile gpxFile, TrackPointsAnalyser pointsAnalyser) {
+			this.gpxFile = gpxFile;
+			this.pointsAnalyser = pointsAnalyser;
+			reset();
+		}
+
+		private void reset() {
+			analysis = new GPXTrackAnalysis();
+			acc = analysis.new PointsAccumulator(pointsAnalyser);
+			analysis.pointAttributes = new PointAttributesList();
+			segments.clear();
+			sizes.clear();
+			analysedSegments.clear();
+			segmentOpened = false;
+			prev = null;
+		}
+
+		public int getResets() {
+			return resets;
+		}
+
+		public void update() {
+			List<TrkSegment> current = new ArrayList<>();
+			for (Track track : gpxFile.tracks) {
+				for (TrkSegment segment : track.segments) {
+					if (!segment.generalSegment) {
+						current.add(segment);
+					}
 				}
-				if (j == numberOfPoints - 1) {
-					locationEnd = point;
+			}
+			if (!isAppended(current)) {
+				resets++;
+				reset();
+			}
+			for (int i = Math.max(0, segments.size() - 1); i < current.size(); i++) {
+				TrkSegment segment = current.get(i);
+				if (i == segments.size()) {
+					if (segmentOpened) {
+						acc.endSegment();
+						segmentOpened = false;
+					}
+					segments.add(segment);
+					sizes.add(0);
 				}
-				long time = point.time;
-				if (time != 0) {
-					if (s.metricEnd == 0) {
-						if (s.segment.generalSegment) {
-							if (point.firstPoint) {
-								startTimeOfSingleSegment = time;
-							} else if (point.lastPoint) {
-								endTimeOfSingleSegment = time;
-							}
-							if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
-								timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
-								startTimeOfSingleSegment = 0;
-								endTimeOfSingleSegment = 0;
-							}
+				int from = sizes.get(i);
+				int size = segment.points.size();
+				if (size > 1) {
+					if (from < 2) {
+						// segments with 1 point are not analysed
+						acc.startSegment(0, 0, 0, 0);
+						analysedSegments.add(segment);
+						segmentOpened = true;
+						prev = null;
+						from = 0;
+					}
+					for (int j = from; j < size; j++) {
+						WptPt point = segment.points.get(j);
+						analysis.setPoints(analysis.getPoints() + 1);
+						acc.addPoint(point, prev, j, -1, true, false, Float.NaN);
+						if (j > 0 && segment.isPacked()) {
+							((PackedTrackPoints) segment.points).setDistance(j, point.distance);
 						}
+						prev = point;
 					}
-					setStartTime(Math.min(getStartTime(), time));
-					setEndTime(Math.max(getEndTime(), time));
+					analysis.locationEnd = prev;
 				}
-				updateBounds(point);
+				sizes.set(i, size);
+			}
+		}
 
-				float speed = (float) point.speed;
-				if (speed > 0) {
-					hasSpeedInTrack = true;
+		private boolean isAppended(List<TrkSegment> current) {
+			if (current.size() < segments.size()) {
+				return false;
+			}
+			for (int i = 0; i < segments.size(); i++) {
+				int size = current.get(i).points.size();
+				boolean last = i == segments.size() - 1;
+				if (current.get(i) != segments.get(i) || (last ? size < sizes.get(i) : size != sizes.get(i))) {
+					return false;
 				}
-				updateHdop(point);
+			}
+			return true;
+		}
 
-				if (j > 0) {
-					WptPt prev = s.get(j - 1);
-
-					// Old complete summation approach for elevation gain/loss
-					//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
-					//	double diff = point.ele - prev.ele;
-					//	if (diff > 0) {
-					//		diffElevationUp += diff;
-					//	} else {
-					//		diffElevationDown -= diff;
-					//	}
-					//}
-
-					// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
-					// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
-					// a little more exact, also seems slightly faster:
-					net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
-					setTotalDistance(getTotalDistance() + calculations[0]);
-					segmentDistance += calculations[0];
-					point.distance = segmentDistance;
+		public GPXTrackAnalysis getAnalysis(long fileTimeStamp) {
+			update();
+			GPXTrackAnalysis res = analysis.copy();
+			res.name = gpxFile.path;
+			res.setWptPoints(gpxFile.points.size());
+			res.setWptCategoryNames(gpxFile.getWaypointCategories());
+			res.setTotalTracks(segments.size());
+			for (TrkSegment segment : analysedSegments) {
+				res.expectedRouteDuration += getExpectedRouteSegmentDuration(segment);
+			}
+			if (segmentOpened && acc.elevations.getCount() > 0) {
+				// result is cached until points are added
+				res.addElevationDiffs(acc.elevations.getDiffs());
+			}
+			acc.finish(res, fileTimeStamp);
+			return res;
+		}
+	}
 
-					// In case points are reversed and => time is decreasing
-					timeDiffMillis = Math.max(0, point.time - prev.time);
-					timeDiff = (int) ((timeDiffMillis) / 1000);
+	private GPXTrackAnalysis copy() {
+		GPXTrackAnalysis res = new GPXTrackAnalysis();
+		res.name = name;
+		res.totalDistanceWithoutGaps = totalDistanceWithoutGaps;
+		res.timeSpanWithoutGaps = timeSpanWithoutGaps;
+		res.expectedRouteDuration = expectedRouteDuration;
+		res.timeMovingWithoutGaps = timeMovingWithoutGaps;
+		res.totalDistanceMovingWithoutGaps = totalDistanceMovingWithoutGaps;
+		res.parameters.putAll(parameters);
+		res.minHdop = minHdop;
+		res.maxHdop = maxHdop;
+		res.metricEnd = metricEnd;
+		res.secondaryMetricEnd = secondaryMetricEnd;
+		res.locationStart = locationStart;
+		res.locationEnd = locationEnd;
+		res.left = left;
+		res.right = right;
+		res.top = top;
+		res.bottom = bottom;
+		if (pointAttributes instanceof PointAttributesList) {
+			res.pointAttributes = ((PointAttributesList) pointAttributes).snapshot();
+		} else {
+			res.pointAttributes = pointAttributes == null ? null : new ArrayList<>(pointAttributes);
+		}
+		res.availableAttributes = availableAttributes == null ? null : new HashSet<>(availableAttributes);
+		res.hasSpeedInTrack = hasSpeedInTrack;
+		return res;
+	}
 
-					//Last resort: Derive speed values from displacement if track does not originally contain speed
-					if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
-						speed = calculations[0] / timeDiff;
-					}
+	// append-only list, stored attributes are never moved, so snapshots are not copied and stay valid
+	private static class PointAttributesList extends AbstractList<PointAttributes> implements RandomAccess {
+		private static final int CHUNK_SHIFT = 10;
+		private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+		private final boolean readOnly;
+		private PointAttributes[][] chunks;
+		private int size;
+
+		PointAttributesList() {
+			this(new PointAttributes[16][], 0, false);
+		}
+
+		private PointAttributesList(PointAttributes[][] chunks, int size, boolean readOnly) {
+			this.chunks = chunks;
+			this.size = size;
+			this.readOnly = readOnly;
+		}
+
+		@Override
+		public boolean add(PointAttributes attribute) {
+			if (readOnly) {
+				throw new UnsupportedOperationException();
+			}
+			int chunk = size >> CHUNK_SHIFT;
+			if (chunk == chunks.length) {
+				chunks = Arrays.copyOf(chunks, chunk * 2);
+			}
+			if (chunks[chunk] == null) {
+				chunks[chunk] = new PointAttributes[CHUNK_SIZE];
+			}
+			chunks[chunk][size & (CHUNK_SIZE - 1)] = attribute;
+			size++;
+			return true;
+		}
+
+		@Override
+		public PointAttributes get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return chunks[index >> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		// read-only list of current attributes
+		PointAttributesList snapshot() {
+			return new PointAttributesList(chunks, size, true);
+		}
+	}
+
+	/**
+	 * Analyses track points in order they are read (see {@link GPXUtilities#streamGPXFile}) without keeping them,
+	 * results are the same as {@link GPXFile#getAnalysis(long)} of loaded file without general track.
+	 * Only approximated points of current segment are kept to calculate elevation gain/loss, point attributes are not kept.
+	 */
+	public static class StreamAnalyser implements GPXStreamListener {
+		private final GPXTrackAnalysis analysis;
+		private final PointsAccumulator acc;
+		private final Set<String> wptCategories = new HashSet<>();
+		private int wptPoints;
+
+		private TrkSegment segment;
+		private WptPt first;
+		private WptPt prev;
+		private int index;
+
+		public StreamAnalyser() {
+			this(null);
+		}
+
+		public StreamAnalyser(TrackPointsAnalyser pointsAnalyser) {
+			this.analysis = new GPXTrackAnalysis();
+			this.acc = analysis.new PointsAccumulator(pointsAnalyser);
+			this.acc.keepAttributes = false;
+		}
+
+		@Override
+		public void onTrackPoint(Track track, TrkSegment segment, WptPt point) {
+			if (this.segment != segment) {
+				endSegment();
+				this.segment = segment;
+				analysis.setTotalTracks(analysis.getTotalTracks() + 1);
+			}
+			if (first == null) {
+				// segments with 1 point are not analysed
+				first = point;
+				return;
+			}
+			if (index == 0) {
+				acc.startSegment(0, 0, 0, 0);
+				addPoint(first);
+			}
+			addPoint(point);
+		}
+
+		@Override
+		public void onTrackSegmentEnd(Track track, TrkSegment segment) {
+			if (this.segment != segment) {
+				endSegment();
+				analysis.setTotalTracks(analysis.getTotalTracks() + 1);
+			}
+			endSegment();
+		}
+
+		@Override
+		public void onWayPoint(WptPt point) {
+			wptPoints++;
+			wptCategories.add(point.category != null ? point.category : "");
+		}
+
+		@Override
+		public void onRoutePoint(Route route, WptPt point) {
+		}
+
+		private void addPoint(WptPt point) {
+			analysis.setPoints(analysis.getPoints() + 1);
+			acc.addPoint(point, prev, index, -1, true, false, Float.NaN);
+			prev = point;
+			index++;
+		}
+
+		private void endSegment() {
+			if (index > 0) {
+				analysis.locationEnd = prev;
+				acc.endSegment();
+			}
+			segment = null;
+			first = null;
+			prev = null;
+			index = 0;
+		}
+
+		// gpxFile is returned by streamGPXFile (points are not loaded)
+		public GPXTrackAnalysis finish(GPXFile gpxFile, long fileTimeStamp) {
+			endSegment();
+			analysis.name = gpxFile.path;
+			wptCategories.addAll(gpxFile.getWaypointCategories());
+			analysis.setWptPoints(wptPoints);
+			analysis.setWptCategoryNames(wptCategories);
+			acc.finish(analysis, fileTimeStamp);
+			return analysis;
+		}
+	}
 
-					// Motion detection:
-					//   speed > 0  uses GPS chipset's motion detection
-					//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
-					boolean timeSpecified = point.time != 0 && prev.time != 0;
-					if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
-						setTimeMoving(getTimeMoving() + timeDiffMillis);
-						setTotalDistanceMoving(getTotalDistanceMoving() + calculations[0]);
-						if (s.segment.generalSegment && !point.firstPoint) {
-							timeMovingOfSingleSegment += timeDiffMillis;
-							distanceMovingOfSingleSegment += calculations[0];
+	// state of sequential points analysis
+	private class PointsAccumulator {
+		private final TrackPointsAnalyser pointsAnalyser;
+		private boolean keepAttributes = true;
+		private boolean collectElevations = true;
+		private final float[] calculations = new float[1];
+
+		// approximated points of current segment to calculate elevation gain/loss
+		private final ElevationAccumulator elevations = new ElevationAccumulator();
+
+		private long startTimeOfSingleSegment = 0;
+		private long endTimeOfSingleSegment = 0;
+
+		private float distanceOfSingleSegment = 0;
+		private float distanceMovingOfSingleSegment = 0;
+		private long timeMovingOfSingleSegment = 0;
+
+		private float totalElevation = 0;
+		private int elevationPoints = 0;
+		private int speedCount = 0;
+		private long timeDiffMillis = 0;
+		private int timeDiff = 0;
+		private double totalSpeedSum = 0;
+
+		private int sensorSpeedCount = 0;
+		private double totalSensorSpeedSum = 0;
+		private int sensorHrCount = 0;
+		private double totalSensorHrSum = 0;
+		private int sensorPowerCount = 0;
+		private double totalSensorPowerSum = 0;
+		private int sensorTemperatureCount = 0;
+		private double totalSensorTemperatureSum = 0;
+		private int sensorCadenceCount = 0;
+		private double totalSensorCadenceSum = 0;
+
+		private float segmentDistance = 0f;
+
+		PointsAccumulator(TrackPointsAnalyser pointsAnalyser) {
+			this.pointsAnalyser = pointsAnalyser;
+			setPoints(0);
+			pointAttributes = new ArrayList<>();
+			availableAttributes = new HashSet<>();
+		}
+
+		void startSegment(double segmentMetricEnd, double segmentSecondaryMetricEnd, int numberOfPoints, long expectedDuration) {
+			segmentDistance = 0f;
+			elevations.reset();
+			metricEnd += segmentMetricEnd;
+			secondaryMetricEnd += segmentSecondaryMetricEnd;
+			setPoints(getPoints() + numberOfPoints);
+			expectedRouteDuration += expectedDuration;
+		}
+
+		// numberOfPoints is -1 if it is not known (last point of segment is not detected),
+		// distance from previous point is calculated if it is NaN
+		void addPoint(WptPt point, WptPt prev, int j, int numberOfPoints, boolean noMetric, boolean generalSegment,
+		              float distance) {
+			if (j == 0 && locationStart == null) {
+				locationStart = point;
+				setLatLonStart(point.lat, point.lon);
+			}
+			if (j == numberOfPoints - 1) {
+				locationEnd = point;
+			}
+			if (collectElevations) {
+				elevations.addPoint(point.lat, point.lon, point.ele);
+			}
+			long time = point.time;
+			if (time != 0) {
+				if (noMetric) {
+					if (generalSegment) {
+						if (point.firstPoint) {
+							startTimeOfSingleSegment = time;
+						} else if (point.lastPoint) {
+							endTimeOfSingleSegment = time;
+						}
+						if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
+							timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
+							startTimeOfSingleSegment = 0;
+							endTimeOfSingleSegment = 0;
 						}
 					}
-
-					//Next few lines for Issue 3222 heuristic testing only
-					//	if (speed > 0 && point.time != 0 && prev.time != 0) {
-					//		timeMoving0 = timeMoving0 + (point.time - prev.time);
-					//		totalDistanceMoving0 += calculations[0];
-					//	}
 				}
-				setMinSpeed(Math.min(speed, getMinSpeed()));
-				if (speed > 0 && !Float.isInfinite(speed)) {
-					totalSpeedSum += speed;
-					setMaxSpeed(Math.max(speed, getMaxSpeed()));
-					speedCount++;
+				setStartTime(Math.min(getStartTime(), time));
+				setEndTime(Math.max(getEndTime(), time));
+			}
+			updateBounds(point);
+
+			float speed = (float) point.speed;
+			if (speed > 0) {
+				hasSpeedInTrack = true;
+			}
+			updateHdop(point);
+
+			if (j > 0) {
+				// Old complete summation approach for elevation gain/loss
+				//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
+				//	double diff = point.ele - prev.ele;
+				//	if (diff > 0) {
+				//		diffElevationUp += diff;
+				//	} else {
+				//		diffElevationDown -= diff;
+				//	}
+				//}
+
+				// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
+				// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
+				// a little more exact, also seems slightly faster:
+				if (Float.isNaN(distance)) {
+					net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+				} else {
+					calculations[0] = distance;
 				}
-				boolean isNaN = Double.isNaN(point.ele);
-				float elevation = isNaN ? Float.NaN : (float) point.ele;
-				if (!isNaN) {
-					totalElevation += point.ele;
-					elevationPoints++;
-					setMinElevation(Math.min(point.ele, getMinElevation()));
-					setMaxElevation(Math.max(point.ele, getMaxElevation()));
+				setTotalDistance(getTotalDistance() + calculations[0]);
+				segmentDistance += calculations[0];
+				point.distance = segmentDistance;
+
+				// In case points are reversed and => time is decreasing
+				timeDiffMillis = Math.max(0, point.time - prev.time);
+				timeDiff = (int) ((timeDiffMillis) / 1000);
+
+				//Last resort: Derive speed values from displacement if track does not originally contain speed
+				if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
+					speed = calculations[0] / timeDiff;
 				}
 
-				boolean firstPoint = false;
-				boolean lastPoint = false;
-				if (s.segment.generalSegment) {
-					distanceOfSingleSegment += calculations[0];
-					if (point.firstPoint) {
-						firstPoint = j > 0;
-						distanceOfSingleSegment = 0;
-						timeMovingOfSingleSegment = 0;
-						distanceMovingOfSingleSegment = 0;
-					}
-					if (point.lastPoint) {
-						lastPoint = j < numberOfPoints - 1;
-						totalDistanceWithoutGaps += distanceOfSingleSegment;
-						timeMovingWithoutGaps += timeMovingOfSingleSegment;
-						totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
+				// Motion detection:
+				//   speed > 0  uses GPS chipset's motion detection
+				//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
+				boolean timeSpecified = point.time != 0 && prev.time != 0;
+				if (speed > 0 && timeSpecified && calculations[0] > timeDiffMillis / 10000f) {
+					setTimeMoving(getTimeMoving() + timeDiffMillis);
+					setTotalDistanceMoving(getTotalDistanceMoving() + calculations[0]);
+					if (generalSegment && !point.firstPoint) {
+						timeMovingOfSingleSegment += timeDiffMillis;
+						distanceMovingOfSingleSegment += calculations[0];
 					}
 				}
-				float distance = (j > 0) ? calculations[0] : 0;
-				PointAttributes attribute = new PointAttributes(distance, timeDiff, firstPoint, lastPoint);
-				attribute.speed = speed;
-				attribute.elevation = elevation;
-				addWptAttribute(point, attribute, pointsAnalyser);
-				if (attribute.sensorSpeed > 0 && !Float.isInfinite(attribute.sensorSpeed)) {
-					setMaxSensorSpeed(Math.max(attribute.sensorSpeed, getMaxSensorSpeed()));
-					sensorSpeedCount++;
-					totalSensorSpeedSum += attribute.sensorSpeed;
-				}
 
-				if (attribute.bikeCadence > 0) {
-					setMaxSensorCadence(Math.max(attribute.bikeCadence, getMaxSensorCadence()));
-					sensorCadenceCount++;
-					totalSensorCadenceSum += attribute.bikeCadence;
-				}
+				//Next few lines for Issue 3222 heuristic testing only
+				//	if (speed > 0 && point.time != 0 && prev.time != 0) {
+				//		timeMoving0 = timeMoving0 + (point.time - prev.time);
+				//		totalDistanceMoving0 += calculations[0];
+				//	}
+			}
+			setMinSpeed(Math.min(speed, getMinSpeed()));
+			if (speed > 0 && !Float.isInfinite(speed)) {
+				totalSpeedSum += speed;
+				setMaxSpeed(Math.max(speed, getMaxSpeed()));
+				speedCount++;
+			}
+			boolean isNaN = Double.isNaN(point.ele);
+			float elevation = isNaN ? Float.NaN : (float) point.ele;
+			if (!isNaN) {
+				totalElevation += point.ele;
+				elevationPoints++;
+				setMinElevation(Math.min(point.ele, getMinElevation()));
+				setMaxElevation(Math.max(point.ele, getMaxElevation()));
+			}
 
-				if (attribute.heartRate > 0) {
-					setMaxSensorHr(Math.max((int) attribute.heartRate, getMaxSensorHr()));
-					sensorHrCount++;
-					totalSensorHrSum += attribute.heartRate;
+			boolean firstPoint = false;
+			boolean lastPoint = false;
+			if (generalSegment) {
+				distanceOfSingleSegment += calculations[0];
+				if (point.firstPoint) {
+					firstPoint = j > 0;
+					distanceOfSingleSegment = 0;
+					timeMovingOfSingleSegment = 0;
+					distanceMovingOfSingleSegment = 0;
 				}
-
-				float temperature = attribute.getTemperature();
-				if (temperature > 0) {
-					setMaxSensorTemperature(Math.max((int) temperature, getMaxSensorTemperature()));
-					sensorTemperatureCount++;
-					totalSensorTemperatureSum += temperature;
+				if (point.lastPoint) {
+					lastPoint = j < numberOfPoints - 1;
+					totalDistanceWithoutGaps += distanceOfSingleSegment;
+					timeMovingWithoutGaps += timeMovingOfSingleSegment;
+					totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
 				}
+			}
+			PointAttributes attribute = new PointAttributes(j > 0 ? calculations[0] : 0, timeDiff, firstPoint, lastPoint);
+			attribute.speed = speed;
+			attribute.elevation = elevation;
+			addWptAttribute(point, attribute, pointsAnalyser, keepAttributes);
+			if (attribute.sensorSpeed > 0 && !Float.isInfinite(attribute.sensorSpeed)) {
+				setMaxSensorSpeed(Math.max(attribute.sensorSpeed, getMaxSensorSpeed()));
+				sensorSpeedCount++;
+				totalSensorSpeedSum += attribute.sensorSpeed;
+			}
 
-				if (attribute.bikePower > 0) {
-					setMaxSensorPower(Math.max((int) attribute.bikePower, getMaxSensorPower()));
-					sensorPowerCount++;
-					totalSensorPowerSum += attribute.bikePower;
-				}
+			if (attribute.bikeCadence > 0) {
+				setMaxSensorCadence(Math.max(attribute.bikeCadence, getMaxSensorCadence()));
+				sensorCadenceCount++;
+				totalSensorCadenceSum += attribute.bikeCadence;
+			}
+
+			if (attribute.heartRate > 0) {
+				setMaxSensorHr(Math.max((int) attribute.heartRate, getMaxSensorHr()));
+				sensorHrCount++;
+				totalSensorHrSum += attribute.heartRate;
+			}
+
+			float temperature = attribute.getTemperature();
+			if (temperature > 0) {
+				setMaxSensorTemperature(Math.max((int) temperature, getMaxSensorTemperature()));
+				sensorTemperatureCount++;
+				totalSensorTemperatureSum += temperature;
+			}
+
+			if (attribute.bikePower > 0) {
+				setMaxSensorPower(Math.max((int) attribute.bikePower, getMaxSensorPower()));
+				sensorPowerCount++;
+				totalSensorPowerSum += attribute.bikePower;
 			}
-			processElevationDiff(s);
 		}
-		checkUnspecifiedValues(fileTimeStamp);
-		processAverageValues(totalElevation, elevationPoints, totalSpeedSum, speedCount);
 
-		setAvgSensorSpeed(processAverageValue(totalSensorSpeedSum, sensorSpeedCount));
-		setAvgSensorCadence(processAverageValue(totalSensorCadenceSum, sensorCadenceCount));
-		setAvgSensorHr(processAverageValue(totalSensorHrSum, sensorHrCount));
-		setAvgSensorPower(processAverageValue(totalSensorPowerSum, sensorPowerCount));
-		setAvgSensorTemperature(processAverageValue(totalSensorTemperatureSum, sensorTemperatureCount));
-		return this;
+		void endSegment() {
+			if (elevations.getCount() > 0) {
+				addElevationDiffs(elevations.getDiffs());
+				elevations.reset();
+			}
+		}
+
+		// calculates final values to res (analysis or its copy), accumulated values are not changed
+		void finish(GPXTrackAnalysis res, long fileTimeStamp) {
+			res.checkUnspecifiedValues(fileTimeStamp);
+			res.processAverageValues(totalElevation, elevationPoints, totalSpeedSum, speedCount);
+
+			res.setAvgSensorSpeed(res.processAverageValue(totalSensorSpeedSum, sensorSpeedCount));
+			res.setAvgSensorCadence(res.processAverageValue(totalSensorCadenceSum, sensorCadenceCount));
+			res.setAvgSensorHr(res.processAverageValue(totalSensorHrSum, sensorHrCount));
+			res.setAvgSensorPower(res.processAverageValue(totalSensorPowerSum, sensorPowerCount));
+			res.setAvgSensorTemperature(res.processAverageValue(totalSensorTemperatureSum, sensorTemperatureCount));
+		}
 	}
 
-	private void addWptAttribute(WptPt point, PointAttributes attribute, TrackPointsAnalyser pointsAnalyser) {
+	private void addWptAttribute(WptPt point, PointAttributes attribute, TrackPointsAnalyser pointsAnalyser, boolean keep) {
 		if (!hasSpeedData() && attribute.speed > 0 && getTotalDistance() > 0) {
 			setHasData(POINT_SPEED, true);
 		}
@@ -639,7 +1029,9 @@ public class GPXTrackAnalysis {
 		if (pointsAnalyser != null) {
 			pointsAnalyser.onAnalysePoint(this, point, attribute);
 		}
-		pointAttributes.add(attribute);
+		if (keep) {
+			pointAttributes.add(attribute);
+		}
 	}
 
 	private void updateBounds(WptPt point) {
@@ -689,9 +1081,13 @@ public class GPXTrackAnalysis {
 		return (int) (getDurationInMs() / 1000f + 0.5f);
 	}
 
-	private long getExpectedRouteSegmentDuration(SplitSegment segment) {
-		List<RouteSegment> routeSegments = segment.segment.routeSegments;
-		if (routeSegments != null && !segment.segment.generalSegment) {
+	private static long getExpectedRouteSegmentDuration(SplitSegment segment) {
+		return getExpectedRouteSegmentDuration(segment.segment);
+	}
+
+	private static long getExpectedRouteSegmentDuration(TrkSegment segment) {
+		List<RouteSegment> routeSegments = segment.routeSegments;
+		if (routeSegments != null && !segment.generalSegment) {
 			long result = 0;
 			for (RouteSegment routeSegment : routeSegments) {
 				result += (long) (1000 * Algorithms.parseFloatSilently(routeSegment.segmentTime, 0.0f));
@@ -726,44 +1122,54 @@ public class GPXTrackAnalysis {
 		}
 	}
 
-	private void processElevationDiff(SplitSegment segment) {
-		ElevationApproximator approximator = getElevationApproximator(segment);
-		approximator.approximate();
-		final double[] distances = approximator.getDistances();
-		final double[] elevations = approximator.getElevations();
-		if (distances != null && elevations != null) {
-			ElevationDiffsCalculator elevationDiffsCalc = getElevationDiffsCalculator(distances, elevations);
-			elevationDiffsCalc.calculateElevationDiffs();
-			setDiffElevationUp(getDiffElevationUp() + elevationDiffsCalc.getDiffElevationUp());
-			setDiffElevationDown(getDiffElevationDown() + elevationDiffsCalc.getDiffElevationDown());
+	private void addElevationDiffs(double[] diffs) {
+		if (diffs != null) {
+			setDiffElevationUp(getDiffElevationUp() + diffs[0]);
+			setDiffElevationDown(getDiffElevationDown() + diffs[1]);
 		}
 	}
 
-	private ElevationApproximator getElevationApproximator(final SplitSegment segment) {
-		return new ElevationApproximator() {
+	// returns elevation gain and loss or null if they could not be calculated
+	static double[] calculateElevationDiffs(final double[] lats, final double[] lons, final double[] eles, final int count) {
+		ElevationApproximator approximator = new ElevationApproximator() {
 			@Override
 			public double getPointLatitude(int index) {
-				return segment.get(index).lat;
+				return lats[index];
 			}
 
 			@Override
 			public double getPointLongitude(int index) {
-				return segment.get(index).lon;
+				return lons[index];
 			}
 
 			@Override
 			public double getPointElevation(int index) {
-				return segment.get(index).ele;
+				return eles[index];
 			}
 
 			@Override
 			public int getPointsCount() {
-				return segment.getNumberOfPoints();
+				return count;
 			}
 		};
+		approximator.approximate();
+		double[] distances = approximator.getDistances();
+		double[] elevations = approximator.getElevations();
+		if (distances != null && elevations != null) {
+			return calculateElevationDiffs(distances, elevations, distances.length);
+		}
+		return null;
+	}
+
+	// returns elevation gain and loss of approximated points
+	static double[] calculateElevationDiffs(double[] distances, double[] elevations, int count) {
+		ElevationDiffsCalculator elevationDiffsCalc = getElevationDiffsCalculator(distances, elevations, count);
+		elevationDiffsCalc.calculateElevationDiffs();
+		return new double[] {elevationDiffsCalc.getDiffElevationUp(), elevationDiffsCalc.getDiffElevationDown()};
 	}
 
-	private ElevationDiffsCalculator getElevationDiffsCalculator(final double[] distances, final double[] elevations) {
+	private static ElevationDiffsCalculator getElevationDiffsCalculator(final double[] distances, final double[] elevations,
+	                                                                    final int count) {
 		return new ElevationDiffsCalculator() {
 			@Override
 			public double getPointDistance(int index) {
@@ -777,7 +1183,7 @@ public class GPXTrackAnalysis {
 
 			@Override
 			public int getPointsCount() {
-				return distances.length;
+				return count;
 			}
 		};
 	}
@@ -44,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -157,6 +158,21 @@ public class GPXUtilities {
 		boolean readExtensions(GPXFile res, XmlPullParser parser) throws IOException, XmlPullParserException;
 	}
 
+	/**
+	 * Receives points of {@link #streamGPXFile} as soon as they are parsed, points are not kept in file.
+	 */
+	public interface GPXStreamListener {
+
+		void onTrackPoint(Track track, TrkSegment segment, WptPt point);
+
+		// called for segments declared with trkseg
+		void onTrackSegmentEnd(Track track, TrkSegment segment);
+
+		void onWayPoint(WptPt point);
+
+		void onRoutePoint(Route route, WptPt point);
+	}
+
 	public static class GPXExtensions {
 		public Map<String, String> extensions = null;
 		GPXExtensionsWriter extensionsWriter = null;
@@ -568,6 +584,18 @@ public class GPXUtilities {
 			return !routeSegments.isEmpty() && !routeTypes.isEmpty();
 		}
 
+		public boolean isPacked() {
+			return points instanceof PackedTrackPoints;
+		}
+
+		public void packPoints() {
+			if (!isPacked()) {
+				PackedTrackPoints packed = new PackedTrackPoints(points);
+				packed.trimToSize();
+				points = packed;
+			}
+		}
+
 		public List<GPXTrackAnalysis> splitByDistance(double meters, boolean joinSegments) {
 			return split(new DistanceSplitMetric(), new TimeSplitMetric(), meters, joinSegments);
 		}
@@ -1359,16 +1387,25 @@ public class GPXUtilities {
 	}
 
 	public static String formatTime(long time) {
-		SimpleDateFormat format = getTimeFormatter();
-		return format.format(new Date(time));
+		String formatted = GPXTimeFormat.format(time);
+		if (formatted == null) {
+			SimpleDateFormat format = getTimeFormatter();
+			formatted = format.format(new Date(time));
+		}
+		return formatted;
 	}
 
 	public static long parseTime(String text) {
 		if (GPX_TIME_OLD_FORMAT) {
 			return parseTime(text, getTimeFormatter(), getTimeFormatterMills());
-		} else {
-			return parseTime(text, getTimeFormatterTZ(), getTimeFormatterMills());
 		}
+		if (text != null) {
+			long time = GPXTimeFormat.parse(text);
+			if (time != GPXTimeFormat.INVALID_TIME) {
+				return time;
+			}
+		}
+		return parseTime(text, getTimeFormatterTZ(), getTimeFormatterMills());
 	}
 
 	public static long parseTime(String text, SimpleDateFormat format, SimpleDateFormat formatMillis) {
@@ -1468,6 +1505,42 @@ public class GPXUtilities {
 	}
 
 	public static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader, boolean addGeneralTrack) {
+		return loadGPXFile(stream, extensionsReader, addGeneralTrack, null);
+	}
+
+	/**
+	 * Reads file with bounded memory: track, route and way points are passed to listener and not kept,
+	 * returned file contains metadata, tracks, segments and routes without points.
+	 */
+	public static GPXFile streamGPXFile(File file, GPXExtensionsReader extensionsReader, GPXStreamListener listener) {
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			GPXFile gpxFile = streamGPXFile(fis, extensionsReader, listener);
+			gpxFile.path = file.getAbsolutePath();
+			gpxFile.modifiedTime = file.lastModified();
+			gpxFile.pointsModifiedTime = gpxFile.modifiedTime;
+			if (gpxFile.error != null) {
+				log.info("Error reading gpx " + gpxFile.path);
+			}
+			return gpxFile;
+		} catch (IOException e) {
+			GPXFile gpxFile = new GPXFile(null);
+			gpxFile.path = file.getAbsolutePath();
+			log.error("Error reading gpx " + gpxFile.path, e); //$NON-NLS-1$
+			gpxFile.error = e;
+			return gpxFile;
+		} finally {
+			Algorithms.closeStream(fis);
+		}
+	}
+
+	public static GPXFile streamGPXFile(InputStream stream, GPXExtensionsReader extensionsReader, GPXStreamListener listener) {
+		return loadGPXFile(stream, extensionsReader, false, listener);
+	}
+
+	private static GPXFile loadGPXFile(InputStream stream, GPXExtensionsReader extensionsReader, boolean addGeneralTrack,
+	                                   GPXStreamListener listener) {
 		GPXFile gpxFile = new GPXFile(null);
 		gpxFile.metadata.time = 0;
 		try {
@@ -1487,6 +1560,7 @@ public class GPXUtilities {
 			boolean typesExtension = false;
 			boolean pointsGroupsExtension = false;
 			boolean networkRoute = false;
+			Track currentTrack = null;
 			parserState.push(gpxFile);
 			int tok;
 			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
@@ -1578,6 +1652,7 @@ public class GPXUtilities {
 								Track track = new Track();
 								((GPXFile) parse).tracks.add(track);
 								parserState.push(track);
+								currentTrack = track;
 							}
 							if (tag.equals("rte")) {
 								Route route = new Route();
@@ -1695,10 +1770,14 @@ public class GPXUtilities {
 											WptPt wptPt = new WptPt();
 											wptPt.lon = Double.parseDouble(pointAttrs[0]);
 											wptPt.lat = Double.parseDouble(pointAttrs[1]);
-											((TrkSegment) parse).points.add(wptPt);
 											if (arrLength > 2) {
 												wptPt.ele = Double.parseDouble(pointAttrs[2]);
 											}
+											if (listener != null) {
+												listener.onTrackPoint(currentTrack, (TrkSegment) parse, wptPt);
+											} else {
+												((TrkSegment) parse).points.add(wptPt);
+											}
 										}
 									} catch (NumberFormatException e) {
 									}
@@ -1793,12 +1872,22 @@ public class GPXUtilities {
 					} else if (tag.equals("trkpt")) {
 						Object pop = parserState.pop();
 						assert pop instanceof WptPt;
+						if (listener != null) {
+							streamTrackPoint(listener, currentTrack, parserState.peek(), (WptPt) pop);
+						}
 					} else if (tag.equals("wpt")) {
 						Object pop = parserState.pop();
 						assert pop instanceof WptPt;
+						if (listener != null && removeLast(gpxFile.points, pop)) {
+							listener.onWayPoint((WptPt) pop);
+						}
 					} else if (tag.equals("rtept")) {
 						Object pop = parserState.pop();
 						assert pop instanceof WptPt;
+						Object route = parserState.peek();
+						if (listener != null && route instanceof Route && removeLast(((Route) route).points, pop)) {
+							listener.onRoutePoint((Route) route, (WptPt) pop);
+						}
 					} else if (tag.equals("trk")) {
 						Object pop = parserState.pop();
 						assert pop instanceof Track;
@@ -1816,16 +1905,29 @@ public class GPXUtilities {
 							if (firstSegment == null) {
 								firstSegment = segment;
 							}
+							if (listener != null) {
+								listener.onTrackSegmentEnd(currentTrack, segment);
+							}
 						}
 						assert pop instanceof TrkSegment;
 					} else if (tag.equals("rpt")) {
 						Object pop = parserState.pop();
 						assert pop instanceof WptPt;
+						if (listener != null && !routePointExtension) {
+							streamTrackPoint(listener, currentTrack, parserState.peek(), (WptPt) pop);
+						}
 					}
 				}
 			}
 			if (!routeTrackSegment.points.isEmpty()) {
 				gpxFile.tracks.add(routeTrack);
+				if (listener != null) {
+					// route points are needed to restore route segments, so they are kept
+					for (WptPt point : routeTrackSegment.points) {
+						listener.onTrackPoint(routeTrack, routeTrackSegment, point);
+					}
+					listener.onTrackSegmentEnd(routeTrack, routeTrackSegment);
+				}
 			}
 			if (!routeSegments.isEmpty() && !routeTypes.isEmpty() && firstSegment != null) {
 				firstSegment.routeSegments = routeSegments;
@@ -1837,7 +1939,7 @@ public class GPXUtilities {
 			if (addGeneralTrack) {
 				gpxFile.addGeneralTrack();
 			}
-			if (gpxFile.metadata.time == 0) {
+			if (gpxFile.metadata.time == 0 && listener == null) {
 				gpxFile.metadata.time = getCreationTime(gpxFile);
 			}
 		} catch (Exception e) {
@@ -1848,6 +1950,105 @@ public class GPXUtilities {
 		return gpxFile;
 	}
 
+	/**
+	 * Loads file with track points stored in {@link PackedTrackPoints}, points are packed while reading.
+	 */
+	public static GPXFile loadPackedGPXFile(File file, GPXExtensionsReader extensionsReader, boolean addGeneralTrack) {
+		PackingListener listener = new PackingListener();
+		GPXFile gpxFile = streamGPXFile(file, extensionsReader, listener);
+		return listener.finish(gpxFile, addGeneralTrack);
+	}
+
+	public static GPXFile loadPackedGPXFile(InputStream stream, GPXExtensionsReader extensionsReader, boolean addGeneralTrack) {
+		PackingListener listener = new PackingListener();
+		GPXFile gpxFile = streamGPXFile(stream, extensionsReader, listener);
+		return listener.finish(gpxFile, addGeneralTrack);
+	}
+
+	private static class PackingListener implements GPXStreamListener {
+		private final Map<TrkSegment, PackedTrackPoints> segments = new IdentityHashMap<>();
+		private final List<WptPt> waypoints = new ArrayList<>();
+		private TrkSegment segment;
+		private PackedTrackPoints points;
+
+		@Override
+		public void onTrackPoint(Track track, TrkSegment segment, WptPt point) {
+			if (this.segment != segment) {
+				this.segment = segment;
+				points = segments.get(segment);
+				if (points == null) {
+					points = new PackedTrackPoints();
+					segments.put(segment, points);
+				}
+			}
+			points.add(point);
+		}
+
+		@Override
+		public void onTrackSegmentEnd(Track track, TrkSegment segment) {
+		}
+
+		@Override
+		public void onWayPoint(WptPt point) {
+			waypoints.add(point);
+		}
+
+		@Override
+		public void onRoutePoint(Route route, WptPt point) {
+			route.points.add(point);
+		}
+
+		GPXFile finish(GPXFile gpxFile, boolean addGeneralTrack) {
+			if (gpxFile.error != null) {
+				return gpxFile;
+			}
+			for (Track track : gpxFile.tracks) {
+				for (TrkSegment s : track.segments) {
+					PackedTrackPoints packed = segments.get(s);
+					if (packed != null) {
+						packed.trimToSize();
+						s.points = packed;
+					}
+				}
+			}
+			gpxFile.points.addAll(waypoints);
+			if (!gpxFile.points.isEmpty()) {
+				List<PointsGroup> groups = new ArrayList<>(gpxFile.pointsGroups.values());
+				gpxFile.pointsGroups.clear();
+				gpxFile.pointsGroups.putAll(mergePointsGroups(groups, gpxFile.points));
+			}
+			if (addGeneralTrack) {
+				gpxFile.addGeneralTrack();
+			}
+			if (gpxFile.metadata.time == 0) {
+				gpxFile.metadata.time = getCreationTime(gpxFile);
+			}
+			return gpxFile;
+		}
+	}
+
+	private static void streamTrackPoint(GPXStreamListener listener, Track track, Object parent, WptPt point) {
+		TrkSegment segment = null;
+		if (parent instanceof TrkSegment) {
+			segment = (TrkSegment) parent;
+		} else if (parent instanceof Track && !((Track) parent).segments.isEmpty()) {
+			List<TrkSegment> segments = ((Track) parent).segments;
+			segment = segments.get(segments.size() - 1);
+		}
+		if (segment != null && removeLast(segment.points, point)) {
+			listener.onTrackPoint(track, segment, point);
+		}
+	}
+
+	private static boolean removeLast(List<WptPt> points, Object point) {
+		int last = points.size() - 1;
+		if (last >= 0 && points.get(last) == point) {
+			points.remove(last);
+			return true;
+		}
+		return false;
+	}
+
 	private static String getExtensionsSupportedTag(String tag) {
 		String supportedTag = SUPPORTED_EXTENSION_TAGS.get(tag);
 		return supportedTag == null ? tag : supportedTag;
@@ -1868,7 +2069,7 @@ public class GPXUtilities {
 		return networkRouteKeyTags;
 	}
 
-	private static Map<String, PointsGroup> mergePointsGroups(List<PointsGroup> groups, List<WptPt> points) {
+	static Map<String, PointsGroup> mergePointsGroups(List<PointsGroup> groups, List<WptPt> points) {
 		Map<String, PointsGroup> pointsGroups = new LinkedHashMap<>();
 		for (PointsGroup category : groups) {
 			pointsGroups.put(category.name, category);
@@ -0,0 +1,289 @@
+package net.osmand.gpx;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.RandomAccess;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * Columnar storage of track points: coordinates, time and measured values are kept in primitive arrays,
+ * extensions are kept in string columns by key (equal values are stored once).
+ * Points with names, descriptions, colors, flags or values which couldn't be stored as float are kept as is.
+ * <p>
+ * {@link #get(int)} returns a new point (view) for stored values, so modified points should be stored with {@link #set}.
+ */
+public class PackedTrackPoints extends AbstractList<WptPt> implements RandomAccess {
+
+	private int size;
+	private double[] lat;
+	private double[] lon;
+	private long[] time;
+	private float[] ele;
+	private float[] speed;
+	private float[] hdop;
+	private float[] heading;
+	private float[] bearing;
+	private float[] distance;
+	private boolean[] kept;
+	private final TIntObjectHashMap<WptPt> keptPoints = new TIntObjectHashMap<>();
+
+	private final List<String> extensionKeys = new ArrayList<>();
+	private final List<String[]> extensionValues = new ArrayList<>();
+	private final Map<String, String> values = new HashMap<>();
+
+	public PackedTrackPoints() {
+		this(16);
+	}
+
+	public PackedTrackPoints(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	public PackedTrackPoints(Collection<WptPt> points) {
+		this(points.size());
+		addAll(points);
+	}
+
+	private void allocate(int capacity) {
+		lat = lat == null ? new double[capacity] : Arrays.copyOf(lat, capacity);
+		lon = lon == null ? new double[capacity] : Arrays.copyOf(lon, capacity);
+		time = time == null ? new long[capacity] : Arrays.copyOf(time, capacity);
+		ele = ele == null ? new float[capacity] : Arrays.copyOf(ele, capacity);
+		speed = speed == null ? new float[capacity] : Arrays.copyOf(speed, capacity);
+		hdop = hdop == null ? new float[capacity] : Arrays.copyOf(hdop, capacity);
+		heading = heading == null ? new float[capacity] : Arrays.copyOf(heading, capacity);
+		bearing = bearing == null ? new float[capacity] : Arrays.copyOf(bearing, capacity);
+		distance = distance == null ? new float[capacity] : Arrays.copyOf(distance, capacity);
+		kept = kept == null ? new boolean[capacity] : Arrays.copyOf(kept, capacity);
+		for (int k = 0; k < extensionValues.size(); k++) {
+			extensionValues.set(k, Arrays.copyOf(extensionValues.get(k), capacity));
+		}
+	}
+
+	public void trimToSize() {
+		if (lat.length > size) {
+			allocate(Math.max(size, 1));
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public WptPt get(int index) {
+		checkIndex(index, size);
+		if (kept[index]) {
+			return keptPoints.get(index);
+		}
+		WptPt p = new WptPt();
+		p.lat = lat[index];
+		p.lon = lon[index];
+		p.time = time[index];
+		p.ele = ele[index];
+		p.speed = speed[index];
+		p.hdop = hdop[index];
+		p.heading = heading[index];
+		p.bearing = bearing[index];
+		p.distance = distance[index];
+		for (int k = 0; k < extensionKeys.size(); k++) {
+			String value = extensionValues.get(k)[index];
+			if (value != null) {
+				p.getExtensionsToWrite().put(extensionKeys.get(k), value);
+			}
+		}
+		return p;
+	}
+
+	@Override
+	public WptPt set(int index, WptPt point) {
+		WptPt previous = get(index);
+		store(index, point);
+		return previous;
+	}
+
+	@Override
+	public void add(int index, WptPt point) {
+		checkIndex(index, size + 1);
+		if (size == lat.length) {
+			allocate(size + (size >> 1) + 1);
+		}
+		if (index < size) {
+			shift(index, index + 1, size - index);
+		}
+		size++;
+		store(index, point);
+		modCount++;
+	}
+
+	@Override
+	public WptPt remove(int index) {
+		WptPt previous = get(index);
+		if (index < size - 1) {
+			shift(index + 1, index, size - index - 1);
+		} else {
+			keptPoints.remove(index);
+		}
+		size--;
+		for (String[] column : extensionValues) {
+			column[size] = null;
+		}
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		for (String[] column : extensionValues) {
+			Arrays.fill(column, 0, size, null);
+		}
+		keptPoints.clear();
+		size = 0;
+		modCount++;
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private void shift(int from, int to, int length) {
+		System.arraycopy(lat, from, lat, to, length);
+		System.arraycopy(lon, from, lon, to, length);
+		System.arraycopy(time, from, time, to, length);
+		System.arraycopy(ele, from, ele, to, length);
+		System.arraycopy(speed, from, speed, to, length);
+		System.arraycopy(hdop, from, hdop, to, length);
+		System.arraycopy(heading, from, heading, to, length);
+		System.arraycopy(bearing, from, bearing, to, length);
+		System.arraycopy(distance, from, distance, to, length);
+		System.arraycopy(kept, from, kept, to, length);
+		for (String[] column : extensionValues) {
+			System.arraycopy(column, from, column, to, length);
+		}
+		if (!keptPoints.isEmpty()) {
+			TIntObjectHashMap<WptPt> moved = new TIntObjectHashMap<>();
+			int[] keys = keptPoints.keys();
+			for (int key : keys) {
+				if (key >= from && key < from + length) {
+					moved.put(key - from + to, keptPoints.remove(key));
+				} else if (key >= Math.min(from, to) && key < Math.max(from, to) + length) {
+					// overwritten by shift
+					keptPoints.remove(key);
+				}
+			}
+			keptPoints.putAll(moved);
+		}
+	}
+
+	private void store(int index, WptPt p) {
+		lat[index] = p.lat;
+		lon[index] = p.lon;
+		time[index] = p.time;
+		ele[index] = (float) p.ele;
+		speed[index] = (float) p.speed;
+		hdop[index] = (float) p.hdop;
+		heading[index] = p.heading;
+		bearing[index] = p.bearing;
+		distance[index] = (float) p.distance;
+		for (String[] column : extensionValues) {
+			column[index] = null;
+		}
+		kept[index] = !isPackable(p);
+		if (kept[index]) {
+			keptPoints.put(index, p);
+		} else {
+			keptPoints.remove(index);
+			for (Entry<String, String> e : p.getExtensionsToRead().entrySet()) {
+				getExtensionColumn(e.getKey())[index] = intern(e.getValue());
+			}
+		}
+	}
+
+	private static boolean isPackable(WptPt p) {
+		return p.name == null && p.link == null && p.category == null && p.desc == null && p.comment == null
+				&& !p.firstPoint && !p.lastPoint && !p.deleted
+				&& p.speedColor == 0 && p.altitudeColor == 0 && p.slopeColor == 0 && p.colourARGB == 0
+				&& p.getExtensionsWriter() == null && p.getAdditionalExtensionsWriter() == null
+				&& isFloat(p.ele) && isFloat(p.speed) && isFloat(p.hdop) && isFloat(p.distance);
+	}
+
+	private static boolean isFloat(double v) {
+		return Double.isNaN(v) || (float) v == v;
+	}
+
+	private String[] getExtensionColumn(String key) {
+		int k = extensionKeys.indexOf(key);
+		if (k < 0) {
+			k = extensionKeys.size();
+			extensionKeys.add(key);
+			extensionValues.add(new String[lat.length]);
+		}
+		return extensionValues.get(k);
+	}
+
+	private String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String v = values.get(value);
+		if (v == null) {
+			values.put(value, value);
+			v = value;
+		}
+		return v;
+	}
+
+	public double getLatitude(int index) {
+		checkIndex(index, size);
+		return lat[index];
+	}
+
+	public double getLongitude(int index) {
+		checkIndex(index, size);
+		return lon[index];
+	}
+
+	public long getTime(int index) {
+		checkIndex(index, size);
+		return time[index];
+	}
+
+	public double getElevation(int index) {
+		checkIndex(index, size);
+		return kept[index] ? keptPoints.get(index).ele : ele[index];
+	}
+
+	public double getSpeed(int index) {
+		checkIndex(index, size);
+		return kept[index] ? keptPoints.get(index).speed : speed[index];
+	}
+
+	public double getDistance(int index) {
+		checkIndex(index, size);
+		return kept[index] ? keptPoints.get(index).distance : distance[index];
+	}
+
+	public void setDistance(int index, double dist) {
+		checkIndex(index, size);
+		if (kept[index]) {
+			keptPoints.get(index).distance = dist;
+		} else if (isFloat(dist)) {
+			distance[index] = (float) dist;
+		} else {
+			WptPt p = get(index);
+			p.distance = dist;
+			store(index, p);
+		}
+	}
+}
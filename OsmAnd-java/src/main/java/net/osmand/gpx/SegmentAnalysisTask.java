@@ -0,0 +1,119 @@
+package net.osmand.gpx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.osmand.Location;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+/**
+ * Calculates independent values of split segments in parallel: distances between points and elevation gain/loss.
+ * Values depending on order of points are summed sequentially by {@link GPXTrackAnalysis}.
+ */
+class SegmentAnalysisTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+	private static final int DISTANCES_CHUNK = 4096;
+
+	static class SegmentData {
+		WptPt[] points;
+		// distances[j] from point j - 1 to point j
+		float[] distances;
+		double[] elevationDiffs;
+	}
+
+	private final SplitSegment segment;
+	private final SegmentData data;
+
+	private SegmentAnalysisTask(SplitSegment segment, SegmentData data) {
+		this.segment = segment;
+		this.data = data;
+	}
+
+	static int getPointsCount(SplitSegment[] segments) {
+		int count = 0;
+		for (SplitSegment s : segments) {
+			count += s.getNumberOfPoints();
+		}
+		return count;
+	}
+
+	static SegmentData[] calculate(ForkJoinPool pool, final SplitSegment[] segments) {
+		final SegmentData[] data = new SegmentData[segments.length];
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				List<SegmentAnalysisTask> tasks = new ArrayList<>();
+				for (int i = 0; i < segments.length; i++) {
+					data[i] = new SegmentData();
+					tasks.add(new SegmentAnalysisTask(segments[i], data[i]));
+				}
+				invokeAll(tasks);
+			}
+		});
+		return data;
+	}
+
+	@Override
+	protected void compute() {
+		// approximated end points are created once, so the same objects are analysed
+		int n = segment.getNumberOfPoints();
+		final WptPt[] points = new WptPt[n];
+		final double[] lats = new double[n];
+		final double[] lons = new double[n];
+		final double[] eles = new double[n];
+		for (int j = 0; j < n; j++) {
+			WptPt p = segment.get(j);
+			points[j] = p;
+			lats[j] = p.lat;
+			lons[j] = p.lon;
+			eles[j] = p.ele;
+		}
+		data.points = points;
+		data.distances = new float[n];
+		invokeAll(new DistancesTask(points, data.distances, 1, n), new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				data.elevationDiffs = GPXTrackAnalysis.calculateElevationDiffs(lats, lons, eles, lats.length);
+			}
+		});
+	}
+
+	private static class DistancesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final WptPt[] points;
+		private final float[] distances;
+		private final int from;
+		private final int to;
+
+		DistancesTask(WptPt[] points, float[] distances, int from, int to) {
+			this.points = points;
+			this.distances = distances;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > DISTANCES_CHUNK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new DistancesTask(points, distances, from, middle), new DistancesTask(points, distances, middle, to));
+				return;
+			}
+			float[] calculations = new float[1];
+			for (int j = from; j < to; j++) {
+				WptPt prev = points[j - 1];
+				WptPt point = points[j];
+				Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+				distances[j] = calculations[0];
+			}
+		}
+	}
+}
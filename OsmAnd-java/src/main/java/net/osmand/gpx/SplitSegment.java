@@ -56,6 +56,17 @@ class SplitSegment {
 		return segment.points.get(ind);
 	}
 
+	// packed points are returned as views, so calculated distance is stored back
+	void updateDistance(int j, WptPt point) {
+		if (segment.points instanceof PackedTrackPoints) {
+			final int ind = j + startPointInd;
+			boolean approximated = (j == 0 && startCoeff != 0) || (j == getNumberOfPoints() - 1 && endCoeff != 1);
+			if (!approximated) {
+				((PackedTrackPoints) segment.points).setDistance(ind, point.distance);
+			}
+		}
+	}
+
 	private WptPt approx(WptPt w1, WptPt w2, double cf) {
 		long time = value(w1.time, w2.time, 0, cf);
 		double speed = value(w1.speed, w2.speed, 0, cf);
@@ -47,6 +47,7 @@ public class RenderingRule {
 	}
 
 	public void init(Map<String, String> attributes) {
+		storage.rulesModified();
 		ArrayList<RenderingRuleProperty> props = new ArrayList<RenderingRuleProperty>(attributes.size());
 		intProperties = new int[attributes.size()];
 		floatProperties = new float[attributes.size()];
@@ -154,6 +155,7 @@ public class RenderingRule {
 	}
 	
 	public void addIfChildren(RenderingRule rr){
+		storage.rulesModified();
 		if(ifChildren == null){
 			ifChildren = new ArrayList<RenderingRule>();
 		}
@@ -161,6 +163,7 @@ public class RenderingRule {
 	}
 	
 	public void addIfElseChildren(RenderingRule rr){
+		storage.rulesModified();
 		if(ifElseChildren == null){
 			ifElseChildren = new ArrayList<RenderingRule>();
 		}
@@ -168,6 +171,7 @@ public class RenderingRule {
 	}
 	
 	public void addToBeginIfElseChildren(RenderingRule rr){
+		storage.rulesModified();
 		if(ifElseChildren == null){
 			ifElseChildren = new ArrayList<RenderingRule>();
 		}
@@ -179,6 +183,7 @@ public class RenderingRule {
 	}
 
 	public void removeIfChildren(RenderingRule rule) {
+		storage.rulesModified();
 		if (ifChildren != null) {
 			List<RenderingRule> children = new ArrayList<>(ifChildren);
 			children.remove(rule);
@@ -187,6 +192,7 @@ public class RenderingRule {
 	}
 
 	public void removeIfElseChildren(RenderingRule rule) {
+		storage.rulesModified();
 		if (ifElseChildren != null) {
 			List<RenderingRule> children = new ArrayList<>(ifElseChildren);
 			children.remove(rule);
@@ -0,0 +1,183 @@
+package net.osmand.render;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Precompiled lookup of {@link RenderingRuleSearchRequest#search(int, boolean)} by state, tag and value: root rules
+ * which are tried and all properties which they check or set. Search result (values of these properties) is
+ * memoized by their values before search, so repeated search for the same object type and zoom doesn't visit
+ * rules again. Entries are recompiled after any rule of storage is modified. Lookups are not blocking,
+ * so the same storage could be used by many rendering threads.
+ */
+class RenderingRuleSearchIndex {
+
+	private static final int MAX_ENTRIES = 1 << 14;
+	private static final int MAX_RESULTS = 512;
+
+	private final RenderingRulesStorage storage;
+	// entries compiled for rules version, replaced when rules are modified
+	private volatile Entries entries = new Entries(-1);
+
+	RenderingRuleSearchIndex(RenderingRulesStorage storage) {
+		this.storage = storage;
+	}
+
+	private static class Entries {
+		final int version;
+		final ConcurrentHashMap<Long, Entry> map = new ConcurrentHashMap<Long, Entry>();
+
+		Entries(int version) {
+			this.version = version;
+		}
+	}
+
+	static class Entry {
+		// properties checked or set by rules (including attribute rules)
+		private final int[] props;
+		// rules check additional tags of object
+		private final boolean objectDependent;
+		private final ConcurrentHashMap<Key, Result> results = new ConcurrentHashMap<Key, Result>();
+
+		private Entry(int[] props, boolean objectDependent) {
+			this.props = props;
+			this.objectDependent = objectDependent;
+		}
+
+		boolean isCacheable(RenderingRuleSearchRequest req) {
+			return !objectDependent || req.getObject() == null;
+		}
+
+		Key createKey(int[] values, float[] fvalues, boolean loadOutput) {
+			int[] key = new int[props.length * 2 + 1];
+			for (int i = 0; i < props.length; i++) {
+				key[2 * i] = values[props[i]];
+				key[2 * i + 1] = Float.floatToIntBits(fvalues[props[i]]);
+			}
+			key[key.length - 1] = loadOutput ? 1 : 0;
+			return new Key(key);
+		}
+
+		Result getResult(Key key) {
+			return results.get(key);
+		}
+
+		void putResult(Key key, boolean found, int[] values, float[] fvalues) {
+			if (results.size() >= MAX_RESULTS) {
+				results.clear();
+			}
+			int[] v = new int[props.length];
+			float[] f = new float[props.length];
+			for (int i = 0; i < props.length; i++) {
+				v[i] = values[props[i]];
+				f[i] = fvalues[props[i]];
+			}
+			results.put(key, new Result(props, found, v, f));
+		}
+	}
+
+	static class Key {
+		private final int[] values;
+		private final int hash;
+
+		private Key(int[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(values, ((Key) obj).values);
+		}
+	}
+
+	static class Result {
+		private final int[] props;
+		final boolean found;
+		private final int[] values;
+		private final float[] fvalues;
+
+		private Result(int[] props, boolean found, int[] values, float[] fvalues) {
+			this.props = props;
+			this.found = found;
+			this.values = values;
+			this.fvalues = fvalues;
+		}
+
+		void apply(int[] values, float[] fvalues) {
+			for (int i = 0; i < props.length; i++) {
+				values[props[i]] = this.values[i];
+				fvalues[props[i]] = this.fvalues[i];
+			}
+		}
+	}
+
+	Entry getEntry(int state, int tagKey, int valueKey) {
+		Entries entries = this.entries;
+		// version is read before compilation, so entries compiled while rules are modified are dropped
+		int version = storage.getRulesVersion();
+		if (entries.version != version) {
+			entries = new Entries(version);
+			this.entries = entries;
+		}
+		Long key = (((long) state) << 48) | (((long) tagKey) << 24) | valueKey;
+		Entry e = entries.map.get(key);
+		if (e == null) {
+			if (entries.map.size() >= MAX_ENTRIES) {
+				entries.map.clear();
+			}
+			e = compile(state, tagKey, valueKey);
+			Entry existing = entries.map.putIfAbsent(key, e);
+			if (existing != null) {
+				e = existing;
+			}
+		}
+		return e;
+	}
+
+	private Entry compile(int state, int tagKey, int valueKey) {
+		RenderingRuleStorageProperties p = storage.PROPS;
+		boolean[] used = new boolean[p.getPoperties().length];
+		RenderingRuleProperty[] always = {p.R_TAG, p.R_VALUE, p.R_DISABLE, p.R_ATTR_COLOR_VALUE, p.R_ATTR_INT_VALUE,
+				p.R_ATTR_BOOL_VALUE};
+		for (RenderingRuleProperty rp : always) {
+			used[rp.getId()] = true;
+		}
+		IdentityHashMap<RenderingRule, Boolean> visited = new IdentityHashMap<RenderingRule, Boolean>();
+		collectProperties(storage.getRule(state, tagKey, valueKey), used, visited);
+		collectProperties(storage.getRule(state, tagKey, 0), used, visited);
+		collectProperties(storage.getRule(state, 0, 0), used, visited);
+		TIntArrayList props = new TIntArrayList();
+		for (int i = 0; i < used.length; i++) {
+			if (used[i]) {
+				props.add(i);
+			}
+		}
+		return new Entry(props.toArray(), used[p.R_ADDITIONAL.getId()]);
+	}
+
+	private void collectProperties(RenderingRule rule, boolean[] used, IdentityHashMap<RenderingRule, Boolean> visited) {
+		if (rule == null || visited.put(rule, Boolean.TRUE) != null) {
+			return;
+		}
+		RenderingRuleProperty[] properties = rule.getProperties();
+		for (int i = 0; i < properties.length; i++) {
+			used[properties[i].getId()] = true;
+			collectProperties(rule.getAttrProp(i), used, visited);
+		}
+		for (RenderingRule rr : rule.getIfElseChildren()) {
+			collectProperties(rr, used, visited);
+		}
+		for (RenderingRule rr : rule.getIfChildren()) {
+			collectProperties(rr, used, visited);
+		}
+	}
+}
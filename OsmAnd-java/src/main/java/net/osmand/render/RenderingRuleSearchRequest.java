@@ -142,6 +142,23 @@ public class RenderingRuleSearchRequest {
 		searchResult = false;
 		int tagKey = values[storage.PROPS.R_TAG.getId()];
 		int valueKey = values[storage.PROPS.R_VALUE.getId()];
+		RenderingRuleSearchIndex.Entry entry = storage.getSearchIndex().getEntry(state, tagKey, valueKey);
+		if (!entry.isCacheable(this)) {
+			return search(state, tagKey, valueKey, loadOutput);
+		}
+		RenderingRuleSearchIndex.Key key = entry.createKey(values, fvalues, loadOutput);
+		RenderingRuleSearchIndex.Result cached = entry.getResult(key);
+		if (cached != null) {
+			cached.apply(values, fvalues);
+			searchResult = cached.found;
+			return cached.found;
+		}
+		boolean result = search(state, tagKey, valueKey, loadOutput);
+		entry.putResult(key, result, values, fvalues);
+		return result;
+	}
+
+	private boolean search(int state, int tagKey, int valueKey, boolean loadOutput) {
 		boolean result = searchInternal(state, tagKey, valueKey, loadOutput);
 		if (result) {
 			searchResult = true;
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
 
@@ -53,6 +54,10 @@ public class RenderingRulesStorage {
 	@SuppressWarnings("unchecked")
 	public TIntObjectHashMap<RenderingRule>[] tagValueGlobalRules = new TIntObjectHashMap[LENGTH_RULES];
 	
+	private final RenderingRuleSearchIndex searchIndex = new RenderingRuleSearchIndex(this);
+	// incremented on any modification of rules of this storage
+	private final AtomicInteger rulesVersion = new AtomicInteger();
+
 	protected Map<String, RenderingRule> renderingAttributes = new LinkedHashMap<String, RenderingRule>();
 	protected Map<String, String> renderingConstants = new LinkedHashMap<String, String>();
 	
@@ -115,6 +120,18 @@ public class RenderingRulesStorage {
 
 	}
 	
+	RenderingRuleSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	void rulesModified() {
+		rulesVersion.incrementAndGet();
+	}
+
+	int getRulesVersion() {
+		return rulesVersion.get();
+	}
+
 	public String getStringValue(int i){
 		return dictionary.get(i);
 	}
@@ -143,6 +160,7 @@ public class RenderingRulesStorage {
 		if (depends == null) {
 			return;
 		}
+		rulesModified();
 		// merge results
 		// dictionary and props are already merged
 		Iterator<Entry<String, RenderingRule>> it = depends.renderingAttributes.entrySet().iterator();
@@ -196,6 +214,7 @@ public class RenderingRulesStorage {
 		if (tagS == null || valueS == null) {
 			throw new XmlPullParserException("Attribute tag should be specified for root filter " + rr.toString());
 		}
+		rulesModified();
 		int key = getTagValueKey(tagS, valueS);
 		RenderingRule insert = tagValueGlobalRules[state].get(key);
 		if (insert != null) {
@@ -0,0 +1,277 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReaderPool;
+import net.osmand.binary.BinaryMapIndexReaderPool.ReaderLease;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RouteResultPreparation.RouteCalcResult;
+
+/**
+ * Calculates many independent routes (i.e. distance matrices, route tests) on executor.
+ * Every worker leases readers from pool and calculates each request with a new routing context over them
+ * (contexts keep state of previous search), decoded tiles are shared with {@link RoutingTileCache}.
+ */
+public class BatchRoutePlanner {
+
+	private static final Log log = PlatformUtil.getLog(BatchRoutePlanner.class);
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private final RoutingConfiguration config;
+	private final BinaryMapIndexReaderPool pool;
+	private RouteCalculationMode calculationMode = RouteCalculationMode.COMPLEX;
+
+	public static class RouteRequest {
+		public final LatLon start;
+		public final LatLon end;
+		public final List<LatLon> intermediates;
+
+		public RouteRequest(LatLon start, LatLon end) {
+			this(start, end, null);
+		}
+
+		public RouteRequest(LatLon start, LatLon end, List<LatLon> intermediates) {
+			this.start = start;
+			this.end = end;
+			this.intermediates = intermediates;
+		}
+
+		@Override
+		public String toString() {
+			return start + " -> " + end + (intermediates == null ? "" : " via " + intermediates);
+		}
+	}
+
+	public static class RouteResult {
+		public final int index;
+		public final RouteRequest request;
+		RouteCalcResult result;
+		Exception exception;
+		long calculationTime;
+
+		RouteResult(int index, RouteRequest request) {
+			this.index = index;
+			this.request = request;
+		}
+
+		public RouteCalcResult getResult() {
+			return result;
+		}
+
+		public Exception getException() {
+			return exception;
+		}
+
+		public boolean isCorrect() {
+			return exception == null && result != null && result.isCorrect();
+		}
+
+		public String getError() {
+			if (exception != null) {
+				return exception.getMessage();
+			}
+			return result == null ? "Route was not calculated" : result.getError();
+		}
+
+		public long getCalculationTimeMs() {
+			return calculationTime / 1000000;
+		}
+
+		@Override
+		public String toString() {
+			return "Route " + index + " " + request + (isCorrect() ? ": " + result.detailed.size() + " segments, "
+					+ getCalculationTimeMs() + " ms" : ": " + getError());
+		}
+	}
+
+	public BatchRoutePlanner(RoutePlannerFrontEnd frontEnd, RoutingConfiguration config, BinaryMapIndexReaderPool pool) {
+		this.frontEnd = frontEnd;
+		if (config.tileCache == null) {
+			config = config.copy(config.router);
+			config.tileCache = new RoutingTileCache();
+		}
+		this.config = config;
+		this.pool = pool;
+	}
+
+	public BatchRoutePlanner setCalculationMode(RouteCalculationMode calculationMode) {
+		this.calculationMode = calculationMode;
+		return this;
+	}
+
+	public RoutingTileCache getTileCache() {
+		return config.tileCache;
+	}
+
+	/**
+	 * Blocks until all requests are calculated or matcher is cancelled.
+	 * Matcher is called from worker threads (calls are serialized) as soon as every route is calculated.
+	 * In case executor rejects a worker, started workers are cancelled and RejectedExecutionException is thrown.
+	 * @return results in order of requests (null for not calculated requests in case of cancellation)
+	 */
+	public List<RouteResult> searchRoutes(List<RouteRequest> requests, ExecutorService executor, int parallelism,
+			ResultMatcher<RouteResult> matcher) throws InterruptedException {
+		RouteResult[] results = new RouteResult[requests.size()];
+		if (requests.isEmpty()) {
+			return Arrays.asList(results);
+		}
+		int workers = Math.max(1, Math.min(parallelism, Math.min(requests.size(), pool.getMaxLeases())));
+		Batch batch = new Batch(requests, results, matcher, workers);
+		try {
+			for (int i = 0; i < workers; i++) {
+				executor.execute(new Worker(batch));
+			}
+		} catch (RejectedExecutionException e) {
+			// stop workers which are already started
+			batch.cancel();
+			throw e;
+		}
+		try {
+			batch.done.await();
+		} catch (InterruptedException e) {
+			batch.cancel();
+			throw e;
+		}
+		return Collections.unmodifiableList(Arrays.asList(results));
+	}
+
+	private static class Batch {
+		final List<RouteRequest> requests;
+		final RouteResult[] results;
+		final ResultMatcher<RouteResult> matcher;
+		final CountDownLatch done;
+		final AtomicInteger next = new AtomicInteger();
+		final List<RoutingContext> running = new ArrayList<RoutingContext>();
+		// serializes matcher calls, cancel() must not wait for matcher
+		final Object publishLock = new Object();
+		volatile boolean cancelled;
+
+		Batch(List<RouteRequest> requests, RouteResult[] results, ResultMatcher<RouteResult> matcher, int workers) {
+			this.requests = requests;
+			this.results = results;
+			this.matcher = matcher;
+			this.done = new CountDownLatch(workers);
+		}
+
+		int nextRequest() {
+			if (cancelled || (matcher != null && matcher.isCancelled())) {
+				cancel();
+				return -1;
+			}
+			int i = next.getAndIncrement();
+			return i < requests.size() ? i : -1;
+		}
+
+		void publish(RouteResult r) {
+			synchronized (publishLock) {
+				results[r.index] = r;
+				if (matcher != null && !cancelled) {
+					matcher.publish(r);
+				}
+			}
+		}
+
+		synchronized void cancel() {
+			cancelled = true;
+			for (RoutingContext ctx : running) {
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.isCancelled = true;
+				}
+			}
+		}
+
+		synchronized boolean start(RoutingContext ctx) {
+			running.add(ctx);
+			return !cancelled;
+		}
+
+		synchronized void finish(RoutingContext ctx) {
+			running.remove(ctx);
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final Batch batch;
+
+		Worker(Batch batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+			ReaderLease lease = null;
+			try {
+				int i = batch.nextRequest();
+				if (i < 0) {
+					return;
+				}
+				IOException leaseError = null;
+				try {
+					lease = pool.acquire();
+				} catch (IOException e) {
+					log.error("Fail to lease readers for batch routing", e);
+					leaseError = e;
+				}
+				// own copies of mutable configuration (router, penalties)
+				RoutePlannerFrontEnd fe = frontEnd.copy();
+				GeneralRouter router = config.router.copy();
+				while (i >= 0) {
+					RouteResult r = new RouteResult(i, batch.requests.get(i));
+					if (lease == null) {
+						r.exception = leaseError;
+					} else {
+						calculate(fe, router, lease.getReaders(), r);
+					}
+					batch.publish(r);
+					i = batch.nextRequest();
+				}
+			} catch (InterruptedException e) {
+				batch.cancel();
+			} catch (RuntimeException e) {
+				log.error("Batch routing worker failed", e);
+				batch.cancel();
+			} finally {
+				if (lease != null) {
+					lease.close();
+				}
+				batch.done.countDown();
+			}
+		}
+
+		private void calculate(RoutePlannerFrontEnd fe, GeneralRouter router, BinaryMapIndexReader[] readers,
+				RouteResult r) throws InterruptedException {
+			// new context and configuration per request (search changes both, i.e. precalculated route direction),
+			// readers of lease and decoded tiles (tile cache) are shared between requests
+			RoutingContext ctx = fe.buildRoutingContext(config.copy(router), null, readers, calculationMode);
+			ctx.calculationProgress = new RouteCalculationProgress();
+			if (!batch.start(ctx)) {
+				ctx.calculationProgress.isCancelled = true;
+			}
+			long time = System.nanoTime();
+			try {
+				r.result = fe.searchRoute(ctx, r.request.start, r.request.end, r.request.intermediates);
+			} catch (IOException | RuntimeException e) {
+				log.error("Batch route " + r + " failed", e);
+				r.exception = e;
+			} finally {
+				batch.finish(ctx);
+				ctx.unloadAllData();
+				r.calculationTime = System.nanoTime() - time;
+			}
+		}
+	}
+}
@@ -6,12 +6,11 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.osm.MapRenderingTypes;
@@ -48,30 +47,12 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegmentCost> {
-		@Override
-		public int compare(RouteSegmentCost o1, RouteSegmentCost o2) {
-			return Double.compare(o1.cost, o2.cost);
-		}
-	}
-	
 	private static float cost(float distanceFromStart, float distanceToEnd, RoutingContext ctx) {
 		return ctx.config.heuristicCoefficient * distanceToEnd + distanceFromStart;
 	}
 
-	private static class RouteSegmentCost {
-		float cost;
-		RouteSegment segment;
-		
-		public RouteSegmentCost(RouteSegment segment, RoutingContext ctx) {
-			this.cost = cost(segment.distanceFromStart, segment.distanceToEnd, ctx);
-			this.segment = segment;
-		}
-
-		@Override
-		public String toString() {
-			return String.format("%.2f %s", cost, segment);
-		}
+	private static void addToQueue(RouteSegmentQueue graphSegments, RouteSegment segment, RoutingContext ctx) {
+		graphSegments.add(segment, cost(segment.distanceFromStart, segment.distanceToEnd, ctx));
 	}
 
 	/**
@@ -80,11 +61,14 @@ public class BinaryRoutePlanner {
 	 */
 	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end, 
 			TLongObjectMap<RouteSegment> boundaries) throws InterruptedException, IOException {
+		if (isParallelSearchAllowed(ctx, start, end, boundaries)) {
+			return searchRouteInParallel(ctx, start, end);
+		}
 		// measure time
 		ctx.memoryOverhead = 1000;
 		// Initializing priority queue to visit way segments 
-		PriorityQueue<RouteSegmentCost> graphDirectSegments = new PriorityQueue<>(50, new SegmentsComparator());
-		PriorityQueue<RouteSegmentCost> graphReverseSegments = new PriorityQueue<>(50, new SegmentsComparator());
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(50);
+		RouteSegmentQueue graphReverseSegments = new RouteSegmentQueue(50);
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
 		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
@@ -104,11 +88,11 @@ public class BinaryRoutePlanner {
 			end.others = null;
 			forwardSearch = false;
 		}
-		PriorityQueue<RouteSegmentCost> graphSegments = forwardSearch ?  graphDirectSegments : graphReverseSegments;
+		RouteSegmentQueue graphSegments = forwardSearch ?  graphDirectSegments : graphReverseSegments;
 		float[] minCost = new float[] { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
 		while (!graphSegments.isEmpty()) {
-			RouteSegmentCost cst = graphSegments.poll();
-			RouteSegment segment = cst.segment;
+			float segmentCost = graphSegments.peekCost();
+			RouteSegment segment = graphSegments.poll();
 			int visitedCnt = (start != null ? visitedDirectSegments.size() : 0) + (end != null ? visitedOppositeSegments.size() : 0);
 			// use accumulative approach
 			ctx.memoryOverhead = visitedCnt * STANDARD_ROAD_VISITED_OVERHEAD +
@@ -160,12 +144,12 @@ public class BinaryRoutePlanner {
 					println("  " + segment.segEnd + ">> Already visited by minimum");
 				}
 				skipSegment = true;
-			} else if (cst.cost + 0.1 < minCost[forwardSearch ? 1 : 0] && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
+			} else if (segmentCost + 0.1 < minCost[forwardSearch ? 1 : 0] && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
 				if (ctx.config.heuristicCoefficient <= 1) {
-					throw new IllegalStateException(cst.cost + " < ???  " + minCost[forwardSearch ? 1 : 0]);
+					throw new IllegalStateException(segmentCost + " < ???  " + minCost[forwardSearch ? 1 : 0]);
 				}
 			} else {
-				minCost[forwardSearch ? 1 : 0] = cst.cost;
+				minCost[forwardSearch ? 1 : 0] = segmentCost;
 			}
 			if (!skipSegment) {
 				if (forwardSearch) {
@@ -199,17 +183,17 @@ public class BinaryRoutePlanner {
 					graphSegments = graphDirectSegments.isEmpty() ? graphReverseSegments : graphDirectSegments;
 					if (finalSegment == null) {
 						while (!graphSegments.isEmpty()) {
-							RouteSegmentCost pc = graphSegments.poll();
-							if (pc.segment instanceof FinalRouteSegment) {
-								finalSegment = (FinalRouteSegment) pc.segment;
+							RouteSegment pc = graphSegments.poll();
+							if (pc instanceof FinalRouteSegment) {
+								finalSegment = (FinalRouteSegment) pc;
 								break;
 							}
 						}
 					}
 					return finalSegment;
 				} else {
-					RouteSegment fw = graphDirectSegments.peek().segment;
-					RouteSegment bw = graphReverseSegments.peek().segment;
+					RouteSegment fw = graphDirectSegments.peek();
+					RouteSegment bw = graphReverseSegments.peek();
 					forwardSearch = Double.compare(cost(fw.distanceFromStart, fw.distanceToEnd, ctx), 
 							cost(bw.distanceFromStart, bw.distanceToEnd,ctx)) <= 0;
 				}
@@ -243,8 +227,271 @@ public class BinaryRoutePlanner {
 		return finalSegment;
 	}
 
+	private boolean isParallelSearchAllowed(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			TLongObjectMap<RouteSegment> boundaries) {
+		return ctx.config.parallelBidirectionalSearch && start != null && end != null && boundaries == null
+				&& ctx.planRouteIn2Directions() && ctx.nativeLib == null && ctx.getVisitor() == null
+				&& ctx.precalculatedRouteDirection == null && ctx.config.getDirectionPoints() == null
+				&& !TRACE_ROUTING;
+	}
+
+	/**
+	 * Forward and reverse graphs are expanded by 2 threads (reverse graph uses own routing context).
+	 * Same stop condition as searchRouteInternal: final segment with min cost is not more expensive than
+	 * top of both queues.
+	 */
+	private FinalRouteSegment searchRouteInParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end) throws InterruptedException, IOException {
+		ctx.memoryOverhead = 1000;
+		ctx.dijkstraMode = 0;
+		ctx.startX = start.preciseX;
+		ctx.startY = start.preciseY;
+		ctx.targetX = end.preciseX;
+		ctx.targetY = end.preciseY;
+		// rules are shared between router copies, so register all of them before concurrent evaluation
+		for (RouteRegion reg : ctx.reverseMap.keySet()) {
+			ctx.config.router.registerRouteRegionRules(reg);
+		}
+		RoutingContext reverseCtx = ctx.copyForConcurrentSearch();
+		ParallelSearch search = new ParallelSearch(ctx);
+		SearchDirection forward = new SearchDirection(search, ctx, start, false);
+		SearchDirection reverse = new SearchDirection(search, reverseCtx, end, true);
+		forward.opposite = reverse;
+		reverse.opposite = forward;
+		try {
+			initEdgeSegment(ctx, start, true, forward.graphSegments, false);
+			initEdgeSegment(ctx, start, false, forward.graphSegments, false);
+			initEdgeSegment(reverseCtx, end, true, reverse.graphSegments, true);
+			initEdgeSegment(reverseCtx, end, false, reverse.graphSegments, true);
+			Thread reverseThread = new Thread(reverse, "Reverse route search");
+			reverseThread.setDaemon(true);
+			reverseThread.start();
+			try {
+				forward.run();
+			} finally {
+				search.stop();
+				reverseThread.join();
+			}
+			forward.rethrow();
+			reverse.rethrow();
+
+			FinalRouteSegment finalSegment = search.best;
+			if (finalSegment == null && (forward.exhausted || reverse.exhausted)) {
+				// can't proceed any more - check if final already exist
+				RouteSegmentQueue graphSegments = forward.exhausted ? reverse.graphSegments : forward.graphSegments;
+				while (!graphSegments.isEmpty()) {
+					RouteSegment pc = graphSegments.poll();
+					if (pc instanceof FinalRouteSegment) {
+						finalSegment = (FinalRouteSegment) pc;
+						break;
+					}
+				}
+			}
+			ctx.alertFasterRoadToVisitedSegments += reverseCtx.alertFasterRoadToVisitedSegments;
+			ctx.alertSlowerSegmentedWasVisitedEarlier += reverseCtx.alertSlowerSegmentedWasVisitedEarlier;
+			RouteCalculationProgress p = ctx.calculationProgress;
+			if (p != null) {
+				RouteCalculationProgress rp = reverseCtx.calculationProgress;
+				p.visitedSegments += rp.visitedSegments;
+				p.finalSegmentsFound += rp.finalSegmentsFound;
+				p.timeToLoad += rp.timeToLoad;
+				p.loadedTiles += rp.loadedTiles;
+				p.distinctLoadedTiles += rp.distinctLoadedTiles;
+				p.loadedPrevUnloadedTiles += rp.loadedPrevUnloadedTiles;
+				p.unloadedTiles += rp.unloadedTiles;
+				p.maxLoadedTiles = Math.max(p.maxLoadedTiles, rp.maxLoadedTiles);
+				p.visitedDirectSegments += forward.visitedSegments.size();
+				p.visitedOppositeSegments += reverse.visitedSegments.size();
+				p.directQueueSize += forward.graphSegments.size();
+				p.oppositeQueueSize += reverse.graphSegments.size();
+			}
+			return finalSegment;
+		} finally {
+			reverseCtx.closeConcurrentCopy();
+		}
+	}
+
+	// shared state of parallel search (guarded by itself)
+	private static class ParallelSearch {
+		final RoutingContext ctx;
+		FinalRouteSegment best;
+		float bestCost = Float.POSITIVE_INFINITY;
+		boolean stop;
+
+		ParallelSearch(RoutingContext ctx) {
+			this.ctx = ctx;
+		}
+
+		synchronized void stop() {
+			stop = true;
+			notifyAll();
+		}
+
+		boolean isCancelled() {
+			return ctx.calculationProgress != null && ctx.calculationProgress.isCancelled;
+		}
+	}
+
+	// final segments with the same cost are found in order of thread timing, so choose one of them by road
+	private static int compareFinalSegments(FinalRouteSegment s1, FinalRouteSegment s2) {
+		int cmp = Long.compare(s1.getRoad().getId(), s2.getRoad().getId());
+		if (cmp == 0) {
+			cmp = Integer.compare(s1.getSegmentStart(), s2.getSegmentStart());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(s1.getSegmentEnd(), s2.getSegmentEnd());
+		}
+		if (cmp == 0) {
+			cmp = Boolean.compare(s1.reverseWaySearch, s2.reverseWaySearch);
+		}
+		return cmp;
+	}
+
+	private class SearchDirection implements Runnable {
+		final ParallelSearch search;
+		final RoutingContext ctx;
+		final RouteSegmentPoint point;
+		final boolean reverseWaySearch;
+		final RouteSegmentQueue graphSegments = new RouteSegmentQueue(50);
+		final TLongObjectHashMap<RouteSegment> visitedSegments = new TLongObjectHashMap<RouteSegment>();
+		SearchDirection opposite;
+		// guarded by search
+		boolean waiting;
+		boolean exhausted;
+		Throwable error;
+
+		SearchDirection(ParallelSearch search, RoutingContext ctx, RouteSegmentPoint point, boolean reverseWaySearch) {
+			this.search = search;
+			this.ctx = ctx;
+			this.point = point;
+			this.reverseWaySearch = reverseWaySearch;
+		}
+
+		@Override
+		public void run() {
+			try {
+				search();
+			} catch (Throwable e) {
+				error = e;
+			} finally {
+				// any direction stops the whole search
+				search.stop();
+			}
+		}
+
+		void rethrow() throws InterruptedException {
+			if (error instanceof InterruptedException) {
+				throw (InterruptedException) error;
+			} else if (error instanceof RuntimeException) {
+				throw (RuntimeException) error;
+			} else if (error instanceof Error) {
+				throw (Error) error;
+			} else if (error != null) {
+				throw new IllegalStateException(error);
+			}
+		}
+
+		private void search() throws InterruptedException {
+			float minCost = Float.NEGATIVE_INFINITY;
+			while (true) {
+				if (search.isCancelled()) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+				if (graphSegments.isEmpty()) {
+					if (checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, point, visitedSegments,
+							reverseWaySearch ? "Route is not found to selected target point."
+									: "Route is not found from selected start point.")) {
+						minCost = Float.NEGATIVE_INFINITY;
+					}
+					if (graphSegments.isEmpty()) {
+						synchronized (search) {
+							exhausted = true;
+						}
+						return;
+					}
+				}
+				float segmentCost = graphSegments.peekCost();
+				synchronized (search) {
+					if (search.stop) {
+						return;
+					}
+					if (segmentCost >= search.bestCost) {
+						// this direction can't find better final segment, wait for opposite
+						waiting = true;
+						if (opposite.waiting) {
+							search.stop();
+							return;
+						}
+						search.wait();
+						waiting = false;
+						continue;
+					}
+				}
+				RouteSegment segment = graphSegments.poll();
+				if (segment instanceof FinalRouteSegment) {
+					synchronized (search) {
+						if (segmentCost < search.bestCost || (segmentCost == search.bestCost
+								&& compareFinalSegments((FinalRouteSegment) segment, search.best) < 0)) {
+							search.best = (FinalRouteSegment) segment;
+							search.bestCost = segmentCost;
+							search.notifyAll();
+						}
+					}
+					continue;
+				}
+				int visitedCnt = visitedSegments.size() + opposite.visitedCount();
+				ctx.memoryOverhead = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD
+						+ graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+				if (ctx.config.MAX_VISITED > 0 && visitedCnt > ctx.config.MAX_VISITED) {
+					return;
+				}
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.visitedSegments++;
+				}
+				if (visitedSegments.containsKey(calculateRoutePointId(segment))) {
+					continue;
+				}
+				if (segmentCost + 0.1 < minCost && ASSERT_CHECKS && ctx.calculationMode != RouteCalculationMode.COMPLEX) {
+					if (ctx.config.heuristicCoefficient <= 1) {
+						throw new IllegalStateException(segmentCost + " < ???  " + minCost);
+					}
+				} else {
+					minCost = segmentCost;
+				}
+				processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment,
+						opposite.visitedSegments, null, false);
+				updateProgress();
+			}
+		}
+
+		int visitedCount() {
+			synchronized (visitedSegments) {
+				return visitedSegments.size();
+			}
+		}
+
+		private void updateProgress() {
+			RouteCalculationProgress p = search.ctx.calculationProgress;
+			if (p != null && !graphSegments.isEmpty()) {
+				RouteSegment peek = graphSegments.peek();
+				if (!reverseWaySearch) {
+					p.directSegmentQueueSize = graphSegments.size();
+					p.distanceFromBegin = Math.max(peek.distanceFromStart, p.distanceFromBegin);
+					p.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+				} else {
+					p.reverseSegmentQueueSize = graphSegments.size();
+					p.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd, p.distanceFromEnd);
+					p.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
+			}
+		}
+	}
+
 	protected boolean checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegmentCost> graphSegments, RouteSegmentPoint pnt, TLongObjectMap<RouteSegment> visited,
+			boolean reverseWaySearch, RouteSegmentQueue graphSegments, RouteSegmentPoint pnt, TLongObjectMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -259,7 +506,7 @@ public class BinaryRoutePlanner {
 						pos.setParentRoute(null);
 						pos.distanceFromStart = 0;
 						pos.distanceToEnd = estimatedDistance;
-						graphSegments.add(new RouteSegmentCost(pos, ctx));
+						addToQueue(graphSegments, pos, ctx);
 					}
 					RouteSegment neg = next.initRouteSegment(false);
 					if (neg != null && !visited.containsKey(calculateRoutePointId(neg)) && 
@@ -267,7 +514,7 @@ public class BinaryRoutePlanner {
 						neg.setParentRoute(null);
 						neg.distanceFromStart = 0;
 						neg.distanceToEnd = estimatedDistance;
-						graphSegments.add(new RouteSegmentCost(neg, ctx));
+						addToQueue(graphSegments, neg, ctx);
 					}
 					if (!graphSegments.isEmpty()) {
 						println("Reiterate point with new " + (!reverseWaySearch ? "start " : "destination ")
@@ -283,7 +530,7 @@ public class BinaryRoutePlanner {
 		return false;
 	}
 
-	public RouteSegment initEdgeSegment(final RoutingContext ctx, RouteSegmentPoint pnt, boolean originalDir, PriorityQueue<RouteSegmentCost> graphSegments, boolean reverseSearchWay) {
+	public RouteSegment initEdgeSegment(final RoutingContext ctx, RouteSegmentPoint pnt, boolean originalDir, RouteSegmentQueue graphSegments, boolean reverseSearchWay) {
 		if (pnt == null) {
 			return null;
 		}
@@ -327,7 +574,7 @@ public class BinaryRoutePlanner {
 		}
 		if (checkMovementAllowed(ctx, reverseSearchWay, seg)) {
 			seg.distanceToEnd = estimatedDistance(seg, reverseSearchWay, ctx);
-			graphSegments.add(new RouteSegmentCost(seg, ctx));
+			addToQueue(graphSegments, seg, ctx);
 			return seg;
 		}
 		return null;
@@ -344,7 +591,7 @@ public class BinaryRoutePlanner {
 	
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
-			PriorityQueue<RouteSegmentCost> graphDirectSegments, PriorityQueue<RouteSegmentCost> graphReverseSegments) {
+			RouteSegmentQueue graphDirectSegments, RouteSegmentQueue graphReverseSegments) {
 		if (ctx.precalculatedRouteDirection != null) {
 			ctx.precalculatedRouteDirection.updatePreciseStartEnd(
 					(start != null) ? start.preciseX : 0, (start != null) ? start.preciseY : 0,
@@ -379,19 +626,19 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegmentCost> graphDirectSegments,
-			PriorityQueue<RouteSegmentCost> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
 			if (!graphDirectSegments.isEmpty() && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek().segment;
+				RouteSegment peek = graphDirectSegments.peek();
 				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
 						ctx.calculationProgress.distanceFromBegin);
 				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
 			}
 			if (!graphReverseSegments.isEmpty() && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek().segment;
+				RouteSegment peek = graphReverseSegments.peek();
 				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
 				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
@@ -485,7 +732,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegmentCost> graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
+			RouteSegmentQueue graphSegments, TLongObjectMap<RouteSegment> visitedSegments,
 			RouteSegment startSegment, TLongObjectMap<RouteSegment> oppositeSegments,
 			TLongObjectMap<RouteSegment> boundaries, boolean doNotAddIntersections) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
@@ -520,29 +767,32 @@ public class BinaryRoutePlanner {
  			
 			// 3. upload segment itself to visited segments
 			long nextPntId = calculateRoutePointId(currentSegment);
-			RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
-			if (existingSegment != null) {
-				if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
-					// insert back original segment (test case with large area way)
-					visitedSegments.put(nextPntId, existingSegment);
-					if (TRACE_ROUTING) {
-						println("  " + currentSegment.segEnd + ">> Already visited");
-					}
-					break;
-				} else {
-					if (ctx.config.heuristicCoefficient <= 1) {
-						if (RoutingContext.PRINT_ROUTING_ALERTS) {
-							System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
-								+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
-						} else {
-							ctx.alertSlowerSegmentedWasVisitedEarlier++;
+			// visited segments are read by opposite search (parallel bidirectional search)
+			synchronized (visitedSegments) {
+				RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
+				if (existingSegment != null) {
+					if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
+						// insert back original segment (test case with large area way)
+						visitedSegments.put(nextPntId, existingSegment);
+						if (TRACE_ROUTING) {
+							println("  " + currentSegment.segEnd + ">> Already visited");
+						}
+						break;
+					} else {
+						if (ctx.config.heuristicCoefficient <= 1) {
+							if (RoutingContext.PRINT_ROUTING_ALERTS) {
+								System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
+									+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
+							} else {
+								ctx.alertSlowerSegmentedWasVisitedEarlier++;
+							}
 						}
 					}
 				}
+
+				// reassign @distanceFromStart to make it correct for visited segment
+				currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
 			}
-						
-			// reassign @distanceFromStart to make it correct for visited segment
-			currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
 			
 			if (bothDirVisited) {
  				// We stop here for shortcut creation (we can't improve the neighbors if they're already visited cause the opposite is min - prove by contradiction) 
@@ -559,7 +809,7 @@ public class BinaryRoutePlanner {
 			// a) final segment is always in queue & double checked b) using osm segment almost always is shorter routing than other connected
 			if (DEBUG_BREAK_EACH_SEGMENT && nextCurrentSegment != null) {
 				if (!doNotAddIntersections) {
-					graphSegments.add(new RouteSegmentCost(nextCurrentSegment, ctx));
+					addToQueue(graphSegments, nextCurrentSegment, ctx);
 				}
 				break;
 			}
@@ -629,7 +879,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegmentCost> graphSegments, RouteSegment currentSegment,
+			RouteSegmentQueue graphSegments, RouteSegment currentSegment,
 			TLongObjectMap<RouteSegment> oppositeSegments, TLongObjectMap<RouteSegment> boundaries) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
@@ -638,10 +888,21 @@ public class BinaryRoutePlanner {
 			// limit by boundaries for dijkstra mode
 			oppositeSegments = boundaries;
 		}
-		if (oppositeSegments.containsKey(currPoint)) {
-			RouteSegment opposite = oppositeSegments.get(currPoint);
+		boolean oppositeVisited;
+		RouteSegment opposite = null;
+		RouteSegment oppParent = null;
+		float oppTime = 0;
+		// opposite segments could be modified by another thread (parallel bidirectional search)
+		synchronized (oppositeSegments) {
+			oppositeVisited = oppositeSegments.containsKey(currPoint);
+			if (oppositeVisited) {
+				opposite = oppositeSegments.get(currPoint);
+				oppParent = getParentDiffId(opposite);
+				oppTime = opposite == null ? 0 : opposite.distanceFromStart;
+			}
+		}
+		if (oppositeVisited) {
 			RouteSegment curParent = getParentDiffId(currentSegment);
-			RouteSegment oppParent = getParentDiffId(opposite);
 			RouteSegment to = reverseWaySearch ? curParent : oppParent;
 			RouteSegment from = !reverseWaySearch ? curParent : oppParent;
 			if (checkViaRestrictions(from, to)) {
@@ -649,7 +910,6 @@ public class BinaryRoutePlanner {
 						currentSegment.getSegmentStart(), currentSegment.getSegmentEnd());
 				frs.setParentRoute(currentSegment.getParentRoute());
 				frs.reverseWaySearch = reverseWaySearch;
-				float oppTime = opposite == null ? 0 : opposite.distanceFromStart;
 				frs.distanceFromStart = oppTime + currentSegment.distanceFromStart;
 				frs.distanceToEnd = 0;
 				frs.opposite = opposite;
@@ -657,7 +917,7 @@ public class BinaryRoutePlanner {
 					// impossible route (when start/point on same segment but different dir) don't add to queue
 					return true;
 				}
-				graphSegments.add(new RouteSegmentCost(frs, ctx));
+				addToQueue(graphSegments, frs, ctx);
 				if (TRACE_ROUTING) {
 					printRoad("  " + currentSegment.segEnd + ">> Final segment : ", frs, reverseWaySearch);
 				}
@@ -802,7 +1062,7 @@ public class BinaryRoutePlanner {
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegmentCost> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentQueue graphSegments,
 			TLongObjectMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
@@ -909,7 +1169,7 @@ public class BinaryRoutePlanner {
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegmentCost> graphSegments,
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentQueue graphSegments,
 			TLongObjectMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
@@ -956,7 +1216,9 @@ public class BinaryRoutePlanner {
 								ctx.alertFasterRoadToVisitedSegments++;
 							}
 						}
-						visitedSegments.remove(calculateRoutePointId(next));
+						synchronized (visitedSegments) {
+							visitedSegments.remove(calculateRoutePointId(next));
+						}
 					} else {
 						return false;
 					}
@@ -966,15 +1228,18 @@ public class BinaryRoutePlanner {
 			}
 			if (!next.isSegmentAttachedToStart() || cost(next.distanceFromStart, next.distanceToEnd,
 					ctx) > cost(distFromStart, segment.distanceToEnd, ctx)) {
-				next.distanceFromStart = distFromStart;
-				next.distanceToEnd = segment.distanceToEnd;
+				// segment could be visited before and read by opposite search (parallel bidirectional search)
+				synchronized (visitedSegments) {
+					next.distanceFromStart = distFromStart;
+					next.distanceToEnd = segment.distanceToEnd;
+					// put additional information to recover whole route after
+					next.setParentRoute(segment);
+				}
 				if (TRACE_ROUTING) {
 					printRoad(" " + (next.isSegmentAttachedToStart() ? "*" : "") + segment.getSegmentEnd() + ">>", next, null);
 				}
-				// put additional information to recover whole route after
-				next.setParentRoute(segment);
 				if (graphSegments != null) {
-					graphSegments.add(new RouteSegmentCost(next, ctx));
+					addToQueue(graphSegments, next, ctx);
 				}
 				return true;
 			}
@@ -1054,6 +1319,8 @@ public class BinaryRoutePlanner {
 		// Same Road/ same Segment but used for opposite A* search (important to have different cause #parentRoute is different)
 		// Note: if we use 1-direction A* then this is field is not needed
 		RouteSegment reverseSearch = null;
+		// Position in RouteSegmentQueue (valid only while segment is in queue)
+		int queueIndex = -1;
 
 		// # Important for A*-search to distinguish whether segment was visited or not
 		// Initially all segments null and startSegment/endSegment.parentRoute = RouteSegment.NULL;
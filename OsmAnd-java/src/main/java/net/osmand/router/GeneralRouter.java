@@ -19,6 +19,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TLongHashSet;
@@ -62,7 +64,8 @@ public class GeneralRouter implements VehicleRouter {
 	private final Map<String, String> parameterValues; 
 	private final Map<String, Integer> universalRules;
 	private final List<String> universalRulesById;
-	private final Map<String, BitSet> tagRuleMask;
+	// universal rule ids by tag, masks are replaced (not modified) on registration, so they are read without lock
+	private final ConcurrentHashMap<String, BitSet> tagRuleMask;
 	private final ArrayList<Object> ruleToValue;
 	private boolean shortestRoute;
 	private boolean heightObstacles;
@@ -70,7 +73,15 @@ public class GeneralRouter implements VehicleRouter {
 	private String filename = null;
 	private String profileName = "";
 
-	private Map<RouteRegion, Map<Integer, Integer>> regionConvert = new LinkedHashMap<RouteRegion, Map<Integer,Integer>>();
+	// conversion to universal rules and evaluated values by region (shared by router copies)
+	private ConcurrentHashMap<RouteRegion, RouteRegionTables> regionTables = new ConcurrentHashMap<RouteRegion, RouteRegionTables>();
+	private EvalCacheStats cacheStats = new EvalCacheStats();
+	private static final ThreadLocal<int[]> TYPES_BUFFER = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[16];
+		}
+	};
 	
 	// cached values
 	private boolean restrictionsAware = true;
@@ -90,8 +101,6 @@ public class GeneralRouter implements VehicleRouter {
 	
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;
-		
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -183,7 +192,6 @@ public class GeneralRouter implements VehicleRouter {
 				maxSpeed = Math.min(CAR_SHORTEST_DEFAULT_SPEED, maxSpeed);
 			}
 		}
-		initCaches();
 	}
 	
 	public GeneralRouter(GeneralRouterProfile profile, Map<String, String> attributes) {
@@ -201,21 +209,9 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		universalRules = new LinkedHashMap<String, Integer>();
 		universalRulesById = new ArrayList<String>();
-		tagRuleMask = new LinkedHashMap<String, BitSet>();
+		tagRuleMask = new ConcurrentHashMap<String, BitSet>();
 		ruleToValue = new ArrayList<Object>();
 		parameters = new LinkedHashMap<String, GeneralRouter.RoutingParameter>();
-		
-		initCaches();
-
-	}
-
-	@SuppressWarnings("unchecked")
-	private void initCaches() {
-		int l = RouteDataObjectAttribute.values().length;
-		evalCache = new Map[l];
-		for (int i = 0; i < l; i++) {
-			evalCache[i] = new HashMap<>();
-		}
 	}
 
 	public String getFilename() {
@@ -316,10 +312,9 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public boolean acceptLine(RouteDataObject way) {
-		Float res = getCache(RouteDataObjectAttribute.ACCESS, way);
-		if (res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
-			putCache(RouteDataObjectAttribute.ACCESS, way, res);
+		float res = getCache(RouteDataObjectAttribute.ACCESS, way);
+		if (Float.isNaN(res)) {
+			res = precomputeRoad(way);
 		}
 		if (impassableRoads != null && impassableRoads.contains(way.id >> IMPASSABLE_ROAD_SHIFT)) {
 			return false;
@@ -339,18 +334,71 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	public int registerTagValueAttribute(String tag, String value) {
-		String key = tag +"$"+value;
-		if(universalRules.containsKey(key)) {
-			return universalRules.get(key);
+		// rules are shared between routers built from the same profile
+		synchronized (universalRules) {
+			String key = tag + "$" + value;
+			if (universalRules.containsKey(key)) {
+				return universalRules.get(key);
+			}
+			int id = universalRules.size();
+			universalRulesById.add(key);
+			universalRules.put(key, id);
+			BitSet mask = tagRuleMask.get(tag);
+			mask = mask == null ? new BitSet() : (BitSet) mask.clone();
+			mask.set(id);
+			tagRuleMask.put(tag, mask);
+			return id;
+		}
+	}
+
+	private String getUniversalRule(int id) {
+		synchronized (universalRules) {
+			return universalRulesById.get(id);
+		}
+	}
+
+	// register all tags of region in advance, so routers could evaluate region objects concurrently without modifying rules
+	void registerRouteRegionRules(RouteRegion reg) {
+		RouteRegionTables tables = getRegionTables(reg);
+		int[] map = tables.ensureUniversalIds(reg.routeEncodingRules.size() - 1);
+		for (int i = 0; i < reg.routeEncodingRules.size(); i++) {
+			RouteTypeRule r = reg.routeEncodingRules.get(i);
+			if (r != null && map[i] < 0) {
+				map[i] = registerTagValueAttribute(r.getTag(), r.getValue());
+			}
 		}
-		int id = universalRules.size();
-		universalRulesById.add(key);
-		universalRules.put(key, id);
-		if(!tagRuleMask.containsKey(tag)) {
-			tagRuleMask.put(tag, new BitSet());
+	}
+
+	private RouteRegionTables getRegionTables(RouteRegion reg) {
+		RouteRegionTables tables = regionTables.get(reg);
+		if (tables == null) {
+			tables = new RouteRegionTables(reg, RouteDataObjectAttribute.values().length * 2);
+			RouteRegionTables existing = regionTables.putIfAbsent(reg, tables);
+			if (existing != null) {
+				tables = existing;
+			}
+		}
+		return tables;
+	}
+
+	// evaluates all road attributes (used during search) of not seen types combination, returns access
+	private float precomputeRoad(RouteDataObject way) {
+		float access = getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
+		putCache(RouteDataObjectAttribute.ACCESS, way, access);
+		putCache(RouteDataObjectAttribute.ONEWAY, way, getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(way, 0));
+		putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, way,
+				getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(way, 0));
+		putCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, way,
+				getObjContext(RouteDataObjectAttribute.DESTINATION_PRIORITIES).evaluateFloat(way, 1f));
+		// direction is not used by speed & priority rules
+		float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(way, defaultSpeed);
+		spd = Math.max(Math.min(spd, maxSpeed), minSpeed);
+		float priority = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(way, 1f);
+		for (int dir = 0; dir < 2; dir++) {
+			putCache(RouteDataObjectAttribute.ROAD_SPEED, way, spd, dir == 1);
+			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, way, priority, dir == 1);
 		}
-		tagRuleMask.get(tag).set(id);
-		return id;
+		return access;
 	}
 	
 	
@@ -377,18 +425,21 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Object parseValueFromTag(int id, String type) {
-		while (ruleToValue.size() <= id) {
-			ruleToValue.add(null);
-		}
-		Object res = ruleToValue.get(id);
-		if (res == null) {
-			String v = universalRulesById.get(id);
-			String value = v.substring(v.indexOf('$') + 1);
-			res = parseValue(value, type);
+		Object res;
+		synchronized (ruleToValue) {
+			while (ruleToValue.size() <= id) {
+				ruleToValue.add(null);
+			}
+			res = ruleToValue.get(id);
 			if (res == null) {
-				res = "";
+				String v = getUniversalRule(id);
+				String value = v.substring(v.indexOf('$') + 1);
+				res = parseValue(value, type);
+				if (res == null) {
+					res = "";
+				}
+				ruleToValue.set(id, res);
 			}
-			ruleToValue.set(id, res);
 		}
 		if ("".equals(res)) {
 			return null;
@@ -401,6 +452,17 @@ public class GeneralRouter implements VehicleRouter {
 		return new GeneralRouter(this, params);
 	}
 
+	// same router to be used in another thread (evaluation caches are shared)
+	GeneralRouter copy() {
+		GeneralRouter r = new GeneralRouter(this, parameterValues);
+		r.regionTables = regionTables;
+		r.cacheStats = cacheStats;
+		if (impassableRoads != null) {
+			r.impassableRoads = new TLongHashSet(impassableRoads);
+		}
+		return r;
+	}
+
 	@Override
 	public boolean restrictionsAware() {
 		return restrictionsAware;
@@ -410,8 +472,8 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineObstacle(RouteDataObject road, int point, boolean dir) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, dir);
-			if (obst == null) {
+			float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, dir);
+			if (Float.isNaN(obst)) {
 				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
 				obst = getObjContext(RouteDataObjectAttribute.OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
 				putCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, obst, dir);
@@ -425,8 +487,8 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineRoutingObstacle(RouteDataObject road, int point, boolean dir) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, dir);
-			if (obst == null) {
+			float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, dir);
+			if (Float.isNaN(obst)) {
 				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
 				obst = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
 				putCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, obst, dir);
@@ -493,8 +555,8 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					double v = objContext.evaluate(road.region, road.types, diff > 0 ? percentIncl : -percentIncl);
+					sum += (Double.isNaN(v) ? 0 : (float) v) * (diff > 0? diff : -diff );
 				}
 			}
 		}
@@ -504,12 +566,12 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public int isOneWay(RouteDataObject road) {
-		Float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
+		float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
+		if (Float.isNaN(res)) {
+			res = getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
 			putCache(RouteDataObjectAttribute.ONEWAY, road, res);
 		}
-		return res.intValue();
+		return (int) res;
 	}
 	
 	@Override
@@ -519,9 +581,9 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
-		Float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
-		if (vl == null) {
-			vl = (float) getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
+		float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
+		if (Float.isNaN(vl)) {
+			vl = getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
 			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl);
 		}
 		return vl;
@@ -529,8 +591,8 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road, boolean dir) {
-		Float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
-		if (definedSpd == null) {
+		float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
+		if (Float.isNaN(definedSpd)) {
 			// not implemented direction usage
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
  			definedSpd = Math.max(Math.min(spd, maxSpeed), minSpeed);
@@ -547,8 +609,8 @@ public class GeneralRouter implements VehicleRouter {
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			return Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 		}
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
-		if (sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road, dir);
+		if (Float.isNaN(sp)) {
 			// not implemented direction usage
 			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
 			sp = Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
@@ -559,8 +621,8 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineSpeedPriority(RouteDataObject road, boolean dir) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, dir);
-		if(sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, dir);
+		if (Float.isNaN(sp)) {
 			// not implemented direction usage
 			sp = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
 			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp, dir);
@@ -570,89 +632,49 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineDestinationPriority(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, road);
-		if(sp == null) {
+		float sp = getCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, road);
+		if (Float.isNaN(sp)) {
 			sp = getObjContext(RouteDataObjectAttribute.DESTINATION_PRIORITIES).evaluateFloat(road, 1f);
 			putCache(RouteDataObjectAttribute.DESTINATION_PRIORITIES, road, sp, false);
 		}
 		return sp;
 	}
 
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val) {
+	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, float val) {
 		putCache(attr, road.region, road.types, val, false);
 	}
 	
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val, boolean extra) {
+	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, float val, boolean extra) {
 		putCache(attr, road.region, road.types, val, extra);
 	}
 	
-	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
-//		TIMER -= System.nanoTime();
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
+	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, float val, boolean extra) {
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
-			}
-			rM.put(new IntHolder(types, extra), val);
+			getRegionTables(reg).put(cacheColumn(attr, extra), types, val);
 		}
-//		TIMER += System.nanoTime();
 	}
-	
-	class IntHolder {
-		private final int[] array;
-		private final boolean extra;
-
-		IntHolder(int[] ts, boolean extra) {
-			array = ts;
-			this.extra = extra;
-		}
-
-		@Override
-		public int hashCode() {
-			return Arrays.hashCode(array) + (extra ? 1 : 0);
-		}
 
-		@Override
-		public boolean equals(Object other) {
-			if (array == other) {
-				return true;
-			}
-			if (!(other instanceof IntHolder)) {
-				return false;
-			}
-			if (((IntHolder) other).extra != this.extra) {
-				return false;
-			}
-			// noinspection unchecked
-			return Arrays.equals(array, ((IntHolder) other).array);
-		}
+	private static int cacheColumn(RouteDataObjectAttribute attr, boolean extra) {
+		return attr.ordinal() * 2 + (extra ? 1 : 0);
 	}
 
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
+	private float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
 		return getCache(attr, road.region, road.types, false);
 	}
 	
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road, boolean extra) {
+	private float getCache(RouteDataObjectAttribute attr, RouteDataObject road, boolean extra) {
 		return getCache(attr, road.region, road.types, extra);
 	}
 	
-	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-//		TIMER -= System.nanoTime();
+	// returns NaN if value is not cached
+	private float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
-			}
-			Float vl = rM.get(new IntHolder(types, extra));
-			if(vl != null) {
-//				TIMER += System.nanoTime();
-				return vl;
-			}
+			RouteRegionTables tables = regionTables.get(reg);
+			float v = tables == null ? Float.NaN : tables.get(cacheColumn(attr, extra), types);
+			cacheStats.count(!Float.isNaN(v));
+			return v;
 		}
-		return null;
+		return Float.NaN;
 	}
 
 	@Override
@@ -805,6 +827,16 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	
+	private int[] getRegionConvert(RouteRegion reg, int[] types) {
+		int max = -1;
+		for (int k = 0; k < types.length; k++) {
+			max = Math.max(max, types[k]);
+		}
+		RouteRegionTables tables = getRegionTables(reg);
+		int[] map = tables.getUniversalIds();
+		return map.length > max ? map : tables.ensureUniversalIds(max);
+	}
+
 	private class ParameterContext {
 		private Map<String, String> vars;
 		private double incline = 0;
@@ -813,6 +845,8 @@ public class GeneralRouter implements VehicleRouter {
 	public class RouteAttributeContext {
 		List<RouteAttributeEvalRule> rules = new ArrayList<RouteAttributeEvalRule>();
 		ParameterContext paramContext = null;
+		// rules compiled for parameters of this context (built on first evaluation)
+		private volatile CompiledRule[] compiledRules;
 		
 		public RouteAttributeContext(){
 		}
@@ -846,10 +880,6 @@ public class GeneralRouter implements VehicleRouter {
 			return paramContext.vars.values().toArray(new String[0]);
 		}
 		
-		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
-		}
-
 		public void printRules(PrintStream out) {
 			for(RouteAttributeEvalRule r : rules) {
 				r.printRule(out);
@@ -859,7 +889,8 @@ public class GeneralRouter implements VehicleRouter {
 		public RouteAttributeEvalRule registerNewRule(String selectValue, String selectType) {
 			RouteAttributeEvalRule ev = new RouteAttributeEvalRule();
 			ev.registerSelectValue(selectValue, selectType);
-			rules.add(ev);	
+			rules.add(ev);
+			compiledRules = null;
 			return ev;
 		}
 		
@@ -878,6 +909,42 @@ public class GeneralRouter implements VehicleRouter {
 			return null;
 		}
 
+		// returns NaN if no rule matched (default value should be used)
+		private double evaluate(RouteRegion reg, int[] types, double incline) {
+			CompiledRule[] cr = compiledRules;
+			if (cr == null) {
+				cr = new CompiledRule[rules.size()];
+				for (int k = 0; k < cr.length; k++) {
+					cr[k] = new CompiledRule(rules.get(k), paramContext);
+				}
+				compiledRules = cr;
+			}
+			int[] ids = TYPES_BUFFER.get();
+			if (ids.length < types.length) {
+				ids = new int[types.length];
+				TYPES_BUFFER.set(ids);
+			}
+			int[] map = getRegionConvert(reg, types);
+			for (int k = 0; k < types.length; k++) {
+				int nid = map[types[k]];
+				if (nid < 0) {
+					RouteTypeRule r = reg.quickGetEncodingRule(types[k]);
+					nid = registerTagValueAttribute(r.getTag(), r.getValue());
+					map[types[k]] = nid;
+				}
+				ids[k] = nid;
+			}
+			for (int k = 0; k < cr.length; k++) {
+				if (cr[k].matches(ids, types.length, incline)) {
+					double v = cr[k].select(ids, types.length, incline);
+					if (!Double.isNaN(v) || cr[k].stopsWithoutValue(ids, types.length)) {
+						return v;
+					}
+				}
+			}
+			return Double.NaN;
+		}
+
 		private boolean checkParameter(RouteAttributeEvalRule r) {
 			if (paramContext != null && r.parameters.size() > 0) {
 				for (String p : r.parameters) {
@@ -898,19 +965,15 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteDataObject ro, int defValue) {
-			Object o = evaluate(ro);
-			if(!(o instanceof Number)) {
-				return defValue;
-			}
-			return ((Number)o).intValue();
+			return evaluateInt(ro.region, ro.types, defValue);
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
-			if(!(o instanceof Number)){
+			double v = evaluate(region, types, 0);
+			if (Double.isNaN(v)) {
 				return defValue;
 			}
-			return ((Number)o).intValue();
+			return (int) v;
 		}
 		
 		public int evaluateInt(BitSet rawTypes, int defValue) {
@@ -922,19 +985,15 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public float evaluateFloat(RouteDataObject ro, float defValue) {
-			Object o = evaluate(ro);			
-			if(!(o instanceof Number)) {
-				return defValue;
-			}
-			return ((Number)o).floatValue();
+			return evaluateFloat(ro.region, ro.types, defValue);
 		}
 		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
-			if(!(o instanceof Number)) {
+			double v = evaluate(region, types, 0);
+			if (Double.isNaN(v)) {
 				return defValue;
 			}
-			return ((Number)o).floatValue();
+			return (float) v;
 		}
 		
 		public float evaluateFloat(BitSet rawTypes, float defValue) {
@@ -944,25 +1003,6 @@ public class GeneralRouter implements VehicleRouter {
 			}
 			return ((Number)o).floatValue();
 		}
-		
-		private BitSet convert(RouteRegion reg, int[] types) {
-			BitSet b = new BitSet(universalRules.size());
-			Map<Integer, Integer> map = regionConvert.get(reg);
-			if(map == null){
-				map = new HashMap<Integer, Integer>();
-				regionConvert.put(reg, map);
-			}
-			for(int k = 0; k < types.length; k++) {
-				Integer nid = map.get(types[k]);
-				if (nid == null) {
-					RouteTypeRule r = reg.quickGetEncodingRule(types[k]);
-					nid = registerTagValueAttribute(r.getTag(), r.getValue());
-					map.put(types[k], nid);
-				}
-				b.set(nid);
-			}
-			return b;
-		}
 	}
 
 	public class RouteAttributeExpression {
@@ -1120,7 +1160,7 @@ public class GeneralRouter implements VehicleRouter {
 			out.print(" Select " + selectValue + " if ");
 			for (int k = 0; k < filterTypes.length(); k++) {
 				if (filterTypes.get(k)) {
-					String key = universalRulesById.get(k);
+					String key = getUniversalRule(k);
 					out.print(key + " ");
 				}
 			}
@@ -1129,7 +1169,7 @@ public class GeneralRouter implements VehicleRouter {
 			}
 			for (int k = 0; k < filterNotTypes.length(); k++) {
 				if (filterNotTypes.get(k)) {
-					String key = universalRulesById.get(k);
+					String key = getUniversalRule(k);
 					out.print(key + " ");
 				}
 			}
@@ -1302,12 +1342,271 @@ public class GeneralRouter implements VehicleRouter {
 		
 	}
 
+
+	// rule resolved for parameters of router: evaluated on universal rule ids without allocations
+	private class CompiledRule {
+		private final int[] types;
+		private final int[] notTypes;
+		private final String[] tags;
+		private final String[] notTags;
+		private final CompiledExpression[] conditions;
+		private final CompiledExpression selectExpression;
+		private final String selectTag;
+		private final String selectType;
+		private final double selectValue;
+
+		CompiledRule(RouteAttributeEvalRule r, ParameterContext paramContext) {
+			types = toArray(r.filterTypes);
+			notTypes = toArray(r.filterNotTypes);
+			tags = r.onlyTags.toArray(new String[0]);
+			notTags = r.onlyNotTags.toArray(new String[0]);
+			conditions = new CompiledExpression[r.conditionExpressions.size()];
+			for (int i = 0; i < conditions.length; i++) {
+				conditions[i] = new CompiledExpression(r.conditionExpressions.get(i), paramContext);
+			}
+			selectType = r.selectType;
+			String tag = null;
+			double value = Double.NaN;
+			Object sv = r.selectValueDef != null && (r.selectValueDef.startsWith(":") || r.selectValueDef.startsWith("$")) ?
+					r.selectValueDef : r.selectValue;
+			if (sv instanceof String && ((String) sv).startsWith("$")) {
+				tag = ((String) sv).substring(1);
+			} else if (sv instanceof String && ((String) sv).startsWith(":")) {
+				String p = ((String) sv).substring(1);
+				if (paramContext != null && paramContext.vars.containsKey(p)) {
+					value = toDouble(parseValue(paramContext.vars.get(p), selectType));
+				}
+			} else {
+				value = toDouble(sv);
+			}
+			selectTag = tag;
+			selectValue = value;
+			selectExpression = r.selectExpression == null ? null : new CompiledExpression(r.selectExpression, paramContext);
+		}
+
+		boolean matches(int[] ids, int len, double incline) {
+			for (int t : types) {
+				if (!contains(ids, len, t)) {
+					return false;
+				}
+			}
+			for (int t : notTypes) {
+				if (contains(ids, len, t)) {
+					return false;
+				}
+			}
+			for (String t : tags) {
+				if (findTagRule(t, ids, len) < 0) {
+					return false;
+				}
+			}
+			for (String t : notTags) {
+				if (findTagRule(t, ids, len) >= 0) {
+					return false;
+				}
+			}
+			for (CompiledExpression e : conditions) {
+				if (!e.matches(ids, len, incline)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// returns NaN if matched rule has no value
+		double select(int[] ids, int len, double incline) {
+			if (selectExpression != null) {
+				return selectExpression.select(ids, len, incline);
+			} else if (selectTag != null) {
+				return tagValue(selectTag, selectType, ids, len);
+			}
+			return selectValue;
+		}
+
+		// RouteAttributeEvalRule returns select value "$tag" as is if object has no such tag,
+		// so evaluation stops with default value instead of checking next rules
+		boolean stopsWithoutValue(int[] ids, int len) {
+			return selectExpression == null && selectTag != null && findTagRule(selectTag, ids, len) < 0;
+		}
+	}
+
+	private class CompiledExpression {
+		private static final int CONSTANT = 0;
+		private static final int TAG = 1;
+		private static final int INCLINE = 2;
+
+		private final int expressionType;
+		private final String valueType;
+		private final int[] kinds = new int[2];
+		private final double[] constants = new double[2];
+		private final String[] tags = new String[2];
+
+		CompiledExpression(RouteAttributeExpression e, ParameterContext paramContext) {
+			expressionType = e.expressionType;
+			valueType = e.valueType;
+			for (int i = 0; i < 2; i++) {
+				String value = e.values[i];
+				constants[i] = Double.NaN;
+				if (e.cacheValues[i] != null) {
+					constants[i] = e.cacheValues[i].doubleValue();
+				} else if (value != null && value.startsWith("$")) {
+					kinds[i] = TAG;
+					tags[i] = value.substring(1);
+				} else if (value != null && value.equals(":incline")) {
+					kinds[i] = INCLINE;
+				} else if (value != null && value.startsWith(":")) {
+					String p = value.substring(1);
+					if (paramContext != null && paramContext.vars.containsKey(p)) {
+						constants[i] = toDouble(parseValue(paramContext.vars.get(p), valueType));
+					}
+				}
+			}
+		}
+
+		private double value(int i, int[] ids, int len, double incline) {
+			if (kinds[i] == TAG) {
+				return tagValue(tags[i], valueType, ids, len);
+			} else if (kinds[i] == INCLINE) {
+				return incline;
+			}
+			return constants[i];
+		}
+
+		boolean matches(int[] ids, int len, double incline) {
+			double f1 = value(0, ids, len, incline);
+			double f2 = value(1, ids, len, incline);
+			if (Double.isNaN(f1) || Double.isNaN(f2)) {
+				return false;
+			}
+			if (expressionType == RouteAttributeExpression.LESS_EXPRESSION) {
+				return f1 <= f2;
+			} else if (expressionType == RouteAttributeExpression.GREAT_EXPRESSION) {
+				return f1 >= f2;
+			} else if (expressionType == RouteAttributeExpression.EQUAL_EXPRESSION) {
+				return f1 == f2;
+			}
+			return false;
+		}
+
+		double select(int[] ids, int len, double incline) {
+			double f1 = value(0, ids, len, incline);
+			double f2 = value(1, ids, len, incline);
+			if (!Double.isNaN(f1) && !Double.isNaN(f2)) {
+				if (expressionType == RouteAttributeExpression.MIN_EXPRESSION) {
+					return Math.min(f1, f2);
+				} else if (expressionType == RouteAttributeExpression.MAX_EXPRESSION) {
+					return Math.max(f1, f2);
+				}
+			}
+			return Double.NaN;
+		}
+	}
+
+	private static int[] toArray(BitSet b) {
+		int[] r = new int[b.cardinality()];
+		int k = 0;
+		for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i + 1)) {
+			r[k++] = i;
+		}
+		return r;
+	}
+
+	private static double toDouble(Object o) {
+		return o instanceof Number ? ((Number) o).doubleValue() : Double.NaN;
+	}
+
+	private static boolean contains(int[] ids, int len, int id) {
+		for (int k = 0; k < len; k++) {
+			if (ids[k] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// lowest universal rule id of tag (as BitSet lookup) or -1
+	private int findTagRule(String tag, int[] ids, int len) {
+		BitSet mask = tagRuleMask.get(tag);
+		int res = -1;
+		if (mask != null) {
+			for (int k = 0; k < len; k++) {
+				if (mask.get(ids[k]) && (res < 0 || ids[k] < res)) {
+					res = ids[k];
+				}
+			}
+		}
+		return res;
+	}
+
+	private double tagValue(String tag, String valueType, int[] ids, int len) {
+		int id = findTagRule(tag, ids, len);
+		if (id < 0) {
+			return Double.NaN;
+		}
+		return toDouble(parseValueFromTag(id, valueType));
+	}
 	
-	public void clearCaches() {
-		if (evalCache != null) {
-			for (int i = 0; i < evalCache.length; i++) {
-				evalCache[i].clear();
+	public long getCacheHits() {
+		return cacheStats.hits();
+	}
+
+	public long getCacheMisses() {
+		return cacheStats.misses();
+	}
+
+	public int getCacheSize() {
+		int sz = 0;
+		for (RouteRegionTables tables : regionTables.values()) {
+			sz += tables.size();
+		}
+		return sz;
+	}
+
+	public int getCacheResets() {
+		int r = 0;
+		for (RouteRegionTables tables : regionTables.values()) {
+			r += tables.getResets();
+		}
+		return r;
+	}
+
+	// plain hit / miss counters of every thread (no synchronization on hot path), summed on read
+	private static class EvalCacheStats {
+		private final List<long[]> counters = new CopyOnWriteArrayList<long[]>();
+		private final ThreadLocal<long[]> threadCounters = new ThreadLocal<long[]>() {
+			@Override
+			protected long[] initialValue() {
+				long[] c = new long[2];
+				counters.add(c);
+				return c;
 			}
+		};
+
+		void count(boolean hit) {
+			threadCounters.get()[hit ? 0 : 1]++;
+		}
+
+		long hits() {
+			return sum(0);
+		}
+
+		long misses() {
+			return sum(1);
+		}
+
+		// approximate while routing threads are running
+		private long sum(int ind) {
+			long s = 0;
+			for (long[] c : counters) {
+				s += c[ind];
+			}
+			return s;
+		}
+	}
+
+	public void clearCaches() {
+		for (RouteRegionTables tables : regionTables.values()) {
+			tables.clear();
 		}
 	}
 
@@ -0,0 +1,306 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.PlatformUtil;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxApproximationState;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+
+/**
+ * Java approximation of long track split into chunks of CHUNK_APPROXIMATION_DISTANCE which are approximated
+ * concurrently (first chunk in calling thread), each with own routing context (and files) sharing loaded tiles.
+ * <p>
+ * Every chunk runs the same steps as sequential approximation ({@link RoutePlannerFrontEnd#approximateGpxSegment})
+ * and continues into next chunk by few maxStepApproximation. Approximation state is recorded before each step:
+ * if previous chunk comes to the same state at the same point as next chunk, the rest of previous chunk would be
+ * calculated exactly as next chunk did, so next chunk result is taken from that point. Otherwise previous chunk is
+ * continued sequentially till it converges with next chunk (or next chunk is not used at all).
+ * <p>
+ * Chunk contexts have no route segment visitor, so segments taken from chunks approximated by executor
+ * are not passed to {@link BinaryRoutePlanner.RouteSegmentVisitor#visitApproximatedSegments}.
+ */
+class GpxChunkApproximation {
+
+	private static final Log log = PlatformUtil.getLog(GpxChunkApproximation.class);
+
+	// chunk is approximated by that many maxStepApproximation after start of next chunk
+	private static final int OVERLAP_STEPS = 3;
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private final GpxRouteApproximation gctx;
+	private final List<GpxPoint> gpxPoints;
+	private volatile boolean cancelled;
+
+	// stats
+	private int syncChunks;
+	private int sequentialSteps;
+
+	GpxChunkApproximation(RoutePlannerFrontEnd frontEnd, GpxRouteApproximation gctx, List<GpxPoint> gpxPoints) {
+		this.frontEnd = frontEnd;
+		this.gctx = gctx;
+		this.gpxPoints = gpxPoints;
+	}
+
+	private static class EntryState {
+		final boolean prevRouteFound;
+		// index, road id, segment, precise point and road length of initialized points ahead
+		final TLongArrayList points = new TLongArrayList();
+
+		EntryState(boolean prevRouteFound) {
+			this.prevRouteFound = prevRouteFound;
+		}
+
+		void add(int ind, RouteSegmentPoint pnt) {
+			points.add(ind);
+			points.add(pnt.getRoad().getId());
+			points.add(((long) pnt.getSegmentStart() << 32) | (pnt.getSegmentEnd() & 0xffffffffL));
+			points.add(((long) pnt.preciseX << 32) | (pnt.preciseY & 0xffffffffL));
+			points.add(pnt.getRoad().getPointsLength());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof EntryState)) {
+				return false;
+			}
+			EntryState o = (EntryState) obj;
+			return prevRouteFound == o.prevRouteFound && points.equals(o.points);
+		}
+
+		@Override
+		public int hashCode() {
+			return points.hashCode() * 31 + (prevRouteFound ? 1 : 0);
+		}
+	}
+
+	// full list of track points, point is copied on first access so chunks don't modify original points
+	private static class GpxPointsCopy extends AbstractList<GpxPoint> {
+		private final List<GpxPoint> points;
+		private final TIntObjectHashMap<GpxPoint> copies = new TIntObjectHashMap<GpxPoint>();
+
+		GpxPointsCopy(List<GpxPoint> points) {
+			this.points = points;
+		}
+
+		@Override
+		public GpxPoint get(int index) {
+			GpxPoint p = copies.get(index);
+			if (p == null) {
+				p = new GpxPoint(points.get(index));
+				copies.put(index, p);
+			}
+			return p;
+		}
+
+		@Override
+		public int size() {
+			return points.size();
+		}
+	}
+
+	private static class ChunkState extends GpxApproximationState {
+		// null if chunk modifies original points
+		final GpxPointsCopy copy;
+		final TIntArrayList entries = new TIntArrayList();
+		final TIntObjectHashMap<EntryState> entryStates = new TIntObjectHashMap<EntryState>();
+
+		ChunkState(GpxRouteApproximation gctx, List<GpxPoint> points, GpxPointsCopy copy, int start) {
+			super(gctx, points, points.get(start));
+			this.copy = copy;
+		}
+
+		GpxPoint peek(int ind) {
+			return copy == null ? points.get(ind) : copy.copies.get(ind);
+		}
+
+		int getLastEntry() {
+			return entries.isEmpty() ? -1 : entries.get(entries.size() - 1);
+		}
+	}
+
+	void approximate(ExecutorService executor) throws IOException, InterruptedException {
+		double chunkDist = gctx.CHUNK_APPROXIMATION_DISTANCE;
+		final double overlap = OVERLAP_STEPS * gctx.ctx.config.maxStepApproximation;
+		final TIntArrayList starts = new TIntArrayList();
+		starts.add(0);
+		for (int i = 0; i < gpxPoints.size(); i++) {
+			if (gpxPoints.get(i).cumDist >= starts.size() * chunkDist) {
+				starts.add(i);
+			}
+		}
+		final RoutingTileCache tileCache = gctx.ctx.config.tileCache != null ? gctx.ctx.config.tileCache
+				: new RoutingTileCache();
+		List<Future<ChunkState>> futures = new ArrayList<Future<ChunkState>>();
+		List<ChunkState> chunks = new ArrayList<ChunkState>();
+		boolean finished = false;
+		try {
+			for (int i = 1; i < starts.size(); i++) {
+				final int start = starts.get(i);
+				final double endDist = i + 1 < starts.size() ? gpxPoints.get(starts.get(i + 1)).cumDist + overlap
+						: Double.POSITIVE_INFINITY;
+				futures.add(executor.submit(new Callable<ChunkState>() {
+
+					@Override
+					public ChunkState call() throws Exception {
+						return approximateChunk(start, endDist, tileCache);
+					}
+				}));
+			}
+			ChunkState first = new ChunkState(gctx, gpxPoints, null, 0);
+			approximateChunk(first, starts.size() > 1 ? gpxPoints.get(starts.get(1)).cumDist + overlap
+					: Double.POSITIVE_INFINITY);
+			chunks.add(first);
+			for (Future<ChunkState> f : futures) {
+				ChunkState c = getChunk(f);
+				gctx.routeCalculations += c.gctx.routeCalculations;
+				gctx.routePointsSearched += c.gctx.routePointsSearched;
+				gctx.routeDistCalculations += c.gctx.routeDistCalculations;
+				chunks.add(c);
+			}
+			finished = true;
+		} finally {
+			if (!finished) {
+				cancelled = true;
+				for (Future<ChunkState> f : futures) {
+					f.cancel(false);
+				}
+			}
+		}
+		stitchChunks(chunks);
+		log.info(String.format("GPX approximation by %d chunks: %d synchronized, %d steps recalculated",
+				chunks.size(), syncChunks, sequentialSteps));
+	}
+
+	private ChunkState getChunk(Future<ChunkState> f) throws IOException, InterruptedException {
+		try {
+			return f.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private ChunkState approximateChunk(int start, double endDist, RoutingTileCache tileCache)
+			throws IOException, InterruptedException {
+		RoutingContext ctx = gctx.ctx.copyForConcurrentSearch();
+		try {
+			ctx.config.tileCache = tileCache;
+			GpxPointsCopy copy = new GpxPointsCopy(gpxPoints);
+			ChunkState chunk = new ChunkState(new GpxRouteApproximation(ctx), copy, copy, start);
+			approximateChunk(chunk, endDist);
+			return chunk;
+		} finally {
+			ctx.closeConcurrentCopy();
+		}
+	}
+
+	private void approximateChunk(ChunkState chunk, double endDist) throws IOException, InterruptedException {
+		while (chunk.start != null && chunk.start.cumDist <= endDist && !isCancelled()) {
+			approximateStep(chunk);
+		}
+	}
+
+	private void approximateStep(ChunkState chunk) throws IOException, InterruptedException {
+		chunk.entries.add(chunk.start.ind);
+		chunk.entryStates.put(chunk.start.ind, getEntryState(chunk));
+		frontEnd.approximateGpxSegment(chunk);
+	}
+
+	private EntryState getEntryState(ChunkState chunk) {
+		EntryState state = new EntryState(chunk.prev != null);
+		// points ahead could be initialized by previous steps within maxStepApproximation
+		double maxDist = chunk.start.cumDist + gctx.ctx.config.maxStepApproximation;
+		for (int i = chunk.start.ind; i < gpxPoints.size(); i++) {
+			GpxPoint p = chunk.peek(i);
+			if (p != null && p.pnt != null) {
+				state.add(i, p.pnt);
+			}
+			if (gpxPoints.get(i).cumDist > maxDist) {
+				break;
+			}
+		}
+		return state;
+	}
+
+	private int findSyncPoint(ChunkState chunk, ChunkState next, int fromEntry) {
+		for (int k = fromEntry; k < chunk.entries.size(); k++) {
+			int ind = chunk.entries.get(k);
+			EntryState state = next.entryStates.get(ind);
+			if (state != null && state.equals(chunk.entryStates.get(ind))) {
+				return ind;
+			}
+		}
+		return -1;
+	}
+
+	private void stitchChunks(List<ChunkState> chunks) throws IOException, InterruptedException {
+		ChunkState current = chunks.get(0);
+		int from = 0;
+		for (int i = 1; i < chunks.size() && current.start != null && !isCancelled(); i++) {
+			ChunkState next = chunks.get(i);
+			int sync = findSyncPoint(current, next, 0);
+			// chunk context is closed, so continue with main context
+			current.gctx = gctx;
+			while (sync < 0 && current.start != null && current.start.ind <= next.getLastEntry() && !isCancelled()) {
+				int entry = current.entries.size();
+				approximateStep(current);
+				sequentialSteps++;
+				sync = findSyncPoint(current, next, entry);
+			}
+			if (sync >= 0) {
+				syncChunks++;
+				commitChunk(current, from, sync);
+				current = next;
+				from = sync;
+			}
+		}
+		current.gctx = gctx;
+		while (current.start != null && !isCancelled()) {
+			frontEnd.approximateGpxSegment(current);
+			sequentialSteps++;
+		}
+		commitChunk(current, from, gpxPoints.size());
+	}
+
+	private void commitChunk(ChunkState chunk, int from, int to) {
+		if (chunk.copy == null) {
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			GpxPoint p = gpxPoints.get(i);
+			GpxPoint c = chunk.copy.copies.get(i);
+			p.pnt = c == null ? null : c.pnt;
+			p.routeToTarget = c == null ? null : c.routeToTarget;
+			p.stepBackRoute = c == null ? null : c.stepBackRoute;
+			p.targetInd = c == null ? -1 : c.targetInd;
+			p.straightLine = c != null && c.straightLine;
+		}
+	}
+
+	private boolean isCancelled() {
+		return cancelled || gctx.ctx.calculationProgress.isCancelled;
+	}
+}
@@ -0,0 +1,449 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.util.MapUtils;
+
+/**
+ * Map matching of track with hidden Markov model: candidates of track point are nearest roads
+ * ({@link RoutePlannerFrontEnd#findRouteSegment}), probability of candidate depends on distance to track point and
+ * probability of transition between candidates of consecutive points depends on difference of route and straight
+ * distances. Routes between candidates are found by short road graph search bounded by distance and the most
+ * probable sequence of candidates is decoded with Viterbi algorithm.
+ * <p>
+ * Result is stored in track points as by sequential approximation (routeToTarget, targetInd), parts of track
+ * without candidates or without routes between them are left as straight lines.
+ */
+class GpxHmmApproximation {
+
+	private static final Log log = PlatformUtil.getLog(GpxHmmApproximation.class);
+
+	// minimal distance between matched track points (denser points are skipped)
+	private static final double SAMPLE_DISTANCE = 30;
+	private static final int MAX_CANDIDATES = 8;
+	// standard deviation of gps error
+	private static final double SIGMA = 10;
+	// transition which route is longer (shorter) than straight line by BETA is e times less probable
+	private static final double BETA = 5;
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private final GpxRouteApproximation gctx;
+	private final List<GpxPoint> gpxPoints;
+
+	GpxHmmApproximation(RoutePlannerFrontEnd frontEnd, GpxRouteApproximation gctx, List<GpxPoint> gpxPoints) {
+		this.frontEnd = frontEnd;
+		this.gctx = gctx;
+		this.gpxPoints = gpxPoints;
+	}
+
+	private static class Candidate {
+		final RouteSegmentPoint pnt;
+		final double emission;
+		double score = Double.NEGATIVE_INFINITY;
+		int prev = -1;
+
+		Candidate(RouteSegmentPoint pnt, double dist) {
+			this.pnt = pnt;
+			this.emission = -0.5 * (dist / SIGMA) * (dist / SIGMA);
+		}
+	}
+
+	private static class Observation {
+		final GpxPoint point;
+		final List<Candidate> candidates;
+		// start of matched part of track (no transition from previous observation)
+		boolean first;
+		Candidate matched;
+
+		Observation(GpxPoint point, List<Candidate> candidates) {
+			this.point = point;
+			this.candidates = candidates;
+		}
+	}
+
+	// move along road from point to point
+	private static class Edge {
+		final RouteDataObject road;
+		final int from;
+		final int to;
+		final double dist;
+
+		Edge(RouteDataObject road, int from, int to, double dist) {
+			this.road = road;
+			this.from = from;
+			this.to = to;
+			this.dist = dist;
+		}
+	}
+
+	private static class TargetEdge extends Edge {
+		final int target;
+
+		TargetEdge(int target, RouteDataObject road, int from, int to, double dist) {
+			super(road, from, to, dist);
+			this.target = target;
+		}
+	}
+
+	private static class SearchNode {
+		final long key;
+		final int x31;
+		final int y31;
+		final double dist;
+		final SearchNode parent;
+		final Edge edge;
+
+		SearchNode(long key, int x31, int y31, double dist, SearchNode parent, Edge edge) {
+			this.key = key;
+			this.x31 = x31;
+			this.y31 = y31;
+			this.dist = dist;
+			this.parent = parent;
+			this.edge = edge;
+		}
+	}
+
+	// distances and last nodes of routes to targets
+	private static class SearchResult {
+		final double[] dist;
+		final SearchNode[] nodes;
+		final Edge[] edges;
+
+		SearchResult(int targets) {
+			dist = new double[targets];
+			nodes = new SearchNode[targets];
+			edges = new Edge[targets];
+			for (int i = 0; i < targets; i++) {
+				dist[i] = Double.POSITIVE_INFINITY;
+			}
+		}
+
+		void update(int target, double d, SearchNode node, Edge edge) {
+			if (d < dist[target]) {
+				dist[target] = d;
+				nodes[target] = node;
+				edges[target] = edge;
+			}
+		}
+	}
+
+	private static final Comparator<SearchNode> NODE_COMPARATOR = new Comparator<SearchNode>() {
+
+		@Override
+		public int compare(SearchNode o1, SearchNode o2) {
+			return Double.compare(o1.dist, o2.dist);
+		}
+	};
+
+	void approximate() throws IOException {
+		List<Observation> observations = new ArrayList<Observation>();
+		Observation prev = null;
+		for (GpxPoint p : gpxPoints) {
+			if (gctx.ctx.calculationProgress.isCancelled) {
+				return;
+			}
+			boolean last = p.ind == gpxPoints.size() - 1;
+			if (prev != null && !last && p.cumDist - prev.point.cumDist < SAMPLE_DISTANCE) {
+				continue;
+			}
+			Observation o = new Observation(p, findCandidates(p));
+			if (o.candidates.isEmpty()) {
+				prev = null;
+				continue;
+			}
+			if (prev == null || !calculateTransitions(prev, o)) {
+				o.first = true;
+				for (Candidate c : o.candidates) {
+					c.score = c.emission;
+				}
+			}
+			observations.add(o);
+			prev = o;
+			gctx.ctx.calculationProgress.approximatedDistance = (float) p.cumDist;
+		}
+		int end = observations.size() - 1;
+		while (end >= 0) {
+			int start = decode(observations, end);
+			setRoutes(observations.subList(start, end + 1));
+			end = start - 1;
+		}
+	}
+
+	private List<Candidate> findCandidates(GpxPoint p) throws IOException {
+		gctx.routePointsSearched++;
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		RouteSegmentPoint ps = frontEnd.findRouteSegment(p.loc.getLatitude(), p.loc.getLongitude(), gctx.ctx, null, false);
+		if (ps == null) {
+			return candidates;
+		}
+		List<RouteSegmentPoint> points = new ArrayList<RouteSegmentPoint>();
+		points.add(ps);
+		if (ps.others != null) {
+			points.addAll(ps.others);
+		}
+		for (RouteSegmentPoint pnt : points) {
+			pnt.others = null;
+			double dist = MapUtils.getDistance(pnt.getPreciseLatLon(), p.loc);
+			if (dist <= gctx.ctx.config.minPointApproximation) {
+				candidates.add(new Candidate(pnt, dist));
+			}
+		}
+		Collections.sort(candidates, new Comparator<Candidate>() {
+
+			@Override
+			public int compare(Candidate o1, Candidate o2) {
+				return -Double.compare(o1.emission, o2.emission);
+			}
+		});
+		return candidates.size() > MAX_CANDIDATES ? new ArrayList<Candidate>(candidates.subList(0, MAX_CANDIDATES))
+				: candidates;
+	}
+
+	private double getMaxRouteDist(Observation from, Observation to) {
+		double straight = to.point.cumDist - from.point.cumDist;
+		return 2 * straight + 2 * gctx.ctx.config.minPointApproximation;
+	}
+
+	// returns false if no candidate is reachable
+	private boolean calculateTransitions(Observation from, Observation to) {
+		double straight = MapUtils.getDistance(from.point.loc, to.point.loc);
+		double maxDist = getMaxRouteDist(from, to);
+		gctx.routeDistCalculations += straight;
+		boolean reached = false;
+		for (int i = 0; i < from.candidates.size(); i++) {
+			Candidate c = from.candidates.get(i);
+			if (c.score == Double.NEGATIVE_INFINITY) {
+				continue;
+			}
+			SearchResult res = search(c.pnt, to.candidates, maxDist);
+			for (int t = 0; t < to.candidates.size(); t++) {
+				if (res.dist[t] <= maxDist) {
+					Candidate target = to.candidates.get(t);
+					double score = c.score - Math.abs(res.dist[t] - straight) / BETA + target.emission;
+					if (score > target.score) {
+						target.score = score;
+						target.prev = i;
+						reached = true;
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	// chooses candidates from end to the first observation of matched part, returns index of that observation
+	private int decode(List<Observation> observations, int end) {
+		Observation o = observations.get(end);
+		Candidate best = null;
+		for (Candidate c : o.candidates) {
+			if (best == null || c.score > best.score) {
+				best = c;
+			}
+		}
+		int ind = end;
+		o.matched = best;
+		while (!o.first) {
+			int prev = o.matched.prev;
+			o = observations.get(--ind);
+			o.matched = o.candidates.get(prev);
+		}
+		return ind;
+	}
+
+	private void setRoutes(List<Observation> part) {
+		GpxPoint start = part.get(0).point;
+		GpxPoint prevStart = null;
+		start.pnt = part.get(0).matched.pnt;
+		List<RouteSegmentResult> route = new ArrayList<RouteSegmentResult>();
+		for (int i = 1; i < part.size(); i++) {
+			Observation from = part.get(i - 1);
+			Observation to = part.get(i);
+			to.point.pnt = to.matched.pnt;
+			route.addAll(findRoute(from.matched.pnt, to.matched.pnt, getMaxRouteDist(from, to)));
+			if (!route.isEmpty()) {
+				// all points between start and target are matched by route
+				start.routeToTarget = route;
+				start.targetInd = to.point.ind;
+				if (gctx.ctx.getVisitor() != null) {
+					gctx.ctx.getVisitor().visitApproximatedSegments(route, start, to.point);
+				}
+				prevStart = start;
+				start = to.point;
+				route = new ArrayList<RouteSegmentResult>();
+			}
+		}
+		GpxPoint end = part.get(part.size() - 1).point;
+		if (prevStart != null && start != end) {
+			// the rest is matched to the same point
+			prevStart.targetInd = end.ind;
+		}
+	}
+
+	private List<RouteSegmentResult> findRoute(RouteSegmentPoint from, RouteSegmentPoint to, double maxDist) {
+		if (from.getRoad().getId() == to.getRoad().getId() && from.preciseX == to.preciseX
+				&& from.preciseY == to.preciseY) {
+			// matched to the same point
+			return Collections.emptyList();
+		}
+		List<Candidate> targets = Collections.singletonList(new Candidate(to, 0));
+		SearchResult res = search(from, targets, maxDist);
+		List<Edge> edges = new ArrayList<Edge>();
+		if (res.edges[0] == null) {
+			log.warn("Route is not found " + from + " -> " + to);
+			return Collections.emptyList();
+		}
+		edges.add(res.edges[0]);
+		for (SearchNode n = res.nodes[0]; n != null; n = n.parent) {
+			edges.add(n.edge);
+		}
+		Collections.reverse(edges);
+		List<RouteSegmentResult> route = new ArrayList<RouteSegmentResult>();
+		Edge last = null;
+		int startInd = 0;
+		for (Edge e : edges) {
+			if (last != null && (last.road.getId() != e.road.getId() || last.to != e.from
+					|| (last.to > last.from) != (e.to > e.from))) {
+				route.add(new RouteSegmentResult(last.road, startInd, last.to));
+				last = null;
+			}
+			if (last == null) {
+				startInd = e.from;
+			}
+			last = e;
+		}
+		if (last != null && startInd != last.to) {
+			route.add(new RouteSegmentResult(last.road, startInd, last.to));
+		}
+		// first and last results contain whole segments of candidates, cut them as routes of
+		// consecutive observations start and end at the same point
+		frontEnd.makeStartEndPointsPrecise(route, from.getPreciseLatLon(), to.getPreciseLatLon());
+		return route;
+	}
+
+	private SearchResult search(RouteSegmentPoint from, List<Candidate> targets, double maxDist) {
+		gctx.routeCalculations++;
+		SearchResult res = new SearchResult(targets.size());
+		TLongObjectHashMap<List<TargetEdge>> targetEdges = new TLongObjectHashMap<List<TargetEdge>>();
+		for (int t = 0; t < targets.size(); t++) {
+			RouteSegmentPoint to = targets.get(t).pnt;
+			RouteDataObject road = to.getRoad();
+			int s = to.getSegmentStart();
+			int e = to.getSegmentEnd();
+			if (road.getId() == from.getRoad().getId() && Math.min(s, e) == Math.min(from.getSegmentStart(), from.getSegmentEnd())) {
+				// same segment
+				int lo = Math.min(s, e);
+				int hi = Math.max(s, e);
+				double distFrom = MapUtils.squareRootDist31(road.getPoint31XTile(lo), road.getPoint31YTile(lo), from.preciseX, from.preciseY);
+				double distTo = MapUtils.squareRootDist31(road.getPoint31XTile(lo), road.getPoint31YTile(lo), to.preciseX, to.preciseY);
+				boolean positive = distTo >= distFrom;
+				if (isAllowed(road, positive ? lo : hi, positive ? hi : lo)) {
+					res.update(t, Math.abs(distTo - distFrom), null, new Edge(road, positive ? lo : hi, positive ? hi : lo, 0));
+				}
+			}
+			addTargetEdge(targetEdges, t, to, s, e);
+			addTargetEdge(targetEdges, t, to, e, s);
+		}
+		PriorityQueue<SearchNode> queue = new PriorityQueue<SearchNode>(64, NODE_COMPARATOR);
+		TLongObjectHashMap<SearchNode> visited = new TLongObjectHashMap<SearchNode>();
+		RouteDataObject road = from.getRoad();
+		addStartNode(queue, from, road, from.getSegmentStart(), from.getSegmentEnd());
+		addStartNode(queue, from, road, from.getSegmentEnd(), from.getSegmentStart());
+		while (!queue.isEmpty()) {
+			SearchNode n = queue.poll();
+			if (n.dist > maxDist || isFinished(res, n.dist)) {
+				break;
+			}
+			if (visited.containsKey(n.key)) {
+				continue;
+			}
+			visited.put(n.key, n);
+			List<TargetEdge> tes = targetEdges.get(n.key);
+			if (tes != null) {
+				for (TargetEdge te : tes) {
+					res.update(te.target, n.dist + te.dist, n, te);
+				}
+			}
+			RouteSegment segment = gctx.ctx.loadRouteSegment(n.x31, n.y31, gctx.ctx.config.memoryLimitation);
+			while (segment != null) {
+				int ind = segment.getSegmentStart();
+				addNode(queue, visited, n, segment.getRoad(), ind, ind + 1);
+				addNode(queue, visited, n, segment.getRoad(), ind, ind - 1);
+				segment = segment.getNext();
+			}
+		}
+		return res;
+	}
+
+	private boolean isFinished(SearchResult res, double dist) {
+		for (double d : res.dist) {
+			if (d > dist) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void addTargetEdge(TLongObjectHashMap<List<TargetEdge>> targetEdges, int target, RouteSegmentPoint to,
+			int from, int next) {
+		RouteDataObject road = to.getRoad();
+		if (!isAllowed(road, from, next)) {
+			return;
+		}
+		int x = road.getPoint31XTile(from);
+		int y = road.getPoint31YTile(from);
+		long key = key(x, y);
+		List<TargetEdge> list = targetEdges.get(key);
+		if (list == null) {
+			list = new ArrayList<TargetEdge>();
+			targetEdges.put(key, list);
+		}
+		list.add(new TargetEdge(target, road, from, next, MapUtils.squareRootDist31(x, y, to.preciseX, to.preciseY)));
+	}
+
+	private void addStartNode(PriorityQueue<SearchNode> queue, RouteSegmentPoint from, RouteDataObject road,
+			int prev, int next) {
+		if (isAllowed(road, prev, next)) {
+			int x = road.getPoint31XTile(next);
+			int y = road.getPoint31YTile(next);
+			double dist = MapUtils.squareRootDist31(from.preciseX, from.preciseY, x, y);
+			queue.add(new SearchNode(key(x, y), x, y, dist, null, new Edge(road, prev, next, dist)));
+		}
+	}
+
+	private void addNode(PriorityQueue<SearchNode> queue, TLongObjectHashMap<SearchNode> visited, SearchNode n,
+			RouteDataObject road, int ind, int next) {
+		if (next < 0 || next >= road.getPointsLength() || !isAllowed(road, ind, next)) {
+			return;
+		}
+		int x = road.getPoint31XTile(next);
+		int y = road.getPoint31YTile(next);
+		long key = key(x, y);
+		if (!visited.containsKey(key)) {
+			double dist = MapUtils.squareRootDist31(n.x31, n.y31, x, y);
+			queue.add(new SearchNode(key, x, y, n.dist + dist, n, new Edge(road, ind, next, dist)));
+		}
+	}
+
+	private boolean isAllowed(RouteDataObject road, int from, int to) {
+		int oneway = gctx.ctx.getRouter().isOneWay(road);
+		return oneway == 0 || (oneway > 0) == (to > from);
+	}
+
+	private static long key(int x31, int y31) {
+		return (((long) x31) << 31) + y31;
+	}
+}
@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -15,12 +16,15 @@ import java.util.TreeMap;
 import com.google.protobuf.CodedInputStream;
 
 import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TLongHashSet;
 import net.osmand.binary.BinaryHHRouteReaderAdapter.HHRouteRegion;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
 import net.osmand.data.DataTileManager;
 import net.osmand.data.LatLon;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
@@ -114,6 +118,38 @@ public class HHRouteDataStructure {
 			return this;
 		}
 		
+		// copy to be used by another thread (cached context is not copied)
+		public HHRoutingConfig copy() {
+			HHRoutingConfig c = new HHRoutingConfig();
+			c.STATS_VERBOSE_LEVEL = STATS_VERBOSE_LEVEL;
+			c.HEURISTIC_COEFFICIENT = HEURISTIC_COEFFICIENT;
+			c.DIJKSTRA_DIRECTION = DIJKSTRA_DIRECTION;
+			c.FULL_DIJKSTRA_NETWORK_RECALC = FULL_DIJKSTRA_NETWORK_RECALC;
+			c.MAX_START_END_REITERATIONS = MAX_START_END_REITERATIONS;
+			c.MAX_INC_COST_CF = MAX_INC_COST_CF;
+			c.MAX_TIME_REITERATION_MS = MAX_TIME_REITERATION_MS;
+			c.INITIAL_DIRECTION = INITIAL_DIRECTION;
+			c.ROUTE_LAST_MILE = ROUTE_LAST_MILE;
+			c.ROUTE_ALL_SEGMENTS = ROUTE_ALL_SEGMENTS;
+			c.ROUTE_ALL_ALT_SEGMENTS = ROUTE_ALL_ALT_SEGMENTS;
+			c.PRELOAD_SEGMENTS = PRELOAD_SEGMENTS;
+			c.CACHE_CALCULATION_CONTEXT = CACHE_CALCULATION_CONTEXT;
+			c.CALC_ALTERNATIVES = CALC_ALTERNATIVES;
+			c.USE_GC_MORE_OFTEN = USE_GC_MORE_OFTEN;
+			c.ALT_EXCLUDE_RAD_MULT = ALT_EXCLUDE_RAD_MULT;
+			c.ALT_EXCLUDE_RAD_MULT_IN = ALT_EXCLUDE_RAD_MULT_IN;
+			c.ALT_NON_UNIQUENESS = ALT_NON_UNIQUENESS;
+			c.MAX_COST = MAX_COST;
+			c.MAX_DEPTH = MAX_DEPTH;
+			c.MAX_SETTLE_POINTS = MAX_SETTLE_POINTS;
+			c.USE_CH = USE_CH;
+			c.USE_CH_SHORTCUTS = USE_CH_SHORTCUTS;
+			c.USE_MIDPOINT = USE_MIDPOINT;
+			c.MIDPOINT_ERROR = MIDPOINT_ERROR;
+			c.MIDPOINT_MAX_DEPTH = MIDPOINT_MAX_DEPTH;
+			return c;
+		}
+
 		public HHRoutingConfig calcAlternative() {
 			this.CALC_ALTERNATIVES = true;
 			return this;
@@ -167,6 +203,7 @@ public class HHRouteDataStructure {
 	
 	public static class HHRouteRegionPointsCtx<T extends NetworkDBPoint> {
 		final HHRoutingDB networkDB;
+		final HHRoutingGraphFile graph;
 		final BinaryMapIndexReader file;
 		final HHRouteRegion fileRegion;
 		public final short id;
@@ -178,6 +215,16 @@ public class HHRouteDataStructure {
 			this.fileRegion = null;
 			this.file = null;
 			this.networkDB = networkDB;
+			this.graph = null;
+		}
+		
+		public HHRouteRegionPointsCtx(short id, HHRoutingGraphFile graph) {
+			this.id = id;
+			this.fileRegion = null;
+			this.file = null;
+			this.networkDB = null;
+			this.graph = graph;
+			this.routingProfile = graph.getRoutingProfile();
 		}
 		
 		public HHRouteRegionPointsCtx(short id, HHRouteRegion fileRegion, BinaryMapIndexReader file, int routingProfile) {
@@ -185,6 +232,7 @@ public class HHRouteDataStructure {
 			this.fileRegion = fileRegion;
 			this.file = file;
 			this.networkDB = null;
+			this.graph = null;
 			if (routingProfile >= 0) {
 				this.routingProfile = routingProfile;
 			}
@@ -205,6 +253,23 @@ public class HHRouteDataStructure {
 		
 		
 	}
+
+	/**
+	 * Boundaries of detailed routing: points of graph file are checked in file (without creating points)
+	 */
+	static class GraphBoundaries extends TLongObjectHashMap<RouteSegment> {
+		private static final long serialVersionUID = 4385319874932706251L;
+		private final transient HHRoutingGraphFile graph;
+
+		GraphBoundaries(HHRoutingGraphFile graph) {
+			this.graph = graph;
+		}
+
+		@Override
+		public boolean containsKey(long key) {
+			return super.containsKey(key) || graph.getNodeByGeoId(key) >= 0;
+		}
+	}
 	
 	public static class HHRoutingContext<T extends NetworkDBPoint> {
 		// faster when roads are in 1 global network but doesn't make sense for isolated islands
@@ -223,6 +288,12 @@ public class HHRouteDataStructure {
 		DataTileManager<T> pointsRect = new DataTileManager<>(11); // 20km tile
 		TLongObjectHashMap<RouteSegment> boundaries;
 		boolean initialized = false;
+		// points of graph file are created on demand (null if all points are loaded)
+		Class<T> lazyPointClass;
+		// filter by routing parameters (null - no filter), applied to lazily created points as well
+		RouteRegion filterRegion;
+		RouteDataObject filterObject;
+		TIntArrayList filterTypes;
 		
 		// Route specific details
 		RoutingStats stats = new RoutingStats();
@@ -277,6 +348,96 @@ public class HHRouteDataStructure {
 			visitedRev.clear();
 		}
 
+		public boolean isSingleGraph() {
+			return regions.size() == 1 && regions.get(0).graph != null;
+		}
+
+		/**
+		 * @return point of region by node, lazily created points are created together with dual point
+		 */
+		public T getGraphPoint(HHRouteRegionPointsCtx<T> r, int node) {
+			T pnt = r.getPoint(node);
+			if (pnt == null && lazyPointClass != null) {
+				pnt = createGraphPoint(r, node);
+				int dual = r.graph.getDualNode(node);
+				if (dual >= 0) {
+					T dualPnt = r.getPoint(dual);
+					if (dualPnt == null) {
+						dualPnt = createGraphPoint(r, dual);
+					}
+					pnt.dualPoint = dualPnt;
+					dualPnt.dualPoint = pnt;
+				}
+			}
+			return pnt;
+		}
+
+		private T createGraphPoint(HHRouteRegionPointsCtx<T> r, int node) {
+			T pnt = r.graph.createPoint(r.id, node, lazyPointClass);
+			pnt.markSegmentsNotLoaded();
+			r.pntsByFileId.put(node, pnt);
+			pointsById.put(pnt.index, pnt);
+			pointsByGeo.put(pnt.getGeoPntId(), pnt);
+			filterPoint(pnt);
+			return pnt;
+		}
+
+		public T getPointByGeo(long geoPntId) {
+			T pnt = pointsByGeo.get(geoPntId);
+			if (pnt == null && lazyPointClass != null) {
+				HHRouteRegionPointsCtx<T> r = regions.get(0);
+				int node = r.graph.getNodeByGeoId(geoPntId);
+				if (node >= 0) {
+					pnt = getGraphPoint(r, node);
+				}
+			}
+			return pnt;
+		}
+
+		public List<T> getClosestPoints(double lat, double lon, double radius) {
+			if (lazyPointClass == null) {
+				return pointsRect.getClosestObjects(lat, lon, radius);
+			}
+			HHRouteRegionPointsCtx<T> r = regions.get(0);
+			TIntArrayList nodes = r.graph.getClosestNodes(lat, lon, radius);
+			List<T> res = new ArrayList<T>(nodes.size());
+			for (int i = 0; i < nodes.size(); i++) {
+				res.add(getGraphPoint(r, nodes.get(i)));
+			}
+			return res;
+		}
+
+		/**
+		 * @return true if point is excluded by routing parameters (filterRegion)
+		 */
+		public boolean filterPoint(T pnt) {
+			pnt.rtExclude = false;
+			if (filterRegion == null || pnt.tagValues == null) {
+				return false;
+			}
+			filterTypes.reset();
+			for (TagValuePair tp : pnt.tagValues) {
+				// reuse additionalAttribute to cache values
+				if (tp.additionalAttribute < 0) {
+					tp.additionalAttribute = filterRegion.searchRouteEncodingRule(tp.tag, tp.value);
+				}
+				if (tp.additionalAttribute < 0) {
+					tp.additionalAttribute = filterRegion.routeEncodingRules.size();
+					filterRegion.initRouteEncodingRule(tp.additionalAttribute, tp.tag, tp.value);
+				}
+				filterTypes.add(tp.additionalAttribute);
+			}
+			// here we always copy array but in C++ we could be more efficient
+			filterObject.types = filterTypes.toArray();
+			pnt.rtExclude = !rctx.getRouter().acceptLine(filterObject);
+			if (!pnt.rtExclude) {
+				// constant should be reduced if route is not found
+				pnt.rtExclude = rctx.getRouter().defineSpeedPriority(filterObject,
+						pnt.end > pnt.start) < HHRoutePlanner.EXCLUDE_PRIORITY_CONSTANT;
+			}
+			return pnt.rtExclude;
+		}
+
 		public List<T> getIncomingPoints(T point) {
 			return clusterInPoints.get(point.clusterId);
 		}
@@ -339,6 +500,9 @@ public class HHRouteDataStructure {
 				if (r.file != null) {
 					pnts = r.file.initHHPoints(r.fileRegion, r.id, pointClass);
 				}
+				if (r.graph != null) {
+					pnts = r.graph.loadNetworkPoints(r.id, pointClass);
+				}
 				if (pnts != null) {
 					TLongObjectIterator<T> it = pnts.iterator();
 					while (it.hasNext()) {
@@ -358,6 +522,8 @@ public class HHRouteDataStructure {
 			for (HHRouteRegionPointsCtx<T> r : regions) {
 				if (r.networkDB != null) {
 					loaded += r.networkDB.loadNetworkSegments(valueCollection, r.routingProfile);
+				} else if (r.graph != null) {
+					loaded += r.graph.loadNetworkSegments(this, r, valueCollection);
 				} else {
 					throw new UnsupportedOperationException();
 				}
@@ -388,6 +554,9 @@ public class HHRouteDataStructure {
 			if (r.file != null) {
 				return r.file.loadNetworkSegmentPoint(this, r, point, reverse);
 			}
+			if (r.graph != null) {
+				return r.graph.loadNetworkSegmentPoint(this, r, point, reverse);
+			}
 			throw new UnsupportedOperationException();
 		}
 
@@ -400,6 +569,8 @@ public class HHRouteDataStructure {
 				if (r.networkDB != null) {
 					b.append(String.format("db %s [%s]", r.networkDB.getRoutingProfile(),
 							r.networkDB.getRoutingProfiles().get(r.routingProfile)));
+				} else if (r.graph != null) {
+					b.append(r.graph.toString());
 				} else if (r.fileRegion != null) {
 					b.append(String.format("%s %s [%s]", r.file.getFile().getName(), r.fileRegion.profile,
 							r.fileRegion.profileParams.get(r.routingProfile)));
@@ -499,6 +670,50 @@ public class HHRouteDataStructure {
 		
 	}
 	
+	public static class HHRouteMatrix {
+		public final List<LatLon> sources;
+		public final List<LatLon> targets;
+		// time in seconds, POSITIVE_INFINITY if target is not reachable
+		public final double[][] costs;
+		// approximate distance in meters (network segments are measured straight)
+		public final double[][] distances;
+		public RoutingStats stats;
+		public String error;
+		HHRoutePlanner<? extends NetworkDBPoint> planner;
+		HHRoutingConfig routeConfig;
+
+		public HHRouteMatrix(List<LatLon> sources, List<LatLon> targets) {
+			this.sources = sources;
+			this.targets = targets;
+			costs = new double[sources.size()][targets.size()];
+			distances = new double[sources.size()][targets.size()];
+			for (int i = 0; i < sources.size(); i++) {
+				Arrays.fill(costs[i], Double.POSITIVE_INFINITY);
+				Arrays.fill(distances[i], Double.POSITIVE_INFINITY);
+			}
+		}
+
+		public boolean isReachable(int source, int target) {
+			return costs[source][target] != Double.POSITIVE_INFINITY;
+		}
+
+		public double getCost(int source, int target) {
+			return costs[source][target];
+		}
+
+		public double getDistance(int source, int target) {
+			return distances[source][target];
+		}
+
+		// lazy geometry for selected pair (hh context of matrix is reused)
+		public HHNetworkRouteRes getRoute(int source, int target) throws SQLException, IOException, InterruptedException {
+			if (planner == null) {
+				return new HHNetworkRouteRes(error == null ? "Matrix is not calculated" : error);
+			}
+			return planner.runRouting(sources.get(source), targets.get(target), routeConfig);
+		}
+	}
+
 	public static class HHNetworkSegmentRes {
 		public NetworkDBSegment segment;
 		public List<RouteSegmentResult> list = null;
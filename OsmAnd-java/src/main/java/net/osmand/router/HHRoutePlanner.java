@@ -17,6 +17,7 @@ import java.util.Set;
 import java.util.TreeMap;
 
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
@@ -38,6 +39,8 @@ import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
 import net.osmand.router.GeneralRouter.RoutingParameter;
 import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
 import net.osmand.router.HHRouteDataStructure.HHNetworkSegmentRes;
+import net.osmand.router.HHRouteDataStructure.GraphBoundaries;
+import net.osmand.router.HHRouteDataStructure.HHRouteMatrix;
 import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
 import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
 import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
@@ -60,7 +63,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 	// if point is present without map with HH routing it will iterate each time with MAX_POINTS_CLUSTER_ROUTING
 	public static final double MAX_INC_COST_CORR = 10.0;
 	// this constant should dynamically change if route is not found
-	private static final double EXCLUDE_PRIORITY_CONSTANT = 0.2;
+	static final double EXCLUDE_PRIORITY_CONSTANT = 0.2;
 	
 	private static boolean ASSERT_COST_INCREASING = false;
 	private static boolean ASSERT_AND_CORRECT_DIST_SMALLER = true;
@@ -78,6 +81,10 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		return new HHRoutePlanner<Ts>(ctx, new HHRouteRegionPointsCtx<Ts>((short) 0, networkDB), cl);
 	}
 	
+	public static <Ts extends NetworkDBPoint> HHRoutePlanner<Ts> createGraph(RoutingContext ctx, HHRoutingGraphFile graph, Class<Ts> cl) {
+		return new HHRoutePlanner<Ts>(ctx, new HHRouteRegionPointsCtx<Ts>((short) 0, graph), cl);
+	}
+	
 	public static HHRoutePlanner<NetworkDBPoint> create(RoutingContext ctx) {
 		return new HHRoutePlanner<NetworkDBPoint>(ctx, null, NetworkDBPoint.class);
 	}
@@ -105,6 +112,13 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 				e.printStackTrace();
 			}
 		}
+		if (predefinedRegions != null && predefinedRegions.graph != null) {
+			try {
+				predefinedRegions.graph.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 		currentCtx.regions.clear();
 	}
 	
@@ -283,6 +297,314 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		return route;
 	}
 
+	/**
+	 * Many-to-many costs (N x M) over hh network without geometry (see HHRouteMatrix.getRoute for selected pairs).
+	 * Access to network is calculated once per source / target and one forward network search per source
+	 * settles all targets, instead of N x M runRouting calls.
+	 */
+	@SuppressWarnings("unchecked")
+	public HHRouteMatrix runMatrix(List<LatLon> sources, List<LatLon> targets, HHRoutingConfig config)
+			throws SQLException, IOException, InterruptedException {
+		long startTime = System.nanoTime();
+		HHRouteMatrix matrix = new HHRouteMatrix(sources, targets);
+		if (sources.isEmpty() || targets.isEmpty()) {
+			return matrix;
+		}
+		RouteCalculationProgress progress = currentCtx.rctx.calculationProgress;
+		if (config != null && config.cacheCtx != null && config.cacheCtx.rctx == currentCtx.rctx) {
+			currentCtx = (HHRoutingContext<T>) config.cacheCtx;
+		}
+		HHRoutingConfig routeConfig = prepareDefaultRoutingConfig(config);
+		// one direction dijkstra to settle all targets
+		HHRoutingConfig c = routeConfig.copy();
+		c.HEURISTIC_COEFFICIENT = 0;
+		c.DIJKSTRA_DIRECTION = 1;
+		c.INITIAL_DIRECTION = null;
+		List<LatLon> all = new ArrayList<>(sources);
+		all.addAll(targets);
+		double top = -90, bottom = 90, left = 180, right = -180;
+		for (LatLon l : all) {
+			top = Math.max(top, l.getLatitude());
+			bottom = Math.min(bottom, l.getLatitude());
+			left = Math.min(left, l.getLongitude());
+			right = Math.max(right, l.getLongitude());
+		}
+		// files are selected by bbox corners
+		HHRoutingContext<T> hctx = initHCtx(c, new LatLon(top, left), new LatLon(bottom, right));
+		if (routeConfig.CACHE_CALCULATION_CONTEXT) {
+			routeConfig.cacheCtx = (HHRoutingContext<NetworkDBPoint>) hctx;
+		}
+		if (hctx == null) {
+			matrix.error = "Files for hh routing were not initialized. Matrix couldn't be calculated.";
+			return matrix;
+		}
+		matrix.planner = this;
+		matrix.routeConfig = routeConfig;
+		matrix.stats = hctx.stats;
+		filterPointsBasedOnConfiguration(hctx);
+		int SL = c.STATS_VERBOSE_LEVEL;
+
+		progress.hhIteration(HHIteration.START_END_POINT);
+		long time = System.nanoTime();
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RouteSegmentPoint[] targetPnts = new RouteSegmentPoint[targets.size()];
+		TIntObjectHashMap<List<MatrixAccess>> targetAccess = new TIntObjectHashMap<>();
+		for (int j = 0; j < targets.size(); j++) {
+			LatLon t = targets.get(j);
+			hctx.setStartEnd(null, t);
+			if (c.ROUTE_LAST_MILE) {
+				targetPnts[j] = frontEnd.findRouteSegment(t.getLatitude(), t.getLongitude(), hctx.rctx, null);
+				if (targetPnts[j] == null) {
+					continue;
+				}
+			}
+			TLongObjectHashMap<T> pnts = initStart(hctx, targetPnts[j], true, new TLongObjectHashMap<T>());
+			for (T pnt : pnts.valueCollection()) {
+				if (pnt.index != PNT_SHORT_ROUTE_START_END && !pnt.rtExclude) {
+					List<MatrixAccess> l = targetAccess.get(pnt.index);
+					if (l == null) {
+						l = new ArrayList<>(2);
+						targetAccess.put(pnt.index, l);
+					}
+					l.add(new MatrixAccess(j, pnt.rt(true).rtDistanceFromStart, accessDistance(pnt, true, t)));
+				}
+				pnt.rtRev = null;
+			}
+			if (progress.isCancelled) {
+				matrix.error = cancelledStatus().getError();
+				return matrix;
+			}
+		}
+		hctx.stats.searchPointsTime = (System.nanoTime() - time) / 1e6;
+
+		progress.hhIteration(HHIteration.ROUTING);
+		time = System.nanoTime();
+		double[] best = new double[targets.size()];
+		NetworkDBPoint[] bestPoint = new NetworkDBPoint[targets.size()];
+		MatrixAccess[] bestAccess = new MatrixAccess[targets.size()];
+		TIntObjectHashMap<Double> startDist = new TIntObjectHashMap<>();
+		for (int i = 0; i < sources.size() && !progress.isCancelled; i++) {
+			progress.hhTargetsProgress(i, sources.size());
+			LatLon s = sources.get(i);
+			hctx.setStartEnd(s, null);
+			RouteSegmentPoint sp = null;
+			if (c.ROUTE_LAST_MILE) {
+				sp = frontEnd.findRouteSegment(s.getLatitude(), s.getLongitude(), hctx.rctx, null);
+				if (sp == null) {
+					continue;
+				}
+			}
+			TLongObjectHashMap<T> stPoints = initStart(hctx, sp, false, new TLongObjectHashMap<T>());
+			startDist.clear();
+			for (T start : stPoints.valueCollection()) {
+				if (start.index == PNT_SHORT_ROUTE_START_END) {
+					continue;
+				}
+				startDist.put(start.index, accessDistance(start, false, s));
+			}
+			if (sp != null) {
+				calcMatrixDirectRoutes(hctx, matrix, i, sp, stPoints, targetPnts);
+			}
+			for (T start : stPoints.valueCollection()) {
+				if (start.index == PNT_SHORT_ROUTE_START_END || start.rtExclude) {
+					continue;
+				}
+				double cost = start.rt(false).rtCost;
+				addPointToQueue(hctx, hctx.queue(false), false, start, null, start.rt(false).rtDistanceFromStart,
+						cost <= 0 ? MINIMAL_COST : cost);
+			}
+			Arrays.fill(best, Double.POSITIVE_INFINITY);
+			Arrays.fill(bestPoint, null);
+			runMatrixSearch(hctx, targetAccess, best, bestPoint, bestAccess);
+			for (int j = 0; j < targets.size(); j++) {
+				if (bestPoint[j] != null && best[j] < matrix.costs[i][j]) {
+					matrix.costs[i][j] = best[j];
+					matrix.distances[i][j] = networkDistance(bestPoint[j], startDist) + bestAccess[j].distance;
+				}
+			}
+			hctx.clearVisited();
+			for (T start : stPoints.valueCollection()) {
+				start.rtPos = null;
+			}
+		}
+		hctx.stats.routingTime = (System.nanoTime() - time) / 1e6;
+		if (progress.isCancelled) {
+			matrix.error = cancelledStatus().getError();
+			return matrix;
+		}
+		progress.hhIteration(HHIteration.DONE);
+		printf(SL >= 0, "Matrix %d x %d %.1f ms (selected %s): access points %.1f ms, routing %.1f ms (%,d visited, load %.1f ms %,d edges) \n",
+				sources.size(), targets.size(), (System.nanoTime() - startTime) / 1e6, hctx.getRoutingInfo(),
+				hctx.stats.searchPointsTime, hctx.stats.routingTime, hctx.stats.visitedVertices,
+				hctx.stats.loadEdgesTime, hctx.stats.loadEdgesCnt);
+		return matrix;
+	}
+
+	private void runMatrixSearch(HHRoutingContext<T> hctx, TIntObjectHashMap<List<MatrixAccess>> targetAccess,
+			double[] best, NetworkDBPoint[] bestPoint, MatrixAccess[] bestAccess) throws SQLException, IOException {
+		RouteCalculationProgress progress = hctx.rctx.calculationProgress;
+		Queue<NetworkDBPointCost<T>> queue = hctx.queue(false);
+		double maxBest = Double.POSITIVE_INFINITY;
+		boolean bestChanged = false;
+		while (!queue.isEmpty()) {
+			if (progress != null && progress.isCancelled) {
+				return;
+			}
+			NetworkDBPointCost<T> pointCost = queue.poll();
+			T point = pointCost.point;
+			if (point.rt(false).rtVisited) {
+				continue;
+			}
+			if (bestChanged) {
+				maxBest = 0;
+				for (double b : best) {
+					maxBest = Math.max(maxBest, b);
+				}
+				bestChanged = false;
+			}
+			// access costs are positive, so all targets are settled
+			if (pointCost.cost >= maxBest) {
+				break;
+			}
+			if (hctx.config.MAX_COST > 0 && pointCost.cost > hctx.config.MAX_COST) {
+				break;
+			}
+			hctx.stats.visitedVertices++;
+			hctx.stats.uniqueVisitedVertices++;
+			point.markVisited(false);
+			hctx.visited.add(point);
+			List<MatrixAccess> access = targetAccess.get(point.index);
+			if (access != null) {
+				for (MatrixAccess a : access) {
+					double cost = point.rt(false).rtDistanceFromStart + a.cost;
+					if (cost < best[a.target]) {
+						best[a.target] = cost;
+						bestPoint[a.target] = point;
+						bestAccess[a.target] = a;
+						bestChanged = true;
+					}
+				}
+			}
+			addConnectedToQueue(hctx, queue, point, false);
+		}
+	}
+
+	private void calcMatrixDirectRoutes(HHRoutingContext<T> hctx, HHRouteMatrix matrix, int source,
+			RouteSegmentPoint s, TLongObjectHashMap<T> stPoints, RouteSegmentPoint[] targetPnts)
+			throws IOException, InterruptedException {
+		// only targets inside of start cluster could be reached without network points
+		double radius = 0;
+		for (T p : stPoints.valueCollection()) {
+			radius = Math.max(radius, squareRootDist31(hctx.startX, hctx.startY, p.midX(), p.midY()));
+		}
+		TLongObjectHashMap<TIntArrayList> targetIds = new TLongObjectHashMap<>();
+		for (int j = 0; j < targetPnts.length; j++) {
+			RouteSegmentPoint t = targetPnts[j];
+			if (t == null || (!stPoints.isEmpty()
+					&& squareRootDist31(hctx.startX, hctx.startY, t.preciseX, t.preciseY) > radius)) {
+				continue;
+			}
+			long[] ids = { calcRPId(t, t.getSegmentEnd(), t.getSegmentStart()), calcRPId(t, t.getSegmentStart(), t.getSegmentEnd()) };
+			for (long id : ids) {
+				TIntArrayList l = targetIds.get(id);
+				if (l == null) {
+					l = new TIntArrayList(1);
+					targetIds.put(id, l);
+				}
+				l.add(j);
+			}
+		}
+		if (targetIds.isEmpty()) {
+			return;
+		}
+		TLongArrayList added = new TLongArrayList();
+		for (long id : targetIds.keys()) {
+			if (!hctx.boundaries.containsKey(id)) {
+				hctx.boundaries.put(id, null);
+				added.add(id);
+			}
+		}
+		hctx.rctx.config.MAX_VISITED = MAX_POINTS_CLUSTER_ROUTING;
+		hctx.rctx.config.planRoadDirection = 1;
+		hctx.rctx.config.heuristicCoefficient = 0;
+		hctx.rctx.unloadAllData();
+		BinaryRoutePlanner planner = new BinaryRoutePlanner();
+		MultiFinalRouteSegment frs;
+		try {
+			frs = (MultiFinalRouteSegment) planner.searchRouteInternal(hctx.rctx, s, null, hctx.boundaries);
+		} finally {
+			hctx.rctx.config.MAX_VISITED = -1;
+			for (int k = 0; k < added.size(); k++) {
+				hctx.boundaries.remove(added.get(k));
+			}
+		}
+		if (frs == null) {
+			return;
+		}
+		for (FinalRouteSegment o : frs.all) {
+			TIntArrayList l = targetIds.get(calculateRoutePointInternalId(o.getRoad().getId(), o.getSegmentStart(),
+					o.getSegmentEnd()));
+			if (l == null) {
+				continue;
+			}
+			for (int k = 0; k < l.size(); k++) {
+				int j = l.get(k);
+				LatLon t = matrix.targets.get(j);
+				double cost = o.distanceFromStart + planner.calculatePreciseStartTime(hctx.rctx,
+						MapUtils.get31TileNumberX(t.getLongitude()), MapUtils.get31TileNumberY(t.getLatitude()), o);
+				if (cost < matrix.costs[source][j]) {
+					matrix.costs[source][j] = cost;
+					matrix.distances[source][j] = detailedDistance(o);
+				}
+			}
+		}
+	}
+
+	private double accessDistance(T pnt, boolean reverse, LatLon l) {
+		FinalRouteSegment detailed = pnt.rt(reverse).rtDetailedRoute;
+		if (detailed != null) {
+			return detailedDistance(detailed);
+		}
+		return MapUtils.getDistance(pnt.getPoint(), l);
+	}
+
+	private static double networkDistance(NetworkDBPoint pnt, TIntObjectHashMap<Double> startDist) {
+		double d = 0;
+		while (pnt.rt(false).rtRouteToPoint != null) {
+			NetworkDBPoint prev = pnt.rt(false).rtRouteToPoint;
+			d += squareRootDist31(prev.midX(), prev.midY(), pnt.midX(), pnt.midY());
+			pnt = prev;
+		}
+		Double access = startDist.get(pnt.index);
+		return d + (access == null ? 0 : access);
+	}
+
+	static double detailedDistance(RouteSegment s) {
+		double d = 0;
+		while (s != null) {
+			RouteDataObject road = s.getRoad();
+			int inc = s.getSegmentStart() < s.getSegmentEnd() ? 1 : -1;
+			for (int k = s.getSegmentStart(); k != s.getSegmentEnd(); k += inc) {
+				d += squareRootDist31(road.getPoint31XTile(k), road.getPoint31YTile(k), road.getPoint31XTile(k + inc),
+						road.getPoint31YTile(k + inc));
+			}
+			s = s.getParentRoute();
+		}
+		return d;
+	}
+
+	private static class MatrixAccess {
+		final int target;
+		final double cost;
+		final double distance;
+
+		MatrixAccess(int target, double cost, double distance) {
+			this.target = target;
+			this.cost = cost;
+			this.distance = distance;
+		}
+	}
+
 	private void filterPointsBasedOnConfiguration(HHRoutingContext<T> hctx) {
 		GeneralRouter vr = (GeneralRouter) hctx.rctx.getRouter();
 		Map<String, RoutingParameter> parameters = vr.getParameters();
@@ -306,13 +628,14 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		if (tm.isEmpty()) {
 			// no parameters
 			hctx.filterRoutingParameters = tm;
+			hctx.filterRegion = null;
 			return;
 		}
 		printf(hctx.config.STATS_VERBOSE_LEVEL > 0, " Filter points based on parameters...");
 		long nt = System.nanoTime();
-		RouteRegion regR = new RouteRegion();
-		TIntArrayList tint = new TIntArrayList(50);
-		RouteDataObject rdo = new RouteDataObject(regR);
+		hctx.filterRegion = new RouteRegion();
+		hctx.filterTypes = new TIntArrayList(50);
+		hctx.filterObject = new RouteDataObject(hctx.filterRegion);
 		for (T pnt : hctx.pointsById.valueCollection()) {
 			if (pnt.tagValues != null) {
 				for (TagValuePair tp : pnt.tagValues) {
@@ -321,30 +644,10 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 			}
 		}
 		int filtered = 0;
+		// lazily created points are filtered on creation
 		for (T pnt : hctx.pointsById.valueCollection()) {
-			if (pnt.tagValues != null) {
-				tint.reset();
-				for (TagValuePair tp : pnt.tagValues) {
-					// reuse additionalAttribute to cache values
-					if (tp.additionalAttribute < 0) {
-						tp.additionalAttribute = regR.searchRouteEncodingRule(tp.tag, tp.value);
-					}
-					if (tp.additionalAttribute < 0) {
-						tp.additionalAttribute = regR.routeEncodingRules.size();
-						regR.initRouteEncodingRule(tp.additionalAttribute, tp.tag, tp.value);
-					}
-					tint.add(tp.additionalAttribute);
-				}
-				// here we always copy array but in C++ we could be more efficient
-				rdo.types = tint.toArray();
-				pnt.rtExclude = !currentCtx.rctx.getRouter().acceptLine(rdo);
-				if (!pnt.rtExclude) {
-					// constant should be reduced if route is not found
-					pnt.rtExclude = currentCtx.rctx.getRouter().defineSpeedPriority(rdo, pnt.end > pnt.start) < EXCLUDE_PRIORITY_CONSTANT;
-				}
-				if (pnt.rtExclude) {
-					filtered++;
-				}
+			if (hctx.filterPoint(pnt)) {
+				filtered++;
 			}
 		}
 		hctx.filterRoutingParameters = tm;
@@ -512,7 +815,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 				exclude.clear();
 				
 				LatLon pnt = points.get(i).getPoint();
-				List<T> objs = hctx.pointsRect.getClosestObjects(pnt.getLatitude(), pnt.getLongitude(), minDistance[i]);
+				List<T> objs = hctx.getClosestPoints(pnt.getLatitude(), pnt.getLongitude(), minDistance[i]);
 				for (T p : objs) {
 					if (MapUtils.getDistance(p.getPoint(), pnt) <= minDistance[i]) {
 						exclude.add(p);
@@ -608,6 +911,18 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		
 		long time = System.nanoTime();
 		progress.hhIteration(HHIteration.LOAD_POINTS);
+		if (hctx.isSingleGraph()) {
+			// points and segments are read from graph file columns only when search visits them
+			hctx.lazyPointClass = pointClass;
+			hctx.pointsById = new TLongObjectHashMap<T>();
+			hctx.pointsByGeo = new TLongObjectHashMap<T>();
+			hctx.boundaries = new GraphBoundaries(hctx.regions.get(0).graph);
+			hctx.initialized = true;
+			hctx.stats.loadPointsTime = (System.nanoTime() - time) / 1e6;
+			printf(hctx.config.STATS_VERBOSE_LEVEL > 0, "Graph file %s - points are loaded on demand\n",
+					hctx.regions.get(0).graph);
+			return hctx;
+		}
 		printf(hctx.config.STATS_VERBOSE_LEVEL > 0, "Loading points... ");
 		hctx.pointsById = hctx.loadNetworkPoints(pointClass);
 		hctx.boundaries = new TLongObjectHashMap<RouteSegment>();
@@ -830,7 +1145,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 			float spd = hctx.rctx.getRouter().getMinSpeed();
 			while (rad < 300000 && pnts.isEmpty()) {
 				rad = rad * 2;
-				List<T> pntSelect = hctx.pointsRect.getClosestObjects(startLat, startLon, rad);
+				List<T> pntSelect = hctx.getClosestPoints(startLat, startLon, rad);
 				// limit by cluster
 				int cid = pntSelect.get(0).clusterId;
 				for (T pSelect : pntSelect) {
@@ -848,7 +1163,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 		if (s == null) {
 			return pnts;
 		}
-		T finitePnt = hctx.pointsByGeo.get(calcUniDirRoutePointInternalId(s));
+		T finitePnt = hctx.getPointByGeo(calcUniDirRoutePointInternalId(s));
 		if (finitePnt != null) {
 			// start / end point is directly on a network point
 			double plusCost = 0, negCost = 0;
@@ -893,7 +1208,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 						reverse ? o.getSegmentEnd() : o.getSegmentStart(),
 						reverse ? o.getSegmentStart() : o.getSegmentEnd());
 				if (set.add(pntId)) {
-					T pnt = hctx.pointsByGeo.get(pntId);
+					T pnt = hctx.getPointByGeo(pntId);
 					if (pnt == null) {
 						if (pnts.contains(PNT_SHORT_ROUTE_START_END)) {
 							continue;
@@ -1284,7 +1599,7 @@ public class HHRoutePlanner<T extends NetworkDBPoint> {
 					}
 				} else {
 					resUnique.put(pntId, o);
-					NetworkDBPoint p = hctx.pointsByGeo.get(calcRPId(o, o.getSegmentStart(), o.getSegmentEnd()));
+					NetworkDBPoint p = hctx.getPointByGeo(calcRPId(o, o.getSegmentStart(), o.getSegmentEnd()));
 					if (p == null) {
 						System.err.println("Error calculations new final boundary not found");
 						continue;
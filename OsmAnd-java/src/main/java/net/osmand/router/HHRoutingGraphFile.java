@@ -0,0 +1,704 @@
+package net.osmand.router;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPointCh;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+/**
+ * HH network graph (points + segments of 1 routing profile) exported from HHRoutingDB into
+ * memory mapped file in CSR (compressed sparse row) layout: point attributes are stored as columns
+ * and segments of every point are stored as continuous range of outgoing / incoming arrays.
+ * Points are sorted by index (node = position), geo ids (road id + segment) are indexed to find node of route point
+ * and points are indexed by tiles (zoom {@link #TILE_ZOOM}) to find closest points without scanning all of them.
+ * Routing reads columns directly and creates points / segments lazily only for visited nodes (see HHRoutingContext).
+ * File is mapped by windows, so it is not limited by 2GB. Geometry is not exported.
+ */
+public class HHRoutingGraphFile implements Closeable {
+
+	public static final String EXT = ".hhgraph";
+
+	private static final int MAGIC = 0x48484752; // HHGR
+	private static final int VERSION = 3;
+	private static final int HEADER_SIZE = 6 * 4;
+	private static final int WINDOW_BITS = 30;
+	// windows overlap to read any primitive value within 1 window
+	private static final int WINDOW_OVERLAP = 8;
+	// lower bound, so bbox of radius contains the circle
+	private static final double METERS_IN_DEGREE = 111000;
+	// ~5 km tiles of spatial index
+	static final int TILE_ZOOM = 13;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer[] windows;
+	private final int windowBits;
+	private final long windowMask;
+	private final int pointsCount;
+	private final int outSegmentsCount;
+	private final int inSegmentsCount;
+	private final int routingProfile;
+
+	private final long indexOff;
+	private final long dualOff;
+	private final long clusterOff;
+	private final long chIndOff;
+	private final long roadIdOff;
+	private final long startEndOff;
+	private final long sxOff;
+	private final long syOff;
+	private final long exOff;
+	private final long eyOff;
+	private final long outOffsetsOff;
+	private final long outPointOff;
+	private final long outDistOff;
+	private final long outShortcutOff;
+	private final long inOffsetsOff;
+	private final long inPointOff;
+	private final long inDistOff;
+	private final long inShortcutOff;
+	private final long geoIdOff;
+	private final long geoNodeOff;
+	private final long tileKeyOff;
+	private final long tileXOff;
+	private final long tileYOff;
+	private final long tileNodeOff;
+	private final long tagOffsetsOff;
+	private final long tagDataOff;
+
+	private HHRoutingGraphFile(File file, int windowBits) throws IOException {
+		this.file = file;
+		this.windowBits = windowBits;
+		this.windowMask = (1L << windowBits) - 1;
+		this.raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long fileSize = channel.size();
+			windows = new MappedByteBuffer[(int) ((fileSize >> windowBits) + 1)];
+			for (int i = 0; i < windows.length; i++) {
+				long st = (long) i << windowBits;
+				long len = Math.min(fileSize - st, (1L << windowBits) + WINDOW_OVERLAP);
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, st, len);
+			}
+			if (fileSize < HEADER_SIZE || getInt(0) != MAGIC) {
+				throw new IOException("Not a hh graph file: " + file.getName());
+			}
+			if (getInt(4) != VERSION) {
+				throw new IOException("Unsupported hh graph version " + getInt(4) + ": " + file.getName());
+			}
+			pointsCount = getInt(8);
+			outSegmentsCount = getInt(12);
+			inSegmentsCount = getInt(16);
+			routingProfile = getInt(20);
+			long n = pointsCount, m = outSegmentsCount, mi = inSegmentsCount;
+			long pos = HEADER_SIZE;
+			indexOff = pos;
+			pos += 4 * n;
+			dualOff = pos;
+			pos += 4 * n;
+			clusterOff = pos;
+			pos += 4 * n;
+			chIndOff = pos;
+			pos += 4 * n;
+			roadIdOff = pos;
+			pos += 8 * n;
+			startEndOff = pos;
+			pos += 4 * n;
+			sxOff = pos;
+			pos += 4 * n;
+			syOff = pos;
+			pos += 4 * n;
+			exOff = pos;
+			pos += 4 * n;
+			eyOff = pos;
+			pos += 4 * n;
+			outOffsetsOff = pos;
+			pos += 4 * (n + 1);
+			outPointOff = pos;
+			pos += 4 * m;
+			outDistOff = pos;
+			pos += 4 * m;
+			outShortcutOff = pos;
+			pos += m;
+			inOffsetsOff = pos;
+			pos += 4 * (n + 1);
+			inPointOff = pos;
+			pos += 4 * mi;
+			inDistOff = pos;
+			pos += 4 * mi;
+			inShortcutOff = pos;
+			pos += mi;
+			geoIdOff = pos;
+			pos += 8 * n;
+			geoNodeOff = pos;
+			pos += 4 * n;
+			tileKeyOff = pos;
+			pos += 4 * n;
+			tileXOff = pos;
+			pos += 4 * n;
+			tileYOff = pos;
+			pos += 4 * n;
+			tileNodeOff = pos;
+			pos += 4 * n;
+			tagOffsetsOff = pos;
+			pos += 4 * (n + 1);
+			tagDataOff = pos;
+			if (pos > fileSize) {
+				throw new IOException("HH graph file is truncated: " + file.getName());
+			}
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	public static HHRoutingGraphFile open(File file) throws IOException {
+		return new HHRoutingGraphFile(file, WINDOW_BITS);
+	}
+
+	static HHRoutingGraphFile open(File file, int windowBits) throws IOException {
+		return new HHRoutingGraphFile(file, windowBits);
+	}
+
+	private MappedByteBuffer window(long pos) {
+		return windows[(int) (pos >>> windowBits)];
+	}
+
+	private int getInt(long pos) {
+		return window(pos).getInt((int) (pos & windowMask));
+	}
+
+	private long getLong(long pos) {
+		return window(pos).getLong((int) (pos & windowMask));
+	}
+
+	private float getFloat(long pos) {
+		return window(pos).getFloat((int) (pos & windowMask));
+	}
+
+	private byte getByte(long pos) {
+		return window(pos).get((int) (pos & windowMask));
+	}
+
+	private void read(long pos, byte[] b) {
+		int i = 0;
+		while (i < b.length) {
+			ByteBuffer w = window(pos + i).duplicate();
+			int off = (int) ((pos + i) & windowMask);
+			int len = Math.min(b.length - i, w.capacity() - off);
+			w.position(off);
+			w.get(b, i, len);
+			i += len;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getRoutingProfile() {
+		return routingProfile;
+	}
+
+	public int getPointsCount() {
+		return pointsCount;
+	}
+
+	public int getSegmentsCount() {
+		return outSegmentsCount;
+	}
+
+	/**
+	 * @return node (position in file) of point by its index or -1
+	 */
+	public int getNode(int pointIndex) {
+		int lo = 0, hi = pointsCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = getPointIndex(mid);
+			if (v < pointIndex) {
+				lo = mid + 1;
+			} else if (v > pointIndex) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	public int getPointIndex(int node) {
+		return getInt(indexOff + 4L * node);
+	}
+
+	public int getDualNode(int node) {
+		return getInt(dualOff + 4L * node);
+	}
+
+	public int getClusterId(int node) {
+		return getInt(clusterOff + 4L * node);
+	}
+
+	public long getRoadId(int node) {
+		return getLong(roadIdOff + 8L * node);
+	}
+
+	public int getStartX(int node) {
+		return getInt(sxOff + 4L * node);
+	}
+
+	public int getStartY(int node) {
+		return getInt(syOff + 4L * node);
+	}
+
+	public int getEndX(int node) {
+		return getInt(exOff + 4L * node);
+	}
+
+	public int getEndY(int node) {
+		return getInt(eyOff + 4L * node);
+	}
+
+	public int getOutDegree(int node) {
+		return getInt(outOffsetsOff + 4L * (node + 1)) - getInt(outOffsetsOff + 4L * node);
+	}
+
+	public int getInDegree(int node) {
+		return getInt(inOffsetsOff + 4L * (node + 1)) - getInt(inOffsetsOff + 4L * node);
+	}
+
+	/**
+	 * @return end node of k-th outgoing (reverse = false) or start node of k-th incoming segment
+	 */
+	public int getConnectedNode(int node, int k, boolean reverse) {
+		return getInt((reverse ? inPointOff : outPointOff) + 4L * segmentPosition(node, k, reverse));
+	}
+
+	public float getSegmentDist(int node, int k, boolean reverse) {
+		return getFloat((reverse ? inDistOff : outDistOff) + 4L * segmentPosition(node, k, reverse));
+	}
+
+	public boolean isShortcut(int node, int k, boolean reverse) {
+		return getByte((reverse ? inShortcutOff : outShortcutOff) + segmentPosition(node, k, reverse)) != 0;
+	}
+
+	private int segmentPosition(int node, int k, boolean reverse) {
+		return getInt((reverse ? inOffsetsOff : outOffsetsOff) + 4L * node) + k;
+	}
+
+	public String getTagValues(int node) {
+		int st = getInt(tagOffsetsOff + 4L * node);
+		int len = getInt(tagOffsetsOff + 4L * (node + 1)) - st;
+		if (len == 0) {
+			return null;
+		}
+		byte[] b = new byte[len];
+		read(tagDataOff + st, b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return node of point by route point id (see NetworkDBPoint.getGeoPntId) or -1
+	 */
+	public int getNodeByGeoId(long geoId) {
+		int lo = 0, hi = pointsCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long v = getLong(geoIdOff + 8L * mid);
+			if (v < geoId) {
+				lo = mid + 1;
+			} else if (v > geoId) {
+				hi = mid - 1;
+			} else {
+				return getInt(geoNodeOff + 4L * mid);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return nodes with point (middle of segment) within radius (meters) sorted by distance, only tiles of
+	 * spatial index within bbox of radius are read (without creating points)
+	 */
+	public TIntArrayList getClosestNodes(double lat, double lon, double radius) {
+		double dLat = radius / METERS_IN_DEGREE;
+		double dLon = dLat / Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+		int left = MapUtils.get31TileNumberX(lon - dLon), right = MapUtils.get31TileNumberX(lon + dLon);
+		int top = MapUtils.get31TileNumberY(Math.min(lat + dLat, MapUtils.MAX_LATITUDE));
+		int bottom = MapUtils.get31TileNumberY(Math.max(lat - dLat, MapUtils.MIN_LATITUDE));
+		final TIntArrayList nodes = new TIntArrayList();
+		final TIntArrayList dist = new TIntArrayList();
+		int shift = 31 - TILE_ZOOM;
+		for (int tx = left >>> shift; tx <= right >>> shift; tx++) {
+			// tiles of column are continuous range of keys
+			int key = tileKey(tx, top >>> shift);
+			int lastKey = tileKey(tx, bottom >>> shift);
+			for (int i = lowerBoundTile(key); i < pointsCount && getInt(tileKeyOff + 4L * i) <= lastKey; i++) {
+				int x = getInt(tileXOff + 4L * i);
+				int y = getInt(tileYOff + 4L * i);
+				if (x >= left && x <= right && y >= top && y <= bottom) {
+					double d = MapUtils.getDistance(lat, lon, MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x));
+					if (d <= radius) {
+						nodes.add(getInt(tileNodeOff + 4L * i));
+						dist.add((int) d);
+					}
+				}
+			}
+		}
+		Integer[] order = new Integer[nodes.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				int c = Integer.compare(dist.get(o1), dist.get(o2));
+				// same order as nodes for equal distances
+				return c != 0 ? c : Integer.compare(nodes.get(o1), nodes.get(o2));
+			}
+		});
+		TIntArrayList res = new TIntArrayList(order.length);
+		for (Integer i : order) {
+			res.add(nodes.get(i));
+		}
+		return res;
+	}
+
+	private int lowerBoundTile(int key) {
+		int lo = 0, hi = pointsCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (getInt(tileKeyOff + 4L * mid) < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static int tileKey(int tx, int ty) {
+		return (tx << TILE_ZOOM) | ty;
+	}
+
+	private static int midX(NetworkDBPoint p) {
+		return p.startX / 2 + p.endX / 2;
+	}
+
+	private static int midY(NetworkDBPoint p) {
+		return p.startY / 2 + p.endY / 2;
+	}
+
+	/**
+	 * Creates point of node (without dual point and segments)
+	 */
+	public <T extends NetworkDBPoint> T createPoint(short mapId, int node, Class<T> cl) {
+		T pnt;
+		try {
+			pnt = cl.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		pnt.mapId = mapId;
+		// node is used as id within file
+		pnt.fileId = node;
+		pnt.index = getPointIndex(node);
+		pnt.clusterId = getClusterId(node);
+		if (pnt instanceof NetworkDBPointCh) {
+			((NetworkDBPointCh) pnt).chInd = getInt(chIndOff + 4L * node);
+		}
+		pnt.roadId = getRoadId(node);
+		int startEnd = getInt(startEndOff + 4L * node);
+		pnt.start = (short) (startEnd >> 16);
+		pnt.end = (short) startEnd;
+		pnt.startX = getStartX(node);
+		pnt.startY = getStartY(node);
+		pnt.endX = getEndX(node);
+		pnt.endY = getEndY(node);
+		String[] arr = Algorithms.deserializeStringArray(getTagValues(node));
+		if (arr != null && arr.length > 1) {
+			pnt.tagValues = new ArrayList<>();
+			for (int i = 0; i + 1 < arr.length; i += 2) {
+				pnt.tagValues.add(new TagValuePair(arr[i], arr[i + 1], -1));
+			}
+		}
+		return pnt;
+	}
+
+	/**
+	 * Creates all points of file (routing with graph file creates points lazily, see HHRoutingContext.getGraphPoint)
+	 */
+	public <T extends NetworkDBPoint> TLongObjectHashMap<T> loadNetworkPoints(short mapId, Class<T> cl) {
+		TLongObjectHashMap<T> mp = new TLongObjectHashMap<>(pointsCount);
+		List<T> byNode = new ArrayList<T>(pointsCount);
+		for (int node = 0; node < pointsCount; node++) {
+			T pnt = createPoint(mapId, node, cl);
+			mp.put(pnt.index, pnt);
+			byNode.add(pnt);
+		}
+		for (int node = 0; node < pointsCount; node++) {
+			int dual = getDualNode(node);
+			if (dual >= 0) {
+				byNode.get(node).dualPoint = byNode.get(dual);
+			}
+		}
+		return mp;
+	}
+
+	public <T extends NetworkDBPoint> int loadNetworkSegmentPoint(HHRoutingContext<T> ctx, HHRouteRegionPointsCtx<T> reg,
+			T point, boolean reverse) {
+		if (point.connected(reverse) != null) {
+			return 0;
+		}
+		int node = point.fileId;
+		int deg = reverse ? getInDegree(node) : getOutDegree(node);
+		List<NetworkDBSegment> l = new ArrayList<>(deg);
+		for (int k = 0; k < deg; k++) {
+			NetworkDBPoint connected = ctx.getGraphPoint(reg, getConnectedNode(node, k, reverse));
+			if (connected == null) {
+				continue;
+			}
+			NetworkDBPoint start = reverse ? connected : point;
+			NetworkDBPoint end = reverse ? point : connected;
+			l.add(new NetworkDBSegment(start, end, getSegmentDist(node, k, reverse), !reverse, isShortcut(node, k, reverse)));
+		}
+		point.connectedSet(reverse, l);
+		return l.size();
+	}
+
+	public <T extends NetworkDBPoint> int loadNetworkSegments(HHRoutingContext<T> ctx, HHRouteRegionPointsCtx<T> reg,
+			Collection<T> points) {
+		int loaded = 0;
+		for (T p : points) {
+			if (p.mapId == reg.id) {
+				reg.pntsByFileId.put(p.fileId, p);
+			}
+		}
+		for (T p : points) {
+			if (p.mapId == reg.id) {
+				p.markSegmentsNotLoaded();
+				loaded += loadNetworkSegmentPoint(ctx, reg, p, false);
+				loadNetworkSegmentPoint(ctx, reg, p, true);
+			}
+		}
+		return loaded;
+	}
+
+	@Override
+	public void close() throws IOException {
+		raf.close();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (%,d points, %,d segments, profile %d)", file.getName(), pointsCount, outSegmentsCount,
+				routingProfile);
+	}
+
+	/**
+	 * Exports points and segments of routing profile from hh routing db.
+	 */
+	public static void export(HHRoutingDB db, int routingProfile, File out) throws SQLException, IOException {
+		TLongObjectHashMap<NetworkDBPoint> pnts = db.loadNetworkPoints((short) 0, NetworkDBPoint.class);
+		if (db.compactDB) {
+			HHRoutingContext<NetworkDBPoint> ctx = new HHRoutingContext<NetworkDBPoint>();
+			ctx.pointsById = pnts;
+			ctx.clusterOutPoints = HHRoutePlanner.groupByClusters(pnts, true);
+			ctx.clusterInPoints = HHRoutePlanner.groupByClusters(pnts, false);
+			HHRouteRegionPointsCtx<NetworkDBPoint> reg = new HHRouteRegionPointsCtx<NetworkDBPoint>((short) 0, db);
+			reg.routingProfile = routingProfile;
+			for (NetworkDBPoint p : pnts.valueCollection()) {
+				p.markSegmentsNotLoaded();
+				db.loadNetworkSegmentPoint(ctx, reg, p, false);
+			}
+		} else {
+			db.loadNetworkSegments(pnts.valueCollection(), routingProfile);
+		}
+		write(pnts.valueCollection(), routingProfile, out);
+	}
+
+	/**
+	 * Writes points with loaded segments (connected / connectedReverse)
+	 */
+	public static void write(Collection<? extends NetworkDBPoint> points, int routingProfile, File out) throws IOException {
+		List<NetworkDBPoint> lst = new ArrayList<NetworkDBPoint>(points);
+		Collections.sort(lst, HHRoutingDB.indexComparator);
+		int n = lst.size();
+		TLongObjectHashMap<Integer> nodes = new TLongObjectHashMap<Integer>(n);
+		for (int node = 0; node < n; node++) {
+			nodes.put(lst.get(node).index, node);
+		}
+		long m = 0, mi = 0;
+		for (NetworkDBPoint p : lst) {
+			m += p.connected(false) == null ? 0 : p.connected(false).size();
+			mi += p.connected(true) == null ? 0 : p.connected(true).size();
+		}
+		byte[][] tags = new byte[n][];
+		long tagsLength = 0;
+		for (int node = 0; node < n; node++) {
+			NetworkDBPoint p = lst.get(node);
+			if (p.tagValues != null && !p.tagValues.isEmpty()) {
+				String[] arr = new String[p.tagValues.size() * 2];
+				for (int i = 0; i < p.tagValues.size(); i++) {
+					arr[2 * i] = p.tagValues.get(i).tag;
+					arr[2 * i + 1] = p.tagValues.get(i).value;
+				}
+				tags[node] = Algorithms.serializeStringArray(arr).getBytes(StandardCharsets.UTF_8);
+				tagsLength += tags[node].length;
+			}
+		}
+		if (m > Integer.MAX_VALUE || mi > Integer.MAX_VALUE || tagsLength > Integer.MAX_VALUE) {
+			throw new IOException("HH graph is too big to be exported into 1 file: " + m + " segments, " + tagsLength
+					+ " bytes of tags");
+		}
+		final long[] geoIds = new long[n];
+		Integer[] geoOrder = new Integer[n];
+		for (int node = 0; node < n; node++) {
+			geoIds[node] = lst.get(node).getGeoPntId();
+			geoOrder[node] = node;
+		}
+		Arrays.sort(geoOrder, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Long.compare(geoIds[o1], geoIds[o2]);
+			}
+		});
+		final int[] tileKeys = new int[n];
+		Integer[] tileOrder = new Integer[n];
+		for (int node = 0; node < n; node++) {
+			NetworkDBPoint p = lst.get(node);
+			tileKeys[node] = tileKey(midX(p) >>> (31 - TILE_ZOOM), midY(p) >>> (31 - TILE_ZOOM));
+			tileOrder[node] = node;
+		}
+		Arrays.sort(tileOrder, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Integer.compare(tileKeys[o1], tileKeys[o2]);
+			}
+		});
+		DataOutputStream dous = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out), 1 << 16));
+		try {
+			dous.writeInt(MAGIC);
+			dous.writeInt(VERSION);
+			dous.writeInt(n);
+			dous.writeInt((int) m);
+			dous.writeInt((int) mi);
+			dous.writeInt(routingProfile);
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.index);
+			}
+			for (NetworkDBPoint p : lst) {
+				Integer dual = p.dualPoint == null ? null : nodes.get(p.dualPoint.index);
+				dous.writeInt(dual == null ? -1 : dual);
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.clusterId);
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.chInd());
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeLong(p.roadId);
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt((p.start << 16) | (p.end & 0xffff));
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.startX);
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.startY);
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.endX);
+			}
+			for (NetworkDBPoint p : lst) {
+				dous.writeInt(p.endY);
+			}
+			writeSegments(dous, lst, nodes, false);
+			writeSegments(dous, lst, nodes, true);
+			for (Integer node : geoOrder) {
+				dous.writeLong(geoIds[node]);
+			}
+			for (Integer node : geoOrder) {
+				dous.writeInt(node);
+			}
+			// spatial index: coordinates are copied, so tiles are read sequentially
+			for (Integer node : tileOrder) {
+				dous.writeInt(tileKeys[node]);
+			}
+			for (Integer node : tileOrder) {
+				dous.writeInt(midX(lst.get(node)));
+			}
+			for (Integer node : tileOrder) {
+				dous.writeInt(midY(lst.get(node)));
+			}
+			for (Integer node : tileOrder) {
+				dous.writeInt(node);
+			}
+			int offset = 0;
+			dous.writeInt(offset);
+			for (byte[] t : tags) {
+				offset += t == null ? 0 : t.length;
+				dous.writeInt(offset);
+			}
+			for (byte[] t : tags) {
+				if (t != null) {
+					dous.write(t);
+				}
+			}
+		} finally {
+			dous.close();
+		}
+	}
+
+	private static void writeSegments(DataOutputStream dous, List<NetworkDBPoint> lst, TLongObjectHashMap<Integer> nodes,
+			boolean reverse) throws IOException {
+		List<NetworkDBSegment> all = new ArrayList<NetworkDBSegment>();
+		int offset = 0;
+		dous.writeInt(offset);
+		for (NetworkDBPoint p : lst) {
+			List<NetworkDBSegment> l = p.connected(reverse);
+			if (l != null) {
+				all.addAll(l);
+				offset += l.size();
+			}
+			dous.writeInt(offset);
+		}
+		for (NetworkDBSegment s : all) {
+			Integer node = nodes.get((reverse ? s.start : s.end).index);
+			dous.writeInt(node == null ? -1 : node);
+		}
+		for (NetworkDBSegment s : all) {
+			dous.writeFloat((float) s.dist);
+		}
+		for (NetworkDBSegment s : all) {
+			dous.writeByte(s.shortcut ? 1 : 0);
+		}
+	}
+}
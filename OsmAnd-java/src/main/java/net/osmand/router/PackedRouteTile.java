@@ -0,0 +1,469 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Struct of arrays storage of decoded route objects of 1 tile: coordinates, point types and restrictions of all objects
+ * are stored in shared primitive arrays (ranges by object), equal type arrays are stored once.
+ * Objects are returned as views ({@link RouteDataObjectView}) reading the shared arrays, own arrays are created
+ * only when object is modified or escapes to the route result (see {@link RouteDataObject#materialize()}).
+ */
+class PackedRouteTile {
+
+	private final int size;
+	private final RouteRegion[] regions;
+	private final long[] ids;
+	// ranges of object i are [start[i], start[i + 1])
+	private final int[] pointsStart;
+	private final int[] pointsX;
+	private final int[] pointsY;
+	// index of type set (-1 for null)
+	private final int[] typeSet;
+	private final int[][] typeSets;
+	// point types: -1 for null array, otherwise length of array (not null entries are stored in ranges)
+	private final int[] pointTypesLength;
+	private final int[] pointTypesStart;
+	private final int[] pointTypesInd;
+	private final int[] pointTypesSet;
+	// restrictions: -1 for null array, otherwise length of array
+	private final int[] restrictionsLength;
+	private final int[] restrictionsStart;
+	private final long[] restrictions;
+	private final int[] restrictionsViaLength;
+	private final int[] restrictionsViaStart;
+	private final long[] restrictionsVia;
+	// object has conditional types or point types
+	private final boolean[] conditional;
+	// names and rare attributes are kept as is
+	private final TIntObjectHashMap<String>[] names;
+	private final int[][] nameIds;
+	private final String[][][] pointNames;
+	private final int[][][] pointNameTypes;
+
+	private final long estimatedSize;
+
+	PackedRouteTile(List<RouteDataObject> objects) {
+		size = objects.size();
+		regions = new RouteRegion[size];
+		ids = new long[size];
+		pointsStart = new int[size + 1];
+		typeSet = new int[size];
+		pointTypesLength = new int[size];
+		pointTypesStart = new int[size + 1];
+		restrictionsLength = new int[size];
+		restrictionsStart = new int[size + 1];
+		restrictionsViaLength = new int[size];
+		restrictionsViaStart = new int[size + 1];
+		conditional = new boolean[size];
+		names = newNamesArray(size);
+		nameIds = new int[size][];
+		String[][][] pNames = null;
+		int[][][] pNameTypes = null;
+
+		TIntArrayList xs = new TIntArrayList(), ys = new TIntArrayList();
+		TIntArrayList ptInd = new TIntArrayList(), ptSet = new TIntArrayList();
+		TLongArrayList restr = new TLongArrayList(), restrVia = new TLongArrayList();
+		Map<TypeSetKey, Integer> sets = new HashMap<TypeSetKey, Integer>();
+		List<int[]> setsList = new ArrayList<int[]>();
+		for (int i = 0; i < size; i++) {
+			RouteDataObject o = objects.get(i);
+			typeSet[i] = -1;
+			pointTypesLength[i] = -1;
+			restrictionsLength[i] = -1;
+			restrictionsViaLength[i] = -1;
+			if (o != null) {
+				regions[i] = o.region;
+				ids[i] = o.id;
+				if (o.pointsX != null) {
+					xs.add(o.pointsX);
+					ys.add(o.pointsY);
+				}
+				typeSet[i] = internTypes(o.types, sets, setsList);
+				conditional[i] = hasConditional(o.region, o.types);
+				if (o.pointTypes != null) {
+					pointTypesLength[i] = o.pointTypes.length;
+					for (int k = 0; k < o.pointTypes.length; k++) {
+						if (o.pointTypes[k] != null) {
+							ptInd.add(k);
+							ptSet.add(internTypes(o.pointTypes[k], sets, setsList));
+							conditional[i] |= hasConditional(o.region, o.pointTypes[k]);
+						}
+					}
+				}
+				if (o.restrictions != null) {
+					restrictionsLength[i] = o.restrictions.length;
+					restr.add(o.restrictions);
+				}
+				if (o.restrictionsVia != null) {
+					restrictionsViaLength[i] = o.restrictionsVia.length;
+					restrVia.add(o.restrictionsVia);
+				}
+				names[i] = o.names;
+				nameIds[i] = o.nameIds;
+				if (o.pointNames != null || o.pointNameTypes != null) {
+					if (pNames == null) {
+						pNames = new String[size][][];
+						pNameTypes = new int[size][][];
+					}
+					pNames[i] = o.pointNames;
+					pNameTypes[i] = o.pointNameTypes;
+				}
+			}
+			pointsStart[i + 1] = xs.size();
+			pointTypesStart[i + 1] = ptInd.size();
+			restrictionsStart[i + 1] = restr.size();
+			restrictionsViaStart[i + 1] = restrVia.size();
+		}
+		pointsX = xs.toArray();
+		pointsY = ys.toArray();
+		pointTypesInd = ptInd.toArray();
+		pointTypesSet = ptSet.toArray();
+		restrictions = restr.toArray();
+		restrictionsVia = restrVia.toArray();
+		typeSets = setsList.toArray(new int[0][]);
+		pointNames = pNames;
+		pointNameTypes = pNameTypes;
+		estimatedSize = calculateSize();
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static TIntObjectHashMap<String>[] newNamesArray(int size) {
+		return new TIntObjectHashMap[size];
+	}
+
+	private static int internTypes(int[] types, Map<TypeSetKey, Integer> sets, List<int[]> setsList) {
+		if (types == null) {
+			return -1;
+		}
+		TypeSetKey key = new TypeSetKey(types);
+		Integer ind = sets.get(key);
+		if (ind == null) {
+			ind = setsList.size();
+			setsList.add(types.clone());
+			sets.put(key, ind);
+		}
+		return ind;
+	}
+
+	private static boolean hasConditional(RouteRegion region, int[] types) {
+		if (types == null || region == null) {
+			return false;
+		}
+		for (int t : types) {
+			RouteTypeRule r = region.quickGetEncodingRule(t);
+			if (r != null && r.conditional()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int size() {
+		return size;
+	}
+
+	long getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	int getPointsLength(int i) {
+		return pointsStart[i + 1] - pointsStart[i];
+	}
+
+	int getPoint31XTile(int i, int point) {
+		return pointsX[pointsStart[i] + point];
+	}
+
+	int getPoint31YTile(int i, int point) {
+		return pointsY[pointsStart[i] + point];
+	}
+
+	long getId(int i) {
+		return ids[i];
+	}
+
+	int[] getPointTypes(int i, int point) {
+		for (int k = pointTypesStart[i]; k < pointTypesStart[i + 1]; k++) {
+			if (pointTypesInd[k] == point) {
+				return typeSets[pointTypesSet[k]];
+			} else if (pointTypesInd[k] > point) {
+				break;
+			}
+		}
+		return null;
+	}
+
+	int getRestrictionLength(int i) {
+		return Math.max(restrictionsLength[i], 0);
+	}
+
+	long getRestriction(int i, int k) {
+		return restrictions[restrictionsStart[i] + k];
+	}
+
+	long getRestrictionVia(int i, int k) {
+		if (k < restrictionsViaLength[i]) {
+			return restrictionsVia[restrictionsViaStart[i] + k];
+		}
+		return 0;
+	}
+
+	List<RouteDataObject> unpack() {
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>(size);
+		for (int i = 0; i < size; i++) {
+			res.add(get(i));
+		}
+		return res;
+	}
+
+	RouteDataObject get(int i) {
+		if (regions[i] == null) {
+			return null;
+		}
+		return new RouteDataObjectView(this, i);
+	}
+
+	private long calculateSize() {
+		long sz = 16 * 20; // arrays overhead
+		sz += 8L * size; // regions
+		sz += 8L * ids.length;
+		sz += 4L * (pointsStart.length + pointsX.length + pointsY.length + typeSet.length);
+		for (int[] s : typeSets) {
+			sz += 16 + 4 * s.length;
+		}
+		sz += 4L * (pointTypesLength.length + pointTypesStart.length + pointTypesInd.length + pointTypesSet.length);
+		sz += 8L * (restrictionsLength.length + restrictionsStart.length) + 8L * restrictions.length;
+		sz += 8L * (restrictionsViaLength.length + restrictionsViaStart.length) + 8L * restrictionsVia.length;
+		sz += size;
+		sz += 16L * size; // names, nameIds references
+		for (int i = 0; i < size; i++) {
+			if (nameIds[i] != null) {
+				sz += 16 + 4 * nameIds[i].length;
+			}
+			if (names[i] != null) {
+				TIntObjectIterator<String> it = names[i].iterator();
+				while (it.hasNext()) {
+					it.advance();
+					sz += 12 + it.value().length();
+				}
+				sz += 24 + names[i].size() * 25;
+			}
+		}
+		if (pointNames != null) {
+			sz += 16L * size;
+			for (int i = 0; i < size; i++) {
+				if (pointNames[i] != null) {
+					sz += 16 + 8 * pointNames[i].length;
+				}
+			}
+		}
+		return sz;
+	}
+
+	/**
+	 * Route object reading coordinates, point types and restrictions from the shared tile arrays.
+	 * Types, names and point names are shared references (as with {@link RouteDataObject#RouteDataObject(RouteDataObject)}).
+	 * Before any modification object is materialized: own copies of arrays are assigned and tile is released.
+	 */
+	static class RouteDataObjectView extends RouteDataObject {
+
+		private volatile PackedRouteTile tile;
+		private final int ind;
+
+		RouteDataObjectView(PackedRouteTile tile, int ind) {
+			super(tile.regions[ind]);
+			this.tile = tile;
+			this.ind = ind;
+			this.id = tile.ids[ind];
+			this.types = tile.typeSet[ind] < 0 ? null : tile.typeSets[tile.typeSet[ind]];
+			this.names = tile.names[ind];
+			this.nameIds = tile.nameIds[ind];
+			if (tile.pointNames != null) {
+				this.pointNames = tile.pointNames[ind];
+				this.pointNameTypes = tile.pointNameTypes[ind];
+			}
+		}
+
+		boolean isMaterialized() {
+			return tile == null;
+		}
+
+		@Override
+		public synchronized void materialize() {
+			PackedRouteTile t = tile;
+			if (t == null) {
+				return;
+			}
+			int i = ind;
+			pointsX = Arrays.copyOfRange(t.pointsX, t.pointsStart[i], t.pointsStart[i + 1]);
+			pointsY = Arrays.copyOfRange(t.pointsY, t.pointsStart[i], t.pointsStart[i + 1]);
+			if (types != null) {
+				types = types.clone();
+			}
+			if (t.pointTypesLength[i] >= 0) {
+				pointTypes = new int[t.pointTypesLength[i]][];
+				for (int k = t.pointTypesStart[i]; k < t.pointTypesStart[i + 1]; k++) {
+					pointTypes[t.pointTypesInd[k]] = t.typeSets[t.pointTypesSet[k]].clone();
+				}
+			}
+			if (t.restrictionsLength[i] >= 0) {
+				restrictions = Arrays.copyOfRange(t.restrictions, t.restrictionsStart[i], t.restrictionsStart[i + 1]);
+			}
+			if (t.restrictionsViaLength[i] >= 0) {
+				restrictionsVia = Arrays.copyOfRange(t.restrictionsVia, t.restrictionsViaStart[i],
+						t.restrictionsViaStart[i + 1]);
+			}
+			if (pointNames != null) {
+				pointNames = pointNames.clone();
+			}
+			if (pointNameTypes != null) {
+				pointNameTypes = pointNameTypes.clone();
+			}
+			tile = null;
+		}
+
+		@Override
+		public int getPoint31XTile(int i) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getPoint31XTile(i) : t.getPoint31XTile(ind, i);
+		}
+
+		@Override
+		public int getPoint31XTile(int s, int e) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getPoint31XTile(s, e) : t.getPoint31XTile(ind, s) / 2 + t.getPoint31XTile(ind, e) / 2;
+		}
+
+		@Override
+		public int getPoint31YTile(int i) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getPoint31YTile(i) : t.getPoint31YTile(ind, i);
+		}
+
+		@Override
+		public int getPoint31YTile(int s, int e) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getPoint31YTile(s, e) : t.getPoint31YTile(ind, s) / 2 + t.getPoint31YTile(ind, e) / 2;
+		}
+
+		@Override
+		public int getPointsLength() {
+			PackedRouteTile t = tile;
+			return t == null ? super.getPointsLength() : t.getPointsLength(ind);
+		}
+
+		@Override
+		public int getRestrictionLength() {
+			PackedRouteTile t = tile;
+			return t == null ? super.getRestrictionLength() : t.getRestrictionLength(ind);
+		}
+
+		@Override
+		public int getRestrictionType(int i) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getRestrictionType(i) : (int) (t.getRestriction(ind, i) & RESTRICTION_MASK);
+		}
+
+		@Override
+		public long getRestrictionId(int i) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getRestrictionId(i) : t.getRestriction(ind, i) >> RESTRICTION_SHIFT;
+		}
+
+		@Override
+		public long getRestrictionVia(int i) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getRestrictionVia(i) : t.getRestrictionVia(ind, i);
+		}
+
+		@Override
+		public boolean hasPointTypes() {
+			PackedRouteTile t = tile;
+			return t == null ? super.hasPointTypes() : t.pointTypesLength[ind] >= 0;
+		}
+
+		@Override
+		public int[] getPointTypes(int point) {
+			PackedRouteTile t = tile;
+			return t == null ? super.getPointTypes(point) : t.getPointTypes(ind, point);
+		}
+
+		@Override
+		public void processConditionalTags(long conditionalTime) {
+			PackedRouteTile t = tile;
+			if (t != null && !t.conditional[ind]) {
+				return;
+			}
+			materialize();
+			super.processConditionalTags(conditionalTime);
+		}
+
+		@Override
+		public void insert(int pos, int x31, int y31) {
+			materialize();
+			super.insert(pos, x31, y31);
+		}
+
+		@Override
+		public void removePointType(int ind, int type) {
+			materialize();
+			super.removePointType(ind, type);
+		}
+
+		@Override
+		public void setRestriction(int k, long to, int type, long viaWay) {
+			materialize();
+			super.setRestriction(k, to, type, viaWay);
+		}
+
+		@Override
+		public void setRestrictionVia(int k, long viaWay) {
+			materialize();
+			super.setRestrictionVia(k, viaWay);
+		}
+
+		@Override
+		public void setPointNames(int pntInd, int[] array, String[] nms) {
+			materialize();
+			super.setPointNames(pntInd, array, nms);
+		}
+
+		@Override
+		public void setPointTypes(int pntInd, int[] array) {
+			materialize();
+			super.setPointTypes(pntInd, array);
+		}
+	}
+
+	private static class TypeSetKey {
+		final int[] types;
+		final int hash;
+
+		TypeSetKey(int[] types) {
+			this.types = types;
+			this.hash = Arrays.hashCode(types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TypeSetKey && Arrays.equals(types, ((TypeSetKey) obj).types);
+		}
+	}
+}
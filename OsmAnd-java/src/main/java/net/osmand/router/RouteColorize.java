@@ -5,6 +5,7 @@ import net.osmand.gpx.GPXTrackAnalysis;
 import net.osmand.gpx.GPXUtilities.Track;
 import net.osmand.gpx.GPXUtilities.TrkSegment;
 import net.osmand.gpx.GPXUtilities.WptPt;
+import net.osmand.gpx.PackedTrackPoints;
 import net.osmand.PlatformUtil;
 import net.osmand.osm.edit.Node;
 import net.osmand.osm.edit.OsmMapUtils;
@@ -121,9 +122,16 @@ public class RouteColorize {
                     continue;
                 }
 
-                for (WptPt p : ts.points) {
-                    latList.add(p.lat);
-                    lonList.add(p.lon);
+                PackedTrackPoints packed = ts.isPacked() ? (PackedTrackPoints) ts.points : null;
+                for (int i = 0; i < ts.points.size(); i++) {
+                    if (packed != null) {
+                        latList.add(packed.getLatitude(i));
+                        lonList.add(packed.getLongitude(i));
+                    } else {
+                        WptPt p = ts.points.get(i);
+                        latList.add(p.lat);
+                        lonList.add(p.lon);
+                    }
                     if (type == ColorizationType.SPEED) {
                         valList.add((double) analysis.pointAttributes.get(wptIdx).speed);
                     } else {
@@ -9,6 +9,7 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.logging.Log;
 
@@ -18,6 +19,7 @@ import net.osmand.NativeLibrary;
 import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReaderPool;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
@@ -44,13 +46,32 @@ public class RoutePlannerFrontEnd {
 //	private static final HHRoutingConfig DEFAULT_ROUTING_CONFIG = HHRoutingConfig.dijkstra(0).calcDetailed(HHRoutingConfig.CALCULATE_ALL_DETAILED);
 	private boolean useSmartRouteRecalculation = true;
 	private boolean useNativeApproximation = true;
+	private boolean useHmmApproximation = false;
 	private boolean useOnlyHHRouting = false;
 	private HHRoutingConfig hhRoutingConfig = null;
 	private HHRoutingType hhRoutingType = HHRoutingType.JAVA;
+	private ExecutorService gpxApproximationExecutor = null;
 
 	public RoutePlannerFrontEnd() {
 	}
 
+	// copy with own hh config to be used by another thread
+	RoutePlannerFrontEnd copy() {
+		RoutePlannerFrontEnd f = new RoutePlannerFrontEnd();
+		f.useSmartRouteRecalculation = useSmartRouteRecalculation;
+		f.useNativeApproximation = useNativeApproximation;
+		f.useHmmApproximation = useHmmApproximation;
+		f.useOnlyHHRouting = useOnlyHHRouting;
+		f.hhRoutingConfig = hhRoutingConfig == null ? null : hhRoutingConfig.copy();
+		f.hhRoutingType = hhRoutingType;
+		f.gpxApproximationExecutor = gpxApproximationExecutor;
+		return f;
+	}
+
+	HHRoutingConfig getHHRoutingConfig() {
+		return hhRoutingConfig;
+	}
+
 	public enum RouteCalculationMode {
 		BASE, NORMAL, COMPLEX
 	}
@@ -79,6 +100,8 @@ public class RoutePlannerFrontEnd {
 		// Parameter to smoother the track itself (could be 0 if it's not recorded
 		// track)
 		public double SMOOTHEN_POINTS_NO_ROUTE = 5;
+		// Length of track approximated by one thread (see RoutePlannerFrontEnd.setGpxApproximationExecutor)
+		public double CHUNK_APPROXIMATION_DISTANCE = 50000;
 
 		public final RoutingContext ctx;
 		public int routeCalculations = 0;
@@ -156,6 +179,24 @@ public class RoutePlannerFrontEnd {
 		}
 	}
 
+	// sequential approximation: next start point and start point of previously found route
+	static class GpxApproximationState {
+		GpxRouteApproximation gctx;
+		final List<GpxPoint> points;
+		GpxPoint start;
+		GpxPoint prev;
+
+		GpxApproximationState(GpxRouteApproximation gctx, List<GpxPoint> points) {
+			this(gctx, points, points.isEmpty() ? null : points.get(0));
+		}
+
+		GpxApproximationState(GpxRouteApproximation gctx, List<GpxPoint> points, GpxPoint start) {
+			this.gctx = gctx;
+			this.points = points;
+			this.start = start;
+		}
+	}
+
 	public RoutingContext buildRoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary,
 			BinaryMapIndexReader[] map, RouteCalculationMode rm) {
 		return new RoutingContext(config, nativeLibrary, map, rm);
@@ -268,6 +309,16 @@ public class RoutePlannerFrontEnd {
 		return searchRoute(ctx, start, end, intermediates, null);
 	}
 
+	/**
+	 * Calculates independent routes concurrently (see {@link BatchRoutePlanner}).
+	 * Results are published to matcher as soon as they are calculated and returned in order of requests.
+	 */
+	public List<BatchRoutePlanner.RouteResult> searchRoutes(RoutingConfiguration config, BinaryMapIndexReaderPool pool,
+			List<BatchRoutePlanner.RouteRequest> requests, ExecutorService executor,
+			ResultMatcher<BatchRoutePlanner.RouteResult> matcher) throws InterruptedException {
+		return new BatchRoutePlanner(this, config, pool).searchRoutes(requests, executor, pool.getMaxLeases(), matcher);
+	}
+
 	public RoutePlannerFrontEnd setUseFastRecalculation(boolean use) {
 		useSmartRouteRecalculation = use;
 		return this;
@@ -309,6 +360,28 @@ public class RoutePlannerFrontEnd {
 		return useNativeApproximation;
 	}
 
+	/**
+	 * Java approximation by map matching with hidden Markov model (see {@link GpxHmmApproximation})
+	 * instead of routing between track points.
+	 */
+	public RoutePlannerFrontEnd setUseHmmApproximation(boolean useHmmApproximation) {
+		this.useHmmApproximation = useHmmApproximation;
+		return this;
+	}
+
+	public boolean isUseHmmApproximation() {
+		return useHmmApproximation;
+	}
+
+	/**
+	 * Java approximation of tracks longer than {@link GpxRouteApproximation#CHUNK_APPROXIMATION_DISTANCE}
+	 * splits track into overlapping chunks approximated concurrently by executor (null means sequential).
+	 */
+	public RoutePlannerFrontEnd setGpxApproximationExecutor(ExecutorService gpxApproximationExecutor) {
+		this.gpxApproximationExecutor = gpxApproximationExecutor;
+		return this;
+	}
+
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints,
 			ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
@@ -320,81 +393,19 @@ public class RoutePlannerFrontEnd {
 			if (gctx.ctx.calculationProgress == null) {
 				gctx.ctx.calculationProgress = new RouteCalculationProgress();
 			}
-			GpxPoint start = null;
-			GpxPoint prev = null;
 			if (gpxPoints.size() > 0) {
 				gctx.ctx.calculationProgress.totalApproximateDistance = (float) gpxPoints
 						.get(gpxPoints.size() - 1).cumDist;
-				start = gpxPoints.get(0);
-			}
-			float minPointApproximation = gctx.ctx.config.minPointApproximation;
-			while (start != null && !gctx.ctx.calculationProgress.isCancelled) {
-				double routeDist = gctx.ctx.config.maxStepApproximation;
-				GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-				boolean routeFound = false;
-				if (next != null && initRoutingPoint(start, gctx, minPointApproximation)) {
-					while (routeDist >= gctx.ctx.config.minStepApproximation && !routeFound) {
-						routeFound = initRoutingPoint(next, gctx, minPointApproximation);
-						if (routeFound) {
-							routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
-							if (routeFound) {
-								routeFound = isRouteCloseToGpxPoints(minPointApproximation, gpxPoints, start, next);
-								if (!routeFound) {
-									start.routeToTarget = null;
-								}
-							}
-							if (routeFound && next.ind < gpxPoints.size() - 1) {
-								// route is found - cut the end of the route and move to next iteration
-								// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
-								// boolean stepBack = true;
-								boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
-								if (!stepBack) {
-									// not supported case (workaround increase routing.xml maxStepApproximation)
-									log.info("Consider to increase routing.xml maxStepApproximation to: "
-											+ routeDist * 2);
-									start.routeToTarget = null;
-									routeFound = false;
-								} else {
-									if (gctx.ctx.getVisitor() != null) {
-										gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
-												next);
-									}
-								}
-							}
-						}
-						if (!routeFound) {
-							// route is not found move next point closer to start point (distance / 2)
-							routeDist = routeDist / 2;
-							if (routeDist < gctx.ctx.config.minStepApproximation
-									&& routeDist > gctx.ctx.config.minStepApproximation / 2 + 1) {
-								routeDist = gctx.ctx.config.minStepApproximation;
-							}
-							next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-							if (next != null) {
-								routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
-							}
-						}
-					}
-				}
-				// route is not found skip segment and keep it as straight line on display
-				if (!routeFound && next != null) {
-					// route is not found, move start point by
-					next = findNextGpxPointWithin(gpxPoints, start, gctx.ctx.config.minStepApproximation);
-					if (prev != null) {
-						prev.routeToTarget.addAll(prev.stepBackRoute);
-//						makeSegmentPointPrecise(prev.routeToTarget.get(prev.routeToTarget.size() - 1), start.loc, false);
-						if (next != null) {
-							log.warn("NOT found route from: " + start.pnt.getRoad() + " at "
-									+ start.pnt.getSegmentStart());
-						}
-					}
-					prev = null;
-				} else {
-					prev = start;
-				}
-				start = next;
-				if (gctx.ctx.calculationProgress != null && start != null) {
-					gctx.ctx.calculationProgress.approximatedDistance = (float) start.cumDist;
+			}
+			if (useHmmApproximation) {
+				new GpxHmmApproximation(this, gctx, gpxPoints).approximate();
+			} else if (gpxApproximationExecutor != null && gpxPoints.size() > 0
+					&& gpxPoints.get(gpxPoints.size() - 1).cumDist > gctx.CHUNK_APPROXIMATION_DISTANCE) {
+				new GpxChunkApproximation(this, gctx, gpxPoints).approximate(gpxApproximationExecutor);
+			} else {
+				GpxApproximationState state = new GpxApproximationState(gctx, gpxPoints);
+				while (state.start != null && !gctx.ctx.calculationProgress.isCancelled) {
+					approximateGpxSegment(state);
 				}
 			}
 			if (gctx.ctx.calculationProgress != null) {
@@ -414,6 +425,86 @@ public class RoutePlannerFrontEnd {
 		return gctx;
 	}
 
+	/**
+	 * Approximates route from state start point to the next point within maxStepApproximation
+	 * (one iteration of sequential approximation) and moves state to the next start point.
+	 */
+	void approximateGpxSegment(GpxApproximationState state) throws IOException, InterruptedException {
+		GpxRouteApproximation gctx = state.gctx;
+		List<GpxPoint> gpxPoints = state.points;
+		GpxPoint start = state.start;
+		GpxPoint prev = state.prev;
+		float minPointApproximation = gctx.ctx.config.minPointApproximation;
+		double routeDist = gctx.ctx.config.maxStepApproximation;
+		GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+		boolean routeFound = false;
+		if (next != null && initRoutingPoint(start, gctx, minPointApproximation)) {
+			while (routeDist >= gctx.ctx.config.minStepApproximation && !routeFound) {
+				routeFound = initRoutingPoint(next, gctx, minPointApproximation);
+				if (routeFound) {
+					routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
+					if (routeFound) {
+						routeFound = isRouteCloseToGpxPoints(minPointApproximation, gpxPoints, start, next);
+						if (!routeFound) {
+							start.routeToTarget = null;
+						}
+					}
+					if (routeFound && next.ind < gpxPoints.size() - 1) {
+						// route is found - cut the end of the route and move to next iteration
+						// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
+						// boolean stepBack = true;
+						boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
+						if (!stepBack) {
+							// not supported case (workaround increase routing.xml maxStepApproximation)
+							log.info("Consider to increase routing.xml maxStepApproximation to: "
+									+ routeDist * 2);
+							start.routeToTarget = null;
+							routeFound = false;
+						} else {
+							if (gctx.ctx.getVisitor() != null) {
+								gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
+										next);
+							}
+						}
+					}
+				}
+				if (!routeFound) {
+					// route is not found move next point closer to start point (distance / 2)
+					routeDist = routeDist / 2;
+					if (routeDist < gctx.ctx.config.minStepApproximation
+							&& routeDist > gctx.ctx.config.minStepApproximation / 2 + 1) {
+						routeDist = gctx.ctx.config.minStepApproximation;
+					}
+					next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+					if (next != null) {
+						routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
+					}
+				}
+			}
+		}
+		// route is not found skip segment and keep it as straight line on display
+		if (!routeFound && next != null) {
+			// route is not found, move start point by
+			next = findNextGpxPointWithin(gpxPoints, start, gctx.ctx.config.minStepApproximation);
+			if (prev != null) {
+				prev.routeToTarget.addAll(prev.stepBackRoute);
+//				makeSegmentPointPrecise(prev.routeToTarget.get(prev.routeToTarget.size() - 1), start.loc, false);
+				if (next != null) {
+					log.warn("NOT found route from: " + start.pnt.getRoad() + " at "
+							+ start.pnt.getSegmentStart());
+				}
+			}
+			prev = null;
+		} else {
+			prev = start;
+		}
+		state.prev = prev;
+		state.start = next;
+		if (gctx.ctx.calculationProgress != null && next != null) {
+			gctx.ctx.calculationProgress.approximatedDistance = (float) next.cumDist;
+		}
+	}
+
 	private boolean isRouteCloseToGpxPoints(float minPointApproximation, List<GpxPoint> gpxPoints, GpxPoint start,
 			GpxPoint next) {
 		boolean routeIsClose = true;
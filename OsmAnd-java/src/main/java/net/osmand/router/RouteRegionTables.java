@@ -0,0 +1,185 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+/**
+ * Precomputed router decisions of 1 region (per GeneralRouter): region type id -> universal rule id
+ * and distinct types combinations of region -> dense id with a float column per evaluated attribute
+ * (value of combination is column[id], NaN if not evaluated).
+ *
+ * Could be used by many threads: reads are lock free (immutable entries published with volatile state),
+ * modifications are synchronized. Number of combinations is bounded, tables are reset when it is exceeded.
+ */
+class RouteRegionTables {
+
+	public static final int DEFAULT_MAX_COMBINATIONS = 1 << 15;
+
+	final RouteRegion region;
+	private final int columnsCount;
+	private final int maxCombinations;
+	// region type id -> universal rule id (-1 not registered yet)
+	private volatile int[] universalIds = new int[0];
+	private volatile State state;
+	private int resets;
+
+	private static class Entry {
+		final int[] key;
+		final int id;
+
+		Entry(int[] key, int id) {
+			this.key = key;
+			this.id = id;
+		}
+	}
+
+	private static class State {
+		final Entry[] entries;
+		// columns are allocated with full capacity (entries.length / 2) before publishing
+		final float[][] columns;
+		int size;
+
+		State(int capacity, int columnsCount) {
+			entries = new Entry[capacity];
+			columns = new float[columnsCount][];
+		}
+	}
+
+	RouteRegionTables(RouteRegion region, int columnsCount) {
+		this(region, columnsCount, DEFAULT_MAX_COMBINATIONS);
+	}
+
+	RouteRegionTables(RouteRegion region, int columnsCount, int maxCombinations) {
+		this.region = region;
+		this.columnsCount = columnsCount;
+		this.maxCombinations = maxCombinations;
+		this.state = new State(32, columnsCount);
+	}
+
+	int[] getUniversalIds() {
+		return universalIds;
+	}
+
+	synchronized int[] ensureUniversalIds(int maxType) {
+		int[] map = universalIds;
+		if (map.length <= maxType) {
+			int l = Math.max(maxType + 1, region.routeEncodingRules.size());
+			int[] nmap = new int[l];
+			Arrays.fill(nmap, -1);
+			System.arraycopy(map, 0, nmap, 0, map.length);
+			universalIds = map = nmap;
+		}
+		return map;
+	}
+
+	private static int hash(int[] types) {
+		int h = Arrays.hashCode(types);
+		return h ^ (h >>> 16);
+	}
+
+	private static int getId(State s, int[] types) {
+		Entry[] entries = s.entries;
+		int mask = entries.length - 1;
+		int i = hash(types) & mask;
+		Entry e;
+		while ((e = entries[i]) != null) {
+			if (Arrays.equals(e.key, types)) {
+				return e.id;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	// returns id of combination in current state
+	private int intern(int[] types) {
+		State s = state;
+		int id = getId(s, types);
+		if (id >= 0) {
+			return id;
+		}
+		if (s.size >= maxCombinations) {
+			s = new State(32, columnsCount);
+			resets++;
+			state = s;
+		} else if ((s.size + 1) * 2 > s.entries.length) {
+			s = copy(s, s.entries.length * 2);
+			state = s;
+		}
+		id = s.size++;
+		insert(s.entries, new Entry(types.clone(), id));
+		return id;
+	}
+
+	private static void insert(Entry[] entries, Entry e) {
+		int mask = entries.length - 1;
+		int i = hash(e.key) & mask;
+		while (entries[i] != null) {
+			i = (i + 1) & mask;
+		}
+		entries[i] = e;
+	}
+
+	private State copy(State s, int capacity) {
+		State n = new State(capacity, columnsCount);
+		for (Entry e : s.entries) {
+			if (e != null) {
+				insert(n.entries, e);
+			}
+		}
+		for (int c = 0; c < columnsCount; c++) {
+			if (s.columns[c] != null) {
+				n.columns[c] = newColumn(capacity / 2);
+				System.arraycopy(s.columns[c], 0, n.columns[c], 0, s.columns[c].length);
+			}
+		}
+		n.size = s.size;
+		return n;
+	}
+
+	private static float[] newColumn(int l) {
+		float[] c = new float[l];
+		Arrays.fill(c, Float.NaN);
+		return c;
+	}
+
+	// returns NaN if value is not evaluated
+	float get(int column, int[] types) {
+		State s = state;
+		float[] c = s.columns[column];
+		if (c == null) {
+			return Float.NaN;
+		}
+		int id = getId(s, types);
+		return id < 0 ? Float.NaN : c[id];
+	}
+
+	boolean contains(int[] types) {
+		return getId(state, types) >= 0;
+	}
+
+	synchronized void put(int column, int[] types, float value) {
+		int id = intern(types);
+		State s = state;
+		if (s.columns[column] == null) {
+			// publish new column with new state
+			s = copy(s, s.entries.length);
+			s.columns[column] = newColumn(s.entries.length / 2);
+			state = s;
+		}
+		s.columns[column][id] = value;
+	}
+
+	int size() {
+		return state.size;
+	}
+
+	synchronized int getResets() {
+		return resets;
+	}
+
+	synchronized void clear() {
+		state = new State(32, columnsCount);
+	}
+}
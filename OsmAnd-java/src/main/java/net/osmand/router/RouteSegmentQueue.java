@@ -0,0 +1,128 @@
+package net.osmand.router;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Binary min-heap of route segments with primitive float costs (no wrapper object and comparator call per entry).
+ * Segment keeps its position in the heap, so adding a segment which is already in the queue only decreases its cost
+ * (decrease key) instead of adding a duplicate entry.
+ * Heap operations follow java.util.PriorityQueue, so without duplicates polling order is the same.
+ */
+class RouteSegmentQueue {
+
+	private float[] costs;
+	private RouteSegment[] segments;
+	private int size;
+
+	RouteSegmentQueue(int initialCapacity) {
+		costs = new float[Math.max(initialCapacity, 1)];
+		segments = new RouteSegment[costs.length];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(RouteSegment segment) {
+		int i = segment.queueIndex;
+		return i >= 0 && i < size && segments[i] == segment;
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	public float peekCost() {
+		return size == 0 ? Float.NaN : costs[0];
+	}
+
+	public void add(RouteSegment segment, float cost) {
+		if (contains(segment)) {
+			// PriorityQueue would keep both entries and poll the cheapest one first (the other one is skipped as visited)
+			int i = segment.queueIndex;
+			if (cost < costs[i]) {
+				siftUp(i, segment, cost);
+			}
+			return;
+		}
+		if (size == costs.length) {
+			grow();
+		}
+		siftUp(size++, segment, cost);
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		RouteSegment result = segments[0];
+		int n = --size;
+		RouteSegment last = segments[n];
+		float lastCost = costs[n];
+		segments[n] = null;
+		if (n > 0) {
+			siftDown(0, last, lastCost);
+		}
+		result.queueIndex = -1;
+		return result;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			segments[i].queueIndex = -1;
+			segments[i] = null;
+		}
+		size = 0;
+	}
+
+	private void grow() {
+		int capacity = costs.length < 64 ? costs.length * 2 + 2 : costs.length + (costs.length >> 1);
+		float[] ncosts = new float[capacity];
+		RouteSegment[] nsegments = new RouteSegment[capacity];
+		System.arraycopy(costs, 0, ncosts, 0, size);
+		System.arraycopy(segments, 0, nsegments, 0, size);
+		costs = ncosts;
+		segments = nsegments;
+	}
+
+	private void siftUp(int k, RouteSegment segment, float cost) {
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			if (cost >= costs[parent]) {
+				break;
+			}
+			set(k, segments[parent], costs[parent]);
+			k = parent;
+		}
+		set(k, segment, cost);
+	}
+
+	private void siftDown(int k, RouteSegment segment, float cost) {
+		int half = size >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			float c = costs[child];
+			int right = child + 1;
+			if (right < size && c > costs[right]) {
+				child = right;
+				c = costs[right];
+			}
+			if (cost <= c) {
+				break;
+			}
+			set(k, segments[child], c);
+			k = child;
+		}
+		set(k, segment, cost);
+	}
+
+	private void set(int k, RouteSegment segment, float cost) {
+		segments[k] = segment;
+		costs[k] = cost;
+		segment.queueIndex = k;
+	}
+}
@@ -52,15 +52,18 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 	private static final float DIST_TO_SEEK_DEST = 1000;
 
 	public RouteSegmentResult(RouteDataObject object) {
+		object.materialize();
 		this.object = object;
 	}
 
 	public RouteSegmentResult(RouteDataObject object, boolean leftside) {
+		object.materialize();
 		this.object = object;
 		this.leftside = leftside;
 	}
 
 	public RouteSegmentResult(RouteDataObject object, int startPointIndex, int endPointIndex) {
+		object.materialize();
 		this.object = object;
 		this.startPointIndex = startPointIndex;
 		this.endPointIndex = endPointIndex;
@@ -70,6 +73,7 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 	public RouteSegmentResult(RouteDataObject object, int startPointIndex, int endPointIndex,
 	                          RouteSegmentResult[][] preAttachedRoutes, float segmentTime,
 	                          float routingTime, float speed, float distance, TurnType turnType) {
+		object.materialize();
 		this.object = object;
 		this.startPointIndex = startPointIndex;
 		this.endPointIndex = endPointIndex;
@@ -638,6 +642,7 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 	}
 	
 	public void setObject(RouteDataObject r) {
+		r.materialize();
 		this.object = r;
 	}
 
@@ -67,6 +67,12 @@ public class RoutingConfiguration {
 	// 1.7 Maximum visited segments
 	public int MAX_VISITED = -1;
 
+	// 1.8 Shared cache of decoded route tiles between routing contexts (optional)
+	public RoutingTileCache tileCache;
+
+	// 1.9 Expand forward and reverse A* graph on 2 threads (2 directions java routing only, uses 2x memory)
+	public boolean parallelBidirectionalSearch = false;
+
 
 	// extra points to be inserted in ways (quad tree is based on 31 coords)
 	private QuadTree<DirectionPoint> directionPoints;
@@ -89,6 +95,33 @@ public class RoutingConfiguration {
 		return directionPoints;
 	}
 
+	RoutingConfiguration copy(GeneralRouter router) {
+		RoutingConfiguration c = new RoutingConfiguration();
+		c.attributes.putAll(attributes);
+		c.heuristicCoefficient = heuristicCoefficient;
+		c.ZOOM_TO_LOAD_TILES = ZOOM_TO_LOAD_TILES;
+		c.memoryLimitation = memoryLimitation;
+		c.nativeMemoryLimitation = nativeMemoryLimitation;
+		c.planRoadDirection = planRoadDirection;
+		c.router = router;
+		c.routerName = routerName;
+		c.initialDirection = initialDirection;
+		c.targetDirection = targetDirection;
+		c.penaltyForReverseDirection = penaltyForReverseDirection;
+		c.recalculateDistance = recalculateDistance;
+		c.routeCalculationTime = routeCalculationTime;
+		c.MAX_VISITED = MAX_VISITED;
+		c.tileCache = tileCache;
+		c.parallelBidirectionalSearch = parallelBidirectionalSearch;
+		c.directionPoints = directionPoints;
+		c.directionPointsRadius = directionPointsRadius;
+		c.minPointApproximation = minPointApproximation;
+		c.minStepApproximation = minStepApproximation;
+		c.maxStepApproximation = maxStepApproximation;
+		c.smoothenPointsNoRoute = smoothenPointsNoRoute;
+		return c;
+	}
+
 	public static class DirectionPoint extends Node {
 		private static final long serialVersionUID = -7496599771204656505L;
 		public double distance = Double.MAX_VALUE;
@@ -142,6 +175,7 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<>();
 		private Set<Long> impassableRoadLocations = new HashSet<>();
 		private QuadTree<Node> directionPointsBuilder;
+		private RoutingTileCache tileCache;
 
 		public Builder() {
 		}
@@ -235,9 +269,15 @@ public class RoutingConfiguration {
 					i.directionPoints.insert(dp, new QuadRect(x, y, x, y));
 				}
 			}
+			i.tileCache = tileCache;
 //			i.planRoadDirection = 1;
 			return i;
 		}
+
+		public Builder setTileCache(RoutingTileCache tileCache) {
+			this.tileCache = tileCache;
+			return this;
+		}
 		
 		public Builder setDirectionPoints(QuadTree<Node> directionPoints) {
 			this.directionPointsBuilder = directionPoints;
@@ -2,6 +2,7 @@ package net.osmand.router;
 
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -121,6 +122,42 @@ public class RoutingContext {
 		this.precalculatedRouteDirection = cp.precalculatedRouteDirection;
 	}
 	
+	// context to search route in another thread: own readers and tiles (decoded tiles could be shared by tile cache, router caches are shared)
+	RoutingContext copyForConcurrentSearch() throws IOException {
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[map.size()];
+		int i = 0;
+		try {
+			for (BinaryMapIndexReader r : map.keySet()) {
+				readers[i++] = new BinaryMapIndexReader(new RandomAccessFile(r.getFile(), "r"), r);
+			}
+		} catch (IOException e) {
+			for (BinaryMapIndexReader r : readers) {
+				if (r != null) {
+					r.close();
+				}
+			}
+			throw e;
+		}
+		RoutingContext c = new RoutingContext(config.copy(config.router.copy()), null, readers, calculationMode);
+		c.startX = startX;
+		c.startY = startY;
+		c.targetX = targetX;
+		c.targetY = targetY;
+		c.intermediatesX = intermediatesX;
+		c.intermediatesY = intermediatesY;
+		c.dijkstraMode = dijkstraMode;
+		c.leftSideNavigation = leftSideNavigation;
+		c.calculationProgress = new RouteCalculationProgress();
+		return c;
+	}
+
+	void closeConcurrentCopy() throws IOException {
+		unloadAllData();
+		for (BinaryMapIndexReader r : map.keySet()) {
+			r.close();
+		}
+	}
+
 	RoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] list, RouteCalculationMode calcMode) {
 		this.calculationMode = calcMode;
 		for (BinaryMapIndexReader mr : list) {
@@ -138,6 +175,12 @@ public class RoutingContext {
 		}
 		this.config = config;
 		this.nativeLib = nativeLibrary;
+		if (config.router != null) {
+			// precompute conversion of region types for router
+			for (RouteRegion r : reverseMap.keySet()) {
+				config.router.registerRouteRegionRules(r);
+			}
+		}
 		this.intermediatesX = new int[0];
 		this.intermediatesY = new int[0];
 	}
@@ -313,7 +356,8 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res = config.tileCache != null ? config.tileCache.loadRouteIndexData(reader, ts.subregion)
+						: reader.loadRouteIndexData(ts.subregion);
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
@@ -875,7 +919,7 @@ public class RoutingContext {
 		
 		public void add(RouteDataObject ro) {
 			tileStatistics.addObject(ro);
-			for (int i = 0; i < ro.pointsX.length; i++) {
+			for (int i = 0; i < ro.getPointsLength(); i++) {
 				int x31 = ro.getPoint31XTile(i);
 				int y31 = ro.getPoint31YTile(i);
 				long l = (((long) x31) << 31) + (long) y31;
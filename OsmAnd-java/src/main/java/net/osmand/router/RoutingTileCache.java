@@ -0,0 +1,163 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Process-wide LRU cache of decoded route subregion tiles shared by many RoutingContext (could be used concurrently).
+ * Tiles are stored as decoded from file (before router filtering), so the same cache serves all routing profiles.
+ * Objects of a tile are kept packed in shared primitive arrays (see PackedRouteTile) and returned as views over them.
+ * Tiles are keyed by RouteRegion + subregion file pointer: readers of the same file should share
+ * index structure (see BinaryMapIndexReaderPool) to share cached tiles.
+ */
+public class RoutingTileCache {
+
+	public static final int DEFAULT_MEMORY_LIMIT_MB = 256;
+
+	private final long memoryLimit;
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(256, 0.75f, true);
+	private long size;
+
+	private long hits;
+	private long misses;
+	private long evicted;
+
+	public RoutingTileCache() {
+		this(DEFAULT_MEMORY_LIMIT_MB * (1l << 20));
+	}
+
+	public RoutingTileCache(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * Returns objects of subregion (ready to be modified by routing context, i.e. conditional tags, direction points).
+	 * Objects are loaded with given reader in case tile is not cached.
+	 */
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+		TileKey key = new TileKey(subregion.routeReg, subregion.filePointer);
+		CachedTile tile;
+		synchronized (this) {
+			tile = tiles.get(key);
+			if (tile != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		if (tile == null) {
+			List<RouteDataObject> res = reader.loadRouteIndexData(subregion);
+			tile = new CachedTile(new PackedRouteTile(res));
+			synchronized (this) {
+				CachedTile existing = tiles.get(key);
+				if (existing != null) {
+					// loaded concurrently
+					tile = existing;
+				} else {
+					tiles.put(key, tile);
+					size += tile.size;
+					evict();
+				}
+			}
+		}
+		return tile.objects.unpack();
+	}
+
+	private void evict() {
+		Iterator<Entry<TileKey, CachedTile>> it = tiles.entrySet().iterator();
+		while (size > memoryLimit && it.hasNext()) {
+			CachedTile t = it.next().getValue();
+			it.remove();
+			size -= t.size;
+			evicted++;
+		}
+	}
+
+	public synchronized void removeRegion(RouteRegion region) {
+		Iterator<Entry<TileKey, CachedTile>> it = tiles.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<TileKey, CachedTile> e = it.next();
+			if (e.getKey().region == region) {
+				size -= e.getValue().size;
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		size = 0;
+	}
+
+	public long getMemoryLimit() {
+		return memoryLimit;
+	}
+
+	public synchronized long getEstimatedSize() {
+		return size;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvicted() {
+		return evicted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Routing tile cache: %d tiles, %.1f / %.1f MB, hits %d, misses %d, evicted %d",
+				tiles.size(), size / (float) (1 << 20), memoryLimit / (float) (1 << 20), hits, misses, evicted);
+	}
+
+	private static class CachedTile {
+		final PackedRouteTile objects;
+		final long size;
+
+		CachedTile(PackedRouteTile objects) {
+			this.objects = objects;
+			this.size = objects.getEstimatedSize();
+		}
+	}
+
+	private static class TileKey {
+		final RouteRegion region;
+		final long filePointer;
+
+		TileKey(RouteRegion region, long filePointer) {
+			this.region = region;
+			this.filePointer = filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(region) * 31 + (int) (filePointer ^ (filePointer >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey o = (TileKey) obj;
+			return region == o.region && filePointer == o.filePointer;
+		}
+	}
+}
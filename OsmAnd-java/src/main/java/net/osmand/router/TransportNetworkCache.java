@@ -0,0 +1,162 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+
+/**
+ * Merged transport stops (with combined routes) of tiles shared by many {@link TransportRoutingContext}s
+ * which route over the same files. Tiles are loaded lazily on first request and least recently used tiles
+ * are evicted when there are more than maxTiles of them.
+ * <p>
+ * Loaded stops and routes must not be modified, each routing context creates own route segments for them.
+ * Ways of loaded routes are merged on load, so {@link TransportRoute#mergeForwardWays()} doesn't change them later.
+ * Files are read by one thread at a time, cached tiles could be requested concurrently.
+ */
+public class TransportNetworkCache {
+
+	public static final int DEFAULT_MAX_TILES = 512;
+	public static final int DEFAULT_MAX_ROUTES = 50000;
+
+	private final List<BinaryMapIndexReader> readers;
+	private final int maxTiles;
+	private final int maxRoutes;
+	private final Map<Long, List<TransportStop>> tiles;
+	private final Object readLock = new Object();
+	// guarded by readLock
+	private TransportStopsRouteReader stopsReader;
+
+	// stats
+	private int loadedTiles;
+	private int evictedTiles;
+	private long loadTime;
+
+	public TransportNetworkCache(BinaryMapIndexReader... readers) {
+		this(DEFAULT_MAX_TILES, DEFAULT_MAX_ROUTES, readers);
+	}
+
+	public TransportNetworkCache(int maxTiles, int maxRoutes, BinaryMapIndexReader... readers) {
+		this.readers = Collections.unmodifiableList(new ArrayList<BinaryMapIndexReader>(Arrays.asList(readers)));
+		this.maxTiles = maxTiles;
+		this.maxRoutes = maxRoutes;
+		this.tiles = new LinkedHashMap<Long, List<TransportStop>>(16, 0.75f, true);
+		this.stopsReader = new TransportStopsRouteReader(this.readers);
+	}
+
+	public List<BinaryMapIndexReader> getReaders() {
+		return readers;
+	}
+
+	/**
+	 * @return true if cache was created for the same files (in the same order), so it could be reused
+	 */
+	public boolean isCacheFor(BinaryMapIndexReader... readers) {
+		if (readers.length != this.readers.size()) {
+			return false;
+		}
+		for (int i = 0; i < readers.length; i++) {
+			File f1 = readers[i].getFile();
+			File f2 = this.readers.get(i).getFile();
+			if (readers[i] != this.readers.get(i) && (f1 == null || f2 == null || !f1.equals(f2)
+					|| f1.lastModified() != f2.lastModified())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return unmodifiable list of stops in tile with routes combined from all files
+	 */
+	public List<TransportStop> getTransportStops(int zoom, int x, int y) throws IOException {
+		Long key = tileKey(zoom, x, y);
+		List<TransportStop> stops = getTile(key);
+		if (stops != null) {
+			return stops;
+		}
+		synchronized (readLock) {
+			stops = getTile(key);
+			if (stops != null) {
+				return stops;
+			}
+			long nanoTime = System.nanoTime();
+			int pz = 31 - zoom;
+			BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(
+					x << pz, (x + 1) << pz, y << pz, (y + 1) << pz, -1, null);
+			Collection<TransportStop> loaded = readTransportStops(sr);
+			for (TransportStop s : loaded) {
+				if (s.getRoutes() != null) {
+					for (TransportRoute route : s.getRoutes()) {
+						route.mergeForwardWays();
+					}
+				}
+			}
+			stops = Collections.unmodifiableList(new ArrayList<TransportStop>(loaded));
+			if (getRoutesCount() > maxRoutes) {
+				// stops in cached tiles keep their routes, new tiles will load routes again
+				stopsReader = new TransportStopsRouteReader(readers);
+			}
+			loadTime += System.nanoTime() - nanoTime;
+			loadedTiles++;
+			putTile(key, stops);
+		}
+		return stops;
+	}
+
+	// called under readLock
+	Collection<TransportStop> readTransportStops(BinaryMapIndexReader.SearchRequest<TransportStop> sr) throws IOException {
+		return stopsReader.readMergedTransportStops(sr);
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Transport network cache: %d tiles (%d loaded, %d evicted, %d ms load)",
+				getTilesCount(), loadedTiles, evictedTiles, loadTime / (1000 * 1000));
+	}
+
+	private synchronized List<TransportStop> getTile(Long key) {
+		return tiles.get(key);
+	}
+
+	private synchronized void putTile(Long key, List<TransportStop> stops) {
+		tiles.put(key, stops);
+		Iterator<List<TransportStop>> it = tiles.values().iterator();
+		while (tiles.size() > maxTiles && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictedTiles++;
+		}
+	}
+
+	private int getRoutesCount() {
+		int count = stopsReader.combinedRoutesCache.size();
+		for (TLongObjectHashMap<TransportRoute> routes : stopsReader.routesFilesCache.values()) {
+			count += routes.size();
+		}
+		return count;
+	}
+
+	private static long tileKey(int zoom, int x, int y) {
+		return (((long) zoom) << 58) + (((long) x) << 29) + y;
+	}
+}
@@ -0,0 +1,435 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+/**
+ * Round based public transport search (RAPTOR, Delling, Pajor, Werneck "Round-Based Public Transit Routing").
+ * Round k finds earliest arrival to stops with k rides: every route boarded at stops improved in previous round
+ * is scanned once along its stops, then changes are relaxed only from stops improved by this scan.
+ * <p>
+ * Routes are read lazily through {@link TransportRoutingContext} as in {@link TransportRoutePlanner} and stored
+ * in flat arrays: stops of all routes are concatenated in one array of positions with cumulative travel time and distance.
+ * Result of each round is Pareto optimal by arrival time and number of changes, so list of results has different number of changes.
+ */
+class TransportRaptorPlanner {
+
+	private static final double INF = Double.POSITIVE_INFINITY;
+
+	private final TransportRoutingContext ctx;
+	private final TransportRoutingConfiguration cfg;
+
+	// stops
+	private final TLongObjectHashMap<Integer> stopIndexes = new TLongObjectHashMap<Integer>();
+	private final List<TransportStop> stops = new ArrayList<TransportStop>();
+	private double[] bestArrival = new double[0];
+	private double[] egressDist = new double[0];
+
+	// routes, positions of route r are routeStart[r] ... routeStart[r + 1] - 1
+	private final TLongObjectHashMap<Integer> routeIndexes = new TLongObjectHashMap<Integer>();
+	private final List<TransportRoute> routes = new ArrayList<TransportRoute>();
+	// departures of trips from first stop (10 seconds based), only when schedule is used
+	private final List<int[]> routeTrips = new ArrayList<int[]>();
+	private final TIntArrayList routeStart = new TIntArrayList();
+	private int[] routeMarked = new int[0];
+
+	// positions
+	private final TIntArrayList positionStop = new TIntArrayList();
+	private final TIntArrayList positionRoute = new TIntArrayList();
+	private double[] positionTime = new double[0];
+	private double[] positionDist = new double[0];
+	private double[] bestReady = new double[0];
+
+	private final ArrivalLabels[] arrivals;
+	private final BoardingLabels[] boardings;
+
+	private double bestFinish = INF;
+	private double labelLimit;
+	private double boardingLimit;
+
+	TransportRaptorPlanner(TransportRoutingContext ctx) {
+		this.ctx = ctx;
+		this.cfg = ctx.cfg;
+		int rounds = cfg.maxNumberOfChanges + 2;
+		arrivals = new ArrivalLabels[rounds];
+		boardings = new BoardingLabels[rounds];
+		for (int k = 0; k < rounds; k++) {
+			arrivals[k] = new ArrivalLabels();
+			boardings[k] = new BoardingLabels();
+		}
+		routeStart.add(0);
+	}
+
+	/**
+	 * @return final segments of Pareto optimal routes (chains of parent segments as built by {@link TransportRoutePlanner})
+	 * or null if calculation was cancelled
+	 */
+	List<TransportRouteSegment> search(LatLon start, LatLon end) throws IOException {
+		List<TransportRouteSegment> results = new ArrayList<TransportRouteSegment>();
+		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
+		if (startStops.isEmpty()) {
+			return results;
+		}
+		double totalDistance = MapUtils.getDistance(start, end);
+		double finishTime = cfg.maxRouteTime;
+		ctx.finishTimeSeconds = cfg.finishTimeSeconds;
+		if (totalDistance > cfg.maxRouteDistance && cfg.maxRouteIncreaseSpeed > 0) {
+			int increaseTime = (int) ((totalDistance - cfg.maxRouteDistance) * 3.6 / cfg.maxRouteIncreaseSpeed);
+			finishTime += increaseTime;
+			ctx.finishTimeSeconds += increaseTime / 6;
+		}
+		double maxTravelTimeCmpToWalk = totalDistance / cfg.walkSpeed - cfg.changeTime / 2;
+		labelLimit = finishTime + ctx.finishTimeSeconds;
+		boardingLimit = Math.min(labelLimit, maxTravelTimeCmpToWalk);
+
+		for (TransportRouteSegment s : ctx.getTransportStops(end)) {
+			int pos = registerRoute(s.road, s.segStart);
+			if (pos != -1) {
+				int stop = positionStop.getQuick(pos);
+				double dist = MapUtils.getDistance(stops.get(stop).getLocation(), end);
+				if (dist < cfg.walkRadius && dist < egressDist[stop]) {
+					egressDist[stop] = dist;
+				}
+			}
+		}
+		TIntArrayList markedRoutes = new TIntArrayList();
+		for (TransportRouteSegment s : startStops) {
+			int pos = registerRoute(s.road, s.segStart);
+			if (pos != -1) {
+				double walkDist = MapUtils.getDistance(s.getLocation(), start);
+				relaxBoarding(0, pos, walkDist / cfg.walkSpeed, -1, walkDist, markedRoutes);
+			}
+		}
+
+		BitSet markedStops = new BitSet();
+		List<TransportRouteSegment> sgms = new ArrayList<TransportRouteSegment>();
+		int rides = cfg.maxNumberOfChanges + 1;
+		for (int k = 1; k <= rides && !markedRoutes.isEmpty(); k++) {
+			markedStops.clear();
+			for (int i = 0; i < markedRoutes.size(); i++) {
+				if (isCancelled()) {
+					return null;
+				}
+				int route = markedRoutes.getQuick(i);
+				int from = routeMarked[route];
+				routeMarked[route] = -1;
+				scanRoute(k, route, from, markedStops);
+			}
+			markedRoutes.clear();
+
+			int finishStop = -1;
+			double finish = bestFinish;
+			ArrivalLabels arrival = arrivals[k];
+			for (int s = markedStops.nextSetBit(0); s >= 0; s = markedStops.nextSetBit(s + 1)) {
+				double t = arrival.time[s] + egressDist[s] / cfg.walkSpeed;
+				if (t < finish) {
+					finish = t;
+					finishStop = s;
+				}
+			}
+			if (finishStop != -1 && (finish < maxTravelTimeCmpToWalk || results.isEmpty())) {
+				bestFinish = finish;
+				results.add(buildSegments(k, finishStop, finish));
+			}
+
+			if (k < rides) {
+				for (int s = markedStops.nextSetBit(0); s >= 0; s = markedStops.nextSetBit(s + 1)) {
+					if (isCancelled()) {
+						return null;
+					}
+					// changes from stops reached after found route can't improve it
+					double arrivalTime = arrival.time[s];
+					if (arrivalTime >= bestFinish) {
+						continue;
+					}
+					TransportStop stop = stops.get(s);
+					sgms.clear();
+					sgms = ctx.getTransportStops(stop.x31, stop.y31, true, sgms);
+					ctx.visitedStops++;
+					for (TransportRouteSegment sgm : sgms) {
+						int pos = registerRoute(sgm.road, sgm.segStart);
+						if (pos != -1) {
+							double walkDist = MapUtils.getDistance(sgm.getLocation(), stop.getLocation());
+							double time = arrivalTime + walkDist / cfg.walkSpeed + cfg.getChangeTime() + cfg.getBoardingTime();
+							relaxBoarding(k, pos, time, s, walkDist, markedRoutes);
+						}
+					}
+				}
+			}
+			updateCalculationProgress(markedRoutes.size(), arrival, markedStops);
+		}
+		return results;
+	}
+
+	private void scanRoute(int k, int route, int from, BitSet markedStops) {
+		ctx.visitedRoutesCount++;
+		BoardingLabels boarding = boardings[k - 1];
+		ArrivalLabels arrival = arrivals[k];
+		int[] trips = routeTrips.get(route);
+		int end = routeStart.getQuick(route + 1);
+		// arrival to position p is base + positionTime[p]
+		double base = INF;
+		int boardPos = -1;
+		int departure = -1;
+		for (int p = from; p < end; p++) {
+			if (boardPos != -1) {
+				double t = base + positionTime[p];
+				int stop = positionStop.getQuick(p);
+				if (t < bestArrival[stop] && t < bestFinish && t <= labelLimit) {
+					bestArrival[stop] = t;
+					arrival.time[stop] = t;
+					arrival.boardPosition[stop] = boardPos;
+					arrival.alightPosition[stop] = p;
+					arrival.departure[stop] = departure;
+					markedStops.set(stop);
+				}
+			}
+			double ready = boarding.time[p];
+			if (ready == INF) {
+				continue;
+			}
+			if (trips == null) {
+				if (ready - positionTime[p] < base) {
+					base = ready - positionTime[p];
+					boardPos = p;
+				}
+			} else {
+				int trip = findTrip(trips, positionTime[p], ready);
+				if (trip != -1 && (trips[trip] - cfg.scheduleTimeOfDay) * 10 < base) {
+					base = (trips[trip] - cfg.scheduleTimeOfDay) * 10;
+					boardPos = p;
+					departure = trips[trip] + (int) (positionTime[p] / 10);
+				}
+			}
+		}
+	}
+
+	private int findTrip(int[] trips, double positionTime, double ready) {
+		int l = 0;
+		int r = trips.length;
+		while (l < r) {
+			int m = (l + r) >>> 1;
+			if ((trips[m] - cfg.scheduleTimeOfDay) * 10 + positionTime < ready) {
+				l = m + 1;
+			} else {
+				r = m;
+			}
+		}
+		if (l < trips.length && trips[l] + positionTime / 10 <= cfg.scheduleTimeOfDay + cfg.scheduleMaxTime) {
+			return l;
+		}
+		return -1;
+	}
+
+	private void relaxBoarding(int k, int pos, double time, int fromStop, double walkDist, TIntArrayList markedRoutes) {
+		if (time < bestReady[pos] && time < bestFinish && time <= boardingLimit) {
+			BoardingLabels boarding = boardings[k];
+			bestReady[pos] = time;
+			boarding.time[pos] = time;
+			boarding.fromStop[pos] = fromStop;
+			boarding.walkDist[pos] = walkDist;
+			int route = positionRoute.getQuick(pos);
+			if (routeMarked[route] == -1) {
+				routeMarked[route] = pos;
+				markedRoutes.add(route);
+			} else if (pos < routeMarked[route]) {
+				routeMarked[route] = pos;
+			}
+		}
+	}
+
+	private TransportRouteSegment buildSegments(int k, int stop, double finishTime) {
+		int[] boardPos = new int[k];
+		int[] alightPos = new int[k];
+		int[] departures = new int[k];
+		for (int i = k - 1; i >= 0; i--) {
+			ArrivalLabels arrival = arrivals[i + 1];
+			boardPos[i] = arrival.boardPosition[stop];
+			alightPos[i] = arrival.alightPosition[stop];
+			departures[i] = arrival.departure[stop];
+			stop = boardings[i].fromStop[boardPos[i]];
+		}
+		TransportRouteSegment parent = null;
+		int parentAlight = -1;
+		for (int i = 0; i <= k; i++) {
+			int pos = i < k ? boardPos[i] : alightPos[k - 1];
+			int route = positionRoute.getQuick(pos);
+			// departure of parent route is taken from child segment to prepare results
+			TransportRouteSegment segment = new TransportRouteSegment(routes.get(route), pos - routeStart.getQuick(route),
+					i > 0 ? departures[i - 1] : -1);
+			if (i < k) {
+				segment.walkDist = boardings[i].walkDist[pos];
+				segment.distFromStart = boardings[i].time[pos];
+			} else {
+				segment.walkDist = egressDist[positionStop.getQuick(pos)];
+				segment.distFromStart = finishTime;
+			}
+			if (parent != null) {
+				int parentBoard = boardPos[i - 1];
+				segment.parentRoute = parent;
+				segment.parentStop = parentAlight - routeStart.getQuick(positionRoute.getQuick(parentAlight));
+				segment.parentTravelTime = positionTime[parentAlight] - positionTime[parentBoard];
+				segment.parentTravelDist = positionDist[parentAlight] - positionDist[parentBoard];
+			}
+			parent = segment;
+			parentAlight = i < k ? alightPos[i] : -1;
+		}
+		return parent;
+	}
+
+	/**
+	 * @return position of stop in compact timetable or -1 if route couldn't be used
+	 */
+	private int registerRoute(TransportRoute road, int stopIndex) {
+		Integer ind = routeIndexes.get(road.getId());
+		if (ind == null) {
+			ind = routes.size();
+			routeIndexes.put(road.getId(), ind);
+			routes.add(road);
+			int first = positionStop.size();
+			List<TransportStop> routeStops = road.getForwardStops();
+			int length = routeStops.size();
+			TransportSchedule schedule = road.getSchedule();
+			int[] trips = null;
+			float speed = cfg.getSpeedByRouteType(road.getType());
+			if (speed == 0 || (cfg.useSchedule && schedule == null)) {
+				length = 0;
+			} else if (cfg.useSchedule) {
+				length = Math.min(length, schedule.avgStopIntervals.size() + 1);
+				trips = new int[schedule.tripIntervals.size()];
+				int t = 0;
+				for (int i = 0; i < trips.length; i++) {
+					t += schedule.tripIntervals.getQuick(i);
+					trips[i] = t;
+				}
+			}
+			ensurePositions(first + length);
+			double time = 0;
+			double dist = 0;
+			for (int i = 0; i < length; i++) {
+				TransportStop stop = routeStops.get(i);
+				if (i > 0) {
+					double segmentDist = MapUtils.getDistance(routeStops.get(i - 1).getLocation(), stop.getLocation());
+					dist += segmentDist;
+					if (trips != null) {
+						time += schedule.avgStopIntervals.getQuick(i - 1) * 10;
+					} else {
+						time += cfg.stopTime + segmentDist / speed;
+					}
+				}
+				positionStop.add(registerStop(stop));
+				positionRoute.add(ind);
+				positionTime[first + i] = time;
+				positionDist[first + i] = dist;
+			}
+			routeTrips.add(trips);
+			routeStart.add(first + length);
+			if (routeMarked.length <= ind) {
+				routeMarked = grow(routeMarked, Math.max(16, routeMarked.length * 2), -1);
+			}
+		}
+		int first = routeStart.getQuick(ind);
+		if (stopIndex >= routeStart.getQuick(ind + 1) - first) {
+			return -1;
+		}
+		return first + stopIndex;
+	}
+
+	private int registerStop(TransportStop stop) {
+		Integer ind = stopIndexes.get(stop.getId());
+		if (ind == null) {
+			ind = stops.size();
+			stopIndexes.put(stop.getId(), ind);
+			stops.add(stop);
+			if (bestArrival.length <= ind) {
+				int size = Math.max(16, bestArrival.length * 2);
+				bestArrival = grow(bestArrival, size, INF);
+				egressDist = grow(egressDist, size, INF);
+				for (ArrivalLabels a : arrivals) {
+					a.ensureCapacity(size);
+				}
+			}
+		}
+		return ind;
+	}
+
+	private void ensurePositions(int count) {
+		if (positionTime.length < count) {
+			int size = Math.max(count, positionTime.length * 2);
+			positionTime = Arrays.copyOf(positionTime, size);
+			positionDist = Arrays.copyOf(positionDist, size);
+			bestReady = grow(bestReady, size, INF);
+			for (BoardingLabels b : boardings) {
+				b.ensureCapacity(size);
+			}
+		}
+	}
+
+	private boolean isCancelled() {
+		return ctx.calculationProgress != null && ctx.calculationProgress.isCancelled;
+	}
+
+	private void updateCalculationProgress(int queueSize, ArrivalLabels arrival, BitSet markedStops) {
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.directSegmentQueueSize = queueSize;
+			for (int s = markedStops.nextSetBit(0); s >= 0; s = markedStops.nextSetBit(s + 1)) {
+				ctx.calculationProgress.distanceFromBegin = (float) Math.max(arrival.time[s],
+						ctx.calculationProgress.distanceFromBegin);
+			}
+		}
+	}
+
+	private static double[] grow(double[] array, int size, double value) {
+		int length = array.length;
+		array = Arrays.copyOf(array, size);
+		Arrays.fill(array, length, size, value);
+		return array;
+	}
+
+	private static int[] grow(int[] array, int size, int value) {
+		int length = array.length;
+		array = Arrays.copyOf(array, size);
+		Arrays.fill(array, length, size, value);
+		return array;
+	}
+
+	// earliest arrival to stop after k rides (only improved in round k)
+	private static class ArrivalLabels {
+		double[] time = new double[0];
+		int[] boardPosition = new int[0];
+		int[] alightPosition = new int[0];
+		int[] departure = new int[0];
+
+		void ensureCapacity(int size) {
+			time = grow(time, size, INF);
+			boardPosition = Arrays.copyOf(boardPosition, size);
+			alightPosition = Arrays.copyOf(alightPosition, size);
+			departure = Arrays.copyOf(departure, size);
+		}
+	}
+
+	// earliest time to board route at position after k rides (only improved in round k)
+	private static class BoardingLabels {
+		double[] time = new double[0];
+		int[] fromStop = new int[0];
+		double[] walkDist = new double[0];
+
+		void ensureCapacity(int size) {
+			time = grow(time, size, INF);
+			fromStop = Arrays.copyOf(fromStop, size);
+			walkDist = Arrays.copyOf(walkDist, size);
+		}
+	}
+}
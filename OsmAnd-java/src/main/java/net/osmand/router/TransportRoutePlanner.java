@@ -32,6 +32,11 @@ public class TransportRoutePlanner {
 
 	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end) throws IOException, InterruptedException {
 		ctx.startCalcTime = System.currentTimeMillis();
+		if (ctx.cfg.useRaptor) {
+			initProgressBar(ctx, start, end);
+			List<TransportRouteSegment> results = new TransportRaptorPlanner(ctx).search(start, end);
+			return results == null ? null : prepareResults(ctx, results);
+		}
 		double totalDistance = MapUtils.getDistance(start, end);
 		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
 		List<TransportRouteSegment> endStops = ctx.getTransportStops(end);
@@ -41,6 +41,9 @@ public class TransportRoutingConfiguration {
 	// day since 2000
 	public int scheduleDayNumber;
 
+	// round based search (see TransportRaptorPlanner) instead of Dijkstra over route segments
+	public boolean useRaptor;
+
 	private Map<String, Integer> rawTypes = new HashMap<String, Integer>();
 	private Map<String, Float> speed = new TreeMap<String, Float>();
 	
@@ -92,6 +95,8 @@ public class TransportRoutingConfiguration {
 			finishTimeSeconds =  router.getIntAttribute("delayForAlternativesRoutes", finishTimeSeconds);
 			String mn = params.get("max_num_changes");
 			maxNumberOfChanges = (int) RoutingConfiguration.parseSilentFloat(mn, maxNumberOfChanges);
+			String raptor = params.get("use_raptor");
+			useRaptor = Boolean.parseBoolean(raptor != null ? raptor : router.getAttribute("useRaptor"));
 			
 			walkSpeed = router.getFloatAttribute("minDefaultSpeed", this.walkSpeed * 3.6f) / 3.6f;
 			defaultTravelSpeed = router.getFloatAttribute("maxDefaultSpeed", this.defaultTravelSpeed * 3.6f) / 3.6f;
@@ -34,6 +34,8 @@ public class TransportRoutingContext {
 	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
 	// so here an improvement could be introduced
 	final TransportStopsRouteReader transportStopsReader;
+	// shared between contexts instead of transportStopsReader
+	final TransportNetworkCache networkCache;
 	public int finishTimeSeconds;
 
 	// stats
@@ -49,12 +51,22 @@ public class TransportRoutingContext {
 	private final int walkChangeRadiusIn31;
 
 	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, BinaryMapIndexReader... readers) {
+		this(cfg, library, new TransportStopsRouteReader(Arrays.asList(readers)), null);
+	}
+
+	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportNetworkCache networkCache) {
+		this(cfg, library, null, networkCache);
+	}
+
+	private TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library,
+			TransportStopsRouteReader transportStopsReader, TransportNetworkCache networkCache) {
 		this.cfg = cfg;
 		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
 		walkChangeRadiusIn31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
 		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
 		this.library = library;
-		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		this.transportStopsReader = transportStopsReader;
+		this.networkCache = networkCache;
 	}
 
 	public List<TransportRouteSegment> getTransportStops(LatLon loc) throws IOException {
@@ -101,10 +113,15 @@ public class TransportRoutingContext {
 	private List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
-		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
-		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
-				y << pz, (y + 1) << pz, -1, null);
-		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
+		Collection<TransportStop> stops;
+		if (networkCache != null) {
+			stops = networkCache.getTransportStops(cfg.ZOOM_TO_LOAD_TILES, x, y);
+		} else {
+			int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
+			BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
+					y << pz, (y + 1) << pz, -1, null);
+			stops = transportStopsReader.readMergedTransportStops(sr);
+		}
 		loadTransportSegments(stops, lst);
 		readTime += System.nanoTime() - nanoTime;
 		return lst;
@@ -45,6 +45,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +63,7 @@ public class SearchUICore {
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	private ExecutorService searchExecutor;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
@@ -318,6 +320,18 @@ public class SearchUICore {
 		this.totalLimit = totalLimit;
 	}
 
+	public ExecutorService getSearchExecutor() {
+		return searchExecutor;
+	}
+
+	/**
+	 * Executor to search offline files in parallel (null - files are searched sequentially on search thread).
+	 * APIs are still called one by one in priority order, results are published to matcher from executor threads.
+	 */
+	public void setSearchExecutor(ExecutorService searchExecutor) {
+		this.searchExecutor = searchExecutor;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T getApiByClass(Class<T> cl) {
 		for (SearchCoreAPI a : apis) {
@@ -352,6 +366,7 @@ public class SearchUICore {
 			preparePhrase(sphrase);
 			AtomicInteger ai = new AtomicInteger();
 			SearchResultMatcher rm = new SearchResultMatcher(matcher, sphrase, ai.get(), ai, totalLimit);
+			rm.setSearchExecutor(searchExecutor);
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(sphrase);
@@ -497,6 +512,7 @@ public class SearchUICore {
 		}
 		final SearchPhrase searchPhrase = this.phrase.generateNewPhrase(text, searchSettings);
 		final SearchResultMatcher rm = new SearchResultMatcher(null, searchPhrase, requestNumber.get(), requestNumber, totalLimit);
+		rm.setSearchExecutor(searchExecutor);
 		searchInternal(searchPhrase, rm);
 		SearchResultCollection resultCollection = new SearchResultCollection(searchPhrase);
 		if (rm.totalLimit != -1 && rm.count > rm.totalLimit) {
@@ -527,6 +543,7 @@ public class SearchUICore {
 						onSearchStart.run();
 					}
 					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					rm.setSearchExecutor(searchExecutor);
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -744,6 +761,7 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		private ExecutorService searchExecutor;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -764,11 +782,19 @@ public class SearchUICore {
 			return parentSearchResult;
 		}
 
+		public ExecutorService getSearchExecutor() {
+			return searchExecutor;
+		}
+
+		public void setSearchExecutor(ExecutorService searchExecutor) {
+			this.searchExecutor = searchExecutor;
+		}
+
 		public List<SearchResult> getRequestResults() {
 			return requestResults;
 		}
 
-		public int getCount() {
+		public synchronized int getCount() {
 			return requestResults.size();
 		}
 
@@ -806,7 +832,7 @@ public class SearchUICore {
 			}
 		}
 
-		public void apiSearchRegionFinished(SearchCoreAPI api, BinaryMapIndexReader region, SearchPhrase phrase) {
+		public synchronized void apiSearchRegionFinished(SearchCoreAPI api, BinaryMapIndexReader region, SearchPhrase phrase) {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_API_REGION_FINISHED;
@@ -821,7 +847,7 @@ public class SearchUICore {
 		}
 
 		@Override
-		public boolean publish(SearchResult object) {
+		public synchronized boolean publish(SearchResult object) {
 			if (phrase != null && object.otherNames != null && !phrase.getFirstUnknownNameStringMatcher().matches(object.localeName)) {
 				for (String s : object.otherNames) {
 					if (phrase.getFirstUnknownNameStringMatcher().matches(s)) {
@@ -867,7 +893,7 @@ public class SearchUICore {
 			return exportedCities;
 		}
 
-		public void exportObject(SearchPhrase phrase, MapObject object) {
+		public synchronized void exportObject(SearchPhrase phrase, MapObject object) {
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), object.getLocation());
@@ -881,7 +907,7 @@ public class SearchUICore {
 			exportedObjects.add(object);
 		}
 
-		public void exportCity(SearchPhrase phrase, City city) {
+		public synchronized void exportCity(SearchPhrase phrase, City city) {
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), city.getLocation());
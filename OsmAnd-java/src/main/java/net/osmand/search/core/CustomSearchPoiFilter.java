@@ -4,6 +4,10 @@ import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
 import net.osmand.data.Amenity;
 
+/**
+ * Filter could be used from different threads, when offline files are searched in parallel
+ * (see {@link net.osmand.search.SearchUICore#setSearchExecutor}).
+ */
 public interface CustomSearchPoiFilter extends SearchPoiTypeFilter {
 
 	public String getFilterId();
@@ -58,6 +58,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -112,6 +118,11 @@ public class SearchCoreFactory {
 	public static final int SEARCH_OLC_WITH_CITY_PRIORITY = 8;
 	public static final int SEARCH_OLC_WITH_CITY_TOTAL_LIMIT = 500;
 
+	protected interface FileSearch {
+
+		void search(BinaryMapIndexReader r) throws IOException;
+	}
+
 	public static abstract class SearchBaseAPI implements SearchCoreAPI {
 
 		private ObjectType[] searchTypes;
@@ -168,6 +179,75 @@ public class SearchCoreFactory {
 			return 0;
 		}
 
+		/**
+		 * Searches files one by one or in parallel by {@link SearchResultMatcher#getSearchExecutor()}.
+		 * Files of the same region (live updates and main file) are searched sequentially in given order
+		 * by one task, so same reader is never read from different threads.
+		 */
+		protected void searchInFiles(Iterator<BinaryMapIndexReader> files, SearchResultMatcher resultMatcher,
+		                             final FileSearch search) throws IOException {
+			ExecutorService executor = resultMatcher.getSearchExecutor();
+			if (executor == null) {
+				while (files.hasNext()) {
+					search.search(files.next());
+				}
+				return;
+			}
+			Map<Object, List<BinaryMapIndexReader>> regions = new LinkedHashMap<>();
+			while (files.hasNext()) {
+				BinaryMapIndexReader r = files.next();
+				Object key = r.getRegionName() != null ? r.getRegionName() : r;
+				List<BinaryMapIndexReader> regionFiles = regions.get(key);
+				if (regionFiles == null) {
+					regionFiles = new ArrayList<>();
+					regions.put(key, regionFiles);
+				}
+				regionFiles.add(r);
+			}
+			List<Future<Void>> futures = new ArrayList<>();
+			for (final List<BinaryMapIndexReader> regionFiles : regions.values()) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						for (BinaryMapIndexReader r : regionFiles) {
+							search.search(r);
+						}
+						return null;
+					}
+				}));
+			}
+			// wait for all tasks, so files are not read by next api while failed search is running
+			Throwable failure = null;
+			boolean interrupted = false;
+			for (Future<Void> f : futures) {
+				while (true) {
+					try {
+						f.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						if (failure == null) {
+							failure = e.getCause();
+						}
+						break;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw new IOException(failure);
+			}
+		}
+
 		protected SearchPhrase subSearchApiOrPublish(SearchPhrase phrase, SearchResultMatcher resultMatcher, SearchResult res, SearchBaseAPI api)
 				throws IOException {
 			return subSearchApiOrPublish(phrase, resultMatcher, res, api, true);
@@ -427,111 +507,16 @@ public class SearchCoreFactory {
 			if (phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
 					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true)) {
 				final boolean locSpecified = phrase.getLastTokenLocation() != null;
-				LatLon loc = phrase.getLastTokenLocation();
-				final List<SearchResult> immediateResults = new ArrayList<>();
+				final LatLon loc = phrase.getLastTokenLocation();
 				final QuadRect streetBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 				final QuadRect postcodeBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
 				final QuadRect villagesBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 3);
 				final QuadRect cityBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5); // covered by separate search before
 				final int priority = phrase.isNoSelectedType() ?
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
-				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
+				final AtomicInteger limit = new AtomicInteger();
 
-				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
-					int limit = 0;
-					@Override
-					public boolean publish(MapObject object) {
-						if (isCancelled()) {
-							return false;
-						}
-						SearchResult sr = new SearchResult(phrase);
-						sr.object = object;
-						sr.file = currentFile[0];
-						sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-						sr.otherNames = object.getOtherNames(true);
-						sr.localeRelatedObjectName = sr.file.getRegionName();
-						sr.relatedObject = sr.file;
-						sr.location = object.getLocation();
-						sr.priorityDistance = 1;
-						sr.priority = priority;
-						int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
-						int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
-						List<City> closestCities = null;
-						if (object instanceof Street) {
-							// remove limitation by location
-							if (  //(locSpecified && !streetBbox.contains(x, y, x, y)) || 
-								!phrase.isSearchTypeAllowed(ObjectType.STREET)) {
-								return false;
-							}
-							if (object.getName().startsWith("<")) {
-								return false;
-							}
-							sr.objectType = ObjectType.STREET;
-							sr.localeRelatedObjectName = ((Street)object).getCity().getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-							sr.relatedObject = ((Street)object).getCity();
-						} else if (object instanceof City) {
-							CityType type = ((City)object).getType();
-							if (type == CityType.CITY || type == CityType.TOWN) {
-								if (phrase.isNoSelectedType()) {
-									// ignore city/town
-									return false;
-								}
-								if ((locSpecified && !cityBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
-									return false;
-								}
-								sr.objectType = ObjectType.CITY;
-								sr.priorityDistance = 0.1;
-							} else if (((City)object).isPostcode()) {
-								if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
-									return false;
-								}
-								sr.objectType = ObjectType.POSTCODE;
-								sr.priorityDistance = 0;
-							} else {
-								if ((locSpecified && !villagesBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
-									return false;
-								}
-								City c = null;
-								if (closestCities == null) {
-									closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
-								}
-								double minDist = -1;
-								double pDist = -1;
-								for (City s : closestCities) {
-									double ll = MapUtils.getDistance(s.getLocation(), object.getLocation());
-									double pd = s.getType() == CityType.CITY ? ll : ll * 10;
-									if(minDist == -1 || pd < pDist) {
-										c = s;
-										minDist = ll;
-										pDist = pd ;
-									}
-								}
-								if (c != null) {
-									sr.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-									sr.relatedObject = c;
-									sr.distRelatedObjectName = minDist;
-								}
-								sr.objectType = ObjectType.VILLAGE;
-							}
-						} else {
-							return false;
-						}
-						limit ++;
-						immediateResults.add(sr);
-						return false;
-					}
-
-					@Override
-					public boolean isCancelled() {
-						return limit > LIMIT * phrase.getRadiusLevel() ||
-								resultMatcher.isCancelled();
-					}
-				};
-
-				ResultMatcher<MapObject> rawDataCollector = null;
+				final ResultMatcher<MapObject> rawDataCollector;
 				if (phrase.getSettings().isExportObjects()) {
 					rawDataCollector = new ResultMatcher<MapObject>() {
 						@Override
@@ -545,35 +530,154 @@ public class SearchCoreFactory {
 							return false;
 						}
 					};
+				} else {
+					rawDataCollector = null;
 				}
 
+				final String wordToSearch = phrase.getUnknownWordToSearch();
+				final boolean parallel = resultMatcher.getSearchExecutor() != null;
+				final Map<BinaryMapIndexReader, List<SearchResult>> filesResults = new ConcurrentHashMap<>();
+				List<BinaryMapIndexReader> files = new ArrayList<>();
 				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
 						SearchPhraseDataType.ADDRESS);
-				String wordToSearch = phrase.getUnknownWordToSearch();
 				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
-					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+					files.add(offlineIterator.next());
+				}
+				searchInFiles(files.iterator(), resultMatcher, new FileSearch() {
+					@Override
+					public void search(final BinaryMapIndexReader currentFile) throws IOException {
+						final List<SearchResult> immediateResults = new ArrayList<>();
+						ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								if (isCancelled()) {
+									return false;
+								}
+								SearchResult sr = new SearchResult(phrase);
+								sr.object = object;
+								sr.file = currentFile;
+								sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+								sr.otherNames = object.getOtherNames(true);
+								sr.localeRelatedObjectName = sr.file.getRegionName();
+								sr.relatedObject = sr.file;
+								sr.location = object.getLocation();
+								sr.priorityDistance = 1;
+								sr.priority = priority;
+								int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
+								int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
+								List<City> closestCities = null;
+								if (object instanceof Street) {
+									// remove limitation by location
+									if (  //(locSpecified && !streetBbox.contains(x, y, x, y)) || 
+										!phrase.isSearchTypeAllowed(ObjectType.STREET)) {
+										return false;
+									}
+									if (object.getName().startsWith("<")) {
+										return false;
+									}
+									sr.objectType = ObjectType.STREET;
+									sr.localeRelatedObjectName = ((Street)object).getCity().getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+									sr.relatedObject = ((Street)object).getCity();
+								} else if (object instanceof City) {
+									CityType type = ((City)object).getType();
+									if (type == CityType.CITY || type == CityType.TOWN) {
+										if (phrase.isNoSelectedType()) {
+											// ignore city/town
+											return false;
+										}
+										if ((locSpecified && !cityBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
+											return false;
+										}
+										sr.objectType = ObjectType.CITY;
+										sr.priorityDistance = 0.1;
+									} else if (((City)object).isPostcode()) {
+										if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
+											return false;
+										}
+										sr.objectType = ObjectType.POSTCODE;
+										sr.priorityDistance = 0;
+									} else {
+										if ((locSpecified && !villagesBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
+											return false;
+										}
+										City c = null;
+										if (closestCities == null) {
+											closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
+										}
+										double minDist = -1;
+										double pDist = -1;
+										for (City s : closestCities) {
+											double ll = MapUtils.getDistance(s.getLocation(), object.getLocation());
+											double pd = s.getType() == CityType.CITY ? ll : ll * 10;
+											if(minDist == -1 || pd < pDist) {
+												c = s;
+												minDist = ll;
+												pDist = pd ;
+											}
+										}
+										if (c != null) {
+											sr.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+											sr.relatedObject = c;
+											sr.distRelatedObjectName = minDist;
+										}
+										sr.objectType = ObjectType.VILLAGE;
+									}
+								} else {
+									return false;
+								}
+								limit.incrementAndGet();
+								immediateResults.add(sr);
+								return false;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return limit.get() > LIMIT * phrase.getRadiusLevel() ||
+										resultMatcher.isCancelled();
+							}
+						};
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
+								phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
+										: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
+									phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
+						}
+						currentFile.searchAddressDataByName(req);
+						if (parallel) {
+							filesResults.put(currentFile, immediateResults);
 						} else {
-							SearchPhrase nphrase = subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
-							searchPoiInCity(nphrase, res, resultMatcher);
+							subSearchAddressResults(phrase, resultMatcher, currentFile, immediateResults);
+						}
+					}
+				});
+				if (parallel) {
+					// sub search changes parent search result of matcher, so results are processed sequentially
+					for (BinaryMapIndexReader r : files) {
+						List<SearchResult> immediateResults = filesResults.get(r);
+						if (immediateResults != null) {
+							subSearchAddressResults(phrase, resultMatcher, r, immediateResults);
 						}
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
 				}
 			}
 		}
+
+		private void subSearchAddressResults(SearchPhrase phrase, SearchResultMatcher resultMatcher,
+		                                     BinaryMapIndexReader r, List<SearchResult> immediateResults) throws IOException {
+			for (SearchResult res : immediateResults) {
+				if (res.objectType == ObjectType.STREET) {
+					subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+				} else {
+					SearchPhrase nphrase = subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+					searchPoiInCity(nphrase, res, resultMatcher);
+				}
+			}
+			resultMatcher.apiSearchRegionFinished(this, r, phrase);
+		}
 	}
 
 	public static class SearchAmenityByNameAPI extends SearchBaseAPI {
@@ -587,6 +691,68 @@ public class SearchCoreFactory {
 			super(ObjectType.POI);
 		}
 
+		// matched amenities of 1 file with positions in file (to apply limit same way as sequential search)
+		private static class FileAmenities {
+			final List<SearchResult> results = new ArrayList<>();
+			final List<Integer> positions = new ArrayList<>();
+			int count;
+		}
+
+		// publishes finished files in files order as soon as all previous files are finished
+		private class FilesPublisher {
+			private final List<BinaryMapIndexReader> files;
+			private final Map<BinaryMapIndexReader, FileAmenities> filesResults = new ConcurrentHashMap<>();
+			private final SearchPhrase phrase;
+			private final SearchResultMatcher resultMatcher;
+			private final AtomicInteger limit;
+			private final Set<String> ids;
+			private int next;
+
+			FilesPublisher(List<BinaryMapIndexReader> files, SearchPhrase phrase, SearchResultMatcher resultMatcher,
+			               AtomicInteger limit, Set<String> ids) {
+				this.files = files;
+				this.phrase = phrase;
+				this.resultMatcher = resultMatcher;
+				this.limit = limit;
+				this.ids = ids;
+			}
+
+			void fileFinished(BinaryMapIndexReader file, FileAmenities fileResults) {
+				filesResults.put(file, fileResults);
+				publishFinished(false);
+			}
+
+			// skipUnfinished is used after all files are searched to publish files following failed ones
+			synchronized void publishFinished(boolean skipUnfinished) {
+				while (next < files.size()) {
+					BinaryMapIndexReader r = files.get(next);
+					FileAmenities fileResults = filesResults.remove(r);
+					if (fileResults == null && !skipUnfinished) {
+						return;
+					}
+					next++;
+					if (fileResults == null) {
+						continue;
+					}
+					int offset = limit.getAndAdd(fileResults.count);
+					for (int i = 0; i < fileResults.results.size(); i++) {
+						if (offset + fileResults.positions.get(i) > LIMIT) {
+							break;
+						}
+						SearchResult sr = fileResults.results.get(i);
+						if (ids.add(getPoiId((Amenity) sr.object))) {
+							resultMatcher.publish(sr);
+						}
+					}
+					resultMatcher.apiSearchRegionFinished(SearchAmenityByNameAPI.this, r, phrase);
+				}
+			}
+		}
+
+		private static String getPoiId(Amenity object) {
+			return object.getType().getKeyName() + "_" + object.getId();
+		}
+
 		@Override
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			if (!phrase.isUnknownSearchWordPresent()) {
@@ -599,15 +765,24 @@ public class SearchCoreFactory {
 			// Take into account POI [bar] - 'Hospital 512'
 			// BEFORE: it was searching exact match of whole phrase.getUnknownSearchPhrase() [ Check feedback ] 
 
-			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
-			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
-					SearchPhraseDataType.POI);
-			String searchWord = phrase.getUnknownWordToSearch();
+			List<BinaryMapIndexReader> files = new ArrayList<>();
+			if (phrase.getFileRequest() == null) {
+				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
+						SearchPhraseDataType.POI);
+				while (offlineIterator.hasNext()) {
+					files.add(offlineIterator.next());
+				}
+			}
+			final String searchWord = phrase.getUnknownWordToSearch();
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
-			QuadRect bbox = phrase.getFileRequest() != null ? phrase.getRadiusBBoxToSearch(BBOX_RADIUS_POI_IN_CITY) : phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
-			final Set<String> ids = new HashSet<String>();
-
-			ResultMatcher<Amenity> rawDataCollector = null;
+			final QuadRect bbox = phrase.getFileRequest() != null ? phrase.getRadiusBBoxToSearch(BBOX_RADIUS_POI_IN_CITY) : phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			final AtomicInteger limit = new AtomicInteger();
+			// parallel search collects results by file and publishes them in files order (same as sequential search)
+			final boolean parallel = phrase.getFileRequest() == null && resultMatcher.getSearchExecutor() != null;
+			final FilesPublisher publisher = parallel ? new FilesPublisher(files, phrase, resultMatcher, limit, ids) : null;
+
+			final ResultMatcher<Amenity> rawDataCollector;
 			if (phrase.getSettings().isExportObjects()) {
 				rawDataCollector = new ResultMatcher<Amenity>() {
 					@Override
@@ -621,73 +796,87 @@ public class SearchCoreFactory {
 						return false;
 					}
 				};
+			} else {
+				rawDataCollector = null;
 			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
+			FileSearch fileSearch = new FileSearch() {
+				@Override
+				public void search(final BinaryMapIndexReader currentFile) throws IOException {
+					final FileAmenities fileResults = new FileAmenities();
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
+							(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
+							(int) bbox.bottom, new ResultMatcher<Amenity>() {
 
-						@Override
-						public boolean publish(Amenity object) {
-							if (phrase.getSettings().isExportObjects()) {
-								resultMatcher.exportObject(phrase, object);
-							}
-							if (limit++ > LIMIT) {
-								return false;
-							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
-								return false;
-							}
-							SearchResult sr = new SearchResult(phrase);
-							sr.otherNames = object.getOtherNames(true);
-							sr.localeName = object.getName(phrase.getSettings().getLang());
-							if (!nm.matches(sr.localeName)) {
-								sr.localeName = object.getName(phrase.getSettings().getLang(),
-										phrase.getSettings().isTransliterate());
-							}
-							if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
-									&& !nm.matches(object.getAdditionalInfoValues(false))) {
-								return false;
-							}
-							sr.object = object;
-							sr.preferredZoom = SearchCoreFactory.PREFERRED_POI_ZOOM;
-							sr.file = currentFile[0];
-							sr.location = object.getLocation();
-							if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
-								sr.preferredZoom = object.getSubType().equals("country") ? PREFERRED_COUNTRY_ZOOM : PREFERRED_CITY_ZOOM;
-							} else if (object.getSubType().equals("town")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
-							} else {
-								sr.priorityDistance = 1;
-							}
-							sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
-							phrase.countUnknownWordsMatchMainResult(sr);
-							sr.objectType = ObjectType.POI;
-							resultMatcher.publish(sr);
-							ids.add(poiID);
-							return false;
-						}
+								@Override
+								public boolean publish(Amenity object) {
+									if (phrase.getSettings().isExportObjects()) {
+										resultMatcher.exportObject(phrase, object);
+									}
+									int position = parallel ? fileResults.count++ : limit.getAndIncrement();
+									if (position > LIMIT) {
+										return false;
+									}
+									String poiID = getPoiId(object);
+									if (ids.contains(poiID)) {
+										return false;
+									}
+									SearchResult sr = new SearchResult(phrase);
+									sr.otherNames = object.getOtherNames(true);
+									sr.localeName = object.getName(phrase.getSettings().getLang());
+									if (!nm.matches(sr.localeName)) {
+										sr.localeName = object.getName(phrase.getSettings().getLang(),
+												phrase.getSettings().isTransliterate());
+									}
+									if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
+											&& !nm.matches(object.getAdditionalInfoValues(false))) {
+										return false;
+									}
+									sr.object = object;
+									sr.preferredZoom = SearchCoreFactory.PREFERRED_POI_ZOOM;
+									sr.file = currentFile;
+									sr.location = object.getLocation();
+									if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
+										sr.preferredZoom = object.getSubType().equals("country") ? PREFERRED_COUNTRY_ZOOM : PREFERRED_CITY_ZOOM;
+									} else if (object.getSubType().equals("town")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
+									} else {
+										sr.priorityDistance = 1;
+									}
+									sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
+									phrase.countUnknownWordsMatchMainResult(sr);
+									sr.objectType = ObjectType.POI;
+									if (parallel) {
+										fileResults.results.add(sr);
+										fileResults.positions.add(position);
+									} else if (ids.add(poiID)) {
+										resultMatcher.publish(sr);
+									}
+									return false;
+								}
+
+								@Override
+								public boolean isCancelled() {
+									return resultMatcher.isCancelled() && ((parallel ? fileResults.count : limit.get()) < LIMIT);
+								}
+							}, rawDataCollector);
+					currentFile.searchPoiByName(req);
+					if (parallel) {
+						publisher.fileFinished(currentFile, fileResults);
+					} else {
+						resultMatcher.apiSearchRegionFinished(SearchAmenityByNameAPI.this, currentFile, phrase);
+					}
+				}
+			};
 
-						@Override
-						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
-						}
-					}, rawDataCollector);
-			
 			BinaryMapIndexReader fileRequest = phrase.getFileRequest();
 			if (fileRequest != null) {
-				fileRequest.searchPoiByName(req);
-				resultMatcher.apiSearchRegionFinished(this, fileRequest, phrase);
+				fileSearch.search(fileRequest);
 			} else {
-				while (offlineIterator.hasNext()) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					r.searchPoiByName(req);
-					
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+				searchInFiles(files.iterator(), resultMatcher, fileSearch);
+			}
+			if (parallel) {
+				publisher.publishFinished(true);
 			}
 			
 			return true;
@@ -1067,7 +1256,7 @@ public class SearchCoreFactory {
 			SearchPoiTypeFilter poiTypeFilter = null;
 			String nameFilter = null;
 			int countExtraWords = 0;
-			Set<String> poiAdditionals = new LinkedHashSet<>();
+			final Set<String> poiAdditionals = new LinkedHashSet<>();
 			if (phrase.isLastWord(ObjectType.POI_TYPE)) {
 				Object obj = phrase.getLastSelectedWord().getResult().object;
 				if (obj instanceof AbstractPoiType) {
@@ -1123,20 +1312,26 @@ public class SearchCoreFactory {
 						radius = BBOX_RADIUS_NEAREST;
 					}
 				}
-				QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
+				final QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
 				List<BinaryMapIndexReader> offlineIndexes = phrase.getOfflineIndexes();
-				Set<String> searchedPois = new TreeSet<>();
-				for (BinaryMapIndexReader r : offlineIndexes) {
-					ResultMatcher<Amenity> rm = getResultMatcher(phrase, poiTypeFilter, resultMatcher, nameFilter, r,
-							searchedPois, poiAdditionals, countExtraWords);
-					if (poiTypeFilter instanceof CustomSearchPoiFilter) {
-						rm = ((CustomSearchPoiFilter) poiTypeFilter).wrapResultMatcher(rm);
+				final Set<String> searchedPois = new ConcurrentSkipListSet<>();
+				final SearchPoiTypeFilter filter = poiTypeFilter;
+				final String filterName = nameFilter;
+				final int extraWords = countExtraWords;
+				searchInFiles(offlineIndexes.iterator(), resultMatcher, new FileSearch() {
+					@Override
+					public void search(BinaryMapIndexReader r) throws IOException {
+						ResultMatcher<Amenity> rm = getResultMatcher(phrase, filter, resultMatcher, filterName, r,
+								searchedPois, poiAdditionals, extraWords);
+						if (filter instanceof CustomSearchPoiFilter) {
+							rm = ((CustomSearchPoiFilter) filter).wrapResultMatcher(rm);
+						}
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
+								(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, filter, rm);
+						r.searchPoi(req);
+						resultMatcher.apiSearchRegionFinished(SearchAmenityByTypeAPI.this, r, phrase);
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
-							(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
-					r.searchPoi(req);
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+				});
 			}
 			return true;
 		}
@@ -585,14 +585,14 @@ public class SearchPhrase {
 		return mainUnknownNameStringMatcher;
 	}
 	
-	public NameStringMatcher getFirstUnknownNameStringMatcher() {
+	public synchronized NameStringMatcher getFirstUnknownNameStringMatcher() {
 		if (firstUnknownNameStringMatcher == null) {
 			firstUnknownNameStringMatcher = getNameStringMatcher(firstUnknownSearchWord, isFirstUnknownSearchWordComplete());
 		}
 		return firstUnknownNameStringMatcher;
 	}
 
-	public NameStringMatcher getUnknownNameStringMatcher(int i) {
+	public synchronized NameStringMatcher getUnknownNameStringMatcher(int i) {
 		while (unknownWordsMatcher.size() <= i) {
 			int ind = unknownWordsMatcher.size();
 			boolean completeMatch = ind < otherUnknownWords.size() - 1 || isLastUnknownSearchWordComplete();
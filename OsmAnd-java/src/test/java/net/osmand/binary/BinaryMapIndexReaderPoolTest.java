@@ -0,0 +1,162 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReaderPool.ReaderLease;
+
+public class BinaryMapIndexReaderPoolTest {
+
+	// reader sets of pool without files are empty arrays, they are still distinct per lease
+	private static BinaryMapIndexReaderPool createPool(int maxLeases) {
+		return new BinaryMapIndexReaderPool(new ArrayList<BinaryMapIndexReader>(), maxLeases);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonPositiveMaxLeases() {
+		createPool(0);
+	}
+
+	@Test
+	public void testLeaseAndReturn() throws IOException, InterruptedException {
+		BinaryMapIndexReaderPool pool = createPool(2);
+		ReaderLease first = pool.acquire();
+		ReaderLease second = pool.acquire();
+		BinaryMapIndexReader[] firstReaders = first.getReaders();
+		Assert.assertNotSame(firstReaders, second.getReaders());
+		Assert.assertEquals(2, pool.getInUse());
+		Assert.assertEquals(2, pool.getCreatedSets());
+
+		first.close();
+		// second close is ignored
+		first.close();
+		Assert.assertEquals(1, pool.getInUse());
+		try {
+			first.getReaders();
+			Assert.fail("Released lease returns readers");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// returned set is reused instead of creating new one
+		ReaderLease third = pool.acquire();
+		Assert.assertSame(firstReaders, third.getReaders());
+		Assert.assertEquals(2, pool.getCreatedSets());
+		third.close();
+		second.close();
+		Assert.assertEquals(0, pool.getInUse());
+		Assert.assertEquals(2, pool.getPeakInUse());
+		Assert.assertEquals(3, pool.getLeases());
+		Assert.assertEquals(0, pool.getContendedLeases());
+		pool.close();
+	}
+
+	@Test
+	public void testAcquireTimeout() throws IOException, InterruptedException {
+		BinaryMapIndexReaderPool pool = createPool(1);
+		ReaderLease lease = pool.acquire();
+		Assert.assertNull(pool.acquire(10, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(1, pool.getTimeouts());
+		lease.close();
+		lease = pool.acquire(10, TimeUnit.MILLISECONDS);
+		Assert.assertNotNull(lease);
+		lease.close();
+		pool.close();
+	}
+
+	@Test
+	public void testMaxLeasesUnderContention() throws InterruptedException {
+		final int maxLeases = 3;
+		final int threadsCount = 12;
+		final int iterations = 200;
+		final BinaryMapIndexReaderPool pool = createPool(maxLeases);
+		final AtomicInteger leased = new AtomicInteger();
+		final AtomicInteger maxLeased = new AtomicInteger();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < threadsCount; t++) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < iterations; i++) {
+							ReaderLease lease = pool.acquire();
+							try {
+								int l = leased.incrementAndGet();
+								synchronized (maxLeased) {
+									maxLeased.set(Math.max(maxLeased.get(), l));
+								}
+								Thread.yield();
+								leased.decrementAndGet();
+							} finally {
+								lease.close();
+							}
+						}
+					} catch (Throwable e) {
+						error.compareAndSet(null, e);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(30000);
+		}
+		Assert.assertNull(error.get());
+		Assert.assertTrue(maxLeased.get() <= maxLeases);
+		Assert.assertTrue(pool.getPeakInUse() <= maxLeases);
+		Assert.assertTrue(pool.getCreatedSets() <= maxLeases);
+		Assert.assertEquals(0, pool.getInUse());
+		Assert.assertEquals(threadsCount * iterations, pool.getLeases());
+		Assert.assertTrue(pool.getContendedLeases() > 0);
+		pool.close();
+	}
+
+	@Test
+	public void testClose() throws IOException, InterruptedException {
+		final BinaryMapIndexReaderPool pool = createPool(1);
+		ReaderLease lease = pool.acquire();
+		final AtomicReference<Throwable> waiterError = new AtomicReference<Throwable>();
+		Thread waiter = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					pool.acquire();
+				} catch (Throwable e) {
+					waiterError.set(e);
+				}
+			}
+		});
+		waiter.start();
+		// close wakes up waiting threads
+		while (waiter.getState() != Thread.State.WAITING && waiter.isAlive()) {
+			Thread.sleep(1);
+		}
+		pool.close();
+		waiter.join(10000);
+		Assert.assertTrue(waiterError.get() instanceof IllegalStateException);
+		try {
+			pool.acquire();
+			Assert.fail("Closed pool leases readers");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		// lease released after close is not returned to pool
+		lease.close();
+		Assert.assertEquals(0, pool.getInUse());
+	}
+}
@@ -0,0 +1,116 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.Collator;
+import net.osmand.OsmAndCollator;
+
+public class IndexedStringTableTest {
+
+	private static final String[] SYLLABLES = {"a", "á", "b", "ba", "c", "ch", "é", "e", "st", "Str", "o", "ö"};
+
+	private int val = 1;
+
+	private byte[] writeTable(Random rnd, int depth) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		int keys = 2 + rnd.nextInt(6);
+		for (int k = 0; k < keys; k++) {
+			String key = SYLLABLES[rnd.nextInt(SYLLABLES.length)];
+			if (rnd.nextBoolean()) {
+				key += SYLLABLES[rnd.nextInt(SYLLABLES.length)];
+			}
+			out.writeTag(OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeStringNoTag(key);
+			int vals = rnd.nextInt(3);
+			for (int i = 0; i < vals; i++) {
+				writeVal(out, val++);
+			}
+			if (depth > 0 && rnd.nextInt(3) > 0) {
+				byte[] subtable = writeTable(rnd, depth - 1);
+				out.writeTag(OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeRawVarint32(subtable.length);
+				out.writeRawBytes(subtable);
+				if (rnd.nextBoolean()) {
+					writeVal(out, val++);
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeVal(CodedOutputStream out, int v) throws IOException {
+		out.writeTag(OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		out.writeRawByte((v >>> 24) & 0xff);
+		out.writeRawByte((v >>> 16) & 0xff);
+		out.writeRawByte((v >>> 8) & 0xff);
+		out.writeRawByte(v & 0xff);
+	}
+
+	private static List<TIntArrayList> newOffsets(List<String> queries, TIntArrayList charsList) {
+		List<TIntArrayList> listOffsets = new ArrayList<>();
+		for (int i = 0; i < queries.size(); i++) {
+			charsList.add(0);
+			listOffsets.add(new TIntArrayList());
+		}
+		return listOffsets;
+	}
+
+	@Test
+	public void testSearchAsInFile() throws IOException {
+		File file = Files.createTempFile("string_table", ".obf").toFile();
+		RandomAccessFile raf = null;
+		try {
+			Files.write(file.toPath(), writeTable(new Random(7), 4));
+			raf = new RandomAccessFile(file, "r");
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, false);
+			IndexedStringTable table = reader.loadIndexedStringTable("");
+			Collator collator = OsmAndCollator.primaryCollator();
+			List<List<String>> queriesList = new ArrayList<>();
+			for (String s : SYLLABLES) {
+				queriesList.add(Arrays.asList(s));
+				for (String s2 : SYLLABLES) {
+					queriesList.add(Arrays.asList(s + s2));
+					queriesList.add(Arrays.asList(s, s2 + "x"));
+				}
+			}
+			queriesList.add(Arrays.asList("z"));
+			int found = 0;
+			for (List<String> queries : queriesList) {
+				TIntArrayList expectedChars = new TIntArrayList();
+				List<TIntArrayList> expected = newOffsets(queries, expectedChars);
+				reader.codedIS.seek(0);
+				reader.readIndexedStringTable(collator, queries, "", expected, expectedChars);
+
+				TIntArrayList actualChars = new TIntArrayList();
+				List<TIntArrayList> actual = newOffsets(queries, actualChars);
+				table.search(reader, collator, queries, actual, actualChars);
+				Assert.assertEquals(queries.toString(), expected, actual);
+				Assert.assertEquals(queries.toString(), expectedChars, actualChars);
+				found += expected.get(0).size();
+			}
+			Assert.assertTrue(found > 0);
+		} finally {
+			if (raf != null) {
+				raf.close();
+			}
+			file.delete();
+		}
+	}
+}
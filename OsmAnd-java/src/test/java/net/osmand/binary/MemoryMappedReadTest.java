@@ -0,0 +1,153 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+public class MemoryMappedReadTest {
+
+	private File file;
+	// start of every record
+	private List<Long> positions = new ArrayList<Long>();
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("mmap", ".obf");
+		Random rnd = new Random(7);
+		FileOutputStream fout = new FileOutputStream(file);
+		CodedOutputStream out = CodedOutputStream.newInstance(fout);
+		long pos = 0;
+		for (int i = 0; i < 2000; i++) {
+			positions.add(pos);
+			int len = rnd.nextInt(10) == 0 ? 3000 + rnd.nextInt(20000) : rnd.nextInt(50);
+			byte[] bytes = new byte[len];
+			rnd.nextBytes(bytes);
+			String str = "record " + i + " ö " + rnd.nextLong();
+			int v = rnd.nextInt();
+			out.writeRawVarint32(v);
+			out.writeStringNoTag(str);
+			out.writeRawVarint32(len);
+			out.writeRawBytes(bytes);
+			out.writeRawLittleEndian32(i);
+			pos += CodedOutputStream.computeRawVarint32Size(v) + CodedOutputStream.computeStringSizeNoTag(str)
+					+ CodedOutputStream.computeRawVarint32Size(len) + len + 4;
+		}
+		out.flush();
+		fout.close();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static List<Object> readRecord(CodedInputStream is) throws IOException {
+		List<Object> res = new ArrayList<Object>();
+		res.add(is.readRawVarint32());
+		res.add(is.readString());
+		int len = is.readRawVarint32();
+		// limit is checked as for obf messages
+		long old = is.pushLimitLong(len);
+		res.add(new String(is.readRawBytes(len), "ISO-8859-1"));
+		is.popLimit(old);
+		res.add(is.readRawLittleEndian32());
+		res.add(is.getTotalBytesRead());
+		return res;
+	}
+
+	@Test
+	public void testSameData() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		RandomAccessFile mraf = new RandomAccessFile(file, "r");
+		CodedInputStream stream = CodedInputStream.newInstance(raf);
+		CodedInputStream mapped = CodedInputStream.newInstance(mraf, true);
+		Assert.assertTrue(mapped.isMemoryMapped());
+		for (int i = 0; i < positions.size(); i++) {
+			Assert.assertEquals(readRecord(stream), readRecord(mapped));
+		}
+		Assert.assertEquals(file.length(), mapped.getTotalBytesRead());
+		Random rnd = new Random(11);
+		for (int k = 0; k < 500; k++) {
+			long pos = positions.get(rnd.nextInt(positions.size()));
+			stream.seek(pos);
+			mapped.seek(pos);
+			int skip = rnd.nextInt(3);
+			stream.skipRawBytes(skip);
+			mapped.skipRawBytes(skip);
+			stream.seek(pos);
+			mapped.seek(pos);
+			Assert.assertEquals(readRecord(stream), readRecord(mapped));
+		}
+		raf.close();
+		mapped.close();
+		mraf.close();
+	}
+
+	@Test
+	public void testSharedMapping() throws IOException {
+		RandomAccessFile mraf = new RandomAccessFile(file, "r");
+		CodedInputStream mapped = CodedInputStream.newInstance(mraf, true);
+		long last = positions.get(positions.size() - 1);
+		mapped.seek(last);
+		List<Object> lastRecord = readRecord(mapped);
+
+		RandomAccessFile craf = new RandomAccessFile(file, "r");
+		CodedInputStream copy = CodedInputStream.newInstance(craf, mapped);
+		mapped.close();
+		mraf.close();
+		try {
+			mapped.seek(0);
+			mapped.readRawVarint32();
+			Assert.fail("Closed stream is readable");
+		} catch (IOException e) {
+			// expected
+		}
+		// mapping is still used by copy
+		copy.seek(last);
+		Assert.assertEquals(lastRecord, readRecord(copy));
+		copy.seek(positions.get(1));
+		Assert.assertEquals(readRecord(copy).get(3), 1);
+		copy.close();
+		craf.close();
+	}
+
+	@Test
+	public void testReferenceReader() throws IOException {
+		File obf = File.createTempFile("mmap_ref", ".obf");
+		try {
+			FileOutputStream fout = new FileOutputStream(obf);
+			CodedOutputStream out = CodedOutputStream.newInstance(fout);
+			out.writeUInt32(OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER, 2);
+			out.writeInt64(OsmandOdb.OsmAndStructure.DATECREATED_FIELD_NUMBER, 1234567L);
+			out.writeUInt32(OsmandOdb.OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, 2);
+			out.flush();
+			fout.close();
+
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf, true, true);
+			Assert.assertTrue(reader.isMemoryMapped());
+			Assert.assertEquals(2, reader.getVersion());
+			Assert.assertEquals(1234567L, reader.getDateCreated());
+			BinaryMapIndexReader copy = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), reader);
+			Assert.assertTrue(copy.isMemoryMapped());
+			reader.close();
+			copy.codedIS.seek(0);
+			Assert.assertEquals(OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER, copy.codedIS.readTag() >>> 3);
+			Assert.assertEquals(2, copy.codedIS.readUInt32());
+			copy.close();
+		} finally {
+			obf.delete();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package net.osmand.gpx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXBinaryCache.CachedGPXFile;
+
+public class GPXBinaryCacheTest {
+
+	private static String toXml(GPXFile gpxFile) {
+		StringWriter writer = new StringWriter();
+		GPXUtilities.writeGpx(writer, gpxFile, null);
+		return writer.toString();
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		File dir = Files.createTempDirectory("gpxcache").toFile();
+		File file = new File(dir, "track.gpx");
+		GPXBinaryCache cache = new GPXBinaryCache(null);
+		try {
+			Files.write(file.toPath(), GPXStreamTest.createGpx(2, 300).getBytes(StandardCharsets.UTF_8));
+			GPXFile expected = GPXUtilities.loadGPXFile(file);
+			GPXTrackAnalysis expectedAnalysis = expected.getAnalysis(file.lastModified());
+
+			Assert.assertNull(cache.readAnalysis(file));
+			CachedGPXFile parsed = cache.loadGPXFile(file);
+			Assert.assertTrue(cache.getCacheFile(file).exists());
+			Assert.assertEquals(toXml(expected), toXml(parsed.gpxFile));
+
+			CachedGPXFile cached = cache.readCache(file, true);
+			Assert.assertNotNull(cached);
+			Assert.assertEquals(toXml(expected), toXml(cached.gpxFile));
+			Assert.assertEquals(file.getAbsolutePath(), cached.gpxFile.path);
+			Assert.assertEquals(expected.hasGeneralTrack(), cached.gpxFile.hasGeneralTrack());
+			Assert.assertEquals(expected.getPointsGroups().keySet(), cached.gpxFile.getPointsGroups().keySet());
+			GPXStreamTest.assertSameAnalysis(expectedAnalysis, cached.analysis);
+			Assert.assertEquals(expectedAnalysis.pointAttributes.size(), cached.analysis.pointAttributes.size());
+			Assert.assertEquals(expectedAnalysis.availableAttributes, cached.analysis.availableAttributes);
+			GPXStreamTest.assertSameAnalysis(expectedAnalysis, cached.gpxFile.getAnalysis(file.lastModified()));
+
+			GPXTrackAnalysis analysis = cache.readAnalysis(file);
+			Assert.assertNotNull(analysis);
+			Assert.assertEquals(expectedAnalysis.getTotalDistance(), analysis.getTotalDistance(), 0);
+
+			// corrupted cache is not used
+			RandomAccessFile raf = new RandomAccessFile(cache.getCacheFile(file), "rw");
+			raf.seek(raf.length() - 10);
+			raf.write(raf.read() ^ 0xff);
+			raf.close();
+			Assert.assertNull(cache.readCache(file, true));
+
+			// changed file is parsed again
+			cache.loadGPXFile(file);
+			Assert.assertNotNull(cache.readCache(file, true));
+			Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+			Assert.assertNull(cache.readAnalysis(file));
+		} finally {
+			cache.getCacheFile(file).delete();
+			file.delete();
+			dir.delete();
+		}
+	}
+}
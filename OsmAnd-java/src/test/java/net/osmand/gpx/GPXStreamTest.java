@@ -0,0 +1,102 @@
+package net.osmand.gpx;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXTrackAnalysis.StreamAnalyser;
+
+public class GPXStreamTest {
+
+	static String createGpx(int segments, int points) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n");
+		sb.append("<gpx version=\"1.1\" creator=\"test\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+		sb.append("<wpt lat=\"52.1\" lon=\"4.1\"><name>A</name><type>food</type></wpt>\n");
+		sb.append("<wpt lat=\"52.2\" lon=\"4.2\"><name>B</name></wpt>\n");
+		sb.append("<trk><name>track</name>\n");
+		long time = 1600000000000L;
+		for (int s = 0; s < segments; s++) {
+			sb.append("<trkseg>\n");
+			for (int i = 0; i < points; i++) {
+				double lat = 52 + s * 0.01 + i * 0.0003;
+				double lon = 4 + i * 0.0002 + (i % 3) * 0.00005;
+				time += 1000 + (i % 7) * 500;
+				sb.append("<trkpt lat=\"").append(lat).append("\" lon=\"").append(lon).append("\">");
+				sb.append("<ele>").append(10 + (i % 50) * 0.7 - (i % 11)).append("</ele>");
+				sb.append("<time>").append(GPXUtilities.formatTime(time)).append("</time>");
+				if (i % 4 == 0) {
+					sb.append("<extensions><speed>").append(1 + i % 5).append("</speed><hr>")
+							.append(90 + i % 30).append("</hr></extensions>");
+				}
+				sb.append("</trkpt>\n");
+			}
+			sb.append("</trkseg>\n");
+		}
+		// segment with 1 point is not analysed
+		sb.append("<trkseg><trkpt lat=\"53\" lon=\"5\"><ele>1</ele></trkpt></trkseg>\n");
+		sb.append("</trk>\n</gpx>\n");
+		return sb.toString();
+	}
+
+	private static InputStream stream(String gpx) {
+		return new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static void assertSameAnalysis(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		Assert.assertEquals(expected.getPoints(), actual.getPoints());
+		Assert.assertEquals(expected.getTotalTracks(), actual.getTotalTracks());
+		Assert.assertEquals(expected.getWptPoints(), actual.getWptPoints());
+		Assert.assertEquals(expected.getWptCategoryNamesSet(), actual.getWptCategoryNamesSet());
+		Assert.assertEquals(expected.getTotalDistance(), actual.getTotalDistance(), 0);
+		Assert.assertEquals(expected.getTotalDistanceMoving(), actual.getTotalDistanceMoving(), 0);
+		Assert.assertEquals(expected.getTimeMoving(), actual.getTimeMoving());
+		Assert.assertEquals(expected.getStartTime(), actual.getStartTime());
+		Assert.assertEquals(expected.getEndTime(), actual.getEndTime());
+		Assert.assertEquals(expected.getTimeSpan(), actual.getTimeSpan());
+		Assert.assertEquals(expected.getAvgSpeed(), actual.getAvgSpeed(), 0);
+		Assert.assertEquals(expected.getMaxSpeed(), actual.getMaxSpeed(), 0);
+		Assert.assertEquals(expected.getMinSpeed(), actual.getMinSpeed(), 0);
+		Assert.assertEquals(expected.getAvgElevation(), actual.getAvgElevation(), 0);
+		Assert.assertEquals(expected.getMinElevation(), actual.getMinElevation(), 0);
+		Assert.assertEquals(expected.getMaxElevation(), actual.getMaxElevation(), 0);
+		Assert.assertEquals(expected.getDiffElevationUp(), actual.getDiffElevationUp(), 0);
+		Assert.assertEquals(expected.getDiffElevationDown(), actual.getDiffElevationDown(), 0);
+		Assert.assertEquals(expected.getAvgSensorHr(), actual.getAvgSensorHr(), 0);
+		Assert.assertEquals(expected.left, actual.left, 0);
+		Assert.assertEquals(expected.top, actual.top, 0);
+		Assert.assertEquals(expected.right, actual.right, 0);
+		Assert.assertEquals(expected.bottom, actual.bottom, 0);
+		Assert.assertEquals(expected.getLatLonStart(), actual.getLatLonStart());
+		if (expected.locationEnd == null) {
+			Assert.assertNull(actual.locationEnd);
+		} else {
+			Assert.assertEquals(expected.locationEnd.lat, actual.locationEnd.lat, 0);
+			Assert.assertEquals(expected.locationEnd.lon, actual.locationEnd.lon, 0);
+		}
+	}
+
+	@Test
+	public void testStreamingAnalysis() {
+		String gpx = createGpx(3, 500);
+		GPXFile loaded = GPXUtilities.loadGPXFile(stream(gpx), null, false);
+		Assert.assertNull(loaded.error);
+		GPXTrackAnalysis expected = loaded.getAnalysis(0);
+
+		StreamAnalyser analyser = new StreamAnalyser();
+		GPXFile streamed = GPXUtilities.streamGPXFile(stream(gpx), null, analyser);
+		Assert.assertNull(streamed.error);
+		Assert.assertTrue(streamed.points.isEmpty());
+		Assert.assertEquals(1, streamed.tracks.size());
+		Assert.assertEquals(4, streamed.tracks.get(0).segments.size());
+		for (GPXUtilities.TrkSegment segment : streamed.tracks.get(0).segments) {
+			Assert.assertTrue(segment.points.isEmpty());
+		}
+		assertSameAnalysis(expected, analyser.finish(streamed, 0));
+		Assert.assertTrue(expected.getTotalDistance() > 0);
+		Assert.assertTrue(expected.getDiffElevationUp() > 0);
+	}
+}
@@ -0,0 +1,77 @@
+package net.osmand.gpx;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GPXTimeFormatTest {
+
+	private static SimpleDateFormat formatter(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+
+	@Test
+	public void testFormatAndParse() throws ParseException {
+		SimpleDateFormat format = formatter("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		SimpleDateFormat formatTZ = formatter("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+		String[] zones = {"UTC", "GMT+01:00", "GMT-02:30", "GMT+05:45", "GMT+14:00"};
+		Random rnd = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			long time = (long) ((rnd.nextDouble() * 2 - 1) * 1e13);
+			if (i % 10 == 0) {
+				time = (long) (rnd.nextDouble() * 2e12);
+			}
+			String text = format.format(new Date(time));
+			Assert.assertEquals(text, GPXUtilities.formatTime(time));
+			Assert.assertEquals(format.parse(text).getTime(), GPXUtilities.parseTime(text));
+
+			formatTZ.setTimeZone(TimeZone.getTimeZone(zones[i % zones.length]));
+			text = formatTZ.format(new Date(time));
+			Assert.assertEquals(text, time, GPXUtilities.parseTime(text));
+			Assert.assertEquals(text, time, GPXTimeFormat.parse(text));
+		}
+	}
+
+	@Test
+	public void testParseVariants() {
+		long time = 1600000000000L;
+		Assert.assertEquals("2020-09-13T12:26:40Z", GPXUtilities.formatTime(time));
+		Assert.assertEquals(time, GPXTimeFormat.parse("2020-09-13T12:26:40Z"));
+		Assert.assertEquals(time, GPXTimeFormat.parse("2020-09-13T12:26:40"));
+		Assert.assertEquals(time, GPXTimeFormat.parse("2020-09-13T14:26:40+02:00"));
+		Assert.assertEquals(time, GPXTimeFormat.parse("2020-09-13T14:26:40+0200"));
+		Assert.assertEquals(time, GPXTimeFormat.parse("2020-09-13T14:26:40+02"));
+		Assert.assertEquals(time, GPXTimeFormat.parse("2020-09-13T09:56:40-02:30"));
+		Assert.assertEquals(time + 500, GPXTimeFormat.parse("2020-09-13T12:26:40.5Z"));
+		Assert.assertEquals(time + 120, GPXTimeFormat.parse("2020-09-13T12:26:40.12Z"));
+		Assert.assertEquals(time + 123, GPXTimeFormat.parse("2020-09-13T12:26:40.123456789Z"));
+		Assert.assertEquals(time + 123, GPXTimeFormat.parse("2020-09-13T12:26:40.123"));
+		Assert.assertEquals(time + 123, GPXUtilities.parseTime("2020-09-13T14:26:40.1239+02:00"));
+
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-09-13 12:26:40Z"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-02-30T12:26:40Z"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-09-13T24:00:00Z"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-09-13T12:26:40.Z"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-09-13T12:26:40+2"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-09-13T12:26:40Zabc"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("1200-09-13T12:26:40Z"));
+		Assert.assertEquals(GPXTimeFormat.INVALID_TIME, GPXTimeFormat.parse("2020-9-13T12:26:40Z"));
+		Assert.assertEquals(0, GPXUtilities.parseTime("not a time"));
+		Assert.assertEquals(0, GPXUtilities.parseTime(null));
+
+		// values not handled by fast path are parsed by SimpleDateFormat
+		Assert.assertEquals(time, GPXUtilities.parseTime("2020-9-13T12:26:40Z"));
+		SimpleDateFormat format = formatter("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		long old = -20000000000000L;
+		Assert.assertEquals(format.format(new Date(old)), GPXUtilities.formatTime(old));
+		Assert.assertEquals(old, GPXUtilities.parseTime(GPXUtilities.formatTime(old)));
+	}
+}
@@ -0,0 +1,88 @@
+package net.osmand.gpx;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXTrackAnalysis.IncrementalAnalyser;
+import net.osmand.gpx.GPXUtilities.Track;
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+public class GPXTrackAnalysisTest {
+
+	private static GPXFile load(int segments, int points) {
+		String gpx = GPXStreamTest.createGpx(segments, points);
+		return GPXUtilities.loadGPXFile(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)), null, false);
+	}
+
+	private static void assertSameAttributes(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		GPXStreamTest.assertSameAnalysis(expected, actual);
+		Assert.assertEquals(expected.expectedRouteDuration, actual.expectedRouteDuration);
+		Assert.assertEquals(expected.availableAttributes, actual.availableAttributes);
+		Assert.assertEquals(expected.pointAttributes.size(), actual.pointAttributes.size());
+		for (int i = 0; i < expected.pointAttributes.size(); i++) {
+			PointAttributes e = expected.pointAttributes.get(i);
+			PointAttributes a = actual.pointAttributes.get(i);
+			Assert.assertEquals(e.distance, a.distance, 0);
+			Assert.assertEquals(e.timeDiff, a.timeDiff, 0);
+			Assert.assertEquals(e.speed, a.speed, 0);
+			Assert.assertEquals(e.elevation, a.elevation, 0);
+		}
+	}
+
+	@Test
+	public void testParallelAnalysis() {
+		GPXFile gpxFile = load(3, GPXTrackAnalysis.PARALLEL_MIN_POINTS / 2);
+		GPXTrackAnalysis expected = gpxFile.getAnalysis(0);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			GPXTrackAnalysis actual = gpxFile.getAnalysis(0, null, null, null, pool);
+			assertSameAttributes(expected, actual);
+			gpxFile.packTracks();
+			assertSameAttributes(expected, gpxFile.getAnalysis(0, null, null, null, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testIncrementalAnalysis() {
+		GPXFile source = load(2, 120);
+		GPXFile gpxFile = new GPXFile("test");
+		gpxFile.points.addAll(source.points);
+		Track track = new Track();
+		gpxFile.tracks.add(track);
+		IncrementalAnalyser analyser = new IncrementalAnalyser(gpxFile);
+		for (TrkSegment sourceSegment : source.tracks.get(0).segments) {
+			TrkSegment segment = new TrkSegment();
+			track.segments.add(segment);
+			for (WptPt point : sourceSegment.points) {
+				segment.points.add(new WptPt(point));
+				assertSameAttributes(gpxFile.getAnalysis(0), analyser.getAnalysis(0));
+			}
+		}
+		Assert.assertEquals(0, analyser.getResets());
+
+		// removed point is detected
+		List<WptPt> points = track.segments.get(0).points;
+		points.remove(points.size() - 1);
+		assertSameAttributes(gpxFile.getAnalysis(0), analyser.getAnalysis(0));
+		Assert.assertEquals(1, analyser.getResets());
+
+		// segments with 1 point are not analysed until second point
+		TrkSegment segment = new TrkSegment();
+		track.segments.add(segment);
+		List<WptPt> last = new ArrayList<>(source.tracks.get(0).segments.get(0).points);
+		segment.points.add(new WptPt(last.get(0)));
+		assertSameAttributes(gpxFile.getAnalysis(0), analyser.getAnalysis(0));
+		segment.points.add(new WptPt(last.get(1)));
+		assertSameAttributes(gpxFile.getAnalysis(0), analyser.getAnalysis(0));
+		Assert.assertEquals(1, analyser.getResets());
+	}
+}
@@ -0,0 +1,102 @@
+package net.osmand.gpx;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.gpx.GPXUtilities.TrkSegment;
+import net.osmand.gpx.GPXUtilities.WptPt;
+
+public class PackedTrackPointsTest {
+
+	private static WptPt point(double lat, double lon, long time) {
+		WptPt p = new WptPt();
+		p.lat = lat;
+		p.lon = lon;
+		p.time = time;
+		p.ele = 100.5;
+		p.speed = 2.25;
+		return p;
+	}
+
+	@Test
+	public void testListOperations() {
+		PackedTrackPoints points = new PackedTrackPoints(2);
+		WptPt named = point(3, 3, 3000);
+		named.name = "named";
+		WptPt precise = point(4, 4, 4000);
+		precise.ele = 0.1;
+		WptPt ext = point(5, 5, 5000);
+		ext.getExtensionsToWrite().put("hr", "100");
+		points.add(point(1, 1, 1000));
+		points.add(named);
+		points.add(precise);
+		points.add(ext);
+		points.add(1, point(2, 2, 2000));
+		Assert.assertEquals(5, points.size());
+		for (int i = 0; i < points.size(); i++) {
+			Assert.assertEquals(i + 1, points.get(i).lat, 0);
+			Assert.assertEquals((i + 1) * 1000, points.getTime(i));
+		}
+		// points which couldn't be packed are kept as is
+		Assert.assertSame(named, points.get(2));
+		Assert.assertSame(precise, points.get(3));
+		Assert.assertEquals(0.1, points.getElevation(3), 0);
+		Assert.assertEquals(100.5, points.getElevation(4), 0);
+		Assert.assertEquals("100", points.get(4).getExtensionsToRead().get("hr"));
+		Assert.assertNull(points.get(0).extensions);
+
+		Assert.assertEquals(2, points.remove(1).lat, 0);
+		Assert.assertSame(named, points.get(1));
+		Assert.assertSame(precise, points.get(2));
+		Assert.assertEquals("100", points.get(3).getExtensionsToRead().get("hr"));
+		points.remove(1);
+		Assert.assertSame(precise, points.get(1));
+		points.set(1, point(9, 9, 0));
+		Assert.assertEquals(9, points.getLatitude(1), 0);
+		Assert.assertNotSame(precise, points.get(1));
+		points.setDistance(1, 12.5);
+		Assert.assertEquals(12.5, points.get(1).distance, 0);
+		Assert.assertTrue(points.contains(point(9, 9, 0)));
+		points.clear();
+		Assert.assertTrue(points.isEmpty());
+	}
+
+	@Test
+	public void testPackedFile() {
+		String gpx = GPXStreamTest.createGpx(3, 500);
+		byte[] bytes = gpx.getBytes(StandardCharsets.UTF_8);
+		GPXFile loaded = GPXUtilities.loadGPXFile(new ByteArrayInputStream(bytes), null, true);
+		GPXFile packed = GPXUtilities.loadPackedGPXFile(new ByteArrayInputStream(bytes), null, true);
+		Assert.assertNull(packed.error);
+		Assert.assertEquals(loaded.tracks.size(), packed.tracks.size());
+		Assert.assertEquals(loaded.points, packed.points);
+		Assert.assertEquals(loaded.getPointsGroups().keySet(), packed.getPointsGroups().keySet());
+		Assert.assertEquals(loaded.metadata.time, packed.metadata.time);
+		for (int t = 0; t < loaded.tracks.size(); t++) {
+			for (int s = 0; s < loaded.tracks.get(t).segments.size(); s++) {
+				TrkSegment segment = packed.tracks.get(t).segments.get(s);
+				Assert.assertTrue(segment.isPacked());
+				Assert.assertEquals(loaded.tracks.get(t).segments.get(s).points, segment.points);
+			}
+		}
+		GPXStreamTest.assertSameAnalysis(loaded.getAnalysis(0), packed.getAnalysis(0));
+		TrkSegment segment = packed.tracks.get(1).segments.get(0);
+		Assert.assertEquals(loaded.tracks.get(1).segments.get(0).points.get(10).distance,
+				segment.points.get(10).distance, 0);
+		Assert.assertTrue(segment.points.get(10).distance > 0);
+
+		StringWriter expected = new StringWriter();
+		GPXUtilities.writeGpx(expected, loaded, null);
+		StringWriter actual = new StringWriter();
+		GPXUtilities.writeGpx(actual, packed, null);
+		Assert.assertEquals(expected.toString(), actual.toString());
+
+		GPXFile repacked = GPXUtilities.loadGPXFile(new ByteArrayInputStream(bytes), null, false);
+		repacked.packTracks();
+		GPXStreamTest.assertSameAnalysis(repacked.getAnalysis(0), loaded.getAnalysis(0));
+	}
+}
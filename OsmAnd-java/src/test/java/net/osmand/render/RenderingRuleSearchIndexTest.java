@@ -0,0 +1,132 @@
+package net.osmand.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+public class RenderingRuleSearchIndexTest {
+
+	private static final String STYLE = "<renderingStyle name=\"test\" defaultColor=\"#f1eee8\" version=\"1\">\n"
+			+ "<renderingProperty attr=\"roadStyle\" name=\"Road style\" type=\"string\" possibleValues=\"default,orange\"/>\n"
+			+ "<renderingProperty attr=\"showTracks\" name=\"Tracks\" type=\"boolean\"/>\n"
+			+ "<renderingAttribute name=\"primaryColor\">\n"
+			+ "  <case roadStyle=\"orange\" attrColorValue=\"#ff8800\"/>\n"
+			+ "  <case attrColorValue=\"#f9d29c\"/>\n"
+			+ "</renderingAttribute>\n"
+			+ "<line>\n"
+			+ "  <switch>\n"
+			+ "    <case tag=\"highway\" value=\"primary\" minzoom=\"8\" color=\"$primaryColor\">\n"
+			+ "      <case maxzoom=\"12\" strokeWidth=\"2\"/>\n"
+			+ "      <case strokeWidth=\"4\"/>\n"
+			+ "      <apply_if additional=\"bridge=yes\" color_2=\"#000000\" strokeWidth_2=\"6\"/>\n"
+			+ "    </case>\n"
+			+ "    <case tag=\"highway\" value=\"track\" showTracks=\"true\" minzoom=\"12\" color=\"#996600\" strokeWidth=\"1\"/>\n"
+			+ "    <case tag=\"highway\" value=\"\" minzoom=\"14\" color=\"#ffffff\" strokeWidth=\"1.5\"/>\n"
+			+ "    <case tag=\"railway\" value=\"rail\" minzoom=\"10\" color=\"#999999\" disable=\"true\" maxzoom=\"10\"/>\n"
+			+ "    <case tag=\"railway\" value=\"rail\" minzoom=\"11\" color=\"#707070\" strokeWidth=\"2\"/>\n"
+			+ "  </switch>\n"
+			+ "  <case tag=\"\" value=\"\" minzoom=\"16\" color=\"#eeeeee\" strokeWidth=\"0.5\"/>\n"
+			+ "</line>\n"
+			+ "</renderingStyle>";
+
+	private static final String[][] TAG_VALUES = {{"highway", "primary"}, {"highway", "track"},
+			{"highway", "residential"}, {"railway", "rail"}, {"waterway", "river"}};
+
+	private static RenderingRulesStorage loadStorage() throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = new RenderingRulesStorage("test", new HashMap<String, String>());
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(STYLE.getBytes("UTF-8")), null, false);
+		return storage;
+	}
+
+	private static List<Object> search(RenderingRuleSearchRequest req, int[] query) {
+		RenderingRulesStorage storage = req.getStorage();
+		String[] tv = TAG_VALUES[query[0]];
+		req.setInitialTagValueZoom(tv[0], tv[1], query[1], null);
+		req.setStringFilter(storage.PROPS.get("roadStyle"), query[2] == 0 ? "default" : "orange");
+		req.setBooleanFilter(storage.PROPS.get("showTracks"), query[3] == 1);
+		if (query[4] == 1) {
+			req.setStringFilter(storage.PROPS.R_ADDITIONAL, "bridge=yes");
+		}
+		List<Object> res = new ArrayList<Object>();
+		res.add(req.search(RenderingRulesStorage.LINE_RULES));
+		res.add(req.isFound());
+		for (RenderingRuleProperty p : req.getProperties()) {
+			res.add(req.getIntPropertyValue(p));
+			res.add(req.getFloatPropertyValue(p));
+		}
+		return res;
+	}
+
+	@Test
+	public void testSameResults() throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = loadStorage();
+		Random rnd = new Random(3);
+		List<int[]> queries = new ArrayList<int[]>();
+		for (int i = 0; i < 300; i++) {
+			queries.add(new int[] {rnd.nextInt(TAG_VALUES.length), 6 + rnd.nextInt(12), rnd.nextInt(2),
+					rnd.nextInt(2), rnd.nextInt(2)});
+		}
+		List<List<Object>> expected = new ArrayList<List<Object>>();
+		int found = 0;
+		for (int[] q : queries) {
+			// every search compiles index again and isn't memoized
+			storage.rulesModified();
+			List<Object> res = search(new RenderingRuleSearchRequest(storage), q);
+			expected.add(res);
+			found += Boolean.TRUE.equals(res.get(0)) ? 1 : 0;
+		}
+		Assert.assertTrue(found > 50 && found < 250);
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		for (int k = 0; k < 2; k++) {
+			for (int i = 0; i < queries.size(); i++) {
+				Assert.assertEquals(expected.get(i), search(req, queries.get(i)));
+			}
+		}
+	}
+
+	@Test
+	public void testRulesModified() throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = loadStorage();
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		int[] query = {4, 15, 0, 0, 0};
+		Assert.assertEquals(Boolean.FALSE, search(req, query).get(0));
+		Assert.assertEquals(Boolean.FALSE, search(req, query).get(0));
+
+		HashMap<String, String> attrs = new HashMap<String, String>();
+		attrs.put("tag", "waterway");
+		attrs.put("value", "river");
+		attrs.put("color", "#0000ff");
+		RenderingRule rule = new RenderingRule(attrs, false, storage);
+		storage.registerTopLevel(rule, null, attrs, RenderingRulesStorage.LINE_RULES, false);
+		Assert.assertEquals(Boolean.TRUE, search(req, query).get(0));
+		Assert.assertEquals(0xff0000ff, req.getIntPropertyValue(storage.PROPS.R_COLOR));
+	}
+
+	@Test
+	public void testRulesVersionPerStorage() throws XmlPullParserException, IOException {
+		RenderingRulesStorage storage = loadStorage();
+		RenderingRulesStorage other = loadStorage();
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		int[] query = {0, 15, 0, 0, 0};
+		search(req, query);
+		RenderingRuleSearchIndex.Entry entry = storage.getSearchIndex().getEntry(RenderingRulesStorage.LINE_RULES,
+				req.getIntPropertyValue(storage.PROPS.R_TAG), req.getIntPropertyValue(storage.PROPS.R_VALUE));
+		int version = storage.getRulesVersion();
+
+		HashMap<String, String> attrs = new HashMap<String, String>();
+		attrs.put("tag", "waterway");
+		attrs.put("value", "river");
+		RenderingRule rule = new RenderingRule(attrs, false, other);
+		other.registerTopLevel(rule, null, attrs, RenderingRulesStorage.LINE_RULES, false);
+		Assert.assertEquals(version, storage.getRulesVersion());
+		Assert.assertSame(entry, storage.getSearchIndex().getEntry(RenderingRulesStorage.LINE_RULES,
+				req.getIntPropertyValue(storage.PROPS.R_TAG), req.getIntPropertyValue(storage.PROPS.R_VALUE)));
+	}
+}
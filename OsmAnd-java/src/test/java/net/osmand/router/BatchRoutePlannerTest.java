@@ -0,0 +1,250 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.GsonBuilder;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReaderPool;
+import net.osmand.data.LatLon;
+import net.osmand.router.BatchRoutePlanner.RouteRequest;
+import net.osmand.router.BatchRoutePlanner.RouteResult;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+public class BatchRoutePlannerTest {
+
+	private static final int REQUESTS = 40;
+	private static final int WORKERS = 4;
+
+	private BinaryMapIndexReaderPool pool;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		// routes are not found without maps, so requests are calculated fast
+		pool = new BinaryMapIndexReaderPool(new ArrayList<BinaryMapIndexReader>(), WORKERS);
+		executor = Executors.newFixedThreadPool(WORKERS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		pool.close();
+	}
+
+	private BatchRoutePlanner createPlanner() {
+		RoutingConfiguration config = new RoutingConfiguration();
+		config.memoryLimitation = RoutingConfiguration.DEFAULT_MEMORY_LIMIT * (1L << 20);
+		return new BatchRoutePlanner(new RoutePlannerFrontEnd(), config, pool);
+	}
+
+	private static List<RouteRequest> createRequests() {
+		List<RouteRequest> requests = new ArrayList<RouteRequest>();
+		for (int i = 0; i < REQUESTS; i++) {
+			requests.add(new RouteRequest(new LatLon(52 + i * 0.001, 4.9), new LatLon(52.1, 4.9 + i * 0.001)));
+		}
+		return requests;
+	}
+
+	@Test
+	public void testResultsInOrderOfRequests() throws InterruptedException {
+		List<RouteRequest> requests = createRequests();
+		final AtomicInteger published = new AtomicInteger();
+		List<RouteResult> results = createPlanner().searchRoutes(requests, executor, WORKERS,
+				new ResultMatcher<RouteResult>() {
+
+					@Override
+					public boolean publish(RouteResult object) {
+						published.incrementAndGet();
+						return true;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				});
+		Assert.assertEquals(REQUESTS, results.size());
+		Assert.assertEquals(REQUESTS, published.get());
+		for (int i = 0; i < REQUESTS; i++) {
+			Assert.assertEquals(i, results.get(i).index);
+			Assert.assertSame(requests.get(i), results.get(i).request);
+		}
+		// all leases are returned
+		Assert.assertEquals(0, pool.getInUse());
+		Assert.assertTrue(pool.getCreatedSets() <= WORKERS);
+	}
+
+	@Test
+	public void testCancelledByMatcher() throws InterruptedException {
+		final int limit = 5;
+		final AtomicInteger published = new AtomicInteger();
+		List<RouteResult> results = createPlanner().searchRoutes(createRequests(), executor, WORKERS,
+				new ResultMatcher<RouteResult>() {
+
+					@Override
+					public boolean publish(RouteResult object) {
+						published.incrementAndGet();
+						return true;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return published.get() >= limit;
+					}
+				});
+		Assert.assertEquals(REQUESTS, results.size());
+		// every worker could finish request which was started before cancellation
+		Assert.assertTrue(published.get() < limit + WORKERS);
+		int calculated = 0;
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i) != null) {
+				Assert.assertEquals(i, results.get(i).index);
+				calculated++;
+			}
+		}
+		Assert.assertTrue(calculated < REQUESTS);
+		Assert.assertEquals(0, pool.getInUse());
+	}
+
+	@Test
+	public void testRejectedWorkersCancelBatch() throws InterruptedException {
+		final CountDownLatch publishing = new CountDownLatch(1);
+		final CountDownLatch rejected = new CountDownLatch(1);
+		final AtomicInteger published = new AtomicInteger();
+		// executor accepts only first worker and rejects next one when first worker publishes result
+		ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new SynchronousQueue<Runnable>()) {
+			private final AtomicInteger executed = new AtomicInteger();
+
+			@Override
+			public void execute(Runnable command) {
+				if (executed.getAndIncrement() == 0) {
+					super.execute(command);
+					return;
+				}
+				try {
+					publishing.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new RejectedExecutionException();
+			}
+		};
+		try {
+			createPlanner().searchRoutes(createRequests(), single, WORKERS, new ResultMatcher<RouteResult>() {
+
+				@Override
+				public boolean publish(RouteResult object) {
+					published.incrementAndGet();
+					publishing.countDown();
+					try {
+						rejected.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+			Assert.fail("Rejected execution is not thrown");
+		} catch (RejectedExecutionException e) {
+			rejected.countDown();
+		}
+		single.shutdown();
+		Assert.assertTrue(single.awaitTermination(10, TimeUnit.SECONDS));
+		// started worker doesn't take next requests after cancellation
+		Assert.assertEquals(1, published.get());
+		Assert.assertEquals(0, pool.getInUse());
+	}
+
+	private static RoutingConfiguration carConfiguration() throws IOException {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		return RoutingConfiguration.getDefault().build("car", memoryLimits);
+	}
+
+	@Test
+	public void testRequestsDontShareSearchState() throws IOException, InterruptedException {
+		// longest and shortest car routes of routing tests
+		Reader r = new InputStreamReader(Objects.requireNonNull(BatchRoutePlannerTest.class.getResourceAsStream("/test_routing.json")));
+		TestEntry[] testEntries = new GsonBuilder().create().fromJson(r, TestEntry[].class);
+		r.close();
+		TestEntry longest = null, shortest = null;
+		for (TestEntry te : testEntries) {
+			if (te.isIgnore() || te.getParams().containsKey("map") || te.getParams().containsKey("vehicle")
+					|| te.getTransitPoint() != null) {
+				continue;
+			}
+			double d = MapUtils.getDistance(te.getStartPoint(), te.getEndPoint());
+			if (longest == null || d > MapUtils.getDistance(longest.getStartPoint(), longest.getEndPoint())) {
+				longest = te;
+			}
+			if (shortest == null || d < MapUtils.getDistance(shortest.getStartPoint(), shortest.getEndPoint())) {
+				shortest = te;
+			}
+		}
+		Assert.assertNotNull(longest);
+
+		String fl = "src/test/resources/routing/Routing_test_archive.obf";
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl));
+		BinaryMapIndexReaderPool mapPool = new BinaryMapIndexReaderPool(Arrays.asList(reader), 1);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingContext ctx = fe.buildRoutingContext(carConfiguration(), null, new BinaryMapIndexReader[] { reader },
+					RouteCalculationMode.COMPLEX);
+			List<RouteSegmentResult> expected = fe.searchRoute(ctx, shortest.getStartPoint(), shortest.getEndPoint(),
+					null).detailed;
+
+			// single worker calculates long COMPLEX route and then short one
+			BatchRoutePlanner planner = new BatchRoutePlanner(fe, carConfiguration(), mapPool);
+			List<RouteRequest> requests = new ArrayList<RouteRequest>();
+			requests.add(new RouteRequest(longest.getStartPoint(), longest.getEndPoint()));
+			requests.add(new RouteRequest(shortest.getStartPoint(), shortest.getEndPoint()));
+			List<RouteResult> results = planner.searchRoutes(requests, executor, 1, null);
+			Assert.assertTrue(results.get(0).getError(), results.get(0).isCorrect());
+			Assert.assertTrue(results.get(1).getError(), results.get(1).isCorrect());
+
+			List<RouteSegmentResult> actual = results.get(1).getResult().detailed;
+			Assert.assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				RouteSegmentResult e = expected.get(i), a = actual.get(i);
+				Assert.assertEquals(e.getObject().getId(), a.getObject().getId());
+				Assert.assertEquals(e.getStartPointIndex(), a.getStartPointIndex());
+				Assert.assertEquals(e.getEndPointIndex(), a.getEndPointIndex());
+				Assert.assertEquals(e.getRoutingTime(), a.getRoutingTime(), 0.01);
+			}
+		} finally {
+			mapPool.close();
+			reader.close();
+		}
+	}
+}
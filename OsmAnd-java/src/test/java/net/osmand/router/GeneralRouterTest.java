@@ -0,0 +1,261 @@
+package net.osmand.router;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteAttributeEvalRule;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+
+public class GeneralRouterTest {
+
+	private static final String[][] TAGS = { { "highway", "primary" }, { "highway", "residential" },
+			{ "maxspeed", "30" }, { "surface", "unpaved" }, { "oneway", "yes" }, { "highway", "track" },
+			{ "access", "no" }, { "surface", "asphalt" } };
+
+	private GeneralRouter base;
+	private RouteRegion region;
+
+	@Before
+	public void setUp() {
+		base = new GeneralRouter(GeneralRouterProfile.CAR, new LinkedHashMap<String, String>());
+		RouteAttributeContext speed = base.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		RouteAttributeEvalRule r = speed.registerNewRule("$maxspeed", "speed");
+		r.registerAndTagValueCondition("maxspeed", null, false);
+		r = speed.registerNewRule(":slow_speed", "speed");
+		r.registerAndParamCondition("slow_speed", false);
+		r.registerAndTagValueCondition("surface", "unpaved", false);
+		r = speed.registerNewRule("90", "speed");
+		r.registerAndTagValueCondition("highway", "primary", false);
+		r.registerAndTagValueCondition("surface", null, true);
+		r = speed.registerNewRule("40", "speed");
+		r.registerAndTagValueCondition("highway", "primary", false);
+		r = speed.registerNewRule("20", "speed");
+		r.registerAndTagValueCondition("highway", "track", false);
+		r.registerAndParamCondition("avoid_tracks", true);
+
+		RouteAttributeContext prio = base.getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES);
+		r = prio.registerNewRule("", "");
+		r.registerMinExpression("$maxspeed", ":max_prio", "speed");
+		r = prio.registerNewRule("0.5", "");
+		r.registerLessCondition("$maxspeed", "40", "speed");
+
+		RouteAttributeContext access = base.getObjContext(RouteDataObjectAttribute.ACCESS);
+		r = access.registerNewRule("-1", "");
+		r.registerAndTagValueCondition("access", "no", false);
+
+		region = new RouteRegion();
+		for (int i = 0; i < TAGS.length; i++) {
+			// region ids differ from universal ids
+			region.initRouteEncodingRule(i + 3, TAGS[i][0], TAGS[i][1]);
+		}
+	}
+
+	private RouteDataObject road(int... tagIndexes) {
+		RouteDataObject o = new RouteDataObject(region);
+		o.types = new int[tagIndexes.length];
+		for (int i = 0; i < tagIndexes.length; i++) {
+			o.types[i] = tagIndexes[i] + 3;
+		}
+		return o;
+	}
+
+	private BitSet raw(GeneralRouter router, RouteDataObject o) {
+		BitSet b = new BitSet();
+		for (int t : o.types) {
+			b.set(router.registerTagValueAttribute(region.quickGetEncodingRule(t).getTag(),
+					region.quickGetEncodingRule(t).getValue()));
+		}
+		return b;
+	}
+
+	@Test
+	public void testCompiledEvaluation() {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("slow_speed", "15");
+		params.put("max_prio", "60");
+		GeneralRouter router = base.build(params);
+		RouteAttributeContext speed = router.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		RouteAttributeContext prio = router.getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES);
+
+		Assert.assertEquals(30 / 3.6f, speed.evaluateFloat(road(0, 2), -1), 1e-4);
+		Assert.assertEquals(15 / 3.6f, speed.evaluateFloat(road(1, 3), -1), 1e-4);
+		Assert.assertEquals(90 / 3.6f, speed.evaluateFloat(road(0), -1), 1e-4);
+		Assert.assertEquals(15 / 3.6f, speed.evaluateFloat(road(0, 3), -1), 1e-4);
+		Assert.assertEquals(40 / 3.6f, speed.evaluateFloat(road(0, 7), -1), 1e-4);
+		Assert.assertEquals(20 / 3.6f, speed.evaluateFloat(road(5), -1), 1e-4);
+		Assert.assertEquals(-1, speed.evaluateFloat(road(1), -1), 1e-4);
+		Assert.assertEquals(30 / 3.6f, prio.evaluateFloat(road(1, 2), -1), 1e-4);
+		Assert.assertEquals(-1, prio.evaluateFloat(road(1), -1), 1e-4);
+		Assert.assertEquals(-1, router.getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(road(1, 6), 0));
+
+		// compiled rules give the same result as evaluation of raw types
+		for (int mask = 0; mask < (1 << TAGS.length); mask++) {
+			int cnt = Integer.bitCount(mask);
+			int[] tags = new int[cnt];
+			for (int i = 0, k = 0; i < TAGS.length; i++) {
+				if ((mask & (1 << i)) != 0) {
+					tags[k++] = i;
+				}
+			}
+			RouteDataObject o = road(tags);
+			for (RouteDataObjectAttribute a : RouteDataObjectAttribute.values()) {
+				RouteAttributeContext ctx = router.getObjContext(a);
+				Assert.assertEquals(a + " " + mask, ctx.evaluateFloat(raw(router, o), -7), ctx.evaluateFloat(o, -7), 1e-6);
+			}
+		}
+	}
+
+	@Test
+	public void testSelectOfMissingTagStopsEvaluation() {
+		GeneralRouter router = new GeneralRouter(GeneralRouterProfile.CAR, new LinkedHashMap<String, String>());
+		RouteAttributeContext speed = router.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		speed.registerNewRule("$maxspeed", "speed");
+		RouteAttributeEvalRule r = speed.registerNewRule("90", "speed");
+		r.registerAndTagValueCondition("highway", "primary", false);
+		router = router.build(new LinkedHashMap<String, String>());
+		speed = router.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+
+		Assert.assertEquals(30 / 3.6f, speed.evaluateFloat(road(0, 2), -1), 1e-4);
+		// next rules are not checked if object has no selected tag
+		Assert.assertEquals(-1, speed.evaluateFloat(road(0), -1), 0);
+		Assert.assertEquals(-1, speed.evaluateFloat(raw(router, road(0)), -1), 0);
+	}
+
+	@Test
+	public void testParametersAreNotShared() {
+		Map<String, String> slow = new LinkedHashMap<String, String>();
+		slow.put("slow_speed", "15");
+		Map<String, String> fast = new LinkedHashMap<String, String>();
+		fast.put("slow_speed", "25");
+		GeneralRouter r1 = base.build(slow);
+		GeneralRouter r2 = base.build(fast);
+		Assert.assertEquals(15 / 3.6f, r1.getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road(1, 3), -1), 1e-4);
+		Assert.assertEquals(25 / 3.6f, r2.getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road(1, 3), -1), 1e-4);
+	}
+
+	@Test
+	public void testCachedDefinitions() {
+		GeneralRouter router = base.build(new LinkedHashMap<String, String>());
+		RouteDataObject o = road(0);
+		float spd = router.defineRoutingSpeed(o, true);
+		Assert.assertEquals(Math.max(Math.min(90 / 3.6f, router.getMaxSpeed()), router.getMinSpeed()), spd, 1e-6);
+		// cached value is used for equal types
+		Assert.assertEquals(spd, router.defineRoutingSpeed(road(0), true), 0);
+		Assert.assertFalse(router.acceptLine(road(0, 6)));
+		Assert.assertTrue(router.acceptLine(road(0)));
+		Assert.assertEquals(0, router.isOneWay(o));
+	}
+
+	@Test
+	public void testRegionTables() {
+		RouteRegionTables tables = new RouteRegionTables(region, 4, 200);
+		Assert.assertFalse(tables.contains(new int[] { 3, 4 }));
+		int[] types = { 3, 4 };
+		tables.put(1, types, 2.5f);
+		types[0] = 5;
+		Assert.assertTrue(tables.contains(new int[] { 3, 4 }));
+		Assert.assertFalse(tables.contains(types));
+		Assert.assertEquals(2.5f, tables.get(1, new int[] { 3, 4 }), 0);
+		Assert.assertTrue(Float.isNaN(tables.get(0, new int[] { 3, 4 })));
+		for (int i = 0; i < 100; i++) {
+			tables.put(i % 4, new int[] { i, 100 }, i);
+		}
+		Assert.assertEquals(101, tables.size());
+		Assert.assertEquals(2.5f, tables.get(1, new int[] { 3, 4 }), 0);
+		Assert.assertEquals(50f, tables.get(2, new int[] { 50, 100 }), 0);
+		Assert.assertTrue(Float.isNaN(tables.get(1, new int[] { 50, 100 })));
+		Assert.assertTrue(tables.ensureUniversalIds(20).length > 20);
+		// bounded number of combinations
+		for (int i = 0; i < 100; i++) {
+			tables.put(0, new int[] { i, 200 }, i);
+		}
+		Assert.assertEquals(1, tables.getResets());
+		Assert.assertTrue(tables.size() <= 200);
+		Assert.assertEquals(99f, tables.get(0, new int[] { 99, 200 }), 0);
+	}
+
+	@Test
+	public void testSharedRouterConcurrently() throws InterruptedException {
+		final GeneralRouter router = base.build(new LinkedHashMap<String, String>());
+		final int[][] combinations = new int[1 << TAGS.length][];
+		final float[] expected = new float[combinations.length];
+		for (int mask = 0; mask < combinations.length; mask++) {
+			combinations[mask] = new int[Integer.bitCount(mask)];
+			for (int i = 0, k = 0; i < TAGS.length; i++) {
+				if ((mask & (1 << i)) != 0) {
+					combinations[mask][k++] = i;
+				}
+			}
+			expected[mask] = router.copy().defineRoutingSpeed(road(combinations[mask]), true);
+		}
+		final GeneralRouter shared = base.build(new LinkedHashMap<String, String>());
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final GeneralRouter r = t % 2 == 0 ? shared : shared.copy();
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int it = 0; it < 20; it++) {
+						for (int mask = 0; mask < combinations.length; mask++) {
+							RouteDataObject o = road(combinations[mask]);
+							r.acceptLine(o);
+							if (r.defineRoutingSpeed(o, true) != expected[mask]) {
+								errors.incrementAndGet();
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertEquals(0, errors.get());
+		Assert.assertEquals(combinations.length, shared.getCacheSize());
+		Assert.assertTrue(shared.getCacheHits() > shared.getCacheMisses());
+	}
+
+	@Test
+	public void testConcurrentTagRegistration() throws InterruptedException {
+		final GeneralRouter router = base.build(new LinkedHashMap<String, String>());
+		final RouteAttributeContext speed = router.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		final AtomicInteger errors = new AtomicInteger();
+		final Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 500; i++) {
+						int value = 1 + i * threads.length + thread;
+						BitSet b = new BitSet();
+						b.set(router.registerTagValueAttribute("maxspeed", String.valueOf(value)));
+						// masks of tag are read without lock while other threads register values
+						if (Math.abs(speed.evaluateFloat(b, -1) - value / 3.6f) > 1e-3) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			};
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertEquals(0, errors.get());
+	}
+}
@@ -0,0 +1,176 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+public class GpxApproximationTest {
+
+	private static final String MAP = "src/test/resources/routing/Routing_test_archive.obf";
+	// tracks are built from routes of first test entries
+	private static final int TRACKS = 3;
+	private static final double TRACK_POINTS_DISTANCE = 10;
+	// track is approximated by that many chunks
+	private static final int CHUNKS = 4;
+
+	private static BinaryMapIndexReader reader;
+	private static List<List<LatLon>> tracks = new ArrayList<>();
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		reader = new BinaryMapIndexReader(new RandomAccessFile(MAP, "r"), new File(MAP));
+		for (Object[] data : RouteTestingTest.data()) {
+			TestEntry te = (TestEntry) data[1];
+			if (te.getParams().containsKey("map") || te.getExpectedResults() == null
+					|| !te.getTransitPoint().isEmpty()) {
+				continue;
+			}
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingContext ctx = fe.buildRoutingContext(buildConfig(), null, new BinaryMapIndexReader[] { reader },
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			List<RouteSegmentResult> route = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), null).detailed;
+			if (route != null && !route.isEmpty()) {
+				tracks.add(toTrack(route));
+			}
+			if (tracks.size() == TRACKS) {
+				break;
+			}
+		}
+		Assert.assertFalse(tracks.isEmpty());
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	private static RoutingConfiguration buildConfig() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		return RoutingConfiguration.getDefault().build("car", memoryLimits);
+	}
+
+	// points of route every TRACK_POINTS_DISTANCE meters
+	private static List<LatLon> toTrack(List<RouteSegmentResult> route) {
+		List<LatLon> track = new ArrayList<>();
+		for (RouteSegmentResult r : route) {
+			int step = r.isForwardDirection() ? 1 : -1;
+			for (int i = r.getStartPointIndex(); i != r.getEndPointIndex(); i += step) {
+				LatLon p1 = r.getPoint(i);
+				LatLon p2 = r.getPoint(i + step);
+				int parts = (int) Math.ceil(MapUtils.getDistance(p1, p2) / TRACK_POINTS_DISTANCE);
+				for (int k = 0; k < parts; k++) {
+					track.add(new LatLon(p1.getLatitude() + (p2.getLatitude() - p1.getLatitude()) * k / parts,
+							p1.getLongitude() + (p2.getLongitude() - p1.getLongitude()) * k / parts));
+				}
+			}
+		}
+		RouteSegmentResult last = route.get(route.size() - 1);
+		track.add(last.getEndPoint());
+		return track;
+	}
+
+	private static GpxRouteApproximation approximate(RoutePlannerFrontEnd fe, List<LatLon> track) throws Exception {
+		return approximate(fe, track, Double.POSITIVE_INFINITY);
+	}
+
+	private static GpxRouteApproximation approximate(RoutePlannerFrontEnd fe, List<LatLon> track, double chunkDistance)
+			throws Exception {
+		RoutingContext ctx = fe.buildRoutingContext(buildConfig(), null, new BinaryMapIndexReader[] { reader },
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+		gctx.CHUNK_APPROXIMATION_DISTANCE = chunkDistance;
+		List<GpxPoint> points = fe.generateGpxPoints(gctx, new LocationsHolder(track));
+		return fe.searchGpxRoute(gctx, points, null);
+	}
+
+	private static double length(List<LatLon> track) {
+		double d = 0;
+		for (int i = 1; i < track.size(); i++) {
+			d += MapUtils.getDistance(track.get(i - 1), track.get(i));
+		}
+		return d;
+	}
+
+	private static List<String> segments(GpxRouteApproximation gctx) {
+		List<String> res = new ArrayList<>();
+		for (RouteSegmentResult r : gctx.result) {
+			res.add((r.getObject().getId() >> RouteResultPreparation.SHIFT_ID) + ":" + r.getStartPointIndex() + "-"
+					+ r.getEndPointIndex());
+		}
+		return res;
+	}
+
+	private static double length(RouteSegmentResult r) {
+		double d = 0;
+		int step = r.isForwardDirection() ? 1 : -1;
+		for (int i = r.getStartPointIndex(); i != r.getEndPointIndex(); i += step) {
+			d += MapUtils.getDistance(r.getPoint(i), r.getPoint(i + step));
+		}
+		return d;
+	}
+
+	@Test
+	public void testHmmApproximationIsContinuous() throws Exception {
+		for (List<LatLon> track : tracks) {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			fe.setUseNativeApproximation(false);
+			fe.setUseHmmApproximation(true);
+			GpxRouteApproximation gctx = approximate(fe, track);
+			Assert.assertFalse(gctx.result.isEmpty());
+			double routeLength = 0;
+			for (int i = 0; i < gctx.result.size(); i++) {
+				RouteSegmentResult r = gctx.result.get(i);
+				if (i > 0) {
+					LatLon prevEnd = gctx.result.get(i - 1).getEndPoint();
+					Assert.assertTrue("Gap between route segments " + (i - 1) + " and " + i,
+							MapUtils.getDistance(prevEnd, r.getStartPoint()) < 1);
+				}
+				routeLength += length(r);
+			}
+			// route doesn't go back and forth between matched points
+			double trackLength = length(track);
+			Assert.assertTrue("Route length " + routeLength + " of track " + trackLength,
+					routeLength < trackLength * 1.05 + 20);
+			Assert.assertTrue("Unmatched " + gctx.routeDistanceUnmatched,
+					gctx.routeDistanceUnmatched < trackLength * 0.05);
+		}
+	}
+
+	@Test
+	public void testChunkApproximationAsSequential() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(CHUNKS - 1);
+		try {
+			for (List<LatLon> track : tracks) {
+				RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+				fe.setUseNativeApproximation(false);
+				GpxRouteApproximation sequential = approximate(fe, track);
+				fe.setGpxApproximationExecutor(executor);
+				GpxRouteApproximation chunks = approximate(fe, track, length(track) / CHUNKS);
+				Assert.assertFalse(sequential.result.isEmpty());
+				Assert.assertEquals(segments(sequential), segments(chunks));
+				Assert.assertEquals(sequential.routeDistanceUnmatched, chunks.routeDistanceUnmatched);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.HHRouteDataStructure.HHNetworkRouteRes;
+import net.osmand.router.HHRouteDataStructure.HHRouteMatrix;
+import net.osmand.router.HHRouteDataStructure.HHRoutingConfig;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+public class HHRouteMatrixTest {
+
+	private static final int MAX_POINTS = 4;
+	private static final double RADIUS = 30000;
+	// costs of matrix and 1-1 routes differ only by floating point summation order
+	private static final double PRECISION = 0.01;
+
+	private BinaryMapIndexReader reader;
+	private List<LatLon> sources = new ArrayList<>();
+	private List<LatLon> targets = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		String fl = "src/test/resources/routing/Routing_test_archive.obf";
+		reader = new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl));
+
+		// start / end points of routing tests around first test
+		Reader r = new InputStreamReader(Objects.requireNonNull(HHRouteMatrixTest.class.getResourceAsStream("/test_routing.json")));
+		Gson gson = new GsonBuilder().create();
+		TestEntry[] testEntries = gson.fromJson(r, TestEntry[].class);
+		r.close();
+		LatLon center = null;
+		for (TestEntry te : testEntries) {
+			if (te.isIgnore() || te.getParams().containsKey("map") || te.getParams().containsKey("vehicle")) {
+				continue;
+			}
+			if (center == null) {
+				center = te.getStartPoint();
+			}
+			if (sources.size() < MAX_POINTS && MapUtils.getDistance(center, te.getStartPoint()) < RADIUS) {
+				sources.add(te.getStartPoint());
+			}
+			if (targets.size() < MAX_POINTS && MapUtils.getDistance(center, te.getEndPoint()) < RADIUS) {
+				targets.add(te.getEndPoint());
+			}
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	private HHRoutePlanner<NetworkDBPoint> createPlanner() throws IOException {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits);
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null,
+				new BinaryMapIndexReader[] { reader }, RouteCalculationMode.NORMAL);
+		ctx.calculationProgress = new RouteCalculationProgress();
+		return HHRoutePlanner.create(ctx);
+	}
+
+	private static HHRoutingConfig routingConfig() {
+		HHRoutingConfig c = HHRoutingConfig.dijkstra(0);
+		c.ROUTE_LAST_MILE = true;
+		c.STATS_VERBOSE_LEVEL = 0;
+		return c;
+	}
+
+	@Test
+	public void testMatrixEqualsOneToOneRoutes() throws SQLException, IOException, InterruptedException {
+		Assert.assertFalse(sources.isEmpty());
+		Assert.assertFalse(targets.isEmpty());
+		HHRoutePlanner<NetworkDBPoint> planner = createPlanner();
+		HHRouteMatrix matrix = planner.runMatrix(sources, targets, routingConfig());
+		Assert.assertNull(matrix.error);
+		planner.close();
+
+		int reachable = 0;
+		for (int i = 0; i < sources.size(); i++) {
+			for (int j = 0; j < targets.size(); j++) {
+				planner = createPlanner();
+				HHNetworkRouteRes route = planner.runRouting(sources.get(i), targets.get(j), routingConfig());
+				planner.close();
+				String cell = i + " -> " + j;
+				if (route.getError() != null || route.segments.isEmpty()) {
+					Assert.assertFalse(cell, matrix.isReachable(i, j));
+					continue;
+				}
+				reachable++;
+				Assert.assertTrue(cell, matrix.isReachable(i, j));
+				Assert.assertEquals(cell, route.getHHRoutingTime(), matrix.getCost(i, j),
+						PRECISION * Math.max(1, route.getHHRoutingTime()));
+			}
+		}
+		Assert.assertTrue(reachable > 0);
+	}
+}
@@ -0,0 +1,265 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+import net.osmand.data.LatLon;
+import net.osmand.router.HHRouteDataStructure.GraphBoundaries;
+import net.osmand.router.HHRouteDataStructure.HHRouteRegionPointsCtx;
+import net.osmand.router.HHRouteDataStructure.HHRoutingContext;
+import net.osmand.router.HHRouteDataStructure.NetworkDBPoint;
+import net.osmand.router.HHRouteDataStructure.NetworkDBSegment;
+import net.osmand.util.MapUtils;
+
+public class HHRoutingGraphFileTest {
+
+	private static final int X = MapUtils.get31TileNumberX(4.9);
+	private static final int Y = MapUtils.get31TileNumberY(52.37);
+
+	private static NetworkDBPoint point(int index, int cluster, long roadId) {
+		NetworkDBPoint p = new NetworkDBPoint();
+		p.index = index;
+		p.clusterId = cluster;
+		p.roadId = roadId;
+		p.start = (short) 3;
+		p.end = (short) 4;
+		p.startX = X + index * 1000;
+		p.startY = Y + index * 2000;
+		p.endX = p.startX + 10;
+		p.endY = p.startY + 20;
+		return p;
+	}
+
+	private static void connect(NetworkDBPoint s, NetworkDBPoint e, double dist, boolean shortcut) {
+		s.connected.add(new NetworkDBSegment(s, e, dist, true, shortcut));
+		e.connectedReverse.add(new NetworkDBSegment(s, e, dist, false, shortcut));
+	}
+
+	private static List<NetworkDBPoint> graphPoints() {
+		// indexes are not sorted to check node order
+		NetworkDBPoint a = point(7, 1, 640), b = point(3, 1, 1280), c = point(5, 2, 1920), d = point(9, 2, 2560);
+		a.dualPoint = b;
+		b.dualPoint = a;
+		c.dualPoint = d;
+		d.dualPoint = c;
+		c.tagValues = new ArrayList<>();
+		c.tagValues.add(new TagValuePair("highway", "primary", -1));
+		connect(a, c, 12.5, false);
+		connect(a, d, 20, true);
+		connect(c, b, 7.25, false);
+		List<NetworkDBPoint> pnts = new ArrayList<>();
+		pnts.add(a);
+		pnts.add(b);
+		pnts.add(c);
+		pnts.add(d);
+		return pnts;
+	}
+
+	@Test
+	public void testWriteAndLoad() throws IOException, SQLException {
+		List<NetworkDBPoint> pnts = graphPoints();
+		NetworkDBPoint a = pnts.get(0);
+		File f = File.createTempFile("graph", HHRoutingGraphFile.EXT);
+		HHRoutingGraphFile graph = null;
+		try {
+			HHRoutingGraphFile.write(pnts, 2, f);
+			graph = HHRoutingGraphFile.open(f);
+			Assert.assertEquals(4, graph.getPointsCount());
+			Assert.assertEquals(3, graph.getSegmentsCount());
+			Assert.assertEquals(2, graph.getRoutingProfile());
+			Assert.assertEquals(0, graph.getNode(3));
+			Assert.assertEquals(2, graph.getNode(7));
+			Assert.assertEquals(-1, graph.getNode(8));
+			int na = graph.getNode(7);
+			Assert.assertEquals(2, graph.getOutDegree(na));
+			Assert.assertEquals(0, graph.getInDegree(na));
+			Assert.assertEquals(graph.getNode(5), graph.getConnectedNode(na, 0, false));
+			Assert.assertEquals(12.5, graph.getSegmentDist(na, 0, false), 1e-6);
+			Assert.assertTrue(graph.isShortcut(na, 1, false));
+
+			HHRoutingContext<NetworkDBPoint> ctx = new HHRoutingContext<NetworkDBPoint>();
+			HHRouteRegionPointsCtx<NetworkDBPoint> reg = new HHRouteRegionPointsCtx<NetworkDBPoint>((short) 0, graph);
+			ctx.regions.add(reg);
+			TLongObjectHashMap<NetworkDBPoint> loaded = ctx.loadNetworkPoints(NetworkDBPoint.class);
+			Assert.assertEquals(4, loaded.size());
+			NetworkDBPoint la = loaded.get(7), lb = loaded.get(3), lc = loaded.get(5);
+			Assert.assertSame(lb, la.dualPoint);
+			Assert.assertSame(la, lb.dualPoint);
+			Assert.assertEquals(1280, lb.roadId);
+			Assert.assertEquals(3, la.start);
+			Assert.assertEquals(4, la.end);
+			Assert.assertEquals(a.endY, la.endY);
+			Assert.assertNull(la.tagValues);
+			Assert.assertEquals(1, lc.tagValues.size());
+			Assert.assertEquals("primary", lc.tagValues.get(0).value);
+
+			for (NetworkDBPoint p : loaded.valueCollection()) {
+				p.markSegmentsNotLoaded();
+			}
+			ctx.pointsById = loaded;
+			Assert.assertEquals(3, ctx.loadNetworkSegments(loaded.valueCollection()));
+			Assert.assertEquals(2, la.connected(false).size());
+			NetworkDBSegment s = lc.connected(true).get(0);
+			Assert.assertSame(la, s.start);
+			Assert.assertSame(lc, s.end);
+			Assert.assertEquals(12.5, s.dist, 1e-6);
+			Assert.assertFalse(s.direction);
+			Assert.assertSame(lb, lc.connected(false).get(0).end);
+			Assert.assertTrue(la.getSegment(loaded.get(9), true).shortcut);
+		} finally {
+			if (graph != null) {
+				graph.close();
+			}
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testSmallWindows() throws IOException {
+		List<NetworkDBPoint> pnts = graphPoints();
+		File f = File.createTempFile("graph", HHRoutingGraphFile.EXT);
+		HHRoutingGraphFile graph = null, windowed = null;
+		try {
+			HHRoutingGraphFile.write(pnts, 2, f);
+			graph = HHRoutingGraphFile.open(f);
+			// values and tags cross window bounds
+			windowed = HHRoutingGraphFile.open(f, 5);
+			Assert.assertEquals(graph.getPointsCount(), windowed.getPointsCount());
+			for (int node = 0; node < graph.getPointsCount(); node++) {
+				Assert.assertEquals(graph.getPointIndex(node), windowed.getPointIndex(node));
+				Assert.assertEquals(graph.getRoadId(node), windowed.getRoadId(node));
+				Assert.assertEquals(graph.getEndY(node), windowed.getEndY(node));
+				Assert.assertEquals(graph.getDualNode(node), windowed.getDualNode(node));
+				Assert.assertEquals(graph.getTagValues(node), windowed.getTagValues(node));
+				Assert.assertEquals(graph.getOutDegree(node), windowed.getOutDegree(node));
+				for (int k = 0; k < graph.getOutDegree(node); k++) {
+					Assert.assertEquals(graph.getConnectedNode(node, k, false), windowed.getConnectedNode(node, k, false));
+					Assert.assertEquals(graph.getSegmentDist(node, k, false), windowed.getSegmentDist(node, k, false), 0);
+					Assert.assertEquals(graph.isShortcut(node, k, false), windowed.isShortcut(node, k, false));
+				}
+			}
+			for (NetworkDBPoint p : pnts) {
+				Assert.assertEquals(graph.getNode(p.index), windowed.getNodeByGeoId(p.getGeoPntId()));
+			}
+		} finally {
+			if (graph != null) {
+				graph.close();
+			}
+			if (windowed != null) {
+				windowed.close();
+			}
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testLazyPoints() throws IOException, SQLException {
+		List<NetworkDBPoint> pnts = graphPoints();
+		NetworkDBPoint a = pnts.get(0), c = pnts.get(2);
+		File f = File.createTempFile("graph", HHRoutingGraphFile.EXT);
+		HHRoutingGraphFile graph = null;
+		try {
+			HHRoutingGraphFile.write(pnts, 2, f);
+			graph = HHRoutingGraphFile.open(f);
+			Assert.assertEquals(-1, graph.getNodeByGeoId(a.getGeoPntId() + 1));
+
+			HHRoutingContext<NetworkDBPoint> ctx = new HHRoutingContext<NetworkDBPoint>();
+			ctx.regions.add(new HHRouteRegionPointsCtx<NetworkDBPoint>((short) 0, graph));
+			Assert.assertTrue(ctx.isSingleGraph());
+			ctx.lazyPointClass = NetworkDBPoint.class;
+			ctx.pointsById = new TLongObjectHashMap<NetworkDBPoint>();
+			ctx.pointsByGeo = new TLongObjectHashMap<NetworkDBPoint>();
+
+			NetworkDBPoint la = ctx.getPointByGeo(a.getGeoPntId());
+			Assert.assertEquals(7, la.index);
+			Assert.assertSame(la, ctx.getPointByGeo(a.getGeoPntId()));
+			// point is created with dual point only
+			Assert.assertEquals(2, ctx.pointsById.size());
+			Assert.assertEquals(3, la.dualPoint.index);
+			Assert.assertSame(la, la.dualPoint.dualPoint);
+
+			Assert.assertEquals(2, ctx.loadNetworkSegmentPoint(la, false));
+			Assert.assertEquals(4, ctx.pointsById.size());
+			NetworkDBPoint lc = ctx.pointsById.get(5);
+			Assert.assertSame(lc, la.connected(false).get(0).end);
+			Assert.assertEquals("primary", lc.tagValues.get(0).value);
+			Assert.assertNull(lc.connected(false));
+
+			LatLon cl = c.getPoint();
+			List<NetworkDBPoint> closest = ctx.getClosestPoints(cl.getLatitude(), cl.getLongitude(), 1);
+			Assert.assertEquals(1, closest.size());
+			Assert.assertSame(lc, closest.get(0));
+
+			GraphBoundaries boundaries = new GraphBoundaries(graph);
+			Assert.assertTrue(boundaries.containsKey(c.getGeoPntId()));
+			Assert.assertFalse(boundaries.containsKey(c.getGeoPntId() + 1));
+			boundaries.put(c.getGeoPntId() + 1, null);
+			Assert.assertTrue(boundaries.containsKey(c.getGeoPntId() + 1));
+		} finally {
+			if (graph != null) {
+				graph.close();
+			}
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testClosestNodes() throws IOException {
+		Random rnd = new Random(17);
+		List<NetworkDBPoint> pnts = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			NetworkDBPoint p = point(i, i / 10, i);
+			// ~ 100 x 60 km around X, Y
+			p.startX = X + rnd.nextInt(1 << 22);
+			p.startY = Y + rnd.nextInt(1 << 22);
+			p.endX = p.startX + rnd.nextInt(200);
+			p.endY = p.startY + rnd.nextInt(200);
+			pnts.add(p);
+		}
+		File f = File.createTempFile("graph", HHRoutingGraphFile.EXT);
+		HHRoutingGraphFile graph = null;
+		try {
+			HHRoutingGraphFile.write(pnts, 0, f);
+			graph = HHRoutingGraphFile.open(f, 12);
+			for (int k = 0; k < 50; k++) {
+				double lat = MapUtils.get31LatitudeY(Y + rnd.nextInt(1 << 22));
+				double lon = MapUtils.get31LongitudeX(X + rnd.nextInt(1 << 22));
+				double radius = 500 + rnd.nextInt(40000);
+				TIntArrayList expected = new TIntArrayList();
+				for (int node = 0; node < pnts.size(); node++) {
+					LatLon l = pnts.get(graph.getPointIndex(node)).getPoint();
+					if (MapUtils.getDistance(lat, lon, l.getLatitude(), l.getLongitude()) <= radius) {
+						expected.add(node);
+					}
+				}
+				TIntArrayList nodes = graph.getClosestNodes(lat, lon, radius);
+				Assert.assertEquals(expected.size(), nodes.size());
+				TIntArrayList sorted = new TIntArrayList(nodes);
+				sorted.sort();
+				Assert.assertEquals(expected, sorted);
+				double prev = 0;
+				for (int i = 0; i < nodes.size(); i++) {
+					LatLon l = pnts.get(graph.getPointIndex(nodes.get(i))).getPoint();
+					double d = MapUtils.getDistance(lat, lon, l.getLatitude(), l.getLongitude());
+					Assert.assertTrue(d >= prev - 1);
+					prev = d;
+				}
+			}
+		} finally {
+			if (graph != null) {
+				graph.close();
+			}
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+
+public class PackedRouteTileTest {
+
+	private static RouteRegion region() {
+		RouteRegion reg = new RouteRegion();
+		for (int i = 0; i < 8; i++) {
+			reg.initRouteEncodingRule(i, "highway", "type" + i);
+		}
+		return reg;
+	}
+
+	private static RouteDataObject road(RouteRegion reg, long id, int points) {
+		RouteDataObject o = new RouteDataObject(reg);
+		o.id = id;
+		o.types = new int[] { 1, 2 };
+		o.pointsX = new int[points];
+		o.pointsY = new int[points];
+		for (int i = 0; i < points; i++) {
+			o.pointsX[i] = (int) id * 1000 + i;
+			o.pointsY[i] = (int) id * 2000 - i;
+		}
+		return o;
+	}
+
+	@Test
+	public void testPackUnpack() {
+		RouteRegion reg = region();
+		List<RouteDataObject> objects = new ArrayList<RouteDataObject>();
+		RouteDataObject a = road(reg, 1, 3);
+		a.pointTypes = new int[3][];
+		a.pointTypes[1] = new int[] { 5 };
+		a.restrictions = new long[] { 10, 20 };
+		a.restrictionsVia = new long[] { 0, 30 };
+		a.names = new TIntObjectHashMap<String>();
+		a.names.put(4, "Main street");
+		a.nameIds = new int[] { 4 };
+		RouteDataObject b = road(reg, 2, 2);
+		b.pointNames = new String[][] { { "Stop" }, null };
+		b.pointNameTypes = new int[][] { { 7 }, null };
+		objects.add(a);
+		objects.add(null);
+		objects.add(b);
+		objects.add(road(reg, 3, 0));
+
+		PackedRouteTile tile = new PackedRouteTile(objects);
+		Assert.assertEquals(4, tile.size());
+		Assert.assertTrue(tile.getEstimatedSize() > 0);
+		Assert.assertEquals(2, tile.getPointsLength(2));
+		Assert.assertEquals(2001, tile.getPoint31XTile(2, 1));
+
+		List<RouteDataObject> res = tile.unpack();
+		Assert.assertEquals(4, res.size());
+		Assert.assertNull(res.get(1));
+		RouteDataObject ua = res.get(0);
+		Assert.assertSame(reg, ua.region);
+		Assert.assertEquals(1, ua.id);
+		// views read shared arrays and don't allocate own ones
+		Assert.assertNull(ua.pointsX);
+		Assert.assertNull(ua.pointTypes);
+		Assert.assertEquals(3, ua.getPointsLength());
+		Assert.assertEquals(1002, ua.getPoint31XTile(2));
+		Assert.assertEquals(1998, ua.getPoint31YTile(2));
+		Assert.assertEquals(1000 / 2 + 1002 / 2, ua.getPoint31XTile(0, 2));
+		Assert.assertArrayEquals(a.types, ua.getTypes());
+		Assert.assertTrue(ua.hasPointTypes());
+		Assert.assertNull(ua.getPointTypes(0));
+		Assert.assertArrayEquals(new int[] { 5 }, ua.getPointTypes(1));
+		Assert.assertNull(ua.getPointTypes(5));
+		Assert.assertEquals(2, ua.getRestrictionLength());
+		Assert.assertEquals(a.getRestrictionId(1), ua.getRestrictionId(1));
+		Assert.assertEquals(a.getRestrictionType(1), ua.getRestrictionType(1));
+		Assert.assertEquals(30, ua.getRestrictionVia(1));
+		Assert.assertEquals(0, ua.getRestrictionVia(2));
+		Assert.assertEquals("Main street", ua.getNames().get(4));
+		Assert.assertArrayEquals(new int[] { 4 }, ua.getNameIds());
+
+		RouteDataObject ub = res.get(2);
+		Assert.assertFalse(ub.hasPointTypes());
+		Assert.assertEquals(0, ub.getRestrictionLength());
+		Assert.assertNull(ub.names);
+		Assert.assertNull(ub.nameIds);
+		Assert.assertEquals("Stop", ub.pointNames[0][0]);
+		Assert.assertEquals(0, res.get(3).getPointsLength());
+
+		// no conditional tags to apply
+		ua.processConditionalTags(System.currentTimeMillis());
+		Assert.assertNull(ua.pointsX);
+
+		// materialized object has the same arrays as original one
+		RouteDataObject copy = new RouteDataObject(ua);
+		Assert.assertArrayEquals(a.pointsX, copy.pointsX);
+		Assert.assertArrayEquals(a.pointsY, copy.pointsY);
+		Assert.assertNull(copy.pointTypes[0]);
+		Assert.assertArrayEquals(new int[] { 5 }, copy.pointTypes[1]);
+		Assert.assertArrayEquals(a.restrictions, copy.restrictions);
+		Assert.assertArrayEquals(a.restrictionsVia, copy.restrictionsVia);
+		Assert.assertTrue(ua.compareRoute(a));
+		Assert.assertNull(new RouteDataObject(ub).restrictions);
+
+		// modified objects don't affect the tile
+		ua.types[0] = 100;
+		ua.insert(1, -1, -1);
+		ua.setPointTypes(0, new int[] { 6 });
+		RouteDataObject again = tile.get(0);
+		Assert.assertEquals(1, again.getTypes()[0]);
+		Assert.assertEquals(3, again.getPointsLength());
+		Assert.assertEquals(1001, again.getPoint31XTile(1));
+		Assert.assertNull(again.getPointTypes(0));
+		Assert.assertEquals(4, ua.getPointsLength());
+		Assert.assertEquals(-1, ua.getPoint31XTile(1));
+		Assert.assertArrayEquals(new int[] { 5 }, ua.getPointTypes(2));
+	}
+
+	@Test
+	public void testNullAndEmptyArrays() {
+		RouteRegion reg = region();
+		List<RouteDataObject> objects = new ArrayList<RouteDataObject>();
+		RouteDataObject a = road(reg, 1, 2);
+		a.nameIds = new int[0];
+		a.names = new TIntObjectHashMap<String>();
+		a.restrictions = new long[0];
+		a.restrictionsVia = new long[] { 7 };
+		a.pointTypes = new int[0][];
+		RouteDataObject b = road(reg, 2, 2);
+		b.types = null;
+		objects.add(a);
+		objects.add(b);
+
+		PackedRouteTile tile = new PackedRouteTile(objects);
+		RouteDataObject ua = new RouteDataObject(tile.get(0));
+		Assert.assertEquals(0, ua.nameIds.length);
+		Assert.assertNotNull(ua.names);
+		Assert.assertTrue(ua.names.isEmpty());
+		Assert.assertEquals(0, ua.restrictions.length);
+		Assert.assertArrayEquals(new long[] { 7 }, ua.restrictionsVia);
+		Assert.assertEquals(0, ua.pointTypes.length);
+
+		RouteDataObject ub = new RouteDataObject(tile.get(1));
+		Assert.assertNull(ub.types);
+		Assert.assertNull(ub.nameIds);
+		Assert.assertNull(ub.names);
+		Assert.assertNull(ub.restrictions);
+		Assert.assertNull(ub.restrictionsVia);
+		Assert.assertNull(ub.pointTypes);
+	}
+}
@@ -0,0 +1,86 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+public class RouteSegmentQueueTest {
+
+	private static class Entry {
+		final float cost;
+		final RouteSegment segment;
+
+		Entry(float cost, RouteSegment segment) {
+			this.cost = cost;
+			this.segment = segment;
+		}
+	}
+
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		Random rnd = new Random(7);
+		PriorityQueue<Entry> pq = new PriorityQueue<>(50, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry o1, Entry o2) {
+				return Double.compare(o1.cost, o2.cost);
+			}
+		});
+		RouteSegmentQueue queue = new RouteSegmentQueue(50);
+		for (int i = 0; i < 20000; i++) {
+			if (rnd.nextInt(3) == 0 && !pq.isEmpty()) {
+				Entry e = pq.poll();
+				Assert.assertEquals(e.cost, queue.peekCost(), 0);
+				Assert.assertSame(e.segment, queue.poll());
+			} else {
+				// integer costs to check ties
+				Entry e = new Entry(rnd.nextInt(1000), new RouteSegment(null, 0, 1));
+				pq.add(e);
+				queue.add(e.segment, e.cost);
+			}
+			Assert.assertEquals(pq.size(), queue.size());
+		}
+		while (!pq.isEmpty()) {
+			Assert.assertSame(pq.poll().segment, queue.poll());
+		}
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		Random rnd = new Random(11);
+		RouteSegmentQueue queue = new RouteSegmentQueue(1);
+		List<RouteSegment> segments = new ArrayList<>();
+		float[] costs = new float[1000];
+		for (int i = 0; i < costs.length; i++) {
+			RouteSegment s = new RouteSegment(null, 0, 1);
+			s.distanceFromStart = i;
+			costs[i] = 1000 + rnd.nextFloat() * 1000;
+			segments.add(s);
+			queue.add(s, costs[i]);
+		}
+		for (int k = 0; k < 5000; k++) {
+			int i = rnd.nextInt(costs.length);
+			float cost = costs[i] + (rnd.nextFloat() - 0.7f) * 500;
+			queue.add(segments.get(i), cost);
+			costs[i] = Math.min(costs[i], cost);
+		}
+		Assert.assertEquals(costs.length, queue.size());
+		float prev = Float.NEGATIVE_INFINITY;
+		while (!queue.isEmpty()) {
+			float cost = queue.peekCost();
+			RouteSegment s = queue.poll();
+			Assert.assertFalse(queue.contains(s));
+			Assert.assertEquals(costs[(int) s.distanceFromStart], cost, 0);
+			Assert.assertTrue(prev <= cost);
+			prev = cost;
+		}
+	}
+}
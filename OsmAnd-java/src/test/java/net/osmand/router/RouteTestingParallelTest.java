@@ -0,0 +1,79 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+public class RouteTestingParallelTest extends RouteTestingTest {
+
+	private static final int TIMEOUT = 3000;
+
+	public RouteTestingParallelTest(String name, TestEntry te) {
+		super(name, te);
+	}
+
+	@Override
+	boolean isParallel() {
+		return true;
+	}
+
+	@Test(timeout = TIMEOUT)
+	public void testSameRouteAsSequential() throws Exception {
+		if (te.getExpectedResults() == null) {
+			// test on hanging routing
+			return;
+		}
+		for (int planRoadDirection = -1; planRoadDirection <= 1; planRoadDirection++) {
+			List<String> sequential = calculateRoute(planRoadDirection, false);
+			List<String> parallel = calculateRoute(planRoadDirection, true);
+			Assert.assertEquals("planRoadDirection " + planRoadDirection, sequential, parallel);
+		}
+	}
+
+	private List<String> calculateRoute(int planRoadDirection, boolean parallel) throws Exception {
+		Map<String, String> params = te.getParams();
+		List<BinaryMapIndexReader> readers = new ArrayList<>();
+		if (params.containsKey("map")) {
+			String fl = "src/test/resources/routing/" + params.get("map");
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)));
+		}
+		String fl = "src/test/resources/routing/Routing_test_archive.obf";
+		readers.add(new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)));
+		try {
+			RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+					RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build(
+					params.containsKey("vehicle") ? params.get("vehicle") : "car", memoryLimits, params);
+			if (params.containsKey("heuristicCoefficient")) {
+				config.heuristicCoefficient = Float.parseFloat(params.get("heuristicCoefficient"));
+			}
+			config.planRoadDirection = planRoadDirection;
+			config.parallelBidirectionalSearch = parallel;
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingContext ctx = fe.buildRoutingContext(config, null,
+					readers.toArray(new BinaryMapIndexReader[0]), RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			List<RouteSegmentResult> route = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(),
+					te.getTransitPoint()).detailed;
+			Assert.assertNotNull(route);
+			List<String> res = new ArrayList<>();
+			for (RouteSegmentResult r : route) {
+				res.add((r.getObject().getId() >> RouteResultPreparation.SHIFT_ID) + ":" + r.getStartPointIndex()
+						+ "-" + r.getEndPointIndex());
+			}
+			return res;
+		} finally {
+			for (BinaryMapIndexReader r : readers) {
+				r.close();
+			}
+		}
+	}
+}
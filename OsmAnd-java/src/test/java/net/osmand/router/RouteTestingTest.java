@@ -31,7 +31,7 @@ import net.osmand.util.RouterUtilTest;
 
 @RunWith(Parameterized.class)
 public class RouteTestingTest {
-	private final TestEntry te;
+	final TestEntry te;
 
 	private static final int TIMEOUT = 1500;
 
@@ -43,6 +43,10 @@ public class RouteTestingTest {
 		return false;
 	}
 
+	boolean isParallel() {
+		return false;
+	}
+
 	@BeforeClass
 	public static void setUp() throws Exception {
 		RouteResultPreparation.PRINT_TO_CONSOLE_ROUTE_INFORMATION_TO_TEST = true;
@@ -128,6 +132,7 @@ public class RouteTestingTest {
 			}
 
 			config.planRoadDirection = planRoadDirection;
+			config.parallelBidirectionalSearch = isParallel();
 			RoutingContext ctx;
 			if (useNative) {
 				ctx = fe.buildRoutingContext(config, nativeLibrary, binaryMapIndexReaders,
@@ -0,0 +1,173 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+
+public class RoutingTileCacheTest {
+
+	private static final int OBJECTS = 10;
+	private static final int POINTS = 5;
+
+	private File file;
+	private TileReader reader;
+	private RouteRegion region;
+
+	/**
+	 * Reader decoding synthetic tile for any subregion (object ids are based on subregion file pointer)
+	 */
+	private static class TileReader extends BinaryMapIndexReader {
+		int loads;
+
+		TileReader(File file) throws IOException {
+			super(new RandomAccessFile(file, "r"), file, false);
+		}
+
+		@Override
+		public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) {
+			loads++;
+			List<RouteDataObject> res = new ArrayList<RouteDataObject>();
+			for (int i = 0; i < OBJECTS; i++) {
+				RouteDataObject o = new RouteDataObject(rs.routeReg);
+				o.id = rs.filePointer * 100 + i;
+				o.types = new int[] { 1, 2 };
+				o.pointsX = new int[POINTS];
+				o.pointsY = new int[POINTS];
+				for (int k = 0; k < POINTS; k++) {
+					o.pointsX[k] = (int) o.id * 10 + k;
+					o.pointsY[k] = (int) o.id * 20 - k;
+				}
+				o.setRestriction(0, o.id + 1, MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN, 0);
+				res.add(o);
+			}
+			return res;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("tiles", ".obf");
+		reader = new TileReader(file);
+		region = new RouteRegion();
+		for (int i = 0; i < 4; i++) {
+			region.initRouteEncodingRule(i, "highway", "type" + i);
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	private RouteSubregion subregion(long filePointer) {
+		RouteSubregion s = new RouteSubregion(region);
+		s.filePointer = filePointer;
+		return s;
+	}
+
+	private long tileSize() throws IOException {
+		RoutingTileCache cache = new RoutingTileCache();
+		cache.loadRouteIndexData(reader, subregion(1));
+		return cache.getEstimatedSize();
+	}
+
+	@Test
+	public void testLruEviction() throws IOException {
+		long tileSize = tileSize();
+		Assert.assertTrue(tileSize > 0);
+		// only 2 tiles fit
+		RoutingTileCache cache = new RoutingTileCache(tileSize * 2 + tileSize / 2);
+		reader.loads = 0;
+		cache.loadRouteIndexData(reader, subregion(1));
+		cache.loadRouteIndexData(reader, subregion(2));
+		Assert.assertEquals(2, cache.getTilesCount());
+		// tile 1 becomes recently used, so tile 2 is evicted
+		cache.loadRouteIndexData(reader, subregion(1));
+		cache.loadRouteIndexData(reader, subregion(3));
+		Assert.assertEquals(2, cache.getTilesCount());
+		Assert.assertEquals(1, cache.getEvicted());
+		Assert.assertTrue(cache.getEstimatedSize() <= cache.getMemoryLimit());
+		Assert.assertEquals(3, reader.loads);
+
+		cache.loadRouteIndexData(reader, subregion(1));
+		Assert.assertEquals(3, reader.loads);
+		cache.loadRouteIndexData(reader, subregion(2));
+		Assert.assertEquals(4, reader.loads);
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(2, cache.getEvicted());
+
+		// tiles bigger than limit are not kept
+		RoutingTileCache small = new RoutingTileCache(tileSize / 2);
+		small.loadRouteIndexData(reader, subregion(1));
+		Assert.assertEquals(0, small.getTilesCount());
+		Assert.assertEquals(0, small.getEstimatedSize());
+	}
+
+	@Test
+	public void testRemoveRegion() throws IOException {
+		RoutingTileCache cache = new RoutingTileCache();
+		cache.loadRouteIndexData(reader, subregion(1));
+		cache.loadRouteIndexData(reader, subregion(2));
+		cache.removeRegion(new RouteRegion());
+		Assert.assertEquals(2, cache.getTilesCount());
+		cache.removeRegion(region);
+		Assert.assertEquals(0, cache.getTilesCount());
+		Assert.assertEquals(0, cache.getEstimatedSize());
+	}
+
+	@Test
+	public void testHitsReturnIndependentObjects() throws IOException {
+		RoutingTileCache cache = new RoutingTileCache();
+		List<RouteDataObject> first = cache.loadRouteIndexData(reader, subregion(1));
+		List<RouteDataObject> second = cache.loadRouteIndexData(reader, subregion(1));
+		Assert.assertEquals(1, reader.loads);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(OBJECTS, second.size());
+		for (int i = 0; i < OBJECTS; i++) {
+			Assert.assertNotSame(first.get(i), second.get(i));
+			Assert.assertTrue(first.get(i) instanceof PackedRouteTile.RouteDataObjectView);
+			Assert.assertEquals(first.get(i).id, second.get(i).id);
+		}
+
+		// modifications of routing context (i.e. direction points, restrictions) stay in own object
+		RouteDataObject a = first.get(0);
+		RouteDataObject b = second.get(0);
+		a.insert(1, 7, 8);
+		a.setRestriction(0, 555, MapRenderingTypes.RESTRICTION_NO_LEFT_TURN, 0);
+		a.types[0] = 3;
+		Assert.assertEquals(POINTS + 1, a.getPointsLength());
+		Assert.assertEquals(7, a.getPoint31XTile(1));
+		Assert.assertEquals(555, a.getRestrictionId(0));
+
+		Assert.assertEquals(POINTS, b.getPointsLength());
+		Assert.assertEquals(1001, b.getPoint31XTile(1));
+		Assert.assertEquals(101, b.getRestrictionId(0));
+		Assert.assertEquals(1, b.getTypes()[0]);
+
+		// cached tile is not changed
+		RouteDataObject c = cache.loadRouteIndexData(reader, subregion(1)).get(0);
+		Assert.assertEquals(POINTS, c.getPointsLength());
+		Assert.assertEquals(1001, c.getPoint31XTile(1));
+		Assert.assertEquals(101, c.getRestrictionId(0));
+		Assert.assertArrayEquals(new int[] { 1, 2 }, c.getTypes());
+	}
+}
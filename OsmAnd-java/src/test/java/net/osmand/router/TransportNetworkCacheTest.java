@@ -0,0 +1,171 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.Way;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+
+public class TransportNetworkCacheTest {
+
+	@Test
+	public void testTilesAreSharedAndEvicted() throws Exception {
+		final TransportNetworkCache cache = new TransportNetworkCache(4, 100);
+		Assert.assertTrue(cache.isCacheFor());
+		List<TransportStop> tile = cache.getTransportStops(15, 100, 200);
+		Assert.assertTrue(tile.isEmpty());
+		Assert.assertSame(tile, cache.getTransportStops(15, 100, 200));
+		Assert.assertNotSame(tile, cache.getTransportStops(14, 100, 200));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<TransportStop>>> futures = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				final int x = 100 + i % 3;
+				futures.add(executor.submit(new Callable<List<TransportStop>>() {
+					@Override
+					public List<TransportStop> call() throws IOException {
+						return cache.getTransportStops(15, x, 200);
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				Assert.assertSame(futures.get(i % 3).get(), futures.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertSame(tile, cache.getTransportStops(15, 100, 200));
+		for (int i = 0; i < 10; i++) {
+			cache.getTransportStops(15, 300 + i, 200);
+		}
+		Assert.assertEquals(4, cache.getTilesCount());
+		Assert.assertNotSame(tile, cache.getTransportStops(15, 100, 200));
+	}
+
+	private static final int STOPS = 12;
+	// ~ 70 m between nodes, 5 nodes between stops
+	private static final double NODE_STEP = 0.001;
+
+	/**
+	 * Stops of the same route with geometry split in shuffled (partly reversed) ways, as they are read from files
+	 */
+	private static List<TransportStop> routeStops(Random rnd) {
+		List<TransportStop> stops = new ArrayList<>();
+		TransportRoute route = new TransportRoute();
+		route.setId(1L);
+		route.setForwardStops(stops);
+		for (int i = 0; i < STOPS; i++) {
+			TransportStop s = new TransportStop();
+			s.setId((long) i + 1);
+			s.setLocation(52, 4 + i * 5 * NODE_STEP);
+			s.addRoute(route);
+			stops.add(s);
+		}
+		List<Way> ways = new ArrayList<>();
+		int node = 0, nodes = (STOPS - 1) * 5;
+		while (node < nodes) {
+			int len = 1 + rnd.nextInt(6);
+			List<Node> wayNodes = new ArrayList<>();
+			for (int k = node; k <= Math.min(node + len, nodes); k++) {
+				wayNodes.add(new Node(52, 4 + k * NODE_STEP, k + 1));
+			}
+			if (rnd.nextBoolean()) {
+				Collections.reverse(wayNodes);
+			}
+			ways.add(new Way(ways.size() + 1, wayNodes));
+			// gaps (missing ways), so route keeps few ways after merge
+			node += len + (ways.size() % 4 == 0 ? 1 : 0);
+		}
+		Collections.shuffle(ways, rnd);
+		route.setForwardWays(ways);
+		return stops;
+	}
+
+	private static List<String> geometry(TransportRoute route, int start, int end) {
+		TransportRouteResultSegment segment = new TransportRouteResultSegment();
+		segment.route = route;
+		segment.start = start;
+		segment.end = end;
+		List<String> res = new ArrayList<>();
+		for (Node n : segment.getNodes()) {
+			res.add(n.getLatitude() + " " + n.getLongitude());
+		}
+		return res;
+	}
+
+	@Test
+	public void testConcurrentGeometryOfSharedRoutes() throws Exception {
+		final int threads = 8;
+		// reference geometry of not shared route
+		TransportRoute expectedRoute = routeStops(new Random(3)).get(0).getRoutes().get(0);
+		final List<List<String>> expected = new ArrayList<>();
+		for (int i = 0; i < STOPS - 1; i++) {
+			expected.add(geometry(expectedRoute, i, STOPS - 1));
+		}
+
+		final TransportNetworkCache cache = new TransportNetworkCache(4, 100) {
+			@Override
+			Collection<TransportStop> readTransportStops(SearchRequest<TransportStop> sr) {
+				return routeStops(new Random(3));
+			}
+		};
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<List<String>>>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(new Callable<List<List<String>>>() {
+					@Override
+					public List<List<String>> call() throws Exception {
+						start.await();
+						TransportRoute route = cache.getTransportStops(15, 100, 200).get(0).getRoutes().get(0);
+						List<List<String>> res = null;
+						for (int k = 0; k < 50; k++) {
+							res = new ArrayList<>();
+							for (int i = 0; i < STOPS - 1; i++) {
+								res.add(geometry(route, i, STOPS - 1));
+							}
+						}
+						return res;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<List<List<String>>> f : futures) {
+				Assert.assertEquals(expected, f.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		// ways are merged on load, geometry calls don't change them
+		TransportRoute route = cache.getTransportStops(15, 100, 200).get(0).getRoutes().get(0);
+		List<Way> ways = route.getForwardWays();
+		Assert.assertTrue(ways.size() > 1);
+		int nodes = ways.get(0).getNodes().size();
+		// fails with ConcurrentModificationException if ways are changed (i.e. resorted)
+		Iterator<Way> it = ways.iterator();
+		geometry(route, 0, 1);
+		while (it.hasNext()) {
+			it.next();
+		}
+		Assert.assertEquals(nodes, ways.get(0).getNodes().size());
+	}
+}
@@ -0,0 +1,262 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+public class TransportRaptorPlannerTest {
+
+	private static final int GRID = 24;
+	// ~ 400 m between neighbour stops
+	private static final int STEP = 1 << 15;
+	private static final int X0 = MapUtils.get31TileNumberX(4.0);
+	private static final int Y0 = MapUtils.get31TileNumberY(52.0);
+
+	private static class TestRoutingContext extends TransportRoutingContext {
+
+		private final List<TransportRouteSegment> segments;
+
+		TestRoutingContext(TransportRoutingConfiguration cfg, List<TransportRouteSegment> segments) {
+			super(cfg, null);
+			this.segments = segments;
+		}
+
+		@Override
+		public List<TransportRouteSegment> getTransportStops(int x, int y, boolean change,
+				List<TransportRouteSegment> res) {
+			LatLon l = new LatLon(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x));
+			for (TransportRouteSegment s : segments) {
+				if (MapUtils.getDistance(s.getLocation(), l) < (change ? cfg.walkChangeRadius : cfg.walkRadius)) {
+					res.add(cfg.useSchedule ? new TransportRouteSegment(s.road, s.segStart, 0) : s);
+				}
+			}
+			return res;
+		}
+	}
+
+	private static TransportRoutingConfiguration config(boolean useRaptor, boolean useSchedule) {
+		GeneralRouter router = new GeneralRouter(GeneralRouterProfile.PUBLIC_TRANSPORT, new LinkedHashMap<String, String>());
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router, new LinkedHashMap<String, String>());
+		cfg.useRaptor = useRaptor;
+		cfg.useSchedule = useSchedule;
+		cfg.walkRadius = 700;
+		return cfg;
+	}
+
+	private static TransportStop stop(TransportStop[][] grid, int x, int y) {
+		if (grid[x][y] == null) {
+			TransportStop s = new TransportStop();
+			s.setId((long) (x * GRID + y + 1));
+			s.x31 = X0 + x * STEP;
+			s.y31 = Y0 + y * STEP;
+			s.setLocation(MapUtils.get31LatitudeY(s.y31), MapUtils.get31LongitudeX(s.x31));
+			s.setName(x + ":" + y);
+			grid[x][y] = s;
+		}
+		return grid[x][y];
+	}
+
+	private static TransportRoute route(long id, String type, List<TransportStop> stops) {
+		TransportRoute r = new TransportRoute();
+		r.setId(id);
+		r.setName("Line " + id);
+		r.setRef(String.valueOf(id));
+		r.setType(type);
+		r.setForwardStops(stops);
+		return r;
+	}
+
+	private static List<TransportRouteSegment> segments(List<TransportRoute> routes) {
+		List<TransportRouteSegment> segments = new ArrayList<TransportRouteSegment>();
+		for (TransportRoute r : routes) {
+			for (int i = 0; i < r.getForwardStops().size(); i++) {
+				segments.add(new TransportRouteSegment(r, i));
+			}
+		}
+		return segments;
+	}
+
+	private static List<TransportRoute> randomNetwork(Random rnd, int lines) {
+		TransportStop[][] grid = new TransportStop[GRID][GRID];
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		int[][] dirs = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+		for (int i = 0; i < lines; i++) {
+			int x = rnd.nextInt(GRID);
+			int y = rnd.nextInt(GRID);
+			int d = rnd.nextInt(4);
+			List<TransportStop> stops = new ArrayList<TransportStop>();
+			stops.add(stop(grid, x, y));
+			int length = 6 + rnd.nextInt(20);
+			while (stops.size() < length) {
+				if (rnd.nextInt(5) == 0) {
+					d = (d + (rnd.nextBoolean() ? 1 : 3)) % 4;
+				}
+				int nx = x + dirs[d][0];
+				int ny = y + dirs[d][1];
+				if (nx < 0 || ny < 0 || nx >= GRID || ny >= GRID) {
+					d = (d + 2) % 4;
+					continue;
+				}
+				x = nx;
+				y = ny;
+				stops.add(stop(grid, x, y));
+			}
+			routes.add(route((i + 1) * 2, "bus", stops));
+			List<TransportStop> back = new ArrayList<TransportStop>(stops);
+			Collections.reverse(back);
+			routes.add(route((i + 1) * 2 + 1, "bus", back));
+		}
+		return routes;
+	}
+
+	private static LatLon location(double x, double y) {
+		return new LatLon(MapUtils.get31LatitudeY((int) (Y0 + y * STEP)), MapUtils.get31LongitudeX((int) (X0 + x * STEP)));
+	}
+
+	private static double minTime(List<TransportRouteResult> results) {
+		double time = Double.POSITIVE_INFINITY;
+		for (TransportRouteResult r : results) {
+			time = Math.min(time, r.getRouteTime());
+		}
+		return time;
+	}
+
+	@Test
+	public void testSameAsDijkstra() throws IOException, InterruptedException {
+		Random rnd = new Random(11);
+		List<TransportRouteSegment> segments = segments(randomNetwork(rnd, 40));
+		int found = 0;
+		for (int i = 0; i < 30; i++) {
+			LatLon start = location(rnd.nextDouble() * GRID, rnd.nextDouble() * GRID);
+			LatLon end = location(rnd.nextDouble() * GRID, rnd.nextDouble() * GRID);
+			List<TransportRouteResult> dijkstra = new TransportRoutePlanner().buildRoute(
+					new TestRoutingContext(config(false, false), segments), start, end);
+			TransportRoutingConfiguration cfg = config(true, false);
+			List<TransportRouteResult> raptor = new TransportRoutePlanner().buildRoute(
+					new TestRoutingContext(cfg, segments), start, end);
+			if (!dijkstra.isEmpty()) {
+				found++;
+				Assert.assertFalse(raptor.isEmpty());
+				// Dijkstra doesn't board route at stop which it already passed by this route
+				Assert.assertTrue(minTime(raptor) <= minTime(dijkstra) + 1e-3);
+			}
+			double prevTime = 0;
+			int prevChanges = Integer.MAX_VALUE;
+			for (TransportRouteResult r : raptor) {
+				Assert.assertTrue(r.getRouteTime() > prevTime);
+				Assert.assertTrue(r.getChanges() < prevChanges);
+				Assert.assertTrue(r.getChanges() <= cfg.maxNumberOfChanges);
+				prevTime = r.getRouteTime();
+				prevChanges = r.getChanges();
+				double time = r.getWalkTime() + r.getChanges() * (cfg.getChangeTime() + cfg.getBoardingTime());
+				TransportStop prevEnd = null;
+				for (TransportRouteResultSegment s : r.getSegments()) {
+					time += s.getTravelTime();
+					Assert.assertEquals(s.getTravelDist(), s.travelDistApproximate, 1e-6);
+					if (prevEnd != null) {
+						Assert.assertEquals(MapUtils.getDistance(prevEnd.getLocation(), s.getStart().getLocation()), s.walkDist, 1e-6);
+					}
+					prevEnd = s.getEnd();
+				}
+				Assert.assertEquals(r.getRouteTime(), time, 1e-6);
+			}
+		}
+		Assert.assertTrue(found > 10);
+	}
+
+	@Test
+	public void testParetoResults() throws IOException, InterruptedException {
+		TransportStop[][] grid = new TransportStop[GRID][GRID];
+		List<TransportStop> slow = new ArrayList<TransportStop>();
+		// direct line goes around
+		for (int y = 0; y <= 10; y++) {
+			slow.add(stop(grid, 0, y));
+		}
+		for (int x = 1; x <= 10; x++) {
+			slow.add(stop(grid, x, 10));
+		}
+		for (int y = 9; y >= 0; y--) {
+			slow.add(stop(grid, 10, y));
+		}
+		List<TransportStop> first = new ArrayList<TransportStop>();
+		List<TransportStop> second = new ArrayList<TransportStop>();
+		for (int x = 0; x <= 5; x++) {
+			first.add(stop(grid, x, 0));
+		}
+		for (int x = 5; x <= 10; x++) {
+			second.add(stop(grid, x, 0));
+		}
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		routes.add(route(2, "bus", slow));
+		routes.add(route(4, "bus", first));
+		routes.add(route(6, "bus", second));
+		List<TransportRouteSegment> segments = segments(routes);
+		TransportRoutingConfiguration cfg = config(true, false);
+		List<TransportRouteResult> results = new TransportRoutePlanner().buildRoute(
+				new TestRoutingContext(cfg, segments), location(0, 0), location(10, 0));
+		Assert.assertEquals(2, results.size());
+		Assert.assertEquals(1, results.get(0).getChanges());
+		Assert.assertEquals(4, results.get(0).getSegments().get(0).route.getId().longValue());
+		Assert.assertEquals(6, results.get(0).getSegments().get(1).route.getId().longValue());
+		Assert.assertEquals(0, results.get(1).getChanges());
+		Assert.assertEquals(2, results.get(1).getSegments().get(0).route.getId().longValue());
+		Assert.assertEquals(30, results.get(1).getStops());
+
+		// only direct line with 0 changes
+		cfg = config(true, false);
+		cfg.maxNumberOfChanges = 0;
+		results = new TransportRoutePlanner().buildRoute(new TestRoutingContext(cfg, segments), location(0, 0), location(10, 0));
+		Assert.assertEquals(1, results.size());
+		Assert.assertEquals(0, results.get(0).getChanges());
+	}
+
+	@Test
+	public void testSchedule() throws IOException, InterruptedException {
+		TransportStop[][] grid = new TransportStop[GRID][GRID];
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		for (int x = 0; x <= 10; x++) {
+			stops.add(stop(grid, x, 0));
+		}
+		TransportRoute r = route(2, "bus", stops);
+		TransportRoutingConfiguration cfg = config(true, true);
+		cfg.walkRadius = 400;
+		TIntArrayList stopIntervals = new TIntArrayList();
+		for (int i = 0; i < 10; i++) {
+			stopIntervals.add(6);
+		}
+		// trips leave first stop every 10 minutes after 11:50
+		TIntArrayList trips = new TIntArrayList();
+		trips.add(cfg.scheduleTimeOfDay - 60);
+		for (int i = 0; i < 10; i++) {
+			trips.add(60);
+		}
+		r.setSchedule(new TransportSchedule(trips, stopIntervals, new TIntArrayList()));
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		routes.add(r);
+		// walk ~ 6 minutes to third stop, so trip at 12:10 is taken
+		List<TransportRouteResult> results = new TransportRoutePlanner().buildRoute(
+				new TestRoutingContext(cfg, segments(routes)), location(2, 0.95), location(10, 0));
+		Assert.assertEquals(1, results.size());
+		TransportRouteResultSegment s = results.get(0).getSegments().get(0);
+		Assert.assertEquals(2, s.start);
+		Assert.assertEquals(10, s.end);
+		Assert.assertEquals(cfg.scheduleTimeOfDay + 60 + 2 * 6, s.depTime);
+		Assert.assertEquals((60 + 10 * 6) * 10, results.get(0).getRouteTime(), 1e-6);
+	}
+}
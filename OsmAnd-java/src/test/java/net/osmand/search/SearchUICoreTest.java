@@ -13,6 +13,7 @@ import net.osmand.util.MapUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -31,6 +32,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
@@ -40,6 +43,8 @@ public class SearchUICoreTest {
 	private static final String SEARCH_RESOURCES_PATH = "src/test/resources/search/";
 	private static boolean TEST_EXTRA_RESULTS = true;
 	
+	private static ExecutorService searchExecutor;
+
 	private final File testFile;
 
     public SearchUICoreTest(String name, File file) {
@@ -49,6 +54,12 @@ public class SearchUICoreTest {
 	@BeforeClass
 	public static void setUp() {
 		defaultSetup();
+		searchExecutor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		searchExecutor.shutdown();
 	}
 
 	static void defaultSetup() {
@@ -223,7 +234,17 @@ public class SearchUICoreTest {
 	}
 
 	private List<SearchResult> getSearchResult(SearchPhrase phrase, ResultMatcher<SearchResult> rm, SearchUICore core){
+		List<SearchResult> results = getSearchResult(phrase, rm, core, null);
+		// parallel search finds same results
+		List<SearchResult> parallelResults = getSearchResult(phrase, rm, core, searchExecutor);
+		Assert.assertEquals(formatSortedResults(results, phrase), formatSortedResults(parallelResults, phrase));
+		return results;
+	}
+
+	private List<SearchResult> getSearchResult(SearchPhrase phrase, ResultMatcher<SearchResult> rm, SearchUICore core,
+	                                           ExecutorService executor) {
 		SearchResultMatcher matcher = new SearchResultMatcher(rm, phrase, 1, new AtomicInteger(1), -1);
+		matcher.setSearchExecutor(executor);
 		core.searchInternal(phrase, matcher);
 		SearchResultCollection collection = new SearchResultCollection(phrase);
 		collection.addSearchResults(matcher.getRequestResults(), true, true);
@@ -234,6 +255,15 @@ public class SearchUICoreTest {
 		return collection.getCurrentSearchResults();
 	}
 
+	private List<String> formatSortedResults(List<SearchResult> results, SearchPhrase phrase) {
+		List<String> formatted = new ArrayList<>();
+		for (SearchResult r : results) {
+			formatted.add(formatResult(false, r, phrase));
+		}
+		Collections.sort(formatted);
+		return formatted;
+	}
+
 	private void parseResults(JSONObject sourceJson, String tag, List<List<String>> results) {
 		List<String> result = results.get(0);
 		JSONArray resultsArr = sourceJson.getJSONArray(tag);